@@ -4,8 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.CharBuffer;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import java.util.logging.Logger;
 
 import org.springframework.http.MediaType;
@@ -13,91 +14,93 @@ import org.springframework.web.bind.annotation.*;
 
 import vietfi.markdown.strict.SMDHtmlRender;
 import vietfi.markdown.strict.SMDParser;
-import vietfi.markdown.strict.SMDParserChain;
-import vietfi.markdown.strict.render.HtmlRenderImpl;
+import vietfi.markdown.strict.SMDParserChainPool;
 
 @RestController
 @RequestMapping("/api")
 public class MarkdownRenderController {
 	static final Logger logger = Logger.getLogger(MarkdownRenderController.class.getName());
 	
-	Semaphore lock = new Semaphore(1);
+	//pre-built parser chains and renders, one borrowed per request
+	private final SMDParserChainPool<SMDHtmlRender> pool = SMDParserChainPool.createHtmlRenderPool(16);
 	
-    private final SMDParser markdownParser = SMDParserChain.createParserOfStandard(4096);
-    private final SMDHtmlRender htmlRenderer = new HtmlRenderImpl();
-    StringBuilder sb = new StringBuilder(32*1024);
-    StringBuilder debug = new StringBuilder(32*1024);
-    CharBuffer buffer = CharBuffer.allocate(4*1024);
+	//render settings, applied to the borrowed render
+	private final Map<Integer, String> renderClasses = new ConcurrentHashMap<>();
+	private volatile BiFunction<CharBuffer, StringBuilder, Integer> imageSrcResolver = null;
+	
+	//the buffers of a request, reused by the thread of the server, a grown one is dropped
+	private static final int MAXIMUM_KEPT_CAPACITY = 1024*1024;
+	
+	private static final class RequestBuffers {
+		final StringBuilder sb = new StringBuilder(32*1024);
+		final StringBuilder debug = new StringBuilder(32*1024);
+		final CharBuffer buffer = CharBuffer.allocate(4*1024);
+	}
+	
+	private final ThreadLocal<RequestBuffers> requestBuffers = ThreadLocal.withInitial(RequestBuffers::new);
     
     @PostMapping(value = "/change-render-class", consumes = MediaType.APPLICATION_JSON_VALUE, 
     		produces = "application/json; charset=UTF-8")
     public String changeRenderClass(@RequestBody RenderConfigSetup input) {
-    	try {
-			lock.acquire();
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
-    	try {
-    		logger.info("Change render class as "+input.toString());
-    		htmlRenderer.setClassNameForTag(input.getValue(), input.getClassForTag());
-    		return "OK render class: "+input;
-    	}
-    	finally {
-    		lock.release();
-    	}
+		logger.info("Change render class as "+input.toString());
+		if(input.getValue() == null || input.getValue().isBlank())
+			renderClasses.remove(input.getClassForTag());
+		else
+			renderClasses.put(input.getClassForTag(), input.getValue());
+		return "OK render class: "+input;
     }
     
     @PostMapping(value = "/change-url-resolver", consumes = MediaType.APPLICATION_JSON_VALUE, 
     		produces = "application/json; charset=UTF-8")
     public String changeBaseImage(@RequestBody RenderConfigSetup input) {
-    	try {
-			lock.acquire();
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+		final String val = input.getValue(); 
+		
+		logger.info("Change resolver as "+input.toString());
+		if("img".equals(input.getType()))
+			imageSrcResolver = (buff, sb) -> {
+				char firstChar = buff.get();
+				if(firstChar == '/' && val.endsWith("/")) { //double /, trim 1
+					sb.append(val);
+					return 1;
+				}
+				else {
+					sb.append(val);
+					if(!(firstChar == '/' || val.endsWith("/"))) {
+						sb.append('/');
+					}
+					
+				}
+				
+				return null;
+			};
+		else {
+			return ("type must be \"img\"");
 		}
-    	try {
-    		final String val = input.getValue(); 
-    		
-    		logger.info("Change resolver as "+input.toString());
-    		if("img".equals(input.getType()))
-    			htmlRenderer.setImageSrcResolver((buff, sb) -> {
-    				char firstChar = buff.get();
-    				if(firstChar == '/' && val.endsWith("/")) { //double /, trim 1
-    					sb.append(val);
-    					return 1;
-    				}
-    				else {
-    					sb.append(val);
-    					if(!(firstChar == '/' || val.endsWith("/"))) {
-    						sb.append('/');
-    					}
-    					
-    				}
-    				
-    				return null;
-    			});
-    		else {
-    			return ("type must be \"img\"");
-    		}
-    		return "OK resolver: "+input;
-    	}
-    	finally {
-    		lock.release();
-    	}
+		return "OK resolver: "+input;
     }
     
     @PostMapping(value = "/markdown-render", consumes = "text/plain", produces = "application/json; charset=UTF-8")
     public RenderOutputDto renderMarkdown(InputStream input) {
+    	SMDParserChainPool.Entry<SMDHtmlRender> entry;
     	try {
-			lock.acquire();
+			entry = pool.borrow();
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		}
-    	try {
-	    	buffer.clear();
-	    	markdownParser.markers().resetMarkers();
+    	try (entry) {
+    		SMDParser markdownParser = entry.parser();
+    		SMDHtmlRender htmlRenderer = entry.render();
+    		for(int classForTag = SMDHtmlRender.CLASS_FOR_PARAGRAPH; classForTag <= SMDHtmlRender.CLASS_FOR_LI; classForTag++)
+    			htmlRenderer.setClassNameForTag(renderClasses.get(classForTag), classForTag);
+    		htmlRenderer.setImageSrcResolver(imageSrcResolver);
+    		
+	    	RequestBuffers buffers = requestBuffers.get();
+	    	StringBuilder sb = buffers.sb;
+	    	StringBuilder debug = buffers.debug;
+	    	CharBuffer buffer = buffers.buffer;
 	    	sb.setLength(0);
 	    	debug.setLength(0);
+	    	buffer.clear();
 	    	
 	    	try (InputStreamReader isr = new InputStreamReader(input)) {
 		    	int r = 0;
@@ -112,13 +115,13 @@ public class MarkdownRenderController {
 			    	if(r == SMDParser.SMD_BLOCK_INVALID) {
 			    		return new RenderOutputDto(buffer.toString(), "Loop "+loop+", invalid Markdown, result="+r);
 			    	}
-			    	debug.append("Loop "+loop+", nRead="+nRead+", "+markdownParser.markers().toString());
+			    	debug.append("Loop ").append(loop).append(", nRead=").append(nRead).append(", ").append(markdownParser.markers());
 			    	htmlRenderer.produceHtml(markdownParser.markers(), buffer, sb);
 			    	pos = markdownParser.markers().compactMarkers(buffer.position());
-			    	debug.append("Compacted "+pos+", markers length="+markdownParser.markers().markedLength()).append('\n');
+			    	debug.append("Compacted ").append(pos).append(", markers length=").append(markdownParser.markers().markedLength()).append('\n');
 			    	markdownParser.compact(pos);
 			    	if(pos < buffer.position()) {
-			    		debug.append("WARN: compact "+pos+" less than "+buffer.position()).append('\n');
+			    		debug.append("WARN: compact ").append(pos).append(" less than ").append(buffer.position()).append('\n');
 			    		buffer.position(pos);
 			    	}
 			    	buffer.compact();
@@ -131,7 +134,7 @@ public class MarkdownRenderController {
 		    			r = markdownParser.parseNext(buffer);
 		    			//force end
 		    	    	markdownParser.endBlock(buffer.position());
-		    	    	debug.append("Loop "+loop+", end, compact "+pos+", ending position "+buffer.position()).append('\n');
+		    	    	debug.append("Loop ").append(loop).append(", end, compact ").append(pos).append(", ending position ").append(buffer.position()).append('\n');
 		    		}
 			    }
 	    	} catch (IOException e) {
@@ -142,10 +145,10 @@ public class MarkdownRenderController {
 	    	debug.append("Last, ").append(markdownParser.markers().toString()).append('\n');
 	    	htmlRenderer.produceHtml(markdownParser.markers(), buffer, sb);
 	    	
-	    	return new RenderOutputDto("", sb.toString(), debug.toString());
-    	}
-    	finally {
-    		lock.release();
+	    	RenderOutputDto output = new RenderOutputDto("", sb.toString(), debug.toString());
+	    	if(sb.capacity() > MAXIMUM_KEPT_CAPACITY || debug.capacity() > MAXIMUM_KEPT_CAPACITY)
+	    		requestBuffers.remove();
+	    	return output;
     	}
     }
 	
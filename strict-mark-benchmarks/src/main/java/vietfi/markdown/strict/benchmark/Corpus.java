@@ -0,0 +1,218 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * The documents of benchmarks.
+ *
+ * "tt39" is the reference document docs/TT_39_2016_TT_NHNN.md (mostly Vietnamese), the others are synthetic of a fixed seed,
+ * about SYNTHETIC_SIZE characters:
+ * <ul>
+ * <li>"paragraphs": paragraphs of inline markup.</li>
+ * <li>"lists": ordered and unordered lists.</li>
+ * <li>"code": fenced and indented code blocks.</li>
+ * <li>"links": paragraphs dense of links and images.</li>
+ * <li>"small": paragraphs of 2KB, the cost of the setup matters.</li>
+ * <li>"longblocks": long multi-line blocks (code and quote), pending over many rounds of a small buffer.</li>
+ * </ul>
+ */
+public final class Corpus {
+
+	public static final String TT39 = "tt39";
+
+	public static final int SYNTHETIC_SIZE = 128 * 1024;
+
+	private static final String[] WORDS = {"markdown", "parser", "strict", "buffer", "the", "of", "render", "block",
+			"line", "marker", "stream", "\u0111i\u1EC1u", "kho\u1EA3n", "ng\u00E2n", "h\u00E0ng", "a", "to", "is"};
+
+	private Corpus() {
+	}
+
+	/**
+	 * @param name of document.
+	 * @return the markdown text.
+	 */
+	public static String load(String name) {
+		switch(name) {
+		case TT39:
+			return resource("/TT_39_2016_TT_NHNN.md");
+		case "paragraphs":
+			return paragraphs(new Random(1), SYNTHETIC_SIZE);
+		case "lists":
+			return lists(new Random(2), SYNTHETIC_SIZE);
+		case "code":
+			return code(new Random(3), SYNTHETIC_SIZE);
+		case "links":
+			return links(new Random(4), SYNTHETIC_SIZE);
+		case "small":
+			return paragraphs(new Random(6), 2048);
+		case "longblocks":
+			return longBlocks(new Random(5), SYNTHETIC_SIZE);
+		default:
+			throw new IllegalArgumentException("Unknown document: "+name);
+		}
+	}
+
+	static String resource(String path) {
+		try(InputStream in = Corpus.class.getResourceAsStream(path)) {
+			if(in == null)
+				throw new IllegalStateException("Resource not found: "+path);
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return number of bytes of the text in UTF-8.
+	 */
+	public static int utf8Length(String text) {
+		return text.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static void words(Random random, StringBuilder sb, int count) {
+		for(int i = 0; i < count; i++) {
+			if(i > 0)
+				sb.append(' ');
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+	}
+
+	//a line of text with some inline markup
+	private static void inline(Random random, StringBuilder sb, int count) {
+		for(int i = 0; i < count; i++) {
+			if(i > 0)
+				sb.append(' ');
+			String word = WORDS[random.nextInt(WORDS.length)];
+			switch(random.nextInt(10)) {
+			case 0:
+				sb.append("**").append(word).append("**");
+				break;
+			case 1:
+				sb.append('_').append(word).append('_');
+				break;
+			case 2:
+				sb.append('`').append(word).append('`');
+				break;
+			case 3:
+				sb.append("~~").append(word).append("~~");
+				break;
+			default:
+				sb.append(word);
+			}
+		}
+	}
+
+	static String paragraphs(Random random, int size) {
+		StringBuilder sb = new StringBuilder(size + 1024);
+		while(sb.length() < size) {
+			if(random.nextInt(8) == 0) {
+				sb.append("## ");
+				words(random, sb, 4);
+				sb.append("\n\n");
+			}
+			int lines = 3 + random.nextInt(4);
+			for(int i = 0; i < lines; i++) {
+				inline(random, sb, 8 + random.nextInt(8));
+				sb.append('\n');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	static String lists(Random random, int size) {
+		StringBuilder sb = new StringBuilder(size + 1024);
+		while(sb.length() < size) {
+			boolean ordered = random.nextBoolean();
+			int items = 3 + random.nextInt(8);
+			for(int i = 1; i <= items; i++) {
+				sb.append(ordered ? i + ". " : "* ");
+				inline(random, sb, 5 + random.nextInt(10));
+				sb.append('\n');
+			}
+			sb.append('\n');
+			words(random, sb, 10);
+			sb.append("\n\n");
+		}
+		return sb.toString();
+	}
+
+	static String code(Random random, int size) {
+		StringBuilder sb = new StringBuilder(size + 1024);
+		while(sb.length() < size) {
+			words(random, sb, 8);
+			sb.append("\n\n");
+			boolean fenced = random.nextInt(3) > 0;
+			if(fenced)
+				sb.append("~~~ java\n");
+			int lines = 5 + random.nextInt(40);
+			for(int i = 0; i < lines; i++) {
+				if(!fenced)
+					sb.append("    ");
+				sb.append("int x").append(i).append(" = a < b && c > d ? ").append(random.nextInt(1000)).append(" : 0;\n");
+			}
+			if(fenced)
+				sb.append("~~~\n");
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	static String links(Random random, int size) {
+		StringBuilder sb = new StringBuilder(size + 1024);
+		while(sb.length() < size) {
+			int lines = 2 + random.nextInt(4);
+			for(int i = 0; i < lines; i++) {
+				words(random, sb, 3);
+				for(int j = 0; j < 3; j++) {
+					if(random.nextInt(4) == 0)
+						sb.append(" ![").append(WORDS[random.nextInt(WORDS.length)]).append("](/images/").append(random.nextInt(100)).append(".png)");
+					else
+						sb.append(" [").append(WORDS[random.nextInt(WORDS.length)]).append("](https://example.com/doc/")
+							.append(random.nextInt(1000)).append("?a=1&b=2)");
+				}
+				sb.append('\n');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	static String longBlocks(Random random, int size) {
+		StringBuilder sb = new StringBuilder(size + 1024);
+		while(sb.length() < size) {
+			sb.append("~~~\n");
+			for(int i = 0; i < 1000; i++)
+				sb.append("code line ").append(i).append(" = ").append(random.nextInt()).append('\n');
+			sb.append("~~~\n\n");
+			for(int i = 0; i < 500; i++) {
+				sb.append("> quote ");
+				inline(random, sb, 6);
+				sb.append('\n');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
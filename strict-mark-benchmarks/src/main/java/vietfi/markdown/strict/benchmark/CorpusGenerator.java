@@ -0,0 +1,408 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Generate a synthetic document of the strict-mark syntax (see strict-mark/docs/syntax-ebnf.wsd), of a given size and shape.
+ *
+ * The output is deterministic for the same seed and settings. The blocks are separated by a blank line:
+ * headings, paragraphs, lists (nested up to the level 5 of SMDListItemParser), fenced and indented code blocks, quotes and horizontal lines.
+ * The expected counts of the blocks are returned, to check the output of a parser or to sweep a benchmark.
+ *
+ * Example:
+ * <pre>
+ * CorpusGenerator generator = new CorpusGenerator(1);
+ * generator.setListDepth(6);
+ * String text = generator.generate(1 &lt;&lt; 20);
+ * CorpusGenerator.Counts counts = generator.getCounts();
+ * </pre>
+ */
+public class CorpusGenerator {
+
+	/**
+	 * The expected counts of a generated document.
+	 */
+	public static final class Counts {
+
+		long headings;
+		long paragraphs;
+		long orderedLists; //including the nested lists
+		long unorderedLists;
+		long listItems;
+		long topLevelLists;
+		long codeBlocks;
+		long quotes;
+		long horizontals;
+		long links;
+		long images;
+		long chars;
+
+		public long getHeadings() {
+			return headings;
+		}
+
+		public long getParagraphs() {
+			return paragraphs;
+		}
+
+		/**
+		 * @return number of ordered lists, the nested ones are included.
+		 */
+		public long getOrderedLists() {
+			return orderedLists;
+		}
+
+		/**
+		 * @return number of unordered lists, the nested ones are included.
+		 */
+		public long getUnorderedLists() {
+			return unorderedLists;
+		}
+
+		public long getListItems() {
+			return listItems;
+		}
+
+		public long getCodeBlocks() {
+			return codeBlocks;
+		}
+
+		public long getQuotes() {
+			return quotes;
+		}
+
+		public long getHorizontals() {
+			return horizontals;
+		}
+
+		public long getLinks() {
+			return links;
+		}
+
+		public long getImages() {
+			return images;
+		}
+
+		/**
+		 * @return number of the top level blocks.
+		 */
+		public long getBlocks() {
+			return headings + paragraphs + topLevelLists + codeBlocks + quotes + horizontals;
+		}
+
+		/**
+		 * @return length of the document, in characters.
+		 */
+		public long getChars() {
+			return chars;
+		}
+
+		@Override
+		public String toString() {
+			return "blocks="+getBlocks()+", headings="+headings+", paragraphs="+paragraphs+", orderedLists="+orderedLists
+					+", unorderedLists="+unorderedLists+", listItems="+listItems+", codeBlocks="+codeBlocks+", quotes="+quotes
+					+", horizontals="+horizontals+", links="+links+", images="+images+", chars="+chars;
+		}
+	}
+
+	private static final String[] WORDS = {"markdown", "parser", "strict", "buffer", "the", "of", "render", "block",
+			"line", "marker", "stream", "value", "chain", "output", "simple", "text", "to", "is", "and", "with"};
+
+	//Vietnamese, mostly 2 or 3 bytes in UTF-8
+	private static final String[] NON_ASCII_WORDS = {"\u0111i\u1EC1u", "kho\u1EA3n", "ng\u00E2n", "h\u00E0ng", "th\u00F4ng",
+			"t\u01B0", "quy", "\u0111\u1ECBnh", "ti\u1EC1n", "g\u1EEDi"};
+
+	private static final String[] CODE_LINES = {"int x = a < b && c > d ? 1 : 0;", "if(buffer.hasRemaining()) {",
+			"return \"<p>\" + text + \"</p>\";", "for(int i = 0; i < n; i++)", "}", "markers.addStartMarker(STATE, pos); // *not* bold"};
+
+	private static final String[] HORIZONTALS = {"---", "___", "==="};
+
+	private static final char[] BULLETS = {'*', '-', '+'};
+
+	private final long seed;
+	private Random random;
+	private Counts counts;
+
+	private int listDepth = 3;
+	private double inlineDensity = 0.1;
+	private double linkRatio = 0.05;
+	private double imageRatio = 0.2;
+	private int codeBlockLines = 10;
+	private int lineLength = 80;
+	private double nonAsciiRatio = 0.1;
+
+	/**
+	 * @param seed of the random, the same seed and settings generate the same document.
+	 */
+	public CorpusGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param depth maximum levels of a list, 1 (no nesting) to 6 (the level 5 of SMDListItemParser).
+	 */
+	public void setListDepth(int depth) {
+		if(depth < 1 || depth > 6)
+			throw new IllegalArgumentException("List depth must be in range of 1..6");
+		this.listDepth = depth;
+	}
+
+	/**
+	 * @param density ratio of words with inline markup (bold, italic, underline, strikethrough, code), 0 to 1.
+	 */
+	public void setInlineDensity(double density) {
+		this.inlineDensity = ratio(density);
+	}
+
+	/**
+	 * @param ratio ratio of words which are links or images, 0 to 1.
+	 */
+	public void setLinkRatio(double ratio) {
+		this.linkRatio = ratio(ratio);
+	}
+
+	/**
+	 * @param ratio ratio of images in the links, 0 to 1.
+	 */
+	public void setImageRatio(double ratio) {
+		this.imageRatio = ratio(ratio);
+	}
+
+	/**
+	 * @param lines average lines of a code block, at least 1.
+	 */
+	public void setCodeBlockLines(int lines) {
+		if(lines < 1)
+			throw new IllegalArgumentException("Code block lines must be positive");
+		this.codeBlockLines = lines;
+	}
+
+	/**
+	 * @param length average length of a text line, in characters, at least 10.
+	 */
+	public void setLineLength(int length) {
+		if(length < 10)
+			throw new IllegalArgumentException("Line length must be at least 10");
+		this.lineLength = length;
+	}
+
+	/**
+	 * @param ratio ratio of non-ASCII (Vietnamese) words, 0 to 1.
+	 */
+	public void setNonAsciiRatio(double ratio) {
+		this.nonAsciiRatio = ratio(ratio);
+	}
+
+	private static double ratio(double value) {
+		if(!(value >= 0 && value <= 1))
+			throw new IllegalArgumentException("Ratio must be in range of 0..1");
+		return value;
+	}
+
+	/**
+	 * Generate a document into a string.
+	 *
+	 * @param size minimum length in characters, the last block is completed.
+	 * @return the document.
+	 */
+	public String generate(int size) {
+		StringBuilder sb = new StringBuilder(size + lineLength * codeBlockLines * 2);
+		try {
+			generate(size, sb);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Generate a document into an output, for the large sizes (e.g. 100MB to a file).
+	 *
+	 * @param size minimum length in characters, the last block is completed.
+	 * @param output to append.
+	 * @return the expected counts, same as getCounts().
+	 * @throws IOException of the output.
+	 */
+	public Counts generate(long size, Appendable output) throws IOException {
+		random = new Random(seed);
+		counts = new Counts();
+		StringBuilder block = new StringBuilder(1024);
+		boolean lastList = false;
+		while(counts.chars < size) {
+			block.setLength(0);
+			int kind = random.nextInt(20);
+			if(lastList && kind >= 8 && kind < 15) //a list or an indented code would continue the list before
+				kind = 0;
+			lastList = false;
+			if(kind < 8)
+				paragraph(block);
+			else if(kind < 12) {
+				list(block, 0, 0, random.nextBoolean(), random.nextBoolean() ? '.' : ')');
+				counts.topLevelLists++;
+				lastList = true;
+			}
+			else if(kind < 15)
+				code(block);
+			else if(kind < 17)
+				quote(block);
+			else if(kind < 19)
+				heading(block);
+			else {
+				block.append(HORIZONTALS[random.nextInt(HORIZONTALS.length)]).append('\n');
+				counts.horizontals++;
+			}
+			block.append('\n');
+			output.append(block);
+			counts.chars += block.length();
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the expected counts of the last generated document.
+	 */
+	public Counts getCounts() {
+		return counts;
+	}
+
+	private String word() {
+		if(random.nextDouble() < nonAsciiRatio)
+			return NON_ASCII_WORDS[random.nextInt(NON_ASCII_WORDS.length)];
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	//a line of inline text of about the length, it starts with a plain word (not a block marker)
+	private void textLine(StringBuilder sb, int length) {
+		textLine(sb, length, true);
+	}
+
+	private void textLine(StringBuilder sb, int length, boolean markup) {
+		int start = sb.length();
+		sb.append(word());
+		while(sb.length() - start < length) {
+			sb.append(' ');
+			if(!markup)
+				sb.append(word());
+			else if(random.nextDouble() < linkRatio) {
+				if(random.nextDouble() < imageRatio) {
+					sb.append("![").append(word()).append("](/images/").append(random.nextInt(1000)).append(".png)");
+					counts.images++;
+				}
+				else {
+					sb.append('[').append(word()).append(' ').append(word()).append("](https://example.com/doc/")
+						.append(random.nextInt(1000)).append("?page)");
+					counts.links++;
+				}
+			}
+			else if(random.nextDouble() < inlineDensity) {
+				String word = word();
+				switch(random.nextInt(5)) {
+				case 0:
+					sb.append("**").append(word).append("**");
+					break;
+				case 1:
+					sb.append('*').append(word).append('*');
+					break;
+				case 2:
+					sb.append("__").append(word).append("__");
+					break;
+				case 3:
+					sb.append("~~").append(word).append("~~");
+					break;
+				default:
+					sb.append('`').append(word).append('`');
+				}
+			}
+			else
+				sb.append(word());
+		}
+		sb.append('\n');
+	}
+
+	private int lineLength() {
+		return lineLength / 2 + random.nextInt(lineLength);
+	}
+
+	private void paragraph(StringBuilder sb) {
+		int lines = 1 + random.nextInt(5);
+		for(int i = 0; i < lines; i++)
+			textLine(sb, lineLength());
+		counts.paragraphs++;
+	}
+
+	private void heading(StringBuilder sb) {
+		int level = 1 + random.nextInt(6);
+		for(int i = 0; i < level; i++)
+			sb.append('#');
+		sb.append(' ');
+		//a heading is of plain text
+		textLine(sb, 10 + random.nextInt(lineLength / 2), false);
+		counts.headings++;
+	}
+
+	private void quote(StringBuilder sb) {
+		int lines = 1 + random.nextInt(4);
+		for(int i = 0; i < lines; i++) {
+			sb.append("> ");
+			textLine(sb, lineLength());
+		}
+		counts.quotes++;
+	}
+
+	private void code(StringBuilder sb) {
+		int lines = 1 + random.nextInt(codeBlockLines * 2);
+		//fenced or indented
+		String fence = random.nextInt(3) > 0 ? (random.nextBoolean() ? "~~~" : "```") : null;
+		if(fence != null)
+			sb.append(fence).append(random.nextBoolean() ? " java\n" : "\n");
+		for(int i = 0; i < lines; i++) {
+			if(fence == null)
+				sb.append("    ");
+			sb.append(CODE_LINES[random.nextInt(CODE_LINES.length)]).append('\n');
+		}
+		if(fence != null)
+			sb.append(fence).append('\n');
+		counts.codeBlocks++;
+	}
+
+	//a list at the indent, with nested lists up to the depth.
+	//the ordered lists of a tree have the same delimiter, a ')' item is not nested under a '.' one
+	private void list(StringBuilder sb, int level, int indent, boolean ordered, char delimiter) {
+		int items = 1 + random.nextInt(5);
+		char bullet = BULLETS[random.nextInt(BULLETS.length)];
+		if(ordered)
+			counts.orderedLists++;
+		else
+			counts.unorderedLists++;
+		for(int i = 1; i <= items; i++) {
+			for(int j = 0; j < indent; j++)
+				sb.append(' ');
+			if(ordered)
+				sb.append(i).append(delimiter).append(' ');
+			else
+				sb.append(bullet).append(' ');
+			textLine(sb, lineLength());
+			counts.listItems++;
+			if(level + 1 < listDepth && random.nextInt(3) == 0)
+				list(sb, level + 1, indent + (ordered ? 3 : 2), random.nextBoolean(), delimiter);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.line.HtmlEscapeUtil;
+
+/**
+ * The HTML escaping of a whole document text by HtmlEscapeUtil (a table of ASCII, the runs of plain chars copied at once),
+ * compared with the escaping char by char of escapeHtml (the baseline "byChar").
+ * The plain text-heavy documents (tt39, paragraphs) gain the most, the code has many chars to escape.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EscapeBenchmark {
+
+	@Param({Corpus.TT39, "paragraphs", "code"})
+	public String document;
+
+	private int bytes;
+	private char[] text;
+	private CharBuffer input;
+	private StringBuilder outputBuilder;
+	private CharBuffer outputBuffer;
+
+	@Setup
+	public void setup() {
+		String s = Corpus.load(document);
+		bytes = s.getBytes(StandardCharsets.UTF_8).length;
+		text = s.toCharArray();
+		input = CharBuffer.wrap(text);
+		outputBuilder = new StringBuilder(text.length * 2);
+		outputBuffer = CharBuffer.allocate(text.length * 2);
+	}
+
+	@Benchmark
+	public StringBuilder byChar(Throughput throughput) {
+		outputBuilder.setLength(0);
+		for(int j = 0; j < text.length; j++) {
+			char c = text[j];
+			String escape = HtmlEscapeUtil.escapeHtml(c, false);
+			if(escape != null)
+				outputBuilder.append(escape);
+			else
+				outputBuilder.append(c);
+		}
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	@Benchmark
+	public StringBuilder appendChars(Throughput throughput) {
+		outputBuilder.setLength(0);
+		HtmlEscapeUtil.appendWithEscapeHtml(false, text, 0, text.length, outputBuilder);
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	@Benchmark
+	public StringBuilder appendCharBuffer(Throughput throughput) {
+		outputBuilder.setLength(0);
+		HtmlEscapeUtil.appendWithEscapeHtml(false, input, 0, text.length, outputBuilder);
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	@Benchmark
+	public CharBuffer writeCharBuffer(Throughput throughput) {
+		outputBuffer.clear();
+		HtmlEscapeUtil.writeWithEscapeHtml(false, input, 0, text.length, 0, outputBuffer);
+		throughput.add(bytes);
+		return outputBuffer;
+	}
+}
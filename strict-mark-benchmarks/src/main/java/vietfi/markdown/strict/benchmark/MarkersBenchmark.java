@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDConverter;
+import vietfi.markdown.strict.SMDMarkers;
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * The marker stores: the SMDMarkers storages (int, long and paged), on a whole document and on streaming.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkersBenchmark {
+
+	@Param({"int", "long", "paged"})
+	public String markers;
+
+	@Param({Corpus.TT39, "links"})
+	public String document;
+
+	private String text;
+	private int bytes;
+	private CharBuffer input;
+	private SMDParser parser;
+	private HtmlRenderImpl render;
+	private StringBuilder outputBuilder;
+	private SMDConverter converter;
+
+	static SMDMarkers createMarkers(String type, int length) {
+		switch(type) {
+		case "int":
+			return new SMDMarkers(length);
+		case "long":
+			return SMDMarkers.createLongMarkers(length);
+		case "paged":
+			return SMDMarkers.createPagedMarkers(length);
+		default:
+			throw new IllegalArgumentException("Unknown markers: "+type);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		text = Corpus.load(document);
+		bytes = text.getBytes(StandardCharsets.UTF_8).length;
+		input = CharBuffer.wrap(text);
+		parser = SMDParserChain.createParserOfStandard(createMarkers(markers, 1024));
+		render = new HtmlRenderImpl();
+		outputBuilder = new StringBuilder(text.length() * 2);
+		converter = new SMDConverter(SMDParserChain.createParserOfStandard(createMarkers(markers, 1024)), new HtmlRenderImpl(),
+				SMDConverter.DEFAULT_BUFFER_SIZE, SMDConverter.MAXIMUM_BUFFER_SIZE);
+	}
+
+	/**
+	 * The markers grow to the whole document.
+	 */
+	@Benchmark
+	public StringBuilder wholeDocument(Throughput throughput) {
+		parser.reset();
+		parser.markers().resetMarkers();
+		input.clear();
+		parser.parseNext(input);
+		parser.endBlock(input.position());
+		outputBuilder.setLength(0);
+		render.produceHtml(parser.markers(), input, outputBuilder);
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	/**
+	 * The markers are compacted at every round.
+	 */
+	@Benchmark
+	public StringBuilder streaming(Throughput throughput) throws IOException {
+		outputBuilder.setLength(0);
+		converter.convert(new StringReader(text), outputBuilder);
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * Reuse a chain by reset() compared with a new chain by createParserOfStandard() for each document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserReuseBenchmark {
+
+	@Param({"small", Corpus.TT39})
+	public String document;
+
+	private int bytes;
+	private CharBuffer input;
+	private SMDParser parser;
+	private HtmlRenderImpl render;
+	private StringBuilder outputBuilder;
+
+	@Setup
+	public void setup() {
+		String text = Corpus.load(document);
+		bytes = text.getBytes(StandardCharsets.UTF_8).length;
+		input = CharBuffer.wrap(text);
+		parser = SMDParserChain.createParserOfStandard();
+		render = new HtmlRenderImpl();
+		outputBuilder = new StringBuilder(text.length() * 2);
+	}
+
+	private StringBuilder render(SMDParser parser) {
+		input.clear();
+		parser.parseNext(input);
+		parser.endBlock(input.position());
+		outputBuilder.setLength(0);
+		render.produceHtml(parser.markers(), input, outputBuilder);
+		return outputBuilder;
+	}
+
+	@Benchmark
+	public StringBuilder reset(Throughput throughput) {
+		parser.reset();
+		parser.markers().resetMarkers();
+		throughput.add(bytes);
+		return render(parser);
+	}
+
+	@Benchmark
+	public StringBuilder createParserOfStandard(Throughput throughput) {
+		throughput.add(bytes);
+		return render(SMDParserChain.createParserOfStandard());
+	}
+}
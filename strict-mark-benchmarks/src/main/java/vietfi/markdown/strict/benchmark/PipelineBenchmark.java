@@ -0,0 +1,116 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDConverter;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * The full pipeline of streaming: the standard chain and HtmlRenderImpl.produceHtml, by the input buffer sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+	@Param({Corpus.TT39, "paragraphs", "lists", "code", "links"})
+	public String document;
+
+	@Param({"512", "8192", "65536"})
+	public int bufferSize;
+
+	private String text;
+	private byte[] bytes;
+	private StringBuilder output;
+	private SMDConverter converter;
+	private WritableByteChannel nullChannel;
+
+	@Setup
+	public void setup() {
+		text = Corpus.load(document);
+		bytes = text.getBytes(StandardCharsets.UTF_8);
+		output = new StringBuilder(text.length() * 2);
+		converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), bufferSize, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		nullChannel = Channels.newChannel(OutputStream.nullOutputStream());
+	}
+
+	/**
+	 * A new chain and render per document.
+	 */
+	@Benchmark
+	public StringBuilder produceHtml(Throughput throughput) throws IOException {
+		SMDConverter newConverter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(),
+				bufferSize, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		output.setLength(0);
+		newConverter.convert(new StringReader(text), output);
+		throughput.add(bytes.length);
+		return output;
+	}
+
+	/**
+	 * The converter (chain, render and buffer) is reused.
+	 */
+	@Benchmark
+	public StringBuilder produceHtmlReused(Throughput throughput) throws IOException {
+		output.setLength(0);
+		converter.convert(new StringReader(text), output);
+		throughput.add(bytes.length);
+		return output;
+	}
+
+	/**
+	 * The UTF-8 bytes are decoded and the HTML is encoded by SMDUtf8Bytes, the parsers still run on chars.
+	 */
+	@Benchmark
+	public void convertUtf8Bytes(Throughput throughput) throws IOException {
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(bytes)), nullChannel);
+		throughput.add(bytes.length);
+	}
+
+	/**
+	 * The same channels by the CharsetDecoder / CharsetEncoder of the JDK (Channels.newReader / newWriter), the baseline of convertUtf8Bytes.
+	 */
+	@Benchmark
+	public void convertCharset(Throughput throughput) throws IOException {
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(bytes)), nullChannel, StandardCharsets.UTF_8);
+		throughput.add(bytes.length);
+	}
+}
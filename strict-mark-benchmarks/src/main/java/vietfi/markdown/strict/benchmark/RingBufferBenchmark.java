@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDConverter;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * The converter compacting (copying) the buffer at every round compared with the ring buffer mode,
+ * on long multi-line blocks which are pending over many rounds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingBufferBenchmark {
+
+	@Param({"false", "true"})
+	public boolean ring;
+
+	@Param({"longblocks", Corpus.TT39})
+	public String document;
+
+	@Param({"4096", "65536"})
+	public int bufferSize;
+
+	private String text;
+	private int bytes;
+	private StringBuilder output;
+	private SMDConverter converter;
+
+	@Setup
+	public void setup() {
+		text = Corpus.load(document);
+		bytes = text.getBytes(StandardCharsets.UTF_8).length;
+		output = new StringBuilder(text.length() * 2);
+		converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), bufferSize, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		converter.setRingBuffer(ring);
+	}
+
+	@Benchmark
+	public StringBuilder convert(Throughput throughput) throws IOException {
+		output.setLength(0);
+		converter.convert(new StringReader(text), output);
+		throughput.add(bytes);
+		return output;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDConverter;
+
+/**
+ * Streaming of the documents of CorpusGenerator, by size and shape.
+ * Each shape setting has one default value, a sweep is selected by -p, e.g. {@code -p size=104857600 -p listDepth=1,6}.
+ * The output is discarded, so the memory is of the input only (a 100MB document needs about -Xmx1g).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScaleBenchmark {
+
+	@Param({"1024", "1048576", "16777216"})
+	public int size;
+
+	@Param({"3"})
+	public int listDepth;
+
+	@Param({"0.1"})
+	public double inlineDensity;
+
+	@Param({"0.05"})
+	public double linkRatio;
+
+	@Param({"10"})
+	public int codeBlockLines;
+
+	@Param({"80"})
+	public int lineLength;
+
+	@Param({"0.1"})
+	public double nonAsciiRatio;
+
+	private String text;
+	private byte[] bytes;
+	private SMDConverter converter;
+	private WritableByteChannel nullChannel;
+
+	@Setup
+	public void setup() {
+		CorpusGenerator generator = new CorpusGenerator(1);
+		generator.setListDepth(listDepth);
+		generator.setInlineDensity(inlineDensity);
+		generator.setLinkRatio(linkRatio);
+		generator.setCodeBlockLines(codeBlockLines);
+		generator.setLineLength(lineLength);
+		generator.setNonAsciiRatio(nonAsciiRatio);
+		text = generator.generate(size);
+		bytes = text.getBytes(StandardCharsets.UTF_8);
+		converter = new SMDConverter();
+		nullChannel = Channels.newChannel(OutputStream.nullOutputStream());
+	}
+
+	@Benchmark
+	public void convert(Throughput throughput) throws IOException {
+		converter.convert(new StringReader(text), Writer.nullWriter());
+		throughput.add(bytes.length);
+	}
+
+	/**
+	 * The UTF-8 bytes are parsed without decoding.
+	 */
+	@Benchmark
+	public void convertUtf8Bytes(Throughput throughput) throws IOException {
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(bytes)), nullChannel);
+		throughput.add(bytes.length);
+	}
+}
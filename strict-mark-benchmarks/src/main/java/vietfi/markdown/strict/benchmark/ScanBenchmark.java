@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.line.SMDLineParser;
+import vietfi.markdown.strict.line.SMDScan;
+
+/**
+ * The scanning kernels of SMDScan compared with the loops of CharBuffer.get(index), over a whole document:
+ * the new lines (SMDLineParser.lookForwardNewLine, line by line) and the chars of inline markup.
+ * "newLineSwar" is the SWAR alternative (4 chars packed in a long), kept to compare; packing the chars costs
+ * more than it saves on a char array, so it is not used by the library.
+ * "parse" is the standard chain on the document, of which the text lines skip the runs of plain chars.
+ * The forks add the incubator module, "vector" selects the vector kernels of SMDScan or the scalar loops (smd.scan.vector).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ScanBenchmark {
+
+	private static final long LANES = 0x0001000100010001L;
+	private static final long HIGH = 0x8000800080008000L;
+
+	@Param({Corpus.TT39, "paragraphs", "code"})
+	public String document;
+
+	@Param({"true", "false"})
+	public boolean vector;
+
+	private int bytes;
+	private char[] text;
+	private CharBuffer input;
+	private SMDParser parser;
+
+	@Setup
+	public void setup() {
+		//before SMDScan is initialized, a fork per parameters
+		System.setProperty("smd.scan.vector", String.valueOf(vector));
+		if(!vector && SMDScan.isVectorized())
+			throw new IllegalStateException("SMDScan is initialized before the setup");
+		String s = Corpus.load(document);
+		bytes = s.getBytes(StandardCharsets.UTF_8).length;
+		text = s.toCharArray();
+		input = CharBuffer.wrap(text);
+		parser = SMDParserChain.createParserOfStandard();
+	}
+
+	//as lookForwardNewLine before the kernel
+	private static int newLineByChar(CharBuffer buffer) {
+		int pos = buffer.position();
+		for(int i = 0; buffer.remaining() > i; i++) {
+			char ch = buffer.get(pos + i);
+			if(ch == '\n' || ch == '\u001C')
+				return i;
+		}
+		return -1;
+	}
+
+	private static long zeros(long x) {
+		return (x - LANES) & ~x & HIGH;
+	}
+
+	private static int newLineSwar(char[] a, int from, int to) {
+		int i = from;
+		for(; i + 4 <= to; i += 4) {
+			long w = a[i] | (long) a[i + 1] << 16 | (long) a[i + 2] << 32 | (long) a[i + 3] << 48;
+			long m = zeros(w ^ ('\n' * LANES)) | zeros(w ^ ('\u001C' * LANES));
+			if(m != 0)
+				return i + (Long.numberOfTrailingZeros(m) >>> 4);
+		}
+		for(; i < to; i++) {
+			if(a[i] == '\n' || a[i] == '\u001C')
+				return i;
+		}
+		return -1;
+	}
+
+	@Benchmark
+	public int newLineByChar(Throughput throughput) {
+		int sum = 0;
+		for(int p = 0; p < text.length; ) {
+			input.position(p);
+			int nl = newLineByChar(input);
+			if(nl < 0)
+				break;
+			sum += nl;
+			p += nl + 1;
+		}
+		throughput.add(bytes);
+		return sum;
+	}
+
+	@Benchmark
+	public int newLine(Throughput throughput) {
+		int sum = 0;
+		for(int p = 0; p < text.length; ) {
+			input.position(p);
+			int nl = SMDLineParser.lookForwardNewLine(input);
+			if(nl < 0)
+				break;
+			sum += nl;
+			p += nl + 1;
+		}
+		throughput.add(bytes);
+		return sum;
+	}
+
+	@Benchmark
+	public int newLineSwar(Throughput throughput) {
+		int sum = 0;
+		for(int p = 0; p < text.length; ) {
+			int nl = newLineSwar(text, p, text.length);
+			if(nl < 0)
+				break;
+			sum += nl - p;
+			p = nl + 1;
+		}
+		throughput.add(bytes);
+		return sum;
+	}
+
+	@Benchmark
+	public int markupByChar(Throughput throughput) {
+		int count = 0;
+		for(int i = 0; i < input.limit(); i++) {
+			char c = input.get(i);
+			if(c == '\n' || c == '\u001C' || c == '~' || c == '*' || c == '_' || c == '`' || c == '[' || c == '!' || c == '\\')
+				count++;
+		}
+		throughput.add(bytes);
+		return count;
+	}
+
+	@Benchmark
+	public int markup(Throughput throughput) {
+		int count = 0;
+		for(int i = SMDScan.indexOfTextMarkup(text, 0, text.length); i >= 0; i = SMDScan.indexOfTextMarkup(text, i + 1, text.length))
+			count++;
+		throughput.add(bytes);
+		return count;
+	}
+
+	@Benchmark
+	public SMDParser parse(Throughput throughput) {
+		parser.reset();
+		input.clear();
+		parser.parseNext(input);
+		parser.endBlock(input.position());
+		throughput.add(bytes);
+		return parser;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The counter of megabytes processed, JMH reports it per second (MB/s) beside the ops/s.
+ *
+ * The allocation per op is reported by the GC profiler (-prof gc, gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+	/**
+	 * Megabytes of the markdown in UTF-8, 10^6 bytes.
+	 */
+	public double megabytes;
+
+	@Setup(Level.Iteration)
+	public void clean() {
+		megabytes = 0;
+	}
+
+	void add(int bytes) {
+		megabytes += bytes / 1e6;
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.benchmark;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlByteWriterImpl;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+import vietfi.markdown.strict.render.HtmlWriterImpl;
+import vietfi.markdown.strict.render.XhtmlWriterImpl;
+
+/**
+ * The renders on a whole document buffer: HtmlRenderImpl.produceHtml, HtmlWriterImpl.appendHtml,
+ * and XhtmlWriterImpl.writeXhtml by the StAX compared with its direct XML of produceXhtml.
+ * The chain is reused, each op parses the document then renders it.
+ *
+ * The UTF-8 output: HtmlByteWriterImpl.appendHtml on a heap and a direct buffer of BYTE_BUFFER_SIZE,
+ * compared with produceHtml encoded by a CharsetEncoder to the direct buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+
+	public static final int BYTE_BUFFER_SIZE = 8192;
+
+	@Param({Corpus.TT39, "paragraphs", "lists", "code", "links"})
+	public String document;
+
+	private int bytes;
+	private CharBuffer input;
+	private SMDParser parser;
+
+	private HtmlRenderImpl render;
+	private StringBuilder outputBuilder;
+
+	private HtmlWriterImpl htmlWriter;
+	private CharBuffer outputBuffer;
+
+	private HtmlByteWriterImpl byteWriter;
+	private ByteBuffer heapBytes;
+	private ByteBuffer directBytes;
+	private CharsetEncoder encoder;
+
+	private XhtmlWriterImpl xhtmlWriter;
+	private XMLOutputFactory xmlFactory;
+	private CharArrayWriter xmlChars;
+
+	@Setup
+	public void setup() {
+		String text = Corpus.load(document);
+		bytes = text.getBytes(StandardCharsets.UTF_8).length;
+		input = CharBuffer.wrap(text.toCharArray()); //a heap buffer, as of the converter
+		parser = SMDParserChain.createParserOfStandard();
+		render = new HtmlRenderImpl();
+		outputBuilder = new StringBuilder(text.length() * 2);
+		htmlWriter = new HtmlWriterImpl();
+		outputBuffer = CharBuffer.allocate(text.length() * 3 + HtmlWriterImpl.MINIMUM_BUFFER_SIZE);
+		byteWriter = new HtmlByteWriterImpl();
+		heapBytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+		directBytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+		encoder = StandardCharsets.UTF_8.newEncoder();
+		xhtmlWriter = new XhtmlWriterImpl();
+		xmlFactory = XMLOutputFactory.newInstance();
+		xmlChars = new CharArrayWriter(text.length() * 2);
+	}
+
+	private void parse() {
+		parser.reset();
+		parser.markers().resetMarkers();
+		input.clear();
+		parser.parseNext(input);
+		parser.endBlock(input.position());
+	}
+
+	@Benchmark
+	public StringBuilder produceHtml(Throughput throughput) {
+		parse();
+		outputBuilder.setLength(0);
+		render.produceHtml(parser.markers(), input, outputBuilder);
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	/**
+	 * The output buffer is of the whole document, a round is of a full output only.
+	 */
+	@Benchmark
+	public CharBuffer appendHtml(Throughput throughput) {
+		parse();
+		outputBuffer.clear();
+		while(!htmlWriter.appendHtml(parser.markers(), input, outputBuffer))
+			outputBuffer.clear();
+		htmlWriter.compact(Integer.MAX_VALUE);
+		throughput.add(bytes);
+		return outputBuffer;
+	}
+
+	/**
+	 * The chars of produceHtml encoded again, by the rounds of the direct buffer.
+	 */
+	@Benchmark
+	public ByteBuffer produceHtmlEncoded(Throughput throughput) {
+		parse();
+		outputBuilder.setLength(0);
+		render.produceHtml(parser.markers(), input, outputBuilder);
+		CharBuffer chars = CharBuffer.wrap(outputBuilder);
+		encoder.reset();
+		directBytes.clear();
+		while(encoder.encode(chars, directBytes, true) == CoderResult.OVERFLOW)
+			directBytes.clear();
+		encoder.flush(directBytes);
+		throughput.add(bytes);
+		return directBytes;
+	}
+
+	@Benchmark
+	public ByteBuffer appendHtmlBytes(Throughput throughput) {
+		return appendBytes(heapBytes, throughput);
+	}
+
+	@Benchmark
+	public ByteBuffer appendHtmlBytesDirect(Throughput throughput) {
+		return appendBytes(directBytes, throughput);
+	}
+
+	//the rounds of the output, as written out to a socket
+	private ByteBuffer appendBytes(ByteBuffer output, Throughput throughput) {
+		parse();
+		output.clear();
+		while(!byteWriter.appendHtml(parser.markers(), input, output))
+			output.clear();
+		byteWriter.compact(Integer.MAX_VALUE);
+		throughput.add(bytes);
+		return output;
+	}
+
+	/**
+	 * The StAX to a reused Writer which keeps the chars, a null Writer would discard the writes of a char.
+	 */
+	@Benchmark
+	public CharArrayWriter writeXhtml(Throughput throughput) throws XMLStreamException {
+		parse();
+		xmlChars.reset();
+		XMLStreamWriter xmlWriter = xmlFactory.createXMLStreamWriter(xmlChars);
+		xmlWriter.writeStartDocument();
+		xmlWriter.writeStartElement("body");
+		xhtmlWriter.writeXhtml(parser.markers(), input, xmlWriter);
+		xmlWriter.writeEndElement();
+		xmlWriter.writeEndDocument();
+		xmlWriter.close();
+		throughput.add(bytes);
+		return xmlChars;
+	}
+
+	/**
+	 * The same elements as writeXhtml, in a body, without the XMLStreamWriter.
+	 */
+	@Benchmark
+	public StringBuilder produceXhtml(Throughput throughput) {
+		parse();
+		outputBuilder.setLength(0);
+		outputBuilder.append("<?xml version=\"1.0\" ?><body>");
+		xhtmlWriter.produceXhtml(parser.markers(), input, outputBuilder);
+		outputBuilder.append("</body>");
+		throughput.add(bytes);
+		return outputBuilder;
+	}
+
+	/**
+	 * The direct XML to the same Writer as writeXhtml, by the batches of the flush size.
+	 */
+	@Benchmark
+	public CharArrayWriter produceXhtmlToWriter(Throughput throughput) throws IOException {
+		parse();
+		xmlChars.reset();
+		xmlChars.write("<?xml version=\"1.0\" ?><body>");
+		xhtmlWriter.produceXhtml(parser.markers(), input, xmlChars);
+		xmlChars.write("</body>");
+		throughput.add(bytes);
+		return xmlChars;
+	}
+}
@@ -0,0 +1,83 @@
+package vietfi.markdown.strict.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.SMDConverter;
+
+public class CorpusGeneratorTest {
+
+	static int count(String html, String tag) {
+		int n = 0;
+		for(int i = html.indexOf(tag); i >= 0; i = html.indexOf(tag, i + tag.length()))
+			n++;
+		return n;
+	}
+
+	static void check(CorpusGenerator generator, int size) throws IOException {
+		String text = generator.generate(size);
+		CorpusGenerator.Counts counts = generator.getCounts();
+		System.out.println(counts);
+		assertTrue(text.length() >= size);
+		assertEquals(text.length(), counts.getChars());
+
+		StringBuilder sb = new StringBuilder(text.length() * 2);
+		new SMDConverter().convert(new StringReader(text), sb);
+		String html = sb.toString();
+
+		int headings = 0;
+		for(int i = 1; i <= 6; i++)
+			headings += count(html, "<h" + i + ">");
+		assertEquals(counts.getHeadings(), headings);
+		//a quote is of a paragraph
+		assertEquals(counts.getParagraphs() + counts.getQuotes(), count(html, "<p>"));
+		assertEquals(counts.getOrderedLists(), count(html, "<ol>"));
+		assertEquals(counts.getUnorderedLists(), count(html, "<ul>"));
+		assertEquals(counts.getListItems(), count(html, "<li>"));
+		assertEquals(count(html, "<ol>"), count(html, "</ol>"));
+		assertEquals(count(html, "<ul>"), count(html, "</ul>"));
+		assertEquals(counts.getCodeBlocks(), count(html, "<pre>"));
+		assertEquals(counts.getQuotes(), count(html, "<blockquote>"));
+		assertEquals(counts.getHorizontals(), count(html, "<hr"));
+		assertEquals(counts.getLinks(), count(html, "<a "));
+		assertEquals(counts.getImages(), count(html, "<img "));
+	}
+
+	@Test
+	void testCounts() throws IOException {
+		check(new CorpusGenerator(1), 64 * 1024);
+
+		CorpusGenerator generator = new CorpusGenerator(2);
+		generator.setListDepth(6);
+		generator.setInlineDensity(0.5);
+		generator.setLinkRatio(0.3);
+		generator.setImageRatio(0.5);
+		generator.setCodeBlockLines(2);
+		generator.setLineLength(200);
+		generator.setNonAsciiRatio(1);
+		check(generator, 256 * 1024);
+
+		generator = new CorpusGenerator(3);
+		generator.setListDepth(1);
+		generator.setInlineDensity(0);
+		generator.setLinkRatio(0);
+		generator.setCodeBlockLines(100);
+		generator.setLineLength(10);
+		generator.setNonAsciiRatio(0);
+		check(generator, 16 * 1024);
+	}
+
+	@Test
+	void testDeterministic() {
+		CorpusGenerator generator = new CorpusGenerator(4);
+		String text = generator.generate(16 * 1024);
+		assertEquals(text, generator.generate(16 * 1024));
+		assertEquals(text, new CorpusGenerator(4).generate(16 * 1024));
+		assertTrue(!text.equals(new CorpusGenerator(5).generate(16 * 1024)));
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe cache of the rendered HTML of blocks, keyed by the text of block.
+ *
+ * The document is split into blocks at the positions of SMDParallelRender.splitPositions (chunk size 1),
+ * a block is parsed and rendered independently, so a hit skips the parsing and rendering of the block.
+ * The whole text of block is the key (not only its hash), a hash collision cannot return the HTML of another block.
+ *
+ * The size is bounded by bytes (the characters of keys and HTML, plus an overhead per entry), the least recently used blocks are evicted.
+ * The HTML depends on the settings of the render (e.g. class names, URL resolvers), a cache must be used with the same settings.
+ *
+ * The blocks are kept in stripes by the hash of text, each stripe has its own lock and its part of the maximum bytes,
+ * so the threads rendering different blocks rarely wait for each other. The eviction is least recently used of a stripe.
+ * A block which is not ended at its stop (it is merged with the next one) is not cached.
+ *
+ * Example:
+ * <pre>
+ * SMDBlockCache cache = new SMDBlockCache(SMDBlockCache.DEFAULT_MAXIMUM_BYTES);
+ * cache.produceHtml(text, parser, render, sb);
+ * </pre>
+ */
+public class SMDBlockCache {
+
+	/**
+	 * 16MB
+	 */
+	public static final long DEFAULT_MAXIMUM_BYTES = 16L << 20;
+
+	//the objects of an entry (map node, strings, block)
+	private static final int ENTRY_OVERHEAD = 128;
+
+	/**
+	 * A rendered block.
+	 */
+	static final class Block {
+		final String html;
+		final boolean closed; //ended at the block boundary, or it must be merged with the next one
+
+		Block(String html, boolean closed) {
+			this.html = html;
+			this.closed = closed;
+		}
+	}
+
+	//the bytes of a stripe at least, a smaller cache has less stripes
+	private static final long MINIMUM_STRIPE_BYTES = 64L << 10;
+
+	//a part of the cache, least recently used order
+	private static final class Stripe {
+		final LinkedHashMap<String, Block> blocks = new LinkedHashMap<>(64, 0.75f, true);
+		long bytes = 0;
+	}
+
+	private final long maximumBytes;
+	private final Stripe[] stripes;
+	private final long stripeBytes;
+
+	//statistics
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * The number of stripes is of the available processors, at most one per MINIMUM_STRIPE_BYTES (64KB) of the maximum bytes.
+	 *
+	 * @param maximumBytes the maximum size of the cache, in bytes.
+	 */
+	public SMDBlockCache(long maximumBytes) {
+		this(maximumBytes, (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), maximumBytes / MINIMUM_STRIPE_BYTES)));
+	}
+
+	/**
+	 * @param maximumBytes the maximum size of the cache, in bytes.
+	 * @param stripeCount number of stripes, it is rounded up to a power of two.
+	 */
+	public SMDBlockCache(long maximumBytes, int stripeCount) {
+		if(maximumBytes <= 0)
+			throw new IllegalArgumentException("Maximum bytes must be positive");
+		if(stripeCount <= 0)
+			throw new IllegalArgumentException("Stripe count must be positive");
+		this.maximumBytes = maximumBytes;
+		int count = Integer.highestOneBit(stripeCount);
+		if(count < stripeCount)
+			count <<= 1;
+		this.stripes = new Stripe[count];
+		for(int i = 0; i < count; i++)
+			stripes[i] = new Stripe();
+		this.stripeBytes = maximumBytes / count;
+	}
+
+	private static long sizeOf(String text, Block block) {
+		return (text.length() + block.html.length()) * 2L + ENTRY_OVERHEAD;
+	}
+
+	private Stripe stripeOf(String text) {
+		int h = text.hashCode();
+		return stripes[(h ^ h >>> 16) & (stripes.length - 1)];
+	}
+
+	/**
+	 * @param text of block.
+	 * @return the cached block or null, it is not counted as a hit or a miss.
+	 */
+	Block get(String text) {
+		Stripe stripe = stripeOf(text);
+		synchronized(stripe) {
+			return stripe.blocks.get(text);
+		}
+	}
+
+	void put(String text, Block block) {
+		long size = sizeOf(text, block);
+		if(size > stripeBytes)
+			return;
+		Stripe stripe = stripeOf(text);
+		int evicted = 0;
+		synchronized(stripe) {
+			Block old = stripe.blocks.put(text, block);
+			if(old != null)
+				stripe.bytes -= sizeOf(text, old);
+			stripe.bytes += size;
+
+			Iterator<Map.Entry<String, Block>> it = stripe.blocks.entrySet().iterator();
+			while(stripe.bytes > stripeBytes && it.hasNext()) {
+				Map.Entry<String, Block> e = it.next();
+				stripe.bytes -= sizeOf(e.getKey(), e.getValue());
+				it.remove();
+				evicted++;
+			}
+		}
+		if(evicted > 0)
+			evictionCount.add(evicted);
+	}
+
+	/**
+	 * Parse and render a block, or get it from the cache.
+	 *
+	 * @param text of block.
+	 * @param parser to parse on a miss, it is reset.
+	 * @param render to render on a miss.
+	 * @return the rendered block.
+	 */
+	Block render(String text, SMDParser parser, SMDHtmlRender render) {
+		Block block = get(text);
+		if(block == null) {
+			missCount.increment();
+			block = renderBlock(text, 0, text.length(), parser, render);
+			if(block.closed) //the merged one is cached instead
+				put(text, block);
+		}
+		else
+			hitCount.increment();
+		return block;
+	}
+
+	/**
+	 * The text of a block, the last block of the document is terminated by the ending char (0x1C) as the whole document is parsed,
+	 * so the last line without a new line is not lost, and the key is not the same as a block in the middle.
+	 */
+	static String blockText(CharSequence text, int start, int stop) {
+		String block = text.subSequence(start, stop).toString();
+		return stop == text.length() && stop > start ? block + '\u001C' : block;
+	}
+
+	static Block renderBlock(CharSequence text, int start, int stop, SMDParser parser, SMDHtmlRender render) {
+		CharBuffer buffer = CharBuffer.wrap(text, start, stop).slice();
+		boolean closed = parseBlock(buffer, parser);
+		return renderParsed(buffer, closed, parser, render);
+	}
+
+	//parse a block from scratch, true if it is closed at the end of buffer
+	private static boolean parseBlock(CharBuffer buffer, SMDParser parser) {
+		parser.reset();
+		parser.markers().resetMarkers();
+		return SMDParallelRender.isClosed(parser.parseNext(buffer), parser.markers());
+	}
+
+	private static Block renderParsed(CharBuffer buffer, boolean closed, SMDParser parser, SMDHtmlRender render) {
+		parser.endBlock(buffer.position());
+		StringBuilder sb = new StringBuilder(buffer.limit() * 2);
+		render.produceHtml(parser.markers(), buffer, sb);
+		return new Block(sb.toString(), closed);
+	}
+
+	/*
+	 * The index of the stop where the block at start is closed, starts.length if it is not closed before the end of text.
+	 * The block is parsed once by raising the limit of the buffer to the next stops, it is not rendered.
+	 */
+	private static int closingStop(CharSequence text, int[] starts, int i, int start, SMDParser parser) {
+		CharBuffer buffer = CharBuffer.wrap(text, start, text.length()).slice();
+		parser.reset();
+		parser.markers().resetMarkers();
+		for(; i < starts.length; i++) {
+			buffer.limit(starts[i] - start);
+			if(SMDParallelRender.isClosed(parser.parseNext(buffer), parser.markers()))
+				break;
+		}
+		return i;
+	}
+
+	/**
+	 * Render the whole document by blocks, the cached blocks are not parsed again.
+	 * The output is the same as parsing the whole document by the parser.
+	 *
+	 * @param text the markdown document.
+	 * @param parser to parse the missed blocks, it is reset.
+	 * @param render to render the missed blocks.
+	 * @param outputBuilder to append the HTML.
+	 */
+	public void produceHtml(CharSequence text, SMDParser parser, SMDHtmlRender render, StringBuilder outputBuilder) {
+		int[] starts = SMDParallelRender.splitPositions(text, 1);
+		int i = 0;
+		while(i < starts.length) {
+			int start = starts[i++];
+			int stop = i < starts.length ? starts[i] : text.length();
+			String key = blockText(text, start, stop);
+			Block block = get(key);
+			if(block == null) {
+				CharBuffer buffer = CharBuffer.wrap(key);
+				boolean closed = parseBlock(buffer, parser);
+				if(!closed && i < starts.length) {
+					//ended in the middle of a block: scan forward to the stop where it is closed, the merged block is rendered once
+					i = closingStop(text, starts, i, start, parser);
+					stop = i < starts.length ? starts[i] : text.length();
+					key = blockText(text, start, stop);
+					block = get(key);
+					if(block == null) {
+						buffer = CharBuffer.wrap(key);
+						closed = parseBlock(buffer, parser);
+					}
+				}
+				if(block == null) {
+					missCount.increment();
+					block = renderParsed(buffer, closed, parser, render);
+					if(closed)
+						put(key, block);
+				}
+				else
+					hitCount.increment();
+			}
+			else
+				hitCount.increment();
+			//not closed where the scan closed it (not expected), merge with the next one
+			while(!block.closed && i < starts.length) {
+				stop = ++i < starts.length ? starts[i] : text.length();
+				block = render(blockText(text, start, stop), parser, render);
+			}
+			outputBuilder.append(block.html);
+		}
+	}
+
+	public void clear() {
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				stripe.blocks.clear();
+				stripe.bytes = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum size, in bytes.
+	 */
+	public long getMaximumBytes() {
+		return maximumBytes;
+	}
+
+	/**
+	 * @return number of stripes.
+	 */
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+	/**
+	 * @return current size, in bytes.
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				bytes += stripe.bytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return number of cached blocks.
+	 */
+	public int getSize() {
+		int size = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.blocks.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return number of blocks found in the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * @return number of blocks parsed and rendered.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return number of blocks evicted by the size.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+}
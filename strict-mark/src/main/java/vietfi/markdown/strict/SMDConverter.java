@@ -0,0 +1,472 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import vietfi.markdown.strict.jfr.SMDCompactEvent;
+import vietfi.markdown.strict.jfr.SMDDocumentEvent;
+import vietfi.markdown.strict.jfr.SMDFlightRecorder;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * Convert a markdown stream into HTML, it owns the loop of reading, parsing, rendering and compacting the buffer.
+ *
+ * The buffer is filled until its remaining space drops below SMDParser.LOWER_BUFFER_REMAININNG, then the complete lines are parsed
+ * and rendered, and the buffer is compacted once. If a line or a block does not fit, the buffer is doubled up to the maximum size.
+ * The memory is constant for any length of input.
+ *
+ * Example:
+ * <pre>
+ * SMDConverter converter = new SMDConverter();
+ * converter.convert(reader, writer);
+ * </pre>
+ *
+ * In the ring buffer mode (see setRingBuffer), the input is kept in a SMDRingBuffer and the consumed characters are dropped
+ * without copying the pending ones, a long pending block is not copied again at every round.
+ *
+ * The UTF-8 channels are decoded and encoded by SMDUtf8Bytes, without a CharsetDecoder and a Writer. It is a codec only,
+ * the parsers and the markers still work on the decoded chars (the positions are char indexes, not byte offsets).
+ *
+ * An instance is not thread-safe, but it can be reused for the next conversion (the parser is reset).
+ */
+public class SMDConverter {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The positions of markers are 20 bits, see SMDMarkers.MAXIMUM_POSITION. The maximum of SMDMarkers.createLongMarkers is larger.
+	 */
+	public static final int MAXIMUM_BUFFER_SIZE = SMDMarkers.MAXIMUM_POSITION + 1;
+
+	public static final boolean RING_BUFFER;
+
+	static {
+		String ringString = System.getProperty("smd.converter.ring", String.valueOf("false"));
+		RING_BUFFER = Boolean.parseBoolean(ringString);
+	}
+
+	private final SMDParser parser;
+	private final SMDHtmlRender render;
+	private final int maximumBufferSize;
+
+	private CharBuffer buffer;
+	private SMDRingBuffer ring; //of the ring buffer mode, allocated on first use
+	private boolean ringBuffer = RING_BUFFER;
+	private final StringBuilder outputBuilder;
+	private long readChars; //of the current conversion
+
+	//of the UTF-8 channels, allocated on first use
+	private ByteBuffer inputBytes;
+	private ByteBuffer outputBytes;
+
+	//the source of the loop, reads into the buffer, -1 at the end
+	private interface Input {
+		int read(CharBuffer target) throws IOException;
+	}
+
+	//the target of the loop, takes the HTML of a round
+	private interface Output {
+		void write(StringBuilder html) throws IOException;
+	}
+
+	//of convert(Reader, Appendable), the loop ends are created once, not per document
+	private Reader reader;
+	private Appendable appendable;
+	private final Input readerInput = target -> reader.read(target);
+	private final Output appendableOutput = html -> appendable.append(html);
+
+	/**
+	 * Use the standard chain and HtmlRenderImpl.
+	 */
+	public SMDConverter() {
+		this(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl());
+	}
+
+	public SMDConverter(SMDParser parser, SMDHtmlRender render) {
+		this(parser, render, DEFAULT_BUFFER_SIZE, MAXIMUM_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param parser to parse, mostly the SMDParserChain.
+	 * @param render to produce HTML.
+	 * @param bufferSize the initial size of buffer, at least SMDParser.MINIMUM_BUFFER_SIZE.
+	 * @param maximumBufferSize the buffer is not grown over this size, up to the maximum position of the parser's markers.
+	 */
+	public SMDConverter(SMDParser parser, SMDHtmlRender render, int bufferSize, int maximumBufferSize) {
+		if(bufferSize < SMDParser.MINIMUM_BUFFER_SIZE)
+			throw new IllegalArgumentException("Buffer size too small, at least "+SMDParser.MINIMUM_BUFFER_SIZE+" required!");
+		long addressable = parser.markers().maximumPosition() + 1L;
+		if(maximumBufferSize < bufferSize || maximumBufferSize > addressable)
+			throw new IllegalArgumentException("Maximum buffer size must be in range of "+bufferSize+".."+addressable);
+		this.parser = parser;
+		this.render = render;
+		this.maximumBufferSize = maximumBufferSize;
+		this.buffer = CharBuffer.allocate(bufferSize);
+		this.outputBuilder = new StringBuilder(bufferSize * 2);
+	}
+
+	public SMDParser getParser() {
+		return parser;
+	}
+
+	public SMDHtmlRender getRender() {
+		return render;
+	}
+
+	/**
+	 * @return current capacity of the buffer, it may be grown by the conversions.
+	 */
+	public int getBufferCapacity() {
+		return ringBuffer && ring != null ? ring.capacity() : buffer.capacity();
+	}
+
+	/**
+	 * Enable or disable the ring buffer mode. If disabled, the buffer is compacted (copied) at every round.
+	 *
+	 * The default value is the system property "smd.converter.ring" (false if not set). The output of both modes are the same.
+	 *
+	 * @param enabled true to use a SMDRingBuffer for the input.
+	 */
+	public void setRingBuffer(boolean enabled) {
+		this.ringBuffer = enabled;
+	}
+
+	public boolean isRingBuffer() {
+		return ringBuffer;
+	}
+
+	/**
+	 * Convert the markdown from reader to HTML, until the end of reader. The reader is not closed.
+	 *
+	 * @param reader markdown input.
+	 * @param output HTML output.
+	 * @throws IOException of reading or writing, or a line is longer than the maximum buffer size.
+	 */
+	public void convert(Reader reader, Appendable output) throws IOException {
+		this.reader = reader;
+		this.appendable = output;
+		try {
+			run(readerInput, appendableOutput);
+		}
+		finally {
+			this.reader = null;
+			this.appendable = null;
+		}
+	}
+
+	private void run(Input reader, Output output) throws IOException {
+		SMDDocumentEvent event = new SMDDocumentEvent();
+		event.begin();
+		//a sequence id if the application does not set one
+		boolean sequenceId = event.isEnabled() && SMDFlightRecorder.getDocumentId() == 0;
+		if(sequenceId)
+			SMDFlightRecorder.setDocumentId(SMDFlightRecorder.nextDocumentId());
+		readChars = 0;
+		try {
+			if(ringBuffer)
+				runRing(reader, output);
+			else
+				runBuffer(reader, output);
+		}
+		finally {
+			if(event.shouldCommit())
+				event.record(readChars, ringBuffer);
+			if(sequenceId)
+				SMDFlightRecorder.setDocumentId(0);
+		}
+	}
+
+	private void runBuffer(Input reader, Output output) throws IOException {
+		parser.reset();
+		SMDMarkers markers = parser.markers();
+		buffer.clear();
+		outputBuilder.setLength(0);
+
+		int kept = 0; //the parsed chars kept at the start of buffer
+		boolean eof = false;
+		while(true) {
+			//fill the buffer, writing mode
+			while(buffer.remaining() >= SMDParser.LOWER_BUFFER_REMAININNG) {
+				int n = reader.read(buffer);
+				if(n < 0) {
+					eof = true;
+					break;
+				}
+				readChars += n;
+			}
+
+			int end = buffer.position();
+			if(eof) {
+				if(readChars > 0) //force ending, an open block may be parsed already
+					buffer.append('\u001C');
+				buffer.flip().position(kept);
+			}
+			else {
+				//parse the complete lines only
+				int lineEnd = linesEnd(buffer, kept, end);
+				if(lineEnd == kept) { //the line does not fit
+					grow();
+					continue;
+				}
+				buffer.position(kept).limit(lineEnd);
+			}
+
+			parser.parseNext(buffer);
+			int parsed = buffer.position();
+			if(eof)
+				parser.endBlock(parsed);
+			else
+				buffer.position(outputPoint(markers, parsed));
+			render.produceHtml(markers, buffer, outputBuilder);
+			output.write(outputBuilder);
+			outputBuilder.setLength(0);
+			if(eof)
+				return;
+
+			SMDCompactEvent compactEvent = new SMDCompactEvent();
+			compactEvent.begin();
+			int pos = compactParsed(markers, parsed);
+			kept = parsed - pos;
+			buffer.position(pos);
+			buffer.limit(end);
+			buffer.compact();
+			if(compactEvent.shouldCommit())
+				compactEvent.record(end - buffer.position(), buffer.position(), markers.markedLength());
+			if(buffer.remaining() < SMDParser.LOWER_BUFFER_REMAININNG) //a block does not fit
+				grow();
+		}
+	}
+
+	//same as run(), the buffer is a window of the ring
+	private void runRing(Input reader, Output output) throws IOException {
+		parser.reset();
+		SMDMarkers markers = parser.markers();
+		if(ring == null)
+			ring = new SMDRingBuffer(buffer.capacity());
+		ring.clear();
+		outputBuilder.setLength(0);
+
+		int kept = 0;
+		boolean eof = false;
+		while(true) {
+			while(ring.remaining() >= SMDParser.LOWER_BUFFER_REMAININNG) {
+				int n = reader.read(ring.writeRegion());
+				if(n < 0) {
+					eof = true;
+					break;
+				}
+				ring.written(n);
+				readChars += n;
+			}
+
+			if(eof && readChars > 0) //force ending, an open block may be parsed already
+				ring.append('\u001C');
+			CharBuffer window = ring.window();
+			if(!eof) {
+				//parse the complete lines only
+				int lineEnd = linesEnd(window, kept, ring.length());
+				if(lineEnd == kept) { //the line does not fit
+					growRing();
+					continue;
+				}
+				window.limit(lineEnd);
+			}
+			window.position(kept);
+
+			parser.parseNext(window);
+			int parsed = window.position();
+			if(eof)
+				parser.endBlock(parsed);
+			else
+				window.position(outputPoint(markers, parsed));
+			render.produceHtml(markers, window, outputBuilder);
+			output.write(outputBuilder);
+			outputBuilder.setLength(0);
+			if(eof)
+				return;
+
+			SMDCompactEvent compactEvent = new SMDCompactEvent();
+			compactEvent.begin();
+			int pos = compactParsed(markers, parsed);
+			int consumed = Math.min(pos, parsed);
+			ring.consume(consumed);
+			kept = parsed - consumed;
+			if(compactEvent.shouldCommit())
+				compactEvent.record(consumed, ring.length(), markers.markedLength());
+			if(ring.remaining() < SMDParser.LOWER_BUFFER_REMAININNG) //a block does not fit
+				growRing();
+		}
+	}
+
+	/**
+	 * Convert the markdown from a channel to HTML, in UTF-8. The channels are not closed.
+	 *
+	 * The bytes are decoded into the buffer and the HTML is encoded into a reused byte buffer, see SMDUtf8Bytes.
+	 *
+	 * @param input markdown input.
+	 * @param output HTML output.
+	 * @throws IOException of reading or writing.
+	 */
+	public void convert(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+		if(inputBytes == null) {
+			inputBytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+			outputBytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		}
+		inputBytes.clear().flip();
+		run(target -> readBytes(input, target), html -> writeBytes(html, output));
+	}
+
+	//decode the bytes into the buffer, read more if the bytes are empty or a sequence is not complete
+	private int readBytes(ReadableByteChannel input, CharBuffer target) throws IOException {
+		int n = SMDUtf8Bytes.decode(inputBytes, target);
+		if(n > 0)
+			return n;
+		inputBytes.compact();
+		int r = input.read(inputBytes);
+		inputBytes.flip();
+		if(r < 0) {
+			if(!inputBytes.hasRemaining())
+				return -1;
+			//a truncated sequence at the end
+			inputBytes.position(inputBytes.limit());
+			target.put(SMDUtf8Bytes.REPLACEMENT);
+			return 1;
+		}
+		return SMDUtf8Bytes.decode(inputBytes, target);
+	}
+
+	private void writeBytes(StringBuilder html, WritableByteChannel output) throws IOException {
+		int i = 0;
+		int length = html.length();
+		while(i < length) {
+			outputBytes.clear();
+			i = SMDUtf8Bytes.encode(html, i, length, outputBytes);
+			outputBytes.flip();
+			while(outputBytes.hasRemaining())
+				output.write(outputBytes);
+		}
+	}
+
+	/**
+	 * Convert the markdown from a channel to HTML, by decoding and encoding of the charset. The channels are not closed.
+	 *
+	 * @param input markdown input.
+	 * @param output HTML output.
+	 * @param charset of both input and output.
+	 * @throws IOException of reading or writing.
+	 */
+	public void convert(ReadableByteChannel input, WritableByteChannel output, Charset charset) throws IOException {
+		Writer writer = Channels.newWriter(output, charset);
+		convert(Channels.newReader(input, charset), writer);
+		writer.flush();
+	}
+
+	/*
+	 * The end of the complete lines in buffer, the blank lines at the end are left to the next round:
+	 * a block may go on after them (a list item), it is decided by the next line as the whole buffer.
+	 * The last line with a text is left too if it may be the text of a heading by dash/equals (see SMDHeading12BlockParser),
+	 * which is decided by the next line, with the blank lines before it.
+	 */
+	private static int linesEnd(CharBuffer buffer, int begin, int end) {
+		int lineEnd = end;
+		while(lineEnd > begin && buffer.get(lineEnd - 1) != '\n')
+			lineEnd--;
+		boolean heading = true;
+		int i = lineEnd - 1; //at the line ending
+		while(i > begin) {
+			char ch = buffer.get(i - 1);
+			if(ch == '\n' || ch == ' ' || ch == '\t') //of a blank line
+				i--;
+			else {
+				//the start of the last line with a text
+				int start = i - 1;
+				while(start > begin && buffer.get(start - 1) != '\n')
+					start--;
+				if(heading && start > begin && Character.isUnicodeIdentifierStart(buffer.get(start))) {
+					heading = false; //the line before is followed by this one, not a heading text
+					lineEnd = start;
+					i = start - 1;
+					continue;
+				}
+				//the end of the last line with a text
+				while(i < lineEnd && buffer.get(i) != '\n')
+					i++;
+				return i + 1;
+			}
+		}
+		return lineEnd; //only the blank lines
+	}
+
+	/*
+	 * The position to render up to: the chars after the last marker stop are printed only if the next marker is a start
+	 * or a content stop (see SMDMarkers.cursorPosition2), which is not parsed yet, they are left to the next round.
+	 */
+	private static int outputPoint(SMDMarkers markers, int parsed) {
+		int last = markers.markedLength() - 1;
+		if(last >= 0 && markers.isMarkerStop(last) && markers.getMarkerPosition(last) < parsed)
+			return markers.getMarkerPosition(last);
+		return parsed;
+	}
+
+	/*
+	 * Compact the markers and the parser up to the parsed position, return the position compacted to.
+	 *
+	 * The output must be the same as the whole buffer at any boundary of the rounds:
+	 * - the line ending of a closed content is kept in the buffer, a block may stop at the line before (see SMDParagraphParser).
+	 * - the chars after the last marker stop are kept (see outputPoint), the stop is continued by a stop of no state at its position.
+	 * An open content is printed from the start of buffer in the next round, nothing is kept.
+	 */
+	private int compactParsed(SMDMarkers markers, int parsed) {
+		int last = markers.markedLength() - 1;
+		int upto = parsed;
+		if(last >= 0 && parsed > 0 && markers.isContentStop(last) && markers.getMarkerPosition(last) == parsed)
+			upto = parsed - 1;
+		boolean openStop = last >= 0 && markers.cursor() > last && markers.isMarkerStop(last);
+		if(openStop)
+			upto = Math.min(upto, markers.getMarkerPosition(last));
+		int stop = upto;
+		int pos = markers.compactMarkers(upto);
+		parser.compact(pos);
+		if(openStop && markers.isEmpty())
+			markers.addStopMarker(SMDParser.STATE_NONE, stop - pos);
+		return pos;
+	}
+
+	//double the buffer, the positions of markers are kept
+	private void grow() throws IOException {
+		if(buffer.capacity() >= maximumBufferSize)
+			throw new IOException("A block is longer than the maximum buffer size "+maximumBufferSize);
+		CharBuffer newBuffer = CharBuffer.allocate((int) Math.min(buffer.capacity() * 2L, maximumBufferSize));
+		buffer.flip();
+		newBuffer.put(buffer);
+		buffer = newBuffer;
+	}
+
+	private void growRing() throws IOException {
+		if(ring.capacity() >= maximumBufferSize)
+			throw new IOException("A block is longer than the maximum buffer size "+maximumBufferSize);
+		ring.grow((int) Math.min(ring.capacity() * 2L, maximumBufferSize));
+	}
+}
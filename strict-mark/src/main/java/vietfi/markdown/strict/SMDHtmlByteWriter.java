@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.BiFunction;
+
+/**
+ * The HTML writer of UTF-8 bytes, the output is written directly to a ByteBuffer (heap or direct) without encoding again.
+ *
+ * Same as SMDHtmlWriter, the writing is resumable: if the output is full, appendHtml returns false and the caller writes out the output,
+ * clears it and calls again with the same markers and buffer.
+ *
+ * Example:
+ * <pre>
+ * ByteBuffer output = ByteBuffer.allocateDirect(8192);
+ * parser.parseNext(buffer);
+ * writer.writeHtml(parser.markers(), buffer, output, socketChannel);
+ * </pre>
+ */
+public interface SMDHtmlByteWriter extends SMDRender {
+
+	/**
+	 * Produce the output from the current buffer to outputBuffer by HTML 5.0 Standard, in UTF-8.
+	 * Must call parseNextBlock/parseLine first to the buffer.
+	 *
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param outputBuffer the output bytes, in writing mode.
+	 * @return true if written completed, false if the output is full, needing another call to appending out (after the buffer clean).
+	 */
+	public boolean appendHtml(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer);
+
+	/**
+	 * Produce the output and write it to the channel, by appendHtml rounds of the outputBuffer.
+	 *
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param outputBuffer the bytes of a round, cleared before and after.
+	 * @param channel the output channel.
+	 * @throws IOException of writing.
+	 */
+	default void writeHtml(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer, WritableByteChannel channel) throws IOException {
+		boolean done;
+		outputBuffer.clear();
+		do {
+			done = appendHtml(markers, buffer, outputBuffer);
+			outputBuffer.flip();
+			while(outputBuffer.hasRemaining())
+				channel.write(outputBuffer);
+			outputBuffer.clear();
+		} while(!done);
+	}
+
+	/**
+	 * Produce the output and write it to the stream, by appendHtml rounds of the outputBuffer.
+	 *
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param outputBuffer the bytes of a round, a heap buffer (with the array), cleared before and after.
+	 * @param stream the output stream.
+	 * @throws IOException of writing.
+	 */
+	default void writeHtml(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer, OutputStream stream) throws IOException {
+		if(!outputBuffer.hasArray())
+			throw new IllegalArgumentException("A heap buffer is required, write the direct buffer to a channel");
+		boolean done;
+		outputBuffer.clear();
+		do {
+			done = appendHtml(markers, buffer, outputBuffer);
+			stream.write(outputBuffer.array(), outputBuffer.arrayOffset(), outputBuffer.position());
+			outputBuffer.clear();
+		} while(!done);
+	}
+
+	/**
+	 * Set the link URL resolver, called by the span of URL in the buffer.
+	 * The resolver puts its escaped text in UTF-8 to the outputBytes directly, at most MINIMUM_BUFFER_SIZE bytes of the implementation.
+	 * 
+	 * The default adapts it to setLinkHrefResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a link is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setLinkUrlResolver(SMDUrlResolver<ByteBuffer> resolver) {
+		setLinkHrefResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
+	/**
+	 * Set the image source URL resolver, called by the span of URL in the buffer.
+	 * The resolver puts its escaped text in UTF-8 to the outputBytes directly, at most MINIMUM_BUFFER_SIZE bytes of the implementation.
+	 * 
+	 * The default adapts it to setImageSrcResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a image (img tag) is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setImageUrlResolver(SMDUrlResolver<ByteBuffer> resolver) {
+		setImageSrcResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
+	/**
+	 * Set the link URL resolver.
+	 *
+	 * The resolver form is: method(inputBuffer, outputBytes)
+	 * 		it returns how many char bypass from start of the inputBuffer (positive value) or from the end of the inputBuffer (negative value).
+	 * 		(or null if not modified, the render will continue as is).
+	 * The resolve puts its escaped text in UTF-8 to the outputBytes directly, at most MINIMUM_BUFFER_SIZE bytes of the implementation.
+	 *
+	 * The result is boxed and the URL is a view of the buffer, see setLinkUrlResolver.
+	 * 
+	 * @param resolver function to call when a link is found.
+	 */
+	void setLinkHrefResolver(BiFunction<CharBuffer, ByteBuffer, Integer> resolver);
+
+	/**
+	 * Set the image source URL resolver.
+	 *
+	 * The resolver form is: method(inputBuffer, outputBytes)
+	 * 		it returns how many char bypass from start of the inputBuffer (positive value) or from the end of the inputBuffer (negative value).
+	 * 		(or null if not modified, the render will continue as is).
+	 * The resolve puts its escaped text in UTF-8 to the outputBytes directly, at most MINIMUM_BUFFER_SIZE bytes of the implementation.
+	 *
+	 * The result is boxed and the URL is a view of the buffer, see setImageUrlResolver.
+	 * 
+	 * @param resolver function to call when a image (img tag) is found.
+	 */
+	void setImageSrcResolver(BiFunction<CharBuffer, ByteBuffer, Integer> resolver);
+
+	/**
+	 * compacting the buffer position to zero.
+	 *
+	 * @param position current position.
+	 */
+	public void compact(int position);
+}
@@ -15,6 +15,7 @@
  */
 package vietfi.markdown.strict;
 
+import java.io.IOException;
 import java.nio.CharBuffer;
 import java.util.function.BiFunction;
 
@@ -30,6 +31,49 @@ public interface SMDHtmlRender extends SMDRender {
 	 */
 	public void produceHtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder);
 	
+	/**
+	 * Produce the output from the current buffer to an Appendable (e.g. a Writer of the response).
+	 * 
+	 * The default produces the whole output to a StringBuilder then appends it,
+	 * an implementation may write it by batches, not keeping the whole output in memory.
+	 * 
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param output the output.
+	 * @throws IOException of the output.
+	 */
+	default void produceHtml(SMDMarkers markers, CharBuffer buffer, Appendable output) throws IOException {
+		StringBuilder outputBuilder = new StringBuilder();
+		produceHtml(markers, buffer, outputBuilder);
+		output.append(outputBuilder);
+	}
+	
+	/**
+	 * Set the link URL resolver, called by the span of URL in the buffer.
+	 * The resolver appends its escaped text to the outputBuilder directly.
+	 * 
+	 * The default adapts it to setLinkHrefResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a link is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setLinkUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
+		setLinkHrefResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
+	/**
+	 * Set the image source URL resolver, called by the span of URL in the buffer.
+	 * The resolver appends its escaped text to the outputBuilder directly.
+	 * 
+	 * The default adapts it to setImageSrcResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a image (img tag) is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setImageUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
+		setImageSrcResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
 	/**
 	 * Set the link URL resolver.
 	 * 
@@ -38,6 +82,8 @@ public interface SMDHtmlRender extends SMDRender {
 	 * 		(or null if not modified, the render will continue as is).
 	 * The resolve append its escaped text to the outputBuilder directly.
 	 * 
+	 * The result is boxed and the URL is a view of the buffer, see setLinkUrlResolver.
+	 * 
 	 * @param resolver function to call when a link is found.
 	 */
 	void setLinkHrefResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver);
@@ -50,6 +96,8 @@ public interface SMDHtmlRender extends SMDRender {
 	 * 		(or null if not modified, the render will continue as is).
 	 * The resolve append its escaped text to the outputBuilder directly.
 	 * 
+	 * The result is boxed and the URL is a view of the buffer, see setImageUrlResolver.
+	 * 
 	 * @param resolver function to call when a image (img tag) is found.
 	 */
 	void setImageSrcResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver);
@@ -33,6 +33,32 @@ public interface SMDHtmlWriter extends SMDRender {
 	 */
 	public boolean appendHtml(SMDMarkers markers, CharBuffer buffer, CharBuffer outputBuffer);
 	
+	/**
+	 * Set the link URL resolver, called by the span of URL in the buffer.
+	 * The resolver puts its escaped text to the outputBuffer directly.
+	 * 
+	 * The default adapts it to setLinkHrefResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a link is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setLinkUrlResolver(SMDUrlResolver<CharBuffer> resolver) {
+		setLinkHrefResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
+	/**
+	 * Set the image source URL resolver, called by the span of URL in the buffer.
+	 * The resolver puts its escaped text to the outputBuffer directly.
+	 * 
+	 * The default adapts it to setImageSrcResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a image (img tag) is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setImageUrlResolver(SMDUrlResolver<CharBuffer> resolver) {
+		setImageSrcResolver(SMDUrlResolver.toFunction(resolver));
+	}
+	
 	/**
 	 * Set the link URL resolver.
 	 * 
@@ -41,6 +67,8 @@ public interface SMDHtmlWriter extends SMDRender {
 	 * 		(or null if not modified, the render will continue as is).
 	 * The resolve append its escaped text to the outputBuilder directly.
 	 * 
+	 * The result is boxed and the URL is a view of the buffer, see setLinkUrlResolver.
+	 * 
 	 * @param resolver function to call when a link is found.
 	 */
 	void setLinkHrefResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver);
@@ -53,6 +81,8 @@ public interface SMDHtmlWriter extends SMDRender {
 	 * 		(or null if not modified, the render will continue as is).
 	 * The resolve append its escaped text to the outputBuilder directly.
 	 * 
+	 * The result is boxed and the URL is a view of the buffer, see setImageUrlResolver.
+	 * 
 	 * @param resolver function to call when a image (img tag) is found.
 	 */
 	void setImageSrcResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver);
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * Keep a parsed document and render again only the blocks touched by an edit, for the preview of a live editor.
+ *
+ * The document is split into blocks at the same positions as SMDParallelRender.splitPositions (chunk size 1),
+ * each block is parsed and rendered independently. An edit re-scans the lines from the block before the edit
+ * until a split position meets an old block start again, only the blocks in between are parsed and rendered.
+ * The output is the same as parsing the whole document.
+ *
+ * Example:
+ * <pre>
+ * SMDIncrementalRender document = new SMDIncrementalRender();
+ * document.parse(text);
+ * SMDIncrementalRender.Patch patch = document.edit(offset, 1, "x");
+ * //replace the blocks patch.firstBlock() .. patch.firstBlock() + patch.removedCount() - 1 by patch.html()
+ * </pre>
+ *
+ * An instance is not thread-safe.
+ */
+public class SMDIncrementalRender {
+
+	/**
+	 * The change of blocks by an edit.
+	 */
+	public static final class Patch {
+
+		private final int firstBlock;
+		private final int removedCount;
+		private final List<String> html;
+
+		private Patch(int firstBlock, int removedCount, List<String> html) {
+			this.firstBlock = firstBlock;
+			this.removedCount = removedCount;
+			this.html = html;
+		}
+
+		/**
+		 * @return index of the first replaced block.
+		 */
+		public int firstBlock() {
+			return firstBlock;
+		}
+
+		/**
+		 * @return number of old blocks which are replaced.
+		 */
+		public int removedCount() {
+			return removedCount;
+		}
+
+		/**
+		 * @return HTML of the new blocks, in order.
+		 */
+		public List<String> html() {
+			return html;
+		}
+	}
+
+	private final SMDParser parser;
+	private final SMDHtmlRender render;
+
+	private final StringBuilder text = new StringBuilder();
+	//the blocks in a gap buffer: the starts before the gap are positions of the text,
+	//the starts after the gap are distances from the end of text, so an edit does not shift them
+	private int[] starts = new int[16];
+	private String[] html = new String[16];
+	private int gapStart = 0;
+	private int gapLength = 16;
+	private String lastHtml; //of the last rendered block
+	private SMDBlockCache cache;
+
+	/**
+	 * Use the standard chain and HtmlRenderImpl.
+	 */
+	public SMDIncrementalRender() {
+		this(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl());
+	}
+
+	public SMDIncrementalRender(SMDParser parser, SMDHtmlRender render) {
+		this.parser = parser;
+		this.render = render;
+	}
+
+	/**
+	 * Set a cache of the rendered blocks, it may be shared by the documents of the same render settings.
+	 *
+	 * @param cache the cache, or null to render every block.
+	 */
+	public void setBlockCache(SMDBlockCache cache) {
+		this.cache = cache;
+	}
+
+	public SMDBlockCache getBlockCache() {
+		return cache;
+	}
+
+	/**
+	 * Parse and render a whole new document.
+	 *
+	 * @param document the markdown text.
+	 */
+	public void parse(CharSequence document) {
+		text.setLength(0);
+		text.append(document);
+		Arrays.fill(html, null);
+		gapStart = 0;
+		gapLength = starts.length;
+		int[] positions = SMDParallelRender.splitPositions(text, 1);
+		renderRegion(positions, positions.length, text.length());
+	}
+
+	/**
+	 * Apply an edit to the document, the affected blocks are parsed and rendered again.
+	 *
+	 * The lines are scanned from the block before the edit until a block start meets an old block start which is not changed,
+	 * the blocks in between are rendered again. A block which is not ended at its stop (e.g. a list continues) is merged with the next one,
+	 * even an old one, so the output is always the same as rendering the whole document.
+	 * The moving of the blocks is proportional to the distance from the last edit, not to the number of blocks.
+	 *
+	 * @param offset of the edit in the current text.
+	 * @param removedLength number of characters removed at the offset.
+	 * @param inserted text inserted at the offset.
+	 * @return the replaced blocks.
+	 */
+	public Patch edit(int offset, int removedLength, CharSequence inserted) {
+		if(offset < 0 || removedLength < 0 || offset + removedLength > text.length())
+			throw new IndexOutOfBoundsException("Edit out of the text: "+offset+"+"+removedLength);
+		int oldEnd = offset + removedLength;
+		if(blockCount() == 0) { //was empty
+			text.replace(offset, oldEnd, inserted.toString());
+			parse(text);
+			return new Patch(0, 0, blocksFrom(0));
+		}
+
+		//from the block before, the edit may join it
+		int first = Math.max(blockOf(offset) - 1, 0);
+		int next = first + 1; //the first old block starts at or after the edit
+		while(next < blockCount() && blockStart(next) < oldEnd)
+			next++;
+		int regionStart = blockStart(first);
+		//the blocks from first are kept from the end of text, they are shifted by the edit
+		moveGap(first);
+		text.replace(offset, oldEnd, inserted.toString());
+		removeAfterGap(next - first);
+
+		//scan the lines as splitPositions, until an old block start is met
+		int[] positions = new int[4];
+		int newCount = 0;
+		int length = text.length();
+		char fence = '\0';
+		boolean blankBefore = false;
+		boolean content = false;
+		int lineStart = regionStart;
+		int end = length;
+		int passed = 0; //old blocks after the gap in the scanned lines
+		int tail = blockCount() - first;
+		while(lineStart < length) {
+			int lineEnd = lineStart;
+			while(lineEnd < length && text.charAt(lineEnd) != '\n')
+				lineEnd++;
+
+			boolean blank = SMDParallelRender.isBlankLine(text, lineStart, lineEnd);
+			if(fence != '\0') {
+				if(SMDParallelRender.isFenceLine(text, lineStart, lineEnd, fence))
+					fence = '\0';
+			}
+			else {
+				if(newCount == 0 || content && blankBefore && !blank && SMDParallelRender.canStartChunk(text, lineStart)) {
+					while(passed < tail && tailStart(passed) < lineStart)
+						passed++;
+					if(newCount > 0 && passed < tail && tailStart(passed) == lineStart) {
+						end = lineStart; //the rest is not changed
+						break;
+					}
+					if(newCount == positions.length)
+						positions = Arrays.copyOf(positions, newCount * 2);
+					positions[newCount++] = lineStart;
+				}
+				if(SMDParallelRender.isFenceLine(text, lineStart, lineEnd, '\0'))
+					fence = text.charAt(lineStart);
+			}
+			blankBefore = blank;
+			content |= !blank;
+			lineStart = lineEnd + 1;
+		}
+		if(end == length)
+			passed = tail;
+		if(newCount == 0) //the text is removed up to the end
+			positions[newCount++] = regionStart;
+
+		//the old blocks in the scanned lines are replaced
+		removeAfterGap(passed);
+		int merged = renderRegion(positions, newCount, end);
+		return new Patch(first, next - first + passed + merged, blocksFrom(first));
+	}
+
+	//render the blocks at positions up to end into the gap, a block not ended at its stop is merged with the next,
+	//then with the old blocks after the gap; returns number of old blocks merged
+	private int renderRegion(int[] positions, int positionCount, int end) {
+		int merged = 0;
+		int i = 0;
+		while(i < positionCount) {
+			int start = positions[i++];
+			int stop = i < positionCount ? positions[i] : end;
+			String block;
+			while((block = renderBlock(start, stop)) == null) {
+				if(i < positionCount) {
+					i++;
+					stop = i < positionCount ? positions[i] : end;
+				}
+				else if(gapStart + gapLength < starts.length) {
+					removeAfterGap(1);
+					merged++;
+					stop = gapStart + gapLength < starts.length ? tailStart(0) : text.length();
+				}
+				else {
+					block = lastHtml; //at the end of text
+					break;
+				}
+			}
+			insert(start, block);
+		}
+		return merged;
+	}
+
+	//null if the block is not ended at the stop (the HTML is kept in lastHtml)
+	private String renderBlock(int start, int stop) {
+		SMDBlockCache.Block block;
+		if(cache != null)
+			block = cache.render(SMDBlockCache.blockText(text, start, stop), parser, render);
+		else if(stop == text.length()) { //the last block is terminated
+			String last = SMDBlockCache.blockText(text, start, stop);
+			block = SMDBlockCache.renderBlock(last, 0, last.length(), parser, render);
+		}
+		else
+			block = SMDBlockCache.renderBlock(text, start, stop, parser, render);
+		lastHtml = block.html;
+		return block.closed ? lastHtml : null;
+	}
+
+	//start of the index-th block after the gap
+	private int tailStart(int index) {
+		return text.length() - starts[gapStart + gapLength + index];
+	}
+
+	//move the gap before the block at index, the moved starts are converted by the current text length
+	private void moveGap(int index) {
+		int length = text.length();
+		while(gapStart > index) {
+			gapStart--;
+			starts[gapStart + gapLength] = length - starts[gapStart];
+			html[gapStart + gapLength] = html[gapStart];
+		}
+		while(gapStart < index) {
+			starts[gapStart] = length - starts[gapStart + gapLength];
+			html[gapStart] = html[gapStart + gapLength];
+			gapStart++;
+		}
+	}
+
+	private void removeAfterGap(int n) {
+		for(int i = 0; i < n; i++)
+			html[gapStart + gapLength + i] = null;
+		gapLength += n;
+	}
+
+	private void insert(int start, String block) {
+		if(gapLength == 0) {
+			int capacity = starts.length;
+			int tail = capacity - gapStart;
+			starts = Arrays.copyOf(starts, capacity * 2);
+			html = Arrays.copyOf(html, capacity * 2);
+			System.arraycopy(starts, gapStart, starts, gapStart + capacity, tail);
+			System.arraycopy(html, gapStart, html, gapStart + capacity, tail);
+			Arrays.fill(html, gapStart, gapStart + capacity, null);
+			gapLength = capacity;
+		}
+		starts[gapStart] = start;
+		html[gapStart++] = block;
+		gapLength--;
+	}
+
+	private List<String> blocksFrom(int first) {
+		return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(html).subList(first, gapStart)));
+	}
+
+	//the block contains the offset
+	private int blockOf(int offset) {
+		int low = 0;
+		int high = blockCount() - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(blockStart(middle) <= offset)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * @return the current markdown text.
+	 */
+	public CharSequence text() {
+		return text;
+	}
+
+	public int blockCount() {
+		return starts.length - gapLength;
+	}
+
+	/**
+	 * @param index of block.
+	 * @return start position of the block in the text.
+	 */
+	public int blockStart(int index) {
+		return index < gapStart ? starts[index] : text.length() - starts[index + gapLength];
+	}
+
+	/**
+	 * @param index of block.
+	 * @return HTML of the block.
+	 */
+	public String blockHtml(int index) {
+		return html[index < gapStart ? index : index + gapLength];
+	}
+
+	/**
+	 * Append HTML of the whole document.
+	 *
+	 * @param outputBuilder to append.
+	 */
+	public void produceHtml(StringBuilder outputBuilder) {
+		for(int i = 0; i < blockCount(); i++)
+			outputBuilder.append(blockHtml(i));
+	}
+}
@@ -16,7 +16,10 @@
 package vietfi.markdown.strict;
 
 import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import vietfi.markdown.strict.jfr.SMDMarkersGrowEvent;
 
 /**
  * mark a series of markers of parsing process.
@@ -25,6 +28,10 @@ import java.util.stream.Collectors;
  * 
  * [ Marker start, Content Start, Content End, Marker End]
  * 
+ * The storage is selected on creating, all of them have the same behavior:
+ * - new SMDMarkers(length): an int array, 20 bits of position (1 million characters).
+ * - createLongMarkers(length): two ints a marker, 31 bits of position, for a longer buffer.
+ * - createPagedMarkers(length): the pages of int, for dense documents of many markers, the markers are never copied.
  */
 public class SMDMarkers {
 
@@ -36,11 +43,33 @@ public class SMDMarkers {
 
     protected static final int MAXIMUM_MARKER_LENGTH;
     
+    /**
+     * The maximum position of the int packed markers (20 bits).
+     */
+    public static final int MAXIMUM_POSITION = 0x0FFFFF;
+    
+    /**
+     * The markers of a page of createPagedMarkers.
+     */
+    public static final int PAGE_BITS = 10;
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+    
+    protected static final int MAXIMUM_FREE_PAGES;
+    
+    //the bits of page index for the single page (an array)
+    private static final int SINGLE_PAGE_BITS = 31;
+    
     static {
     	String maximumString = System.getProperty("smd.maximum.markers", String.valueOf("102400")); //100k markers
     	MAXIMUM_MARKER_LENGTH = Integer.parseInt(maximumString);
+    	String pagesString = System.getProperty("smd.markers.free.pages", String.valueOf("256")); //1MB of pages
+    	MAXIMUM_FREE_PAGES = Integer.parseInt(pagesString);
     }
     
+    //the free pages of createPagedMarkers, shared by all instances
+    private static final ConcurrentLinkedQueue<int[]> FREE_PAGES = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger FREE_PAGE_COUNT = new AtomicInteger();
+    
 	/**
      * extensible markers of output
      * each signed integer (32 bits) divided into 4 bytes, the meaning is
@@ -63,35 +92,218 @@ public class SMDMarkers {
      * To get state: s = v & 0x07F00000 >> 20;
      * 
      * PPP..: position of buffer. 20 bits addressable, support maximum buffer length is 1 million characters.
+     * 
+     * The position is stored as the logical position (position of buffer plus the base, modulo 20 bits),
+     * so that the compaction only moves the base and the head instead of rewriting all markers.
+     * 
+     * Of the long markers, a marker is two ints: the flags and the state (P bits are zero), then the position of 31 bits.
+     * The 31 bits are the maximum index of a CharBuffer, a wider position (a long) could not be a position of the buffer.
      */
     
-    private int[] markers;
-    //fulfill index (or length of markers)
+    //the ints of markers, a single page (the array) unless of createPagedMarkers
+    private int[][] pages;
+    private int pageCount;
+    //the page of an int index is (i >>> pageBits)
+    private final int pageBits;
+    private final int pageMask;
+    //the pages kept on reset
+    private final int retainedPages;
+    //the ints of a marker is (1 << wide)
+    private final int wide;
+    private final int positionMask;
+    //the markers of the slots, (head + index) << wide is a positive int
+    private static final int MAXIMUM_SLOT_MARKERS = 1 << 29;
+    //the markers can be added, see remaining()
+    private final int maximumLength;
+    //index of the first marker, the rendered markers are dropped by moving it
+    private int head = 0;
+    //fulfill index (or length of markers), from the head
     private int fulfillIndex = 0;
-    //cursor index
+    //cursor index, from the head
     private int cursor = 0;
-    
+    //logical position of the buffer's position 0
+    private int base = 0;
+    //rollback calls, it is never reset (see SMDParserStatistics)
+    private int rollbackCount = 0;
+
     public SMDMarkers(int markerLength) {
-        this.markers = new int[markerLength];
+        this(new int[markerLength], 0);
+    }
+    
+    public SMDMarkers(int[] markers, int markerPos) {
+    	this(new int[][] {markers}, SINGLE_PAGE_BITS, 0, MAXIMUM_MARKER_LENGTH);
+        this.fulfillIndex = markerPos;
+    }
+    
+    private SMDMarkers(int[][] pages, int pageBits, int wide, int maximumLength) {
+    	this.pages = pages;
+    	this.pageCount = pages.length;
+    	this.retainedPages = pages.length;
+    	this.pageBits = pageBits;
+    	this.pageMask = pageBits == SINGLE_PAGE_BITS ? Integer.MAX_VALUE : (1 << pageBits) - 1;
+    	this.wide = wide;
+    	this.positionMask = wide == 0 ? MAXIMUM_POSITION : Integer.MAX_VALUE;
+    	this.maximumLength = maximumLength;
+    }
+    
+    /**
+     * The markers of 31 bits position, for a buffer longer than 1 million characters (the limit of new SMDMarkers).
+     * 
+     * It takes double memory, so that new SMDMarkers is preferred for a buffer within 1 million characters.
+     * The markers are not limited by the system property "smd.maximum.markers", a buffer of any length is parsed whole
+     * (up to the ints of the slots, 2^29 markers). e.g.
+     * <pre>
+     * SMDParser parser = SMDParserChain.createParserOfStandard(SMDMarkers.createLongMarkers(4096));
+     * </pre>
+     * 
+     * @param markerLength initial length of markers.
+     * @return the markers.
+     */
+    public static SMDMarkers createLongMarkers(int markerLength) {
+    	return new SMDMarkers(new int[][] {new int[markerLength * 2]}, SINGLE_PAGE_BITS, 1, MAXIMUM_SLOT_MARKERS);
+    }
+    
+    /**
+     * The markers stored in fixed-size pages of int (PAGE_SIZE markers), for the documents of many markers.
+     * 
+     * Appending never copies the markers (a new page is added), the pages of the dropped markers are reused for the next markers.
+     * On reset, the pages over the initial length are released to a shared pool (at most the system property "smd.markers.free.pages",
+     * 256 by default) to be recycled by the next documents.
+     * The markers are not limited by the system property "smd.maximum.markers" (the markers of a growing array), the positions
+     * are 20 bits as new SMDMarkers (1 million characters).
+     * 
+     * @param markerLength initial length of markers, it is kept on reset.
+     * @return the markers.
+     */
+    public static SMDMarkers createPagedMarkers(int markerLength) {
+    	int[][] pages = new int[Math.max((markerLength + PAGE_SIZE - 1) >> PAGE_BITS, 1)][];
+    	for(int i = 0; i < pages.length; i++)
+    		pages[i] = newPage();
+    	return new SMDMarkers(pages, PAGE_BITS, 0, MAXIMUM_SLOT_MARKERS);
+    }
+    
+    private static int[] newPage() {
+    	int[] page = FREE_PAGES.poll();
+    	if(page != null) {
+    		FREE_PAGE_COUNT.decrementAndGet();
+    		return page;
+    	}
+    	return new int[PAGE_SIZE];
+    }
+    
+    private static void freePage(int[] page) {
+    	if(FREE_PAGE_COUNT.incrementAndGet() <= MAXIMUM_FREE_PAGES)
+    		FREE_PAGES.offer(page);
+    	else
+    		FREE_PAGE_COUNT.decrementAndGet();
+    }
+    
+    /**
+     * @return number of free pages in the shared pool of createPagedMarkers.
+     */
+    public static int freePageCount() {
+    	return FREE_PAGE_COUNT.get();
+    }
+    
+    /**
+     * @return number of pages, 1 if not paged.
+     */
+    public int pageCount() {
+    	return pageCount;
+    }
+    
+    //the markers can be stored from the head
+    private int capacity() {
+    	return pageBits == SINGLE_PAGE_BITS ? pages[0].length >> wide : pageCount << pageBits;
     }
     
     private void extendMakersLength() {
+    	SMDMarkersGrowEvent event = new SMDMarkersGrowEvent();
+    	if(pageBits != SINGLE_PAGE_BITS) { //a new page, the markers are not copied
+    		event.begin();
+    		if(pageCount == pages.length) //only the references are copied
+    			pages = Arrays.copyOf(pages, pageCount * 2);
+    		pages[pageCount++] = newPage();
+    		if(event.shouldCommit())
+    			event.record("paged", (pageCount - 1) << pageBits, pageCount << pageBits);
+    		return;
+    	}
+    	int[] markers = pages[0];
+    	if(head > 0) { //move the markers to the front first
+    		System.arraycopy(markers, head << wide, markers, 0, fulfillIndex << wide);
+    		head = 0;
+    		if(capacity() - fulfillIndex >= 2)
+    			return;
+    	}
+    	event.begin();
+    	int capacity = capacity();
     	//by step by step
-    	if(markers.length < 102400) {
+    	if(capacity < 102400) {
     		//double size
-    		int[] newMarkers = Arrays.copyOf(markers, markers.length * 2);
-    		this.markers = newMarkers;
+    		pages[0] = Arrays.copyOf(markers, Math.max(capacity * 2, 8) << wide);
     	}
     	else {
     		//add more 10240
-    		int[] newMarkers = Arrays.copyOf(markers, markers.length + 10240);
-    		this.markers = newMarkers;
+    		pages[0] = Arrays.copyOf(markers, (capacity + 10240) << wide);
     	}
+    	if(event.shouldCommit())
+    		event.record(wide == 0 ? "int" : "long", capacity, capacity());
     }
     
-    public SMDMarkers(int[] markers, int markerPos) {
-        this.markers = markers;
-        this.fulfillIndex = markerPos;
+    //the int index of the marker at index from the head
+    private int slot(int index) {
+    	return (head + index) << wide;
+    }
+    
+    //the value of marker at index from the head, the flags and state (with the logical position if not wide)
+    private int at(int index) {
+    	int i = slot(index);
+    	return pages[i >>> pageBits][i & pageMask];
+    }
+    
+    private void set(int index, int value) {
+    	int i = slot(index);
+    	pages[i >>> pageBits][i & pageMask] = value;
+    }
+    
+    //the position of buffer of the marker at index
+    private int position(int index) {
+    	int i = slot(index) + wide;
+    	return (pages[i >>> pageBits][i & pageMask] - base) & positionMask;
+    }
+    
+    private void add(int flagsAndState, int position) {
+    	int logical = (position + base) & positionMask;
+    	int i = slot(fulfillIndex++);
+    	if(wide == 0)
+    		pages[i >>> pageBits][i & pageMask] = flagsAndState | logical;
+    	else {
+    		pages[i >>> pageBits][i & pageMask] = flagsAndState;
+    		pages[i >>> pageBits][(i + 1) & pageMask] = logical;
+    	}
+    }
+    
+    //drop the first markers, the pages of them are moved to the end for reusing
+    private void removeFirst(int count) {
+    	head += count;
+    	fulfillIndex -= count;
+    	if(pageBits == SINGLE_PAGE_BITS)
+    		return;
+    	while(head >= PAGE_SIZE) {
+    		int[] first = pages[0];
+    		System.arraycopy(pages, 1, pages, 0, pageCount - 1);
+    		pages[pageCount - 1] = first;
+    		head -= PAGE_SIZE;
+    	}
+    }
+
+    /**
+     * The maximum position can be marked, the buffer must not be longer.
+     * 
+     * @return maximum position of the buffer
+     */
+    public int maximumPosition() {
+    	return positionMask;
     }
 
     /**
@@ -102,7 +314,7 @@ public class SMDMarkers {
     public int[] toStateArray() {
     	int[] result = new int[fulfillIndex];
     	for(int i = 0; i < fulfillIndex; i++)
-    		result[i] = markerState(markers[i]);
+    		result[i] = markerState(at(i));
     	return result;
     }
     
@@ -114,17 +326,41 @@ public class SMDMarkers {
     public int[] toMarkerStartStopArray() {
     	int[] result = new int[fulfillIndex];
     	for(int i = 0; i < fulfillIndex; i++)
-    		result[i] = markers[i] & (MARKER_START | MARKER_STOP | CONTENT_START | CONTENT_STOP);
+    		result[i] = at(i) & (MARKER_START | MARKER_STOP | CONTENT_START | CONTENT_STOP);
     	return result;
     }
     
     public void resetMarkers() {
     	fulfillIndex = 0;
     	cursor = 0;
-    	markers[0] = 0; //only 1 first are ok
+    	head = 0;
+    	base = 0;
+    	//the pages over the initial length are released
+    	while(pageCount > retainedPages) {
+    		freePage(pages[--pageCount]);
+    		pages[pageCount] = null;
+    	}
+    	if(capacity() > 0)
+    		set(0, 0); //only 1 first are ok
     }
     
+    protected final void countRollback() {
+    	rollbackCount++;
+    }
+
+    /**
+     * The count of rollback calls (rollbackXxx, and setMarkerFulfill to a shorter length), it is not reset by resetMarkers.
+     * The difference of two calls is the rollbacks in between, even if the count is overflowed.
+     *
+     * @return count of rollback calls.
+     */
+    public int rollbackCount() {
+    	return rollbackCount;
+    }
+
     public void setMarkerFulfill(int index) {
+    	if(index < fulfillIndex)
+    		countRollback();
     	fulfillIndex = index;
     }
     
@@ -153,7 +389,7 @@ public class SMDMarkers {
     public int getLastMarkerState() {
     	if(fulfillIndex == 0)
     		return SMDParser.STATE_NONE;
-		return markerState(markers[fulfillIndex-1]);
+		return markerState(at(fulfillIndex-1));
 	}
     
     /**
@@ -163,7 +399,7 @@ public class SMDMarkers {
     public int getLastMarkerPosition() {
     	if(fulfillIndex == 0)
     		return -1;
-		return markerPosition(markers[fulfillIndex-1]);
+		return position(fulfillIndex-1);
 	}
     
     /**
@@ -173,7 +409,7 @@ public class SMDMarkers {
      * @return the state of marker
      */
 	public int getMarkerState(int index) {
-		return markerState(markers[index]);
+		return markerState(at(index));
 	}
 	
     /**
@@ -183,7 +419,7 @@ public class SMDMarkers {
      * @return
      */
 	public int getMarkerPosition(int index) {
-		return markerPosition(markers[index]);
+		return position(index);
 	}
 	
     /**
@@ -193,7 +429,7 @@ public class SMDMarkers {
      * @return
      */
 	public boolean isMarkerStart(int index) {
-		return whetherStartStop(markers[index], MARKER_START);
+		return whetherStartStop(at(index), MARKER_START);
 	}
 	
 	/**
@@ -203,7 +439,7 @@ public class SMDMarkers {
      * @return
      */
 	public boolean isContentStart(int index) {
-		return whetherStartStop(markers[index], CONTENT_START);
+		return whetherStartStop(at(index), CONTENT_START);
 	}
 	
 	/**
@@ -213,7 +449,7 @@ public class SMDMarkers {
      * @return
      */
 	public boolean isMarkerStop(int index) {
-		return whetherStartStop(markers[index], MARKER_STOP);
+		return whetherStartStop(at(index), MARKER_STOP);
 	}
 	
 	/**
@@ -223,7 +459,17 @@ public class SMDMarkers {
      * @return
      */
 	public boolean isContentStop(int index) {
-		return whetherStartStop(markers[index], CONTENT_STOP);
+		return whetherStartStop(at(index), CONTENT_STOP);
+	}
+	
+	/**
+	 * The flags (start / stop bits) and the state of the marker, packed as of the int layout without the position.
+	 * 
+	 * @param index
+	 * @return the flags and the state
+	 */
+	public int getMarkerFlagsAndState(int index) {
+		return at(index) & 0x7FF00000;
 	}
 	
 	public static int markerState(int v) {
@@ -241,67 +487,88 @@ public class SMDMarkers {
 	
 	public void addStartMarkerContent(int newState, int markerBegin, int contentBegin) {
     	if(contentBegin > markerBegin) {
-    		if(markers.length <= fulfillIndex+2)
+    		if(capacity() < head + fulfillIndex + 2)
     			extendMakersLength();
 	    	//pack marker with state and position
-	    	markers[fulfillIndex++] = MARKER_START | newState << 20 | markerBegin;
-	        markers[fulfillIndex++] = CONTENT_START | newState << 20 | contentBegin;
+	    	add(MARKER_START | newState << 20, markerBegin);
+	        add(CONTENT_START | newState << 20, contentBegin);
     	}
     	else { //same position for both
-    		if(markers.length <= fulfillIndex+1)
+    		if(capacity() < head + fulfillIndex + 1)
     			extendMakersLength();
-	        markers[fulfillIndex++] = MARKER_START | CONTENT_START | newState <<20 | contentBegin;	
+	        add(MARKER_START | CONTENT_START | newState <<20, contentBegin);	
     	}    		
     }
 	
 	public void addStopContentMarker(int currentState, int contentEnd, int markerEnd) {
 		if(contentEnd < markerEnd) {
-			if(markers.length <= fulfillIndex+2)
+			if(capacity() < head + fulfillIndex + 2)
     			extendMakersLength();
-	    	markers[fulfillIndex++] = CONTENT_STOP | currentState <<20 | contentEnd;
-	        markers[fulfillIndex++] = MARKER_STOP | currentState <<20 | markerEnd;
+	    	add(CONTENT_STOP | currentState <<20, contentEnd);
+	        add(MARKER_STOP | currentState <<20, markerEnd);
     	}
     	else {
-    		if(markers.length <= fulfillIndex+1)
+    		if(capacity() < head + fulfillIndex + 1)
     			extendMakersLength();
     		//same position for both
-	        markers[fulfillIndex++] = MARKER_STOP | CONTENT_STOP | currentState <<20 | markerEnd;
+	        add(MARKER_STOP | CONTENT_STOP | currentState <<20, markerEnd);
     	}
 	}
 	
 	public void addStartMarker(int newState, int markerBegin) {
-		if(markers.length <= fulfillIndex+1)
+		if(capacity() < head + fulfillIndex + 1)
 			extendMakersLength();
     	//only content
-    	markers[fulfillIndex++] = MARKER_START | newState <<20 | markerBegin;
+    	add(MARKER_START | newState <<20, markerBegin);
     }
 	
 	public void addStopMarker(int currentState, int markerEnd) {
-		if(markers.length <= fulfillIndex+1)
+		if(capacity() < head + fulfillIndex + 1)
 			extendMakersLength();
     	//only content
-		markers[fulfillIndex++] = MARKER_STOP | currentState <<20 | markerEnd;
+		add(MARKER_STOP | currentState <<20, markerEnd);
     }
 	
 	public void addStartContent(int newState, int contentBegin) {
-		if(markers.length <= fulfillIndex+1)
+		if(capacity() < head + fulfillIndex + 1)
 			extendMakersLength();
     	//only content
-    	markers[fulfillIndex++] = CONTENT_START | newState <<20 | contentBegin;
+    	add(CONTENT_START | newState <<20, contentBegin);
     }
 	
 	public void addStopContent(int currentState, int contentEnd) {
-		if(markers.length <= fulfillIndex+1)
+		if(capacity() < head + fulfillIndex + 1)
 			extendMakersLength();
     	//only content
-		markers[fulfillIndex++] = CONTENT_STOP | currentState <<20 | contentEnd;
+		add(CONTENT_STOP | currentState <<20, contentEnd);
     }
 	
+	/**
+	 * Append all markers of another, their positions are shifted by the offset.
+	 *
+	 * It is used to join the markers of buffers which are parsed separately.
+	 *
+	 * @param other markers to append
+	 * @param offset position of the other's buffer in this buffer
+	 */
+	public void appendMarkers(SMDMarkers other, int offset) {
+		int length = other.markedLength();
+		while(capacity() < head + fulfillIndex + length)
+			extendMakersLength();
+		for(int i = 0; i < length; i++) {
+			int pos = other.getMarkerPosition(i) + offset;
+			if(pos > positionMask || pos < 0)
+				throw new IllegalArgumentException("Position is out of addressable: "+pos);
+			add(other.getMarkerFlagsAndState(i), pos);
+		}
+	}
+
 	public void rollbackLastMarkerContentStart(int ofState) {
+    	countRollback();
     	if(fulfillIndex == 0) //empty, do nothing
     		return;
     	int pos = fulfillIndex - 1;
-    	int value = markers[pos];
+    	int value = at(pos);
     	int lastState = getMarkerState(pos);
     	//check for MARKER_START or CONTENT_START
     	if(lastState == ofState) {
@@ -309,7 +576,7 @@ public class SMDMarkers {
     			fulfillIndex = pos; //remove one
     			return;
 	    	}
-	    	else if(pos > 0 && (value & CONTENT_START) == CONTENT_START && (markers[pos-1] & MARKER_START) == MARKER_START) {
+	    	else if(pos > 0 && (value & CONTENT_START) == CONTENT_START && (at(pos-1) & MARKER_START) == MARKER_START) {
 	    		fulfillIndex = pos - 1; //remove two
     			return;
 	    	}
@@ -317,15 +584,16 @@ public class SMDMarkers {
     }
     
 	public void rollbackLastContentStart(int ofState) {
+    	countRollback();
     	if(fulfillIndex == 0) //empty, do nothing
     		return;
     	int pos = fulfillIndex - 1;
-    	int value = markers[pos];
+    	int value = at(pos);
     	int lastState = getMarkerState(pos);
     	//check for CONTENT_START
     	if(lastState == ofState) {
     		if((value & MARKER_START) == MARKER_START) {//they are combined, remove only content start
-    			markers[pos] = value ^ CONTENT_START; //remove bit
+    			set(pos, value ^ CONTENT_START); //remove bit
     			return;
 	    	}
 	    	else if(pos > 0 && (value & CONTENT_START) == CONTENT_START) {
@@ -336,10 +604,11 @@ public class SMDMarkers {
     }
 	
 	public void rollbackLastContentStop(int ofState) {
+    	countRollback();
     	if(fulfillIndex == 0) //empty, do nothing
     		return;
     	int pos = fulfillIndex - 1;
-    	int value = markers[pos];
+    	int value = at(pos);
     	int lastState = getMarkerState(pos);
     	//check for CONTENT_STOP
     	if(lastState == ofState) {
@@ -354,13 +623,14 @@ public class SMDMarkers {
     }
 	
 	public void rollbackState(int ofState) {
+    	countRollback();
     	if(fulfillIndex == 0) //empty, do nothing
     		return;
     	int pos = fulfillIndex - 1;
     	//check for state
     	while(ofState == getMarkerState(pos)) {
     		pos--;
-    		if((markers[pos+1] & MARKER_START) == MARKER_START) {//the open marker
+    		if((at(pos+1) & MARKER_START) == MARKER_START) {//the open marker
     			pos--;
     			break;
 	    	}
@@ -386,11 +656,12 @@ public class SMDMarkers {
 	
 	public int cursorPosition1() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex) {
-			if(whetherStartStop(markers[cursor], CONTENT_START) || whetherStartStop(markers[cursor], MARKER_STOP))
-				return markerPosition(markers[cursor]);
+			int v = at(cursor);
+			if(whetherStartStop(v, CONTENT_START) || whetherStartStop(v, MARKER_STOP))
+				return position(cursor);
 			//the first one
 			if(cursor == 0 && //compacted in the pass 
-				whetherStartStop(markers[cursor], CONTENT_STOP)) 
+				whetherStartStop(v, CONTENT_STOP)) 
 				return 0; // print from zero position
 			return -1;
 		}
@@ -401,15 +672,15 @@ public class SMDMarkers {
 	public int cursorPosition2() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex) {
 			if(this.cursor + 1 < this.fulfillIndex
-					&& (whetherStartStop(markers[cursor+1], MARKER_START) || whetherStartStop(markers[cursor+1], CONTENT_STOP)))
-				return markerPosition(markers[cursor+1]);
+					&& (whetherStartStop(at(cursor+1), MARKER_START) || whetherStartStop(at(cursor+1), CONTENT_STOP)))
+				return position(cursor+1);
 			//the last one
 			if(this.cursor + 1 == this.fulfillIndex
-					&& (whetherStartStop(markers[cursor], CONTENT_START) || whetherStartStop(markers[cursor], MARKER_STOP)))
+					&& (whetherStartStop(at(cursor), CONTENT_START) || whetherStartStop(at(cursor), MARKER_STOP)))
 				//maximum addressable
-				return 0xFFFFF;
+				return positionMask;
 			//return current position
-			return markerPosition(markers[cursor]);
+			return position(cursor);
 		}
 		throw new IllegalStateException();
 	}
@@ -421,7 +692,7 @@ public class SMDMarkers {
      */
 	public boolean cursorIsMarkerStart() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex)
-			return whetherStartStop(markers[cursor], MARKER_START);
+			return whetherStartStop(at(cursor), MARKER_START);
 		throw new IllegalStateException();
 	}
 	
@@ -432,7 +703,7 @@ public class SMDMarkers {
      */
 	public boolean cursorIsContentStart() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex)
-			return whetherStartStop(markers[cursor], CONTENT_START);
+			return whetherStartStop(at(cursor), CONTENT_START);
 		throw new IllegalStateException();
 	}
 	
@@ -443,7 +714,7 @@ public class SMDMarkers {
      */
 	public boolean cursorIsMarkerStop() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex)
-			return whetherStartStop(markers[cursor], MARKER_STOP);
+			return whetherStartStop(at(cursor), MARKER_STOP);
 		throw new IllegalStateException();
 	}
 	
@@ -454,7 +725,7 @@ public class SMDMarkers {
      */
 	public boolean cursorIsContentStop() {
 		if(this.cursor >= 0 && this.cursor < this.fulfillIndex)
-			return whetherStartStop(markers[cursor], CONTENT_STOP);
+			return whetherStartStop(at(cursor), CONTENT_STOP);
 		throw new IllegalStateException();
 	}
 	
@@ -492,7 +763,7 @@ public class SMDMarkers {
 	public int getCompactablePosition(int upto) {
 		if(cursor == fulfillIndex || fulfillIndex == 0)
     		return upto;
-		return Math.min(upto, markerPosition(markers[cursor]));
+		return Math.min(upto, position(cursor));
 	}
 	
 	/**
@@ -501,46 +772,29 @@ public class SMDMarkers {
 	 * This method using before the call of CharBuffer.compact()
 	 * for adjusting the position of markers to correct index of the buffer. 
 	 * 
+	 * The rendered markers (before the cursor) are dropped, the positions are shifted by moving the base. 
+	 * It is O(1) of the number of markers.
+	 * 
 	 * @param uptoPosition = charBuffer.position() before calling charBuffer.position().
 	 * @return position the routine has compacted to
 	 */
     public int compactMarkers(int uptoPosition) {
-    	if(fulfillIndex == 0)
-    		return uptoPosition;
     	if(uptoPosition < 0)
     		throw new IllegalArgumentException();
     	
-    	if(this.cursor == fulfillIndex &&
-    			uptoPosition >= markerPosition(markers[fulfillIndex - 1])) { //shift larger than the last marker's position, remove all
-    		this.fulfillIndex = 0;
-    		this.cursor = 0; //reset to first
+    	if(this.cursor == fulfillIndex) { //all rendered (the last marker may be over the position), remove all
+    		resetMarkers();
     		return uptoPosition;
     	}
     	
-    	int last = 0;
-    	for(int i = 0; i < Math.min(this.fulfillIndex, this.cursor); i++) {
-    		int pos = markerPosition(markers[i]) - uptoPosition;
-    		if(pos <= 0)
-    			last++;
-    		else {
-	    		//32 bits unsigned = 0x7FFFFFFF
-	    		markers[i] = (markers[i] & 0x7FF00000) | pos;
-    		}
-    	}
+    	//the markers not rendered yet need the buffer from their positions
+    	int shift = this.cursor < this.fulfillIndex ? Math.min(uptoPosition, position(this.cursor)) : uptoPosition;
     	
-    	if(last > 0) { //shift arrays of negative position
-    		int position = markerPosition(markers[last]);
-    		for(int i = last; i < this.fulfillIndex; i++)
-    			markers[i-last] = markers[i];
-    		this.fulfillIndex = fulfillIndex - last;
-    		
-    		if(this.cursor > last)
-    			this.cursor = cursor - last;
-    		else
-    			this.cursor = 0;
-    		return position;
-    	}
-    	return markerPosition(markers[0]);
+    	//drop the rendered markers
+    	removeFirst(this.cursor);
+    	this.cursor = 0;
+    	this.base = (this.base + shift) & positionMask;
+    	return shift;
     }
  
     @Override
@@ -559,7 +813,7 @@ public class SMDMarkers {
         for(int i = 0; i < this.fulfillIndex; i++) {
         	if(i == this.cursor)
         		sb.append('.');
-        	int value = markers[i];
+        	int value = at(i);
         	if((value & MARKER_START) == MARKER_START)
 				sb.append("<");
 			if((value & CONTENT_START) == CONTENT_START)
@@ -574,14 +828,26 @@ public class SMDMarkers {
         
         if(this.fulfillIndex == this.cursor)
     		sb.append('.');
-        sb.append("\n").append(Arrays.stream(markers, 0, this.fulfillIndex).mapToObj(v -> String.valueOf(v & 0x0FFFFF)).collect(Collectors.joining("\t"))).append("\n");
+        sb.append("\n");
+        for(int i = 0; i < this.fulfillIndex; i++) {
+        	if(i > 0)
+        		sb.append('\t');
+        	sb.append(position(i));
+        }
+        sb.append("\n");
         
         return sb.toString();
     }
 
 
+	/**
+	 * The markers can be added before the limit of the layout: the system property "smd.maximum.markers" (102400 by default)
+	 * of the int markers, the slots of the long and paged markers. The inline markup is not parsed over the limit (see SMDTextLineParser).
+	 *
+	 * @return the markers can be added.
+	 */
 	public int remaining() {
-		return MAXIMUM_MARKER_LENGTH - fulfillIndex;
+		return maximumLength - fulfillIndex;
 	}
 
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parse and render a large document in parallel.
+ *
+ * The document is split into chunks at the blank lines which cannot be inside of a block (see splitPositions),
+ * each chunk is parsed by an independent chain of the pool on a ForkJoinPool, then the HTML (or the markers) are joined in order.
+ *
+ * The output is the same as parsing the whole document by one chain (parseNext then endBlock), the end of the document
+ * is forced by '\u001C' as SMDConverter does. If a chunk ends in the middle of a block (e.g. a code block contains blank lines), it is merged with the next chunk and parsed again.
+ *
+ * Example:
+ * <pre>
+ * SMDParallelRender parallel = new SMDParallelRender();
+ * StringBuilder sb = new StringBuilder(text.length() * 2);
+ * parallel.produceHtml(text, sb);
+ * </pre>
+ *
+ */
+public class SMDParallelRender {
+
+	/**
+	 * Default minimum length of a chunk, in characters.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private final ForkJoinPool forkJoinPool;
+	private final SMDParserChainPool<SMDHtmlRender> chainPool;
+	private final int chunkSize;
+
+	/**
+	 * Use the common ForkJoinPool, the standard chain and the default chunk size.
+	 */
+	public SMDParallelRender() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Use the standard chain and HtmlRenderImpl, one pair per worker.
+	 *
+	 * @param forkJoinPool to run the chunks.
+	 * @param chunkSize minimum length of a chunk.
+	 */
+	public SMDParallelRender(ForkJoinPool forkJoinPool, int chunkSize) {
+		this(forkJoinPool, SMDParserChainPool.createHtmlRenderPool(forkJoinPool.getParallelism() + 1), chunkSize);
+	}
+
+	/**
+	 * @param forkJoinPool to run the chunks.
+	 * @param chainPool the pairs of parser and render, it should be at least the parallelism of forkJoinPool.
+	 * A worker waits for a pair as a blocker of the ForkJoinPool (see ForkJoinPool.managedBlock).
+	 * @param chunkSize minimum length of a chunk.
+	 */
+	public SMDParallelRender(ForkJoinPool forkJoinPool, SMDParserChainPool<SMDHtmlRender> chainPool, int chunkSize) {
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive");
+		this.forkJoinPool = forkJoinPool;
+		this.chainPool = chainPool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Render the whole document into HTML.
+	 *
+	 * @param text the markdown document.
+	 * @param outputBuilder to append the HTML.
+	 */
+	public void produceHtml(CharSequence text, StringBuilder outputBuilder) {
+		for(ChunkTask task : execute(text, true))
+			outputBuilder.append(task.html);
+	}
+
+	/**
+	 * Parse the whole document, the markers of chunks are joined into one.
+	 *
+	 * The positions are of the text, the long markers (SMDMarkers.createLongMarkers) are returned if the text is over 1 million characters (20 bits addressable).
+	 *
+	 * @param text the markdown document.
+	 * @return the markers of the document.
+	 */
+	public SMDMarkers parse(CharSequence text) {
+		List<ChunkTask> tasks = execute(text, false);
+		int length = 1;
+		for(ChunkTask task : tasks)
+			length += task.markers.markedLength();
+		SMDMarkers markers = text.length() > SMDMarkers.MAXIMUM_POSITION ? SMDMarkers.createLongMarkers(length) : new SMDMarkers(length);
+		for(ChunkTask task : tasks)
+			markers.appendMarkers(task.markers, task.start);
+		return markers;
+	}
+
+	private List<ChunkTask> execute(CharSequence text, boolean rendering) {
+		int[] starts = splitPositions(text, chunkSize);
+		List<ChunkTask> tasks = new ArrayList<>(starts.length);
+		for(int i = 0; i < starts.length; i++)
+			tasks.add(new ChunkTask(text, starts[i], i + 1 < starts.length ? starts[i + 1] : text.length(), rendering));
+
+		if(tasks.size() == 1) {
+			tasks.get(0).invoke();
+			return tasks;
+		}
+
+		List<ChunkTask> pending = tasks;
+		while(!pending.isEmpty()) {
+			for(ChunkTask task : pending)
+				forkJoinPool.execute(task);
+			for(ChunkTask task : pending)
+				task.join();
+
+			//merge a chunk ended in the middle of a block with the next one
+			pending = new ArrayList<>();
+			List<ChunkTask> merged = new ArrayList<>(tasks.size());
+			for(int i = 0; i < tasks.size(); i++) {
+				ChunkTask task = tasks.get(i);
+				if(!task.closed && i + 1 < tasks.size()) {
+					task = new ChunkTask(text, task.start, tasks.get(++i).end, rendering);
+					pending.add(task);
+				}
+				merged.add(task);
+			}
+			tasks = merged;
+		}
+		return tasks;
+	}
+
+	/**
+	 * Find the positions to split the text into chunks, each chunk is at least chunkSize length (except the last).
+	 *
+	 * A chunk starts at a line after a blank line, outside of a code block by marker,
+	 * and the line cannot continue a list, a quote or an indented code (e.g. it starts with a space, a list item marker or &gt;).
+	 *
+	 * @param text the markdown document.
+	 * @param chunkSize minimum length of a chunk.
+	 * @return the start positions of chunks, the first one is 0.
+	 */
+	public static int[] splitPositions(CharSequence text, int chunkSize) {
+		int[] starts = new int[16];
+		int count = 1; //starts[0] = 0
+		int length = text.length();
+
+		char fence = '\0'; //in a code block by marker
+		boolean blankBefore = false;
+		boolean content = false; //the leading blank lines are not a chunk
+		int lineStart = 0;
+		while(lineStart < length) {
+			int lineEnd = lineStart;
+			while(lineEnd < length && text.charAt(lineEnd) != '\n')
+				lineEnd++;
+
+			boolean blank = isBlankLine(text, lineStart, lineEnd);
+			if(fence != '\0') {
+				if(isFenceLine(text, lineStart, lineEnd, fence))
+					fence = '\0';
+			}
+			else {
+				if(content && blankBefore && !blank && lineStart - starts[count - 1] >= chunkSize
+						&& canStartChunk(text, lineStart)) {
+					if(count == starts.length)
+						starts = Arrays.copyOf(starts, count * 2);
+					starts[count++] = lineStart;
+				}
+				if(isFenceLine(text, lineStart, lineEnd, '\0'))
+					fence = text.charAt(lineStart);
+			}
+			blankBefore = blank;
+			content |= !blank;
+			lineStart = lineEnd + 1;
+		}
+		return Arrays.copyOf(starts, count);
+	}
+
+	//the chunk is ended at a block boundary: the last block is ended and all markers are stopped (a pending list is not)
+	static boolean isClosed(int r, SMDMarkers markers) {
+		if(r != SMDParser.SMD_BLOCK_END && r != SMDParser.SMD_BLOCK_GETS_EMPTY_LINE)
+			return false;
+		int depth = 0;
+		for(int i = 0; i < markers.markedLength(); i++) {
+			if(markers.isMarkerStart(i))
+				depth++;
+			if(markers.isMarkerStop(i))
+				depth--;
+		}
+		return depth == 0;
+	}
+
+	static boolean isBlankLine(CharSequence text, int start, int end) {
+		for(int i = start; i < end; i++) {
+			if(!Character.isWhitespace(text.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	//three or more ~ or `, of the type if given
+	static boolean isFenceLine(CharSequence text, int start, int end, char type) {
+		if(end - start < 3)
+			return false;
+		char ch = text.charAt(start);
+		if(type != '\0' ? ch != type : ch != '~' && ch != '`')
+			return false;
+		return text.charAt(start + 1) == ch && text.charAt(start + 2) == ch;
+	}
+
+	//the line cannot be a part of the block before the blank line
+	static boolean canStartChunk(CharSequence text, int start) {
+		char ch = text.charAt(start);
+		if(Character.isWhitespace(ch) || Character.isISOControl(ch))
+			return false;
+		switch(ch) {
+		case '>': //quote
+		case '*': //unordered list
+		case '-':
+		case '+':
+		case '=':
+			return false;
+		}
+		//ordered list item: 1. a) iv. 10.
+		for(int i = start; i < Math.min(start + 5, text.length()); i++) {
+			char c = text.charAt(i);
+			if(c == '.' || c == ')')
+				return i == start;
+			if(!Character.isLetterOrDigit(c))
+				return true;
+		}
+		return true;
+	}
+
+	//a pair for a worker of the ForkJoinPool, it may add a spare worker while all pairs are in use
+	private final class ChainBorrower implements ForkJoinPool.ManagedBlocker {
+
+		private SMDParserChainPool.Entry<SMDHtmlRender> entry;
+
+		@Override
+		public boolean isReleasable() {
+			if(entry == null)
+				entry = chainPool.tryBorrow();
+			return entry != null;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if(entry == null)
+				entry = chainPool.borrow();
+			return true;
+		}
+	}
+
+	private final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence text;
+		private final int start;
+		private final int end;
+		private final boolean rendering;
+
+		//the chunk ended at a block boundary
+		private boolean closed;
+		private String html;
+		private SMDMarkers markers;
+
+		private ChunkTask(CharSequence text, int start, int end, boolean rendering) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.rendering = rendering;
+		}
+
+		@Override
+		protected void compute() {
+			CharBuffer buffer;
+			if(end == text.length() && end > start) { //the end of the document, the last line may be without a new line
+				buffer = CharBuffer.allocate(end - start + 1);
+				buffer.append(text, start, end).append('\u001C').flip();
+			}
+			else
+				buffer = CharBuffer.wrap(text, start, end).slice();
+			ChainBorrower borrower = new ChainBorrower();
+			try {
+				ForkJoinPool.managedBlock(borrower);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while borrowing a parser", e);
+			}
+			try(SMDParserChainPool.Entry<SMDHtmlRender> entry = borrower.entry) {
+				SMDParser parser = entry.parser();
+				int r = parser.parseNext(buffer);
+				closed = isClosed(r, parser.markers());
+				parser.endBlock(buffer.position());
+
+				if(rendering) {
+					StringBuilder sb = new StringBuilder((end - start) * 2);
+					entry.render().produceHtml(parser.markers(), buffer, sb);
+					html = sb.toString();
+				}
+				else {
+					markers = new SMDMarkers(parser.markers().markedLength() + 1);
+					markers.appendMarkers(parser.markers(), 0);
+				}
+			}
+		}
+	}
+}
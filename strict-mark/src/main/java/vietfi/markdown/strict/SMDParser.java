@@ -131,6 +131,28 @@ public interface SMDParser {
 	 */
 	public int compact(int position);
 	
+	/**
+	 * Check whether a new block of this parser can begin with the character (the first char of the line).
+	 * 
+	 * The chain uses it to skip the parsers which certainly return SMD_BLOCK_INVALID without scanning the line. It must be conservative,
+	 * a parser in the middle of its block (after SMD_BLOCK_CONTINUE or SMD_VOID) is always called regardless this method.
+	 * 
+	 * @param ch the first char of the line
+	 * @return false if the parser never accepts a line started with the char, true by default.
+	 */
+	public default boolean canStartWith(char ch) {
+		return true;
+	}
+	
+	/**
+	 * Reset the parser to the initial state for parsing a new document, without reallocating.
+	 * 
+	 * The markers are reset if they are owned by the parser (created internally). The shared markers are reset by the owner (the chain).
+	 * Nothing by default, a parser keeping a state from a line to the next one should override it.
+	 */
+	public default void reset() {
+	}
+	
 	/**
 	 * get the markers
 	 * @return
@@ -31,22 +31,125 @@ import vietfi.markdown.strict.block.SMDParagraphParser;
 import vietfi.markdown.strict.block.SMDQuoteBlockParser;
 import vietfi.markdown.strict.block.SMDUnorderedListBlockParser;
 import vietfi.markdown.strict.block.UnparseableBlockParser;
+import vietfi.markdown.strict.jfr.SMDParseEvent;
+import vietfi.markdown.strict.line.SMDLineParser;
 
 /** 
  * This class to create a chain of SMDParser to parse the markdown buffer into markers.
  * 
  *  The markers can be use for generate HTML or XHTML.
  *  
+ *  For each new block, the first char of line is looked up in a dispatch table (see SMDParser.canStartWith),
+ *  only the parsers which can start with that char are tried in the chain order.
+ *  
  */
 public class SMDParserChain implements SMDParser {
 
+	protected static final boolean FIRST_CHAR_DISPATCH;
+	
+	static {
+		String dispatchString = System.getProperty("smd.chain.dispatch", String.valueOf("true"));
+		FIRST_CHAR_DISPATCH = Boolean.parseBoolean(dispatchString);
+	}
+	
 	private final SMDMarkers markers;
 	private final SMDParser[] parsers;
 	private SMDParser current = null;
+	private int currentIndex = -1;
+	
+	//bit i is on if parsers[i] can start a block with the ASCII char
+	private final int[] firstCharMasks;
+	//all parsers in the chain (maximum 32 parsers for dispatching)
+	private final int allMask;
+	//parsers which are in the middle of a block (SMD_VOID or SMD_BLOCK_CONTINUE), they are called without checking first char
+	private int pendingMask = 0;
+	private boolean dispatching;
+	
+	//counters of parsers (same index), null if the statistics are disabled
+	private SMDParserStatistics statistics;
+	private SMDParserStatistics.Counters[] counters;
 	
 	private SMDParserChain(SMDMarkers markers, SMDParser... parsers) {
 		this.markers = markers;
 		this.parsers = parsers;
+		this.allMask = parsers.length >= 32 ? -1 : (1 << parsers.length) - 1;
+		this.dispatching = FIRST_CHAR_DISPATCH && parsers.length <= 32;
+		
+		this.firstCharMasks = new int[128];
+		for(char ch = 0; ch < firstCharMasks.length; ch++)
+			firstCharMasks[ch] = computeMask(ch);
+		
+		if(SMDParserStatistics.ENABLED)
+			setStatistics(SMDParserStatistics.getDefault());
+	}
+	
+	private int computeMask(char ch) {
+		int mask = 0;
+		for(int i = 0; i < parsers.length; i++) {
+			if(parsers[i].canStartWith(ch))
+				mask |= 1 << i;
+		}
+		//the last (unparseable) is always called
+		return mask | 1 << (parsers.length - 1);
+	}
+	
+	/**
+	 * Enable or disable the dispatching by the first char of line. If disabled, every parser is tried in order for each block.
+	 * 
+	 * The default value is the system property "smd.chain.dispatch" (true if not set). The output of both modes are the same.
+	 * 
+	 * @param enabled true to call only the parsers which can start with the first char.
+	 */
+	public void setFirstCharDispatch(boolean enabled) {
+		this.dispatching = enabled && parsers.length <= 32;
+	}
+	
+	public boolean isFirstCharDispatch() {
+		return this.dispatching;
+	}
+	
+	/**
+	 * Record the calls of the parsers to the statistics, or disable it by null.
+	 * 
+	 * The default is SMDParserStatistics.getDefault() if the system property "smd.chain.statistics" is true, otherwise null.
+	 * 
+	 * @param statistics to record, or null.
+	 */
+	public void setStatistics(SMDParserStatistics statistics) {
+		SMDParserStatistics.Counters[] c = null;
+		if(statistics != null) {
+			c = new SMDParserStatistics.Counters[parsers.length];
+			for(int i = 0; i < parsers.length; i++)
+				c[i] = statistics.counters(parsers[i]);
+		}
+		this.statistics = statistics;
+		this.counters = c;
+	}
+	
+	public SMDParserStatistics getStatistics() {
+		return this.statistics;
+	}
+	
+	//call the parser at index, and record it if the statistics are enabled
+	private int parseNext(int index, CharBuffer buff) {
+		if(counters == null)
+			return parsers[index].parseNext(buff);
+		int rollbacks = markers.rollbackCount();
+		int position = buff.position();
+		int ret = parsers[index].parseNext(buff);
+		int line = ret == SMD_BLOCK_INVALID ? lineLength(buff, position) : 0;
+		counters[index].record(ret, buff.position() - position, line, markers.rollbackCount() - rollbacks);
+		return ret;
+	}
+	
+	//the chars of the line at position, with its new line
+	private static int lineLength(CharBuffer buff, int position) {
+		int end = buff.position();
+		buff.position(position);
+		int n = SMDLineParser.lookForwardNewLine(buff);
+		int length = n < 0 ? buff.remaining() : n + 1;
+		buff.position(end);
+		return length;
 	}
 	
 	/**
@@ -132,8 +235,17 @@ public class SMDParserChain implements SMDParser {
 	 * @see createParserOfStandard()
 	 */
 	public static SMDParser createParserOfStandard(int markerSize) {
-		SMDMarkers markers = new SMDMarkers(markerSize);
-		
+		return createParserOfStandard(new SMDMarkers(markerSize));
+	}
+	
+	/**
+	 * Create of standard chain on the given markers, e.g. SMDMarkers.createLongMarkers to parse a buffer over 1 million characters.
+	 * 
+	 * @param markers the markers to share by the parsers of chain.
+	 * @return same as createParserOfStandard
+	 * @see createParserOfStandard()
+	 */
+	public static SMDParser createParserOfStandard(SMDMarkers markers) {
 		return new SMDParserChain(markers,
 				new SMDHorizontalBlockParser(markers),
 				
@@ -170,26 +282,51 @@ public class SMDParserChain implements SMDParser {
 	 */
 	@Override
 	public int parseNext(CharBuffer buff) {
+		SMDParseEvent event = new SMDParseEvent();
+		event.begin();
+		int position = buff.position();
+		int marked = markers.markedLength();
+		int ret = parseBlocks(buff);
+		if(event.shouldCommit())
+			event.record(buff.position() - position, markers.markedLength() - marked, ret);
+		return ret;
+	}
+	
+	private int parseBlocks(CharBuffer buff) {
 		if(!buff.hasRemaining())
 			return SMD_VOID;
 		int ret = -1;
 		
 		while(buff.hasRemaining()) {
 			if(current != null) {//try to parsing
-				ret = current.parseNext(buff);
+				ret = parseNext(currentIndex, buff);
 				if(ret == SMD_BLOCK_CONTINUE) {
 					return SMD_BLOCK_CONTINUE;
 				}
 				if(ret == SMD_BLOCK_END || ret == SMD_BLOCK_GETS_EMPTY_LINE) {
+					pendingMask &= ~(1 << currentIndex);
 					current = null;
 					continue;
 				}
 			}
 
 			current = null;
+			//the parsers which may accept the first char, and the pending ones.
+			int mask = allMask;
+			if(dispatching) {
+				char ch = buff.get(buff.position());
+				mask = (ch < firstCharMasks.length ? firstCharMasks[ch] : computeMask(ch)) | pendingMask;
+			}
 			//invalid, try another in order.
-			for(SMDParser p : parsers) {
-				ret = p.parseNext(buff);
+			for(int i = 0; i < parsers.length; i++) {
+				if((mask & 1 << i) == 0) //it never accepts the first char
+					continue;
+				SMDParser p = parsers[i];
+				ret = parseNext(i, buff);
+				if(ret == SMD_VOID || ret == SMD_BLOCK_CONTINUE)
+					pendingMask |= 1 << i;
+				else
+					pendingMask &= ~(1 << i);
 				if(ret == SMD_VOID) {//no new line at end
 					if(p == parsers[parsers.length-1])
 						return SMD_VOID;
@@ -197,6 +334,7 @@ public class SMDParserChain implements SMDParser {
 				if(ret == SMD_BLOCK_GETS_EMPTY_LINE || ret == SMD_BLOCK_END || ret == SMD_BLOCK_CONTINUE) {
 					if(ret == SMD_BLOCK_CONTINUE) {
 						current = p;
+						currentIndex = i;
 						return SMD_BLOCK_CONTINUE;
 					}
 					//another loop
@@ -214,10 +352,26 @@ public class SMDParserChain implements SMDParser {
 	public void endBlock(int position) {
 		if(current != null) {//try to end the current
 			current.endBlock(position);
+			pendingMask &= ~(1 << currentIndex);
 			current = null;
 		}
 	}
 	
+	/**
+	 * Reset the chain and all of its parsers for parsing a new document, the markers are cleared.
+	 * 
+	 * It is cheap, nothing is reallocated. The chain can be reused even the last document was not ended.
+	 */
+	@Override
+	public void reset() {
+		for(SMDParser p : parsers)
+			p.reset();
+		current = null;
+		currentIndex = -1;
+		pendingMask = 0;
+		markers.resetMarkers();
+	}
+
 	/**
 	 * Compact the markers along with buffer compacting
 	 */
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+/**
+ * A thread-safe pool of ready-to-use parser chain and render pairs.
+ *
+ * The parser and the render are stateful, so each thread borrows a pair, uses it for one document then closes (returns) it.
+ * The pair (the parser and the render) is reset on return.
+ *
+ * Example:
+ * <pre>
+ * try (SMDParserChainPool.Entry&lt;SMDHtmlRender&gt; e = pool.borrow()) {
+ *     e.parser().parseNext(buffer);
+ *     e.render().produceHtml(e.parser().markers(), buffer, sb);
+ *     ...
+ * }
+ * </pre>
+ *
+ * The free pairs are kept in stripes (one per core by default), a thread looks at its own stripe first to avoid contention.
+ * The total of pairs is bounded by the maximum size, the borrower waits if all of them are in use.
+ *
+ * @param <R> the render type
+ */
+public class SMDParserChainPool<R extends SMDRender> {
+
+	/**
+	 * A borrowed pair of the pool. Close it to return back to the pool.
+	 *
+	 * @param <R> the render type
+	 */
+	public static final class Entry<R extends SMDRender> implements AutoCloseable {
+
+		private final SMDParserChainPool<R> pool;
+		private final SMDParser parser;
+		private final R render;
+		private final int stripe;
+		//a close by another thread sees it, only one close returns the entry
+		private final AtomicBoolean borrowed = new AtomicBoolean();
+
+		private Entry(SMDParserChainPool<R> pool, SMDParser parser, R render, int stripe) {
+			this.pool = pool;
+			this.parser = parser;
+			this.render = render;
+			this.stripe = stripe;
+		}
+
+		public SMDParser parser() {
+			return parser;
+		}
+
+		public R render() {
+			return render;
+		}
+
+		/**
+		 * Return the pair to the pool.
+		 */
+		@Override
+		public void close() {
+			pool.release(this);
+		}
+	}
+
+	private final Supplier<SMDParser> parserFactory;
+	private final Supplier<R> renderFactory;
+
+	private final List<ConcurrentLinkedQueue<Entry<R>>> stripes;
+	private final Semaphore permits;
+	private final int maximumSize;
+	private final AtomicInteger created = new AtomicInteger();
+
+	//statistics of borrowing
+	private final LongAdder borrowCount = new LongAdder();
+	private final LongAdder waitCount = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+
+	/**
+	 * Create a pool of the standard parser chain (see SMDParserChain.createParserOfStandard) and HtmlRenderImpl.
+	 *
+	 * One stripe per core, and pre-warmed with one pair per stripe.
+	 *
+	 * @param maximumSize the maximum number of pairs.
+	 * @return the pool
+	 */
+	public static SMDParserChainPool<SMDHtmlRender> createHtmlRenderPool(int maximumSize) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		return new SMDParserChainPool<>(cores, maximumSize, Math.min(cores, maximumSize),
+				SMDParserChain::createParserOfStandard, HtmlRenderImpl::new);
+	}
+
+	/**
+	 * Create a pool.
+	 *
+	 * @param stripeCount number of stripes, the number of cores is recommended.
+	 * @param maximumSize the maximum number of pairs (borrowed and free).
+	 * @param initialSize the number of pairs to create at start (pre-warming).
+	 * @param parserFactory to create a parser, mostly the SMDParserChain.
+	 * @param renderFactory to create a render.
+	 */
+	public SMDParserChainPool(int stripeCount, int maximumSize, int initialSize, Supplier<SMDParser> parserFactory, Supplier<R> renderFactory) {
+		if(stripeCount <= 0 || maximumSize <= 0)
+			throw new IllegalArgumentException("Stripe count and maximum size must be positive");
+		if(initialSize < 0 || initialSize > maximumSize)
+			throw new IllegalArgumentException("Initial size must be in range of 0.."+maximumSize);
+
+		this.parserFactory = parserFactory;
+		this.renderFactory = renderFactory;
+		this.maximumSize = maximumSize;
+		this.permits = new Semaphore(maximumSize);
+		this.stripes = new ArrayList<>(stripeCount);
+		for(int i = 0; i < stripeCount; i++)
+			stripes.add(new ConcurrentLinkedQueue<>());
+
+		//pre-warm, distributed to stripes
+		for(int i = 0; i < initialSize; i++) {
+			stripes.get(i % stripeCount).offer(newEntry(i % stripeCount));
+		}
+	}
+
+	private Entry<R> newEntry(int stripe) {
+		created.incrementAndGet();
+		return new Entry<>(this, parserFactory.get(), renderFactory.get(), stripe);
+	}
+
+	private int homeStripe() {
+		return (int) (Thread.currentThread().getId() % stripes.size());
+	}
+
+	/**
+	 * Borrow a pair, wait if all pairs are in use.
+	 *
+	 * @return the borrowed pair, close it after use.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public Entry<R> borrow() throws InterruptedException {
+		if(!permits.tryAcquire()) {
+			long start = System.nanoTime();
+			permits.acquire();
+			recordWait(System.nanoTime() - start);
+		}
+		return take();
+	}
+
+	/**
+	 * Borrow a free pair, without waiting.
+	 *
+	 * @return the borrowed pair, or null if all pairs are in use.
+	 */
+	public Entry<R> tryBorrow() {
+		if(!permits.tryAcquire())
+			return null;
+		return take();
+	}
+
+	/**
+	 * Borrow a pair, wait up to the timeout if all pairs are in use.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit unit of the timeout
+	 * @return the borrowed pair, or null if the timeout elapsed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public Entry<R> borrow(long timeout, TimeUnit unit) throws InterruptedException {
+		if(!permits.tryAcquire()) {
+			long start = System.nanoTime();
+			boolean acquired = permits.tryAcquire(timeout, unit);
+			recordWait(System.nanoTime() - start);
+			if(!acquired)
+				return null;
+		}
+		return take();
+	}
+
+	private void recordWait(long nanos) {
+		waitCount.increment();
+		totalWaitNanos.add(nanos);
+		maxWaitNanos.accumulate(nanos);
+	}
+
+	//a permit is held
+	private Entry<R> take() {
+		borrowCount.increment();
+		int home = homeStripe();
+		Entry<R> e = null;
+		for(int i = 0; i < stripes.size() && e == null; i++) {
+			e = stripes.get((home + i) % stripes.size()).poll();
+		}
+		if(e == null) //lazy creation, bounded by the permits
+			e = newEntry(home);
+		e.borrowed.set(true);
+		return e;
+	}
+
+	private void release(Entry<R> e) {
+		if(!e.borrowed.compareAndSet(true, false))
+			throw new IllegalStateException("The entry has been returned already");
+
+		try {
+			//a chain resets its shared markers, a single parser does only if it owns them
+			e.parser.reset();
+			e.parser.markers().resetMarkers();
+			//the render keeps the spans of a link and a marker not written out
+			e.render.reset();
+
+			//the entry must be visible before the permit
+			stripes.get(e.stripe).offer(e);
+		}
+		finally {
+			//if a reset fails, the entry is discarded, a new pair is created on the next borrow
+			permits.release();
+		}
+	}
+
+	/**
+	 * @return the maximum number of pairs.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return number of pairs have been created.
+	 */
+	public int getCreatedCount() {
+		return created.get();
+	}
+
+	/**
+	 * @return number of pairs in use.
+	 */
+	public int getBorrowedCount() {
+		return maximumSize - permits.availablePermits();
+	}
+
+	/**
+	 * @return total of borrow calls.
+	 */
+	public long getBorrowCount() {
+		return borrowCount.sum();
+	}
+
+	/**
+	 * @return number of borrow calls which had to wait for a free pair.
+	 */
+	public long getWaitCount() {
+		return waitCount.sum();
+	}
+
+	/**
+	 * @return total of waiting time of borrowers, in nanoseconds.
+	 */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.sum();
+	}
+
+	/**
+	 * @return the longest waiting time of a borrower, in nanoseconds.
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Statistics of the dispatching of parser chains, by parser class.
+ *
+ * For each parser of a chain, it counts the parseNext calls (attempts), the accepted ones (SMD_BLOCK_CONTINUE, SMD_BLOCK_END and SMD_BLOCK_GETS_EMPTY_LINE),
+ * the SMD_BLOCK_INVALID rejections, the SMD_VOID stalls, the characters consumed by the calls (the position delta of the buffer)
+ * and the rollback calls of markers within the calls.
+ * The consumed characters of all parsers are the parsed length of text, each character is counted once. The rejected characters are consumed
+ * by the calls which return SMD_BLOCK_INVALID (e.g. a list ends after its blank line), a rejection at the start of line counts nothing:
+ * a rejecting parser resets the buffer to where it started. The rejected line characters are an upper bound of the characters read by
+ * the rejections: the line where the call started (with its new line), or the consumed characters if more.
+ *
+ * The counts are aggregated over all chains of the statistics (LongAdder, striped by threads), so a chain can be used by any thread.
+ * It is disabled by default, a chain records to the default statistics if the system property "smd.chain.statistics" is true,
+ * or see SMDParserChain.setStatistics.
+ *
+ * Example:
+ * <pre>
+ * SMDParserStatistics stats = SMDParserStatistics.getDefault();
+ * stats.registerMBean();
+ * ((SMDParserChain) parser).setStatistics(stats);
+ * </pre>
+ */
+public class SMDParserStatistics implements SMDParserStatisticsMXBean {
+
+	public static final boolean ENABLED;
+
+	static {
+		String enabledString = System.getProperty("smd.chain.statistics", String.valueOf("false"));
+		ENABLED = Boolean.parseBoolean(enabledString);
+	}
+
+	private static final SMDParserStatistics DEFAULT = new SMDParserStatistics();
+
+	/**
+	 * The counters of a parser class.
+	 */
+	static final class Counters {
+		final String name;
+		final LongAdder attempts = new LongAdder();
+		final LongAdder accepts = new LongAdder();
+		final LongAdder invalids = new LongAdder();
+		final LongAdder voids = new LongAdder();
+		final LongAdder consumedChars = new LongAdder();
+		final LongAdder rejectedChars = new LongAdder();
+		final LongAdder rejectedLineChars = new LongAdder();
+		final LongAdder rollbacks = new LongAdder();
+
+		Counters(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Record a parseNext call.
+		 *
+		 * @param result of parseNext.
+		 * @param consumed characters of the call, the position delta of the buffer.
+		 * @param line characters of the line where the call started, with its new line.
+		 * @param rollbacks the rollback calls of markers.
+		 */
+		void record(int result, int consumed, int line, int rollbacks) {
+			attempts.increment();
+			if(consumed != 0)
+				consumedChars.add(consumed);
+			if(result == SMDParser.SMD_BLOCK_INVALID) {
+				invalids.increment();
+				if(consumed != 0)
+					rejectedChars.add(consumed);
+				rejectedLineChars.add(Math.max(consumed, line));
+			}
+			else if(result == SMDParser.SMD_VOID)
+				voids.increment();
+			else
+				accepts.increment();
+			if(rollbacks != 0)
+				this.rollbacks.add(rollbacks);
+		}
+
+		void reset() {
+			attempts.reset();
+			accepts.reset();
+			invalids.reset();
+			voids.reset();
+			consumedChars.reset();
+			rejectedChars.reset();
+			rejectedLineChars.reset();
+			rollbacks.reset();
+		}
+	}
+
+	/**
+	 * A snapshot of the counts of a parser class.
+	 */
+	public static final class ParserCounts {
+		private final String name;
+		private final long attemptCount;
+		private final long acceptCount;
+		private final long invalidCount;
+		private final long voidCount;
+		private final long consumedChars;
+		private final long rejectedChars;
+		private final long rejectedLineChars;
+		private final long rollbackCount;
+
+		ParserCounts(Counters c) {
+			this.name = c.name;
+			this.attemptCount = c.attempts.sum();
+			this.acceptCount = c.accepts.sum();
+			this.invalidCount = c.invalids.sum();
+			this.voidCount = c.voids.sum();
+			this.consumedChars = c.consumedChars.sum();
+			this.rejectedChars = c.rejectedChars.sum();
+			this.rejectedLineChars = c.rejectedLineChars.sum();
+			this.rollbackCount = c.rollbacks.sum();
+		}
+
+		/**
+		 * @return the class name of parser.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public long getAttemptCount() {
+			return attemptCount;
+		}
+
+		public long getAcceptCount() {
+			return acceptCount;
+		}
+
+		public long getInvalidCount() {
+			return invalidCount;
+		}
+
+		public long getVoidCount() {
+			return voidCount;
+		}
+
+		public long getConsumedChars() {
+			return consumedChars;
+		}
+
+		public long getRejectedChars() {
+			return rejectedChars;
+		}
+
+		public long getRejectedLineChars() {
+			return rejectedLineChars;
+		}
+
+		public long getRollbackCount() {
+			return rollbackCount;
+		}
+
+		@Override
+		public String toString() {
+			return name+": attempts="+attemptCount+", accepts="+acceptCount+", invalids="+invalidCount
+					+", voids="+voidCount+", consumedChars="+consumedChars+", rejectedChars="+rejectedChars
+					+", rejectedLineChars="+rejectedLineChars+", rollbacks="+rollbackCount;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+	//in order of the first use
+	private final List<Counters> ordered = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @return the statistics used by the chains if the system property "smd.chain.statistics" is true.
+	 */
+	public static SMDParserStatistics getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param parser of a chain.
+	 * @return the counters of the parser class.
+	 */
+	Counters counters(SMDParser parser) {
+		return counters.computeIfAbsent(parser.getClass().getName(), name -> {
+			Counters c = new Counters(name);
+			ordered.add(c);
+			return c;
+		});
+	}
+
+	/**
+	 * @param parserClass class of parser.
+	 * @return the counts of the parser class, or null if it is never used.
+	 */
+	public ParserCounts getParser(Class<? extends SMDParser> parserClass) {
+		Counters c = counters.get(parserClass.getName());
+		return c == null ? null : new ParserCounts(c);
+	}
+
+	@Override
+	public List<ParserCounts> getParsers() {
+		List<ParserCounts> list = new ArrayList<>(ordered.size());
+		for(Counters c : ordered)
+			list.add(new ParserCounts(c));
+		return list;
+	}
+
+	@Override
+	public long getAttemptCount() {
+		long sum = 0;
+		for(Counters c : ordered)
+			sum += c.attempts.sum();
+		return sum;
+	}
+
+	@Override
+	public long getConsumedChars() {
+		long sum = 0;
+		for(Counters c : ordered)
+			sum += c.consumedChars.sum();
+		return sum;
+	}
+
+	@Override
+	public long getInvalidCount() {
+		long sum = 0;
+		for(Counters c : ordered)
+			sum += c.invalids.sum();
+		return sum;
+	}
+
+	@Override
+	public long getRejectedChars() {
+		long sum = 0;
+		for(Counters c : ordered)
+			sum += c.rejectedChars.sum();
+		return sum;
+	}
+
+	@Override
+	public long getRejectedLineChars() {
+		long sum = 0;
+		for(Counters c : ordered)
+			sum += c.rejectedLineChars.sum();
+		return sum;
+	}
+
+	@Override
+	public void reset() {
+		for(Counters c : ordered)
+			c.reset();
+	}
+
+	/**
+	 * Register to the platform MBean server as OBJECT_NAME.
+	 *
+	 * @return the registered name.
+	 * @throws JMException if the name is registered already.
+	 */
+	public ObjectName registerMBean() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		return name;
+	}
+
+	/**
+	 * Unregister from the platform MBean server, if registered.
+	 *
+	 * @throws JMException if failed.
+	 */
+	public void unregisterMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(server.isRegistered(name))
+			server.unregisterMBean(name);
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.util.List;
+
+/**
+ * The management interface of SMDParserStatistics, registered as OBJECT_NAME.
+ */
+public interface SMDParserStatisticsMXBean {
+
+	String OBJECT_NAME = "vietfi.markdown.strict:type=SMDParserStatistics";
+
+	/**
+	 * @return the counts of each parser class, in order of the first use.
+	 */
+	List<SMDParserStatistics.ParserCounts> getParsers();
+
+	/**
+	 * @return total of parseNext calls of all parsers.
+	 */
+	long getAttemptCount();
+
+	/**
+	 * @return total of SMD_BLOCK_INVALID results of all parsers.
+	 */
+	long getInvalidCount();
+
+	/**
+	 * @return total of characters consumed by the parsers, each character of the parsed text is counted once.
+	 */
+	long getConsumedChars();
+
+	/**
+	 * @return total of characters consumed by the calls which returned SMD_BLOCK_INVALID.
+	 */
+	long getRejectedChars();
+
+	/**
+	 * @return total of the lines where the calls which returned SMD_BLOCK_INVALID started, an upper bound of the characters they read.
+	 */
+	long getRejectedLineChars();
+
+	/**
+	 * Reset all counts to zero.
+	 */
+	void reset();
+}
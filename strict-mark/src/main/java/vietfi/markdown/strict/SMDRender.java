@@ -25,4 +25,11 @@ public interface SMDRender {
 	 */
 	void setClassNameForTag(String name, int classForTag);
 	
+	/**
+	 * Clear the state kept from a call to the next one (the spans of a link, a marker not written out yet),
+	 * to render the next document. A render of SMDParserChainPool is reset on return.
+	 */
+	default void reset() {
+	}
+	
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.CharBuffer;
+
+/**
+ * A circular buffer of characters for the streaming input, the consumed characters are dropped by moving the head, without copying the pending ones.
+ *
+ * The array is twice of the capacity, the pending characters are from the head (0..capacity-1) and they are written after the tail,
+ * so the window of pending characters is always contiguous, it is given to the parsers as a normal CharBuffer (a slice of the array),
+ * the position 0 of the window is the head.
+ * When the head passes the capacity, the pending characters (only) are moved back by the capacity, each character is copied at most once.
+ *
+ * The cycle:
+ * <pre>
+ * CharBuffer target = ring.writeRegion();
+ * ring.written(reader.read(target));
+ * CharBuffer window = ring.window(); //parse and render
+ * ring.consume(n);
+ * </pre>
+ */
+public class SMDRingBuffer {
+
+	private char[] data;
+	private int capacity;
+	private int head; //0..capacity-1
+	private int length; //of the pending characters
+
+	//the writing view over the whole array
+	private CharBuffer writer;
+	//the window view, it is reused while the head is not moved
+	private CharBuffer window;
+	private int windowHead = -1;
+
+	public SMDRingBuffer(int capacity) {
+		if(capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive");
+		this.capacity = capacity;
+		this.data = new char[capacity * 2];
+		this.writer = CharBuffer.wrap(data);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of pending characters.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return free space to write.
+	 */
+	public int remaining() {
+		return capacity - length;
+	}
+
+	/**
+	 * The array of the pending characters, from offset() to offset() + length(). It is valid until the next consume() or grow().
+	 *
+	 * @return the backing array.
+	 */
+	public char[] array() {
+		return data;
+	}
+
+	/**
+	 * @return index of the first pending character in array().
+	 */
+	public int offset() {
+		return head;
+	}
+
+	public void clear() {
+		head = 0;
+		length = 0;
+	}
+
+	/**
+	 * The region to write next, it is contiguous for all remaining().
+	 *
+	 * @return the shared buffer, the position and limit are set to the region.
+	 */
+	public CharBuffer writeRegion() {
+		int tail = head + length;
+		writer.limit(head + capacity).position(tail);
+		return writer;
+	}
+
+	/**
+	 * Commit the characters written into writeRegion().
+	 *
+	 * @param count of characters written, negative is ignored (end of stream).
+	 */
+	public void written(int count) {
+		if(count <= 0)
+			return;
+		if(count > remaining())
+			throw new IllegalArgumentException("Written over the remaining space");
+		length += count;
+	}
+
+	/**
+	 * Append a character, mostly the ending char (0x1C).
+	 */
+	public void append(char ch) {
+		if(length == capacity)
+			throw new IllegalStateException("Buffer is full");
+		data[head + length++] = ch;
+	}
+
+	/**
+	 * The pending characters as a CharBuffer, the position is 0 and the limit is length(). The capacity is same as this buffer.
+	 * @return the slice of the array, the same instance is returned until the next consume() or grow() moves the head.
+	 */
+	public CharBuffer window() {
+		if(windowHead != head) {
+			window = CharBuffer.wrap(data, head, capacity).slice();
+			windowHead = head;
+		}
+		window.limit(length).position(0);
+		return window;
+	}
+
+	/**
+	 * Drop the characters from head, the same as CharBuffer.compact() without copying.
+	 *
+	 * @param count of characters at the head.
+	 */
+	public void consume(int count) {
+		if(count < 0 || count > length)
+			throw new IllegalArgumentException("Consume out of pending characters: "+count);
+		head += count;
+		length -= count;
+		if(length == 0)
+			head = 0;
+		else if(head >= capacity) { //move the pending characters back, the written region is kept contiguous
+			System.arraycopy(data, head, data, head - capacity, length);
+			head -= capacity;
+		}
+	}
+
+	/**
+	 * Enlarge the capacity, the pending characters are moved to the head of new array.
+	 *
+	 * @param newCapacity larger than current capacity.
+	 */
+	public void grow(int newCapacity) {
+		if(newCapacity <= capacity)
+			throw new IllegalArgumentException("New capacity must be larger than "+capacity);
+		char[] newData = new char[newCapacity * 2];
+		System.arraycopy(data, head, newData, 0, length);
+		data = newData;
+		capacity = newCapacity;
+		head = 0;
+		writer = CharBuffer.wrap(data);
+		windowHead = -1;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.CharBuffer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The resolver of a link or an image URL, called by the render with the span of URL in the source buffer.
+ * 
+ * It writes the text to replace (a part of) the URL to the sink of the render, and returns how many chars are bypassed:
+ * positive from the begin of the URL, negative from the end, 0 if the URL is written as is.
+ * The render writes the chars left of the URL after the written text.
+ * 
+ * The sink of an HTML render takes the escaped text (StringBuilder, CharBuffer, or UTF-8 ByteBuffer), 
+ * the StringBuilder of XHTML writer takes the unescaped text of attribute.
+ * 
+ * Example, a CDN prefix of the absolute path:
+ * <pre>
+ * render.setImageUrlResolver((source, begin, end, sb) -&gt; {
+ * 	if(source.get(begin) != '/')
+ * 		return 0;
+ * 	sb.append("https://cdn.example.com");
+ * 	return 0;
+ * });
+ * </pre>
+ * 
+ * @param <S> the sink of the render.
+ * @see SMDUrlResolverCache
+ */
+@FunctionalInterface
+public interface SMDUrlResolver<S> {
+
+	/**
+	 * @param source the buffer of the document, read by the absolute index (get(int)), must not be modified.
+	 * @param begin of the URL in the source (inclusive).
+	 * @param end of the URL in the source (exclusive).
+	 * @param sink to write the text.
+	 * @return the chars to bypass, from the begin (positive) or from the end (negative) of the URL.
+	 */
+	int resolve(CharBuffer source, int begin, int end, S sink);
+	
+	/**
+	 * The resolver of the form method(inputBuffer, output) of the previous versions, 
+	 * called by a read-only view of the URL (the position at the begin, the limit at the end). A null result is 0.
+	 * 
+	 * The view is reused while the source buffer is the same, the resolver is for a render (not shared between threads).
+	 * 
+	 * @param <S> the sink of the render.
+	 * @param function the resolver, or null.
+	 * @return the resolver, or null.
+	 */
+	static <S> SMDUrlResolver<S> of(BiFunction<CharBuffer, S, Integer> function) {
+		if(function == null)
+			return null;
+		return new SMDUrlResolver<S>() {
+			private CharBuffer view;
+			private CharBuffer viewSource;
+
+			@Override
+			public int resolve(CharBuffer source, int begin, int end, S sink) {
+				if(viewSource != source) {
+					view = source.asReadOnlyBuffer();
+					viewSource = source;
+				}
+				view.limit(view.capacity());
+				view.position(begin);
+				view.limit(end);
+				Integer bypass = function.apply(view, sink);
+				return bypass != null ? bypass : 0;
+			}
+		};
+	}
+	
+	/**
+	 * The function of the previous versions calling the resolver, by the view of the URL (the position at the begin, the limit at the end),
+	 * for the default setters of the renders, see SMDHtmlRender.setLinkUrlResolver.
+	 * 
+	 * @param <S> the sink of the render.
+	 * @param resolver the resolver, or null.
+	 * @return the function, or null.
+	 */
+	static <S> BiFunction<CharBuffer, S, Integer> toFunction(SMDUrlResolver<S> resolver) {
+		if(resolver == null)
+			return null;
+		return (view, sink) -> resolver.resolve(view, view.position(), view.limit(), sink);
+	}
+	
+	/**
+	 * The function of XHTML writer of the previous versions calling the resolver, by a wrap of the URL,
+	 * for the default setters of SMDXhtmlWriter. The result is the resolved text then the chars left of the URL, null if not modified.
+	 * 
+	 * @param resolver the resolver, or null.
+	 * @return the function, or null.
+	 */
+	static Function<String, String> toStringFunction(SMDUrlResolver<StringBuilder> resolver) {
+		if(resolver == null)
+			return null;
+		return url -> {
+			StringBuilder sb = new StringBuilder();
+			int begin = 0;
+			int end = url.length();
+			int bypass = resolver.resolve(CharBuffer.wrap(url), begin, end, sb);
+			if(bypass == 0 && sb.length() == 0)
+				return null;
+			if(bypass > 0)
+				begin += bypass;
+			else
+				end += bypass;
+			return sb.append(url, begin, end).toString();
+		};
+	}
+	
+	/**
+	 * The resolver of XHTML writer of the previous versions: the result replaces the whole URL, or null if not modified.
+	 * 
+	 * @param function the resolver, or null.
+	 * @return the resolver of the XHTML writer, or null.
+	 */
+	static SMDUrlResolver<StringBuilder> ofString(Function<String, String> function) {
+		if(function == null)
+			return null;
+		return (source, begin, end, sb) -> {
+			StringBuilder url = new StringBuilder(end - begin);
+			for(int i = begin; i < end; i++)
+				url.append(source.get(i));
+			String resolved = function.apply(url.toString());
+			if(resolved == null)
+				return 0;
+			sb.append(resolved);
+			return begin - end; //the whole URL
+		};
+	}
+}
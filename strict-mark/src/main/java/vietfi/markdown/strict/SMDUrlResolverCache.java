@@ -0,0 +1,279 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded memo of a URL resolver, thread-safe: a URL is resolved once, then its written text and its result are replayed.
+ * 
+ * The memo is a table of the slots by the hash of URL, a URL is in one of the WAYS slots from its hash,
+ * a new URL takes an empty one or replaces one in turn (no list, no lock).
+ * A hit compares the whole URL (not only its hash) and does not allocate.
+ * A URL or a written text longer than MAXIMUM_LENGTH is not kept.
+ * The resolver must be deterministic, the same text and result for the same URL.
+ * 
+ * Example:
+ * <pre>
+ * SMDUrlResolver&lt;StringBuilder&gt; cdn = ...;
+ * render.setImageUrlResolver(SMDUrlResolverCache.ofStringBuilder(cdn, SMDUrlResolverCache.DEFAULT_MAXIMUM_ENTRIES));
+ * </pre>
+ * 
+ * @param <S> the sink of the render.
+ */
+public abstract class SMDUrlResolverCache<S> implements SMDUrlResolver<S> {
+
+	public static final int DEFAULT_MAXIMUM_ENTRIES = 1024;
+	
+	/**
+	 * Chars of URL, or chars (bytes) of the written text, to keep.
+	 */
+	public static final int MAXIMUM_LENGTH = 2048;
+	
+	/**
+	 * The slots of a URL, a few URLs of the same slot are kept together.
+	 */
+	public static final int WAYS = 4;
+	
+	private static final class Entry {
+		final int hash;
+		final char[] url;
+		final Object text; //char[] or byte[] of the sink
+		final int bypass;
+		
+		Entry(int hash, char[] url, Object text, int bypass) {
+			this.hash = hash;
+			this.url = url;
+			this.text = text;
+			this.bypass = bypass;
+		}
+	}
+	
+	private final SMDUrlResolver<S> resolver;
+	private final AtomicReferenceArray<Entry> entries;
+	private final int mask;
+	private int victim; //the replaced way in turn, a race is harmless
+	
+	//statistics
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	
+	/**
+	 * @param resolver to memoize.
+	 * @param maximumEntries the maximum URLs kept, rounded down to a power of two.
+	 */
+	protected SMDUrlResolverCache(SMDUrlResolver<S> resolver, int maximumEntries) {
+		if(resolver == null)
+			throw new IllegalArgumentException("Resolver must not be null");
+		if(maximumEntries <= 0)
+			throw new IllegalArgumentException("Maximum entries must be positive");
+		this.resolver = resolver;
+		this.entries = new AtomicReferenceArray<>(Integer.highestOneBit(maximumEntries));
+		this.mask = entries.length() - 1;
+	}
+	
+	/**
+	 * @param resolver of HtmlRenderImpl or XhtmlWriterImpl.
+	 * @param maximumEntries the maximum URLs kept.
+	 * @return the memo of resolver.
+	 */
+	public static SMDUrlResolverCache<StringBuilder> ofStringBuilder(SMDUrlResolver<StringBuilder> resolver, int maximumEntries) {
+		return new SMDUrlResolverCache<StringBuilder>(resolver, maximumEntries) {
+			@Override
+			protected int mark(StringBuilder sink) {
+				return sink.length();
+			}
+
+			@Override
+			protected Object copy(StringBuilder sink, int mark) {
+				char[] text = new char[sink.length() - mark];
+				sink.getChars(mark, sink.length(), text, 0);
+				return text;
+			}
+
+			@Override
+			protected void replay(Object text, StringBuilder sink) {
+				sink.append((char[]) text);
+			}
+		};
+	}
+	
+	/**
+	 * @param resolver of HtmlWriterImpl.
+	 * @param maximumEntries the maximum URLs kept.
+	 * @return the memo of resolver.
+	 */
+	public static SMDUrlResolverCache<CharBuffer> ofCharBuffer(SMDUrlResolver<CharBuffer> resolver, int maximumEntries) {
+		return new SMDUrlResolverCache<CharBuffer>(resolver, maximumEntries) {
+			@Override
+			protected int mark(CharBuffer sink) {
+				return sink.position();
+			}
+
+			@Override
+			protected Object copy(CharBuffer sink, int mark) {
+				char[] text = new char[sink.position() - mark];
+				for(int i = 0; i < text.length; i++)
+					text[i] = sink.get(mark + i);
+				return text;
+			}
+
+			@Override
+			protected void replay(Object text, CharBuffer sink) {
+				sink.put((char[]) text);
+			}
+		};
+	}
+	
+	/**
+	 * @param resolver of HtmlByteWriterImpl.
+	 * @param maximumEntries the maximum URLs kept.
+	 * @return the memo of resolver.
+	 */
+	public static SMDUrlResolverCache<ByteBuffer> ofByteBuffer(SMDUrlResolver<ByteBuffer> resolver, int maximumEntries) {
+		return new SMDUrlResolverCache<ByteBuffer>(resolver, maximumEntries) {
+			@Override
+			protected int mark(ByteBuffer sink) {
+				return sink.position();
+			}
+
+			@Override
+			protected Object copy(ByteBuffer sink, int mark) {
+				byte[] text = new byte[sink.position() - mark];
+				for(int i = 0; i < text.length; i++)
+					text[i] = sink.get(mark + i);
+				return text;
+			}
+
+			@Override
+			protected void replay(Object text, ByteBuffer sink) {
+				sink.put((byte[]) text);
+			}
+		};
+	}
+	
+	/**
+	 * @param sink before the resolver.
+	 * @return the mark of the written text (e.g. the position).
+	 */
+	protected abstract int mark(S sink);
+	
+	/**
+	 * @param sink after the resolver.
+	 * @param mark before the resolver.
+	 * @return a copy of the written text.
+	 */
+	protected abstract Object copy(S sink, int mark);
+	
+	/**
+	 * @param text of copy.
+	 * @param sink to write the text.
+	 */
+	protected abstract void replay(Object text, S sink);
+	
+	@Override
+	public int resolve(CharBuffer source, int begin, int end, S sink) {
+		int hash = hash(source, begin, end);
+		int slot = hash ^ (hash >>> 16);
+		int empty = -1;
+		for(int i = 0; i < WAYS; i++) {
+			Entry entry = entries.get((slot + i) & mask);
+			if(entry == null) {
+				if(empty < 0)
+					empty = (slot + i) & mask;
+			}
+			else if(entry.hash == hash && matches(entry.url, source, begin, end)) {
+				hitCount.increment();
+				replay(entry.text, sink);
+				return entry.bypass;
+			}
+		}
+		missCount.increment();
+		int mark = mark(sink);
+		int bypass = resolver.resolve(source, begin, end, sink);
+		if(end - begin <= MAXIMUM_LENGTH && mark(sink) - mark <= MAXIMUM_LENGTH) {
+			char[] url = new char[end - begin];
+			for(int i = 0; i < url.length; i++)
+				url[i] = source.get(begin + i);
+			if(empty < 0)
+				empty = (slot + (victim++ & (WAYS - 1))) & mask;
+			entries.set(empty, new Entry(hash, url, copy(sink, mark), bypass));
+		}
+		return bypass;
+	}
+	
+	private static int hash(CharBuffer source, int begin, int end) {
+		int h = 0;
+		if(source.hasArray()) {
+			char[] array = source.array();
+			int offset = source.arrayOffset();
+			for(int i = offset + begin; i < offset + end; i++)
+				h = 31 * h + array[i];
+		}
+		else {
+			for(int i = begin; i < end; i++)
+				h = 31 * h + source.get(i);
+		}
+		return h;
+	}
+	
+	private static boolean matches(char[] url, CharBuffer source, int begin, int end) {
+		if(url.length != end - begin)
+			return false;
+		if(source.hasArray()) {
+			char[] array = source.array();
+			int offset = source.arrayOffset() + begin;
+			for(int i = 0; i < url.length; i++)
+				if(url[i] != array[offset + i])
+					return false;
+		}
+		else {
+			for(int i = 0; i < url.length; i++)
+				if(url[i] != source.get(begin + i))
+					return false;
+		}
+		return true;
+	}
+	
+	public void clear() {
+		for(int i = 0; i < entries.length(); i++)
+			entries.set(i, null);
+	}
+	
+	/**
+	 * @return the maximum URLs kept.
+	 */
+	public int getMaximumEntries() {
+		return entries.length();
+	}
+	
+	/**
+	 * @return number of URLs found in the memo.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	/**
+	 * @return number of URLs resolved.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+}
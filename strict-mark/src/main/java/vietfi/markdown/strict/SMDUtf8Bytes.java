@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * The UTF-8 decoding and encoding of the channels of SMDConverter, without a CharsetDecoder / CharsetEncoder. It is a codec
+ * only: the parsers still run on the decoded chars, the positions of markers are char indexes.
+ *
+ * The bytes are decoded to the real chars, the parsers see the same text as of a Reader. A run of ASCII bytes is widened
+ * directly. A sequence which is not complete at the end of input is left for the next read, a malformed one is decoded
+ * to U+FFFD as the REPLACE action of the charset decoder.
+ *
+ * Example:
+ * <pre>
+ * SMDUtf8Bytes.decode(byteBuffer, charBuffer);
+ * parser.parseNext(charBuffer.flip());
+ * ...
+ * SMDUtf8Bytes.encode(outputBuilder, 0, outputBuilder.length(), outputBytes);
+ * </pre>
+ */
+public final class SMDUtf8Bytes {
+
+	public static final char REPLACEMENT = '\uFFFD';
+
+	private SMDUtf8Bytes() {
+	}
+
+	/**
+	 * Decode the bytes from input to output, as many as the room of output.
+	 *
+	 * @param input UTF-8 bytes, in reading mode. A sequence which is not complete at the end is left.
+	 * @param output the decoded chars, in writing mode.
+	 * @return number of chars decoded.
+	 */
+	public static int decode(ByteBuffer input, CharBuffer output) {
+		int s = input.position();
+		int sEnd = input.limit();
+		int d = output.position();
+		int dEnd = output.limit();
+		boolean arrays = input.hasArray() && output.hasArray();
+		while(s < sEnd && d < dEnd) {
+			if(arrays) {
+				//ASCII and the complete sequences of 2 and 3 bytes, the others by the general path below
+				byte[] src = input.array();
+				char[] dst = output.array();
+				int i = input.arrayOffset() + s;
+				int j = output.arrayOffset() + d;
+				int iEnd = input.arrayOffset() + sEnd;
+				int jEnd = output.arrayOffset() + dEnd;
+				while(i < iEnd && j < jEnd) {
+					int lead = src[i];
+					if(lead >= 0) {
+						dst[j++] = (char) lead;
+						i++;
+					}
+					else if(lead >= (byte) 0xC2 && lead < (byte) 0xE0 && i + 1 < iEnd && (src[i + 1] & 0xC0) == 0x80) {
+						dst[j++] = (char) ((lead & 0x1F) << 6 | src[i + 1] & 0x3F);
+						i += 2;
+					}
+					else if((lead & 0xF0) == 0xE0 && i + 2 < iEnd && isSecond(lead & 0xFF, src[i + 1] & 0xFF) && (src[i + 2] & 0xC0) == 0x80
+							&& lead != (byte) 0xED) { //not a surrogate
+						dst[j++] = (char) ((lead & 0x0F) << 12 | (src[i + 1] & 0x3F) << 6 | src[i + 2] & 0x3F);
+						i += 3;
+					}
+					else
+						break;
+				}
+				s = i - input.arrayOffset();
+				d = j - output.arrayOffset();
+				if(s == sEnd || d == dEnd)
+					break;
+			}
+			int lead = input.get(s) & 0xFF;
+			if(lead < 0x80) {
+				output.put(d++, (char) lead);
+				s++;
+				continue;
+			}
+			int n = lead >= 0xF5 ? 0 : lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC2 ? 2 : 0;
+			//the valid bytes of the sequence
+			int k = 1;
+			int cp = lead & (0x7F >> n);
+			while(k < n && s + k < sEnd) {
+				int b = input.get(s + k) & 0xFF;
+				if(k == 1 ? !isSecond(lead, b) : (b & 0xC0) != 0x80)
+					break;
+				cp = cp << 6 | b & 0x3F;
+				k++;
+			}
+			if(k == n) {
+				if(cp >= 0x10000) {
+					if(dEnd - d < 2)
+						break;
+					output.put(d++, Character.highSurrogate(cp));
+					output.put(d++, Character.lowSurrogate(cp));
+				}
+				else //a surrogate is malformed in whole, as the charset decoder
+					output.put(d++, Character.isSurrogate((char) cp) ? REPLACEMENT : (char) cp);
+			}
+			else if(s + k == sEnd && n > 0) //not complete, for the next read
+				break;
+			else
+				output.put(d++, REPLACEMENT);
+			s += Math.max(k, 1);
+		}
+		int count = d - output.position();
+		input.position(s);
+		output.position(d);
+		return count;
+	}
+
+	//the second byte of a sequence, not overlong, not over U+10FFFF
+	private static boolean isSecond(int lead, int b) {
+		switch(lead) {
+		case 0xE0:
+			return b >= 0xA0 && b <= 0xBF;
+		case 0xF0:
+			return b >= 0x90 && b <= 0xBF;
+		case 0xF4:
+			return b >= 0x80 && b <= 0x8F;
+		default:
+			return b >= 0x80 && b <= 0xBF;
+		}
+	}
+
+	/**
+	 * Encode the chars to UTF-8 bytes.
+	 *
+	 * @param chars the HTML output.
+	 * @param begin the first char (inclusive).
+	 * @param end the last char (exclusive).
+	 * @param output the bytes, in writing mode.
+	 * @return the position of chars was done, it is less than end if the output is full.
+	 */
+	public static int encode(CharSequence chars, int begin, int end, ByteBuffer output) {
+		if(output.hasArray())
+			return encodeArray(chars, begin, end, output);
+		int i = begin;
+		for(; i < end; i++) {
+			char ch = chars.charAt(i);
+			if(ch < 0x80) {
+				if(!output.hasRemaining())
+					break;
+				output.put((byte) ch);
+			}
+			else {
+				int cp = ch;
+				int count = 1;
+				if(Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+					cp = Character.toCodePoint(ch, chars.charAt(i + 1));
+					count = 2;
+				}
+				if(output.remaining() < (cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4))
+					break;
+				if(cp < 0x800) {
+					output.put((byte) (0xC0 | cp >> 6));
+				}
+				else if(cp < 0x10000) {
+					output.put((byte) (0xE0 | cp >> 12));
+					output.put((byte) (0x80 | cp >> 6 & 0x3F));
+				}
+				else {
+					output.put((byte) (0xF0 | cp >> 18));
+					output.put((byte) (0x80 | cp >> 12 & 0x3F));
+					output.put((byte) (0x80 | cp >> 6 & 0x3F));
+				}
+				output.put((byte) (0x80 | cp & 0x3F));
+				i += count - 1;
+			}
+		}
+		return i;
+	}
+
+	//encode into the array of a heap buffer, without the checks of every put
+	private static int encodeArray(CharSequence chars, int begin, int end, ByteBuffer output) {
+		byte[] dst = output.array();
+		int j = output.arrayOffset() + output.position();
+		int jEnd = output.arrayOffset() + output.limit();
+		int i = begin;
+		for(; i < end; i++) {
+			char ch = chars.charAt(i);
+			if(ch < 0x80) {
+				if(j == jEnd)
+					break;
+				dst[j++] = (byte) ch;
+			}
+			else if(ch < 0x800) {
+				if(jEnd - j < 2)
+					break;
+				dst[j++] = (byte) (0xC0 | ch >> 6);
+				dst[j++] = (byte) (0x80 | ch & 0x3F);
+			}
+			else if(Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				if(jEnd - j < 4)
+					break;
+				int cp = Character.toCodePoint(ch, chars.charAt(++i));
+				dst[j++] = (byte) (0xF0 | cp >> 18);
+				dst[j++] = (byte) (0x80 | cp >> 12 & 0x3F);
+				dst[j++] = (byte) (0x80 | cp >> 6 & 0x3F);
+				dst[j++] = (byte) (0x80 | cp & 0x3F);
+			}
+			else {
+				if(jEnd - j < 3)
+					break;
+				dst[j++] = (byte) (0xE0 | ch >> 12);
+				dst[j++] = (byte) (0x80 | ch >> 6 & 0x3F);
+				dst[j++] = (byte) (0x80 | ch & 0x3F);
+			}
+		}
+		output.position(j - output.arrayOffset());
+		return i;
+	}
+}
@@ -15,9 +15,12 @@
  */
 package vietfi.markdown.strict;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.CharBuffer;
 import java.util.function.Function;
 
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -36,6 +39,72 @@ public interface SMDXhtmlWriter extends SMDRender {
 	 */
 	public void writeXhtml(SMDMarkers markers, CharBuffer buffer, XMLStreamWriter xmlWriter) throws XMLStreamException;
 	
+	/**
+	 * Produce the same elements as writeXhtml to outputBuilder, as the text of well-formed XML.
+	 * Exclusive to call writeXhtml (not mixing both).
+	 * 
+	 * The default writes the whole buffer by an XMLStreamWriter of a new factory, all markers must be in one call.
+	 * An implementation may write the XML directly, not by the StAX.
+	 * 
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param outputBuilder the output buffer.
+	 */
+	default void produceXhtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
+		StringWriter writer = new StringWriter();
+		try {
+			XMLStreamWriter xmlWriter = XMLOutputFactory.newFactory().createXMLStreamWriter(writer);
+			writeXhtml(markers, buffer, xmlWriter);
+			xmlWriter.flush();
+		}
+		catch(XMLStreamException e) {
+			throw new IllegalStateException(e);
+		}
+		outputBuilder.append(writer.getBuffer());
+	}
+	
+	/**
+	 * Produce the same elements as writeXhtml to an Appendable (e.g. a Writer of the response, a CharBuffer).
+	 * 
+	 * The default produces the whole output to a StringBuilder then appends it.
+	 * 
+	 * @param markers the markers
+	 * @param buffer (source data to copy)
+	 * @param output the output.
+	 * @throws IOException of the output.
+	 */
+	default void produceXhtml(SMDMarkers markers, CharBuffer buffer, Appendable output) throws IOException {
+		StringBuilder outputBuilder = new StringBuilder();
+		produceXhtml(markers, buffer, outputBuilder);
+		output.append(outputBuilder);
+	}
+	
+	/**
+	 * Set the link URL resolver, called by the span of URL in the buffer.
+	 * The resolver appends the unescaped text of the attribute to the StringBuilder (the XML writer escapes it).
+	 * 
+	 * The default adapts it to setLinkHrefResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a link is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setLinkUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
+		setLinkHrefResolver(SMDUrlResolver.toStringFunction(resolver));
+	}
+	
+	/**
+	 * Set the image source URL resolver, called by the span of URL in the buffer.
+	 * The resolver appends the unescaped text of the attribute to the StringBuilder (the XML writer escapes it).
+	 * 
+	 * The default adapts it to setImageSrcResolver, the renders of the library keep it without the adapter.
+	 * 
+	 * @param resolver to call when a image (img tag) is found, or null.
+	 * @see SMDUrlResolver
+	 */
+	default void setImageUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
+		setImageSrcResolver(SMDUrlResolver.toStringFunction(resolver));
+	}
+	
 	/**
 	 * Set the link URL resolver. Because the XML writer is string type for attribute so the resolver is different.
 	 * 
@@ -43,6 +112,8 @@ public interface SMDXhtmlWriter extends SMDRender {
 	 * 		it returns the unescaped text to replace the link URL
 	 * 		(or null if not modified, the render will continue as is).
 	 * 
+	 * The URL and the result are Strings, see setLinkUrlResolver.
+	 * 
 	 * @param resolver function to call when a link is found.
 	 */
 	void setLinkHrefResolver(Function<String, String> resolver);
@@ -54,6 +125,8 @@ public interface SMDXhtmlWriter extends SMDRender {
 	 * 		it returns the unescaped text to replace the link URL
 	 * 		(or null if not modified, the render will continue as is). 
 	 * 
+	 * The URL and the result are Strings, see setImageUrlResolver.
+	 * 
 	 * @param resolver function to call when a image (img tag) is found.
 	 */
 	void setImageSrcResolver(Function<String, String> resolver);
@@ -80,11 +80,22 @@ public class SMDCodeByIndentBlockParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		//space/tab of indentation or an empty line
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u001C';
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		parser.endLine(position);
 	}
 
+	@Override
+	public void reset() {
+		parser.reset();
+	}
+
 	@Override
 	public int compact(int position) {
 		return parser.compact(position);
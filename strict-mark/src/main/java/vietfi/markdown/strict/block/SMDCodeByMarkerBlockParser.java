@@ -213,6 +213,12 @@ public class SMDCodeByMarkerBlockParser implements SMDParser {
 	}
 
 	
+	@Override
+	public boolean canStartWith(char ch) {
+		//the ~~~ or ``` marker
+		return ch == '~' || ch == '`';
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		if(markerType != '\0') {
@@ -221,6 +227,13 @@ public class SMDCodeByMarkerBlockParser implements SMDParser {
 		}
 	}
 	
+	@Override
+	public void reset() {
+		markerType = '\0';
+		if(this.internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
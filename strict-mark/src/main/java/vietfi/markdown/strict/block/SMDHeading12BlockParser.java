@@ -120,11 +120,23 @@ public class SMDHeading12BlockParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;	
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		//the heading text starts with an identifier char
+		return Character.isUnicodeIdentifierStart(ch);
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		//do nothing
 	}
 	
+	@Override
+	public void reset() {
+		if(this.internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
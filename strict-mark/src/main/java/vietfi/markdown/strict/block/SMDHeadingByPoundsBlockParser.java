@@ -149,11 +149,23 @@ public class SMDHeadingByPoundsBlockParser implements SMDParser {
 		return SMD_VOID;
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		//the pound prefix
+		return ch == '#';
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		//do nothing
 	}
 	
+	@Override
+	public void reset() {
+		if(this.internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
@@ -109,11 +109,24 @@ public class SMDHorizontalBlockParser implements SMDParser {
 		return SMD_VOID;
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		//the line of marker characters only
+		return ch == '-' || ch == '_' || ch == '=';
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		//do nothing
 	}
 	
+	@Override
+	public void reset() {
+		markerType = '\0';
+		if(this.internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
@@ -59,6 +59,7 @@ public class SMDOrderedListBlockParser implements SMDParser {
 			if(list > 0) {
 				//reset spaceStopCount for next list
 				spacesOrTabLimit = 4;
+				int markedLength = parser.markers().markedLength();
 				if(itemCount > 0) { //end the last LI
 					parser.endLine(startPos);
 					parser.markers().addStopMarker(STATE_LIST_ITEM, startPos);
@@ -86,16 +87,18 @@ public class SMDOrderedListBlockParser implements SMDParser {
 				}
 				else if(r == SMDLineParser.SMD_LINE_VOID) {
 					buffer.position(startPos); //reset back to start of line
-					parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
-					if(itemCount == 0) {
-						parser.markers().rollbackLastMarkerContentStart(STATE_ORDERED_LIST);
+					//roll back this item, including the ending of the last one
+					parser.markers().setMarkerFulfill(markedLength);
+					if(itemCount == 0)
 						markerType = '\0';
-					}
 					return SMD_VOID;
 				}
 				else {
-					if(itemCount == 0)
+					if(itemCount == 0) {
+						parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
 						parser.markers().rollbackLastMarkerContentStart(STATE_ORDERED_LIST);
+						markerType = '\0'; //not a list, the next one may be of any marker
+					}
 					else {
 						parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
 						parser.markers().addStopMarker(STATE_ORDERED_LIST, startPos);
@@ -176,6 +179,12 @@ public class SMDOrderedListBlockParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		//first item (1. a. A. i.) or a blank line
+		return ch == '1' || ch == 'a' || ch == 'A' || ch == 'i' || Character.isWhitespace(ch);
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		if(itemCount > 0) { //end the last LI
@@ -188,6 +197,15 @@ public class SMDOrderedListBlockParser implements SMDParser {
 		}
 	}
 	
+	@Override
+	public void reset() {
+		markerType = '\0';
+		ending = false;
+		itemCount = 0;
+		spacesOrTabLimit = 4;
+		parser.resetAll();
+	}
+	
 	@Override
 	public int compact(int position) {
 		return parser.compact(position);
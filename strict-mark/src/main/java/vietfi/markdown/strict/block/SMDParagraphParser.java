@@ -59,7 +59,7 @@ public class SMDParagraphParser implements SMDParser {
 			else if(r == SMDLineParser.SMD_LINE_BLANK_OR_EMPTY || r == SMDLineParser.SMD_LINE_INVALID) {
 				if(pLines > 0) {
 					ending = true;
-					lineParser.markers().addStopMarker(STATE_PARAGRAPH, buff.position()-1);
+					lineParser.markers().addStopMarker(STATE_PARAGRAPH, Math.max(buff.position()-1, 0)); //the line ending may be compacted already
 					return SMD_BLOCK_END;
 				}
 				else
@@ -77,6 +77,26 @@ public class SMDParagraphParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;
 	}
 
+	@Override
+	public boolean canStartWith(char ch) {
+		if(ch == '\n' || ch == '\u001C') //empty line
+			return true;
+		if(Character.isWhitespace(ch) || Character.isISOControl(ch))
+			return false;
+		//the inline markers or text
+		switch(ch) {
+		case '~':
+		case '*':
+		case '_':
+		case '`':
+		case '[':
+		case '!':
+		case '\\':
+			return true;
+		}
+		return Character.isUnicodeIdentifierPart(ch);
+	}
+
 	@Override
 	public void endBlock(int position) {
 		if(pLines > 0) { //end the paragraph
@@ -86,6 +106,13 @@ public class SMDParagraphParser implements SMDParser {
 		}
 	}
 	
+	@Override
+	public void reset() {
+		pLines = 0;
+		ending = false;
+		lineParser.reset();
+	}
+	
 	@Override
 	public int compact(int position) {
 		return lineParser.compact(position);
@@ -89,11 +89,22 @@ public class SMDQuoteBlockParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;
 	}
 	
+	@Override
+	public boolean canStartWith(char ch) {
+		//the quote prefix or an empty line
+		return ch == '>' || ch == '\n';
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		parser.endBlock(position);
 	}
 
+	@Override
+	public void reset() {
+		parser.reset();
+	}
+
 	@Override
 	public int compact(int position) {
 		return parser.compact(position);
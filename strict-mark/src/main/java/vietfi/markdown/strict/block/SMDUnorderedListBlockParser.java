@@ -58,6 +58,7 @@ public class SMDUnorderedListBlockParser implements SMDParser {
 			if(list > 0) {
 				//next sub list
 				spacesOrTabLimit = 3;
+				int markedLength = parser.markers().markedLength();
 				if(itemCount > 0) { //end the last LI
 					parser.endLine(startPos);
 					parser.markers().addStopMarker(STATE_LIST_ITEM, startPos);
@@ -84,17 +85,17 @@ public class SMDUnorderedListBlockParser implements SMDParser {
 				}
 				else if(r == SMDLineParser.SMD_LINE_VOID) {
 					buffer.position(startPos); //reset back to start of line
-					parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
-					if(itemCount == 0) {
-						parser.markers().rollbackLastMarkerContentStart(STATE_UNORDERED_LIST);
+					//roll back this item, including the ending of the last one
+					parser.markers().setMarkerFulfill(markedLength);
+					if(itemCount == 0)
 						markerType = '\0';
-					}
 					return SMD_VOID;
 				}
 				else {
 					if(itemCount == 0) {
 						parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
 						parser.markers().rollbackLastMarkerContentStart(STATE_UNORDERED_LIST);
+						markerType = '\0'; //not a list, the next one may be of any marker
 					}
 					else {
 						parser.markers().rollbackLastMarkerContentStart(STATE_LIST_ITEM);
@@ -176,18 +177,34 @@ public class SMDUnorderedListBlockParser implements SMDParser {
 		return SMD_BLOCK_CONTINUE;
 	}
 	
+	@Override
+	public boolean canStartWith(char ch) {
+		//first item (* - +) or a blank line
+		return ch == '*' || ch == '-' || ch == '+' || Character.isWhitespace(ch);
+	}
+	
 	@Override
 	public void endBlock(int position) {
 		if(itemCount > 0) { //end the last LI
 			parser.endLine(position);
 			parser.reset();
 			parser.markers().addStopMarker(STATE_LIST_ITEM, position);
-			parser.markers().addStopMarker(STATE_ORDERED_LIST, position);
+			//the stop of this list (it was of the ordered list, rendered as </ol>)
+			parser.markers().addStopMarker(STATE_UNORDERED_LIST, position);
 			ending = true;
 			spacesOrTabLimit = 3;
 		}
 	}
 	
+	@Override
+	public void reset() {
+		markerType = '\0';
+		ending = false;
+		itemCount = 0;
+		spacesOrTabLimit = 3;
+		parser.resetAll();
+	}
+	
 	@Override
 	public int compact(int position) {
 		return parser.compact(position);
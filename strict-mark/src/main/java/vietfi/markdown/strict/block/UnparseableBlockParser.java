@@ -77,6 +77,12 @@ public class UnparseableBlockParser implements SMDParser {
 		markers.addStopContentMarker(STATE_UNPARSABLE, position, position);
 	}
 	
+	@Override
+	public void reset() {
+		if(this.internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
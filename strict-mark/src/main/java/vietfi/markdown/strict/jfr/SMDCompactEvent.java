@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A compaction of the buffer, markers and parser by SMDConverter, after rendering.
+ */
+@Name("vietfi.markdown.strict.Compact")
+@Label("Markdown Compact")
+@Category("Strict Mark")
+@Description("A compaction of the buffer, markers and parser after rendering")
+@StackTrace(false)
+public final class SMDCompactEvent extends Event {
+
+	@Label("Document Id")
+	long documentId;
+
+	@Label("Compacted")
+	@Description("Characters dropped from the buffer")
+	int compacted;
+
+	@Label("Pending")
+	@Description("Characters kept in the buffer, of an unfinished block and the unparsed line")
+	int pending;
+
+	@Label("Markers")
+	@Description("Markers kept")
+	int markers;
+
+	public void record(int compacted, int pending, int markers) {
+		this.documentId = SMDFlightRecorder.getDocumentId();
+		this.compacted = compacted;
+		this.pending = pending;
+		this.markers = markers;
+		commit();
+	}
+}
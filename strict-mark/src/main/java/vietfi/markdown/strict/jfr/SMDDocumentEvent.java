@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A conversion of a document by SMDConverter.
+ */
+@Name("vietfi.markdown.strict.Document")
+@Label("Markdown Document")
+@Category("Strict Mark")
+@Description("A conversion of markdown to HTML by SMDConverter")
+@StackTrace(false)
+public final class SMDDocumentEvent extends Event {
+
+	@Label("Document Id")
+	long documentId;
+
+	@Label("Characters")
+	@Description("Characters of the markdown input")
+	long chars;
+
+	@Label("Ring Buffer")
+	boolean ringBuffer;
+
+	public void record(long chars, boolean ringBuffer) {
+		this.documentId = SMDFlightRecorder.getDocumentId();
+		this.chars = chars;
+		this.ringBuffer = ringBuffer;
+		commit();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The document id of the JDK Flight Recorder events (see the event classes of this package), per thread.
+ *
+ * The id is set by the application (e.g. a request id) before parsing and rendering, the events of the thread carry it.
+ * If not set (0), SMDConverter sets a sequence id for a conversion while the events are recording.
+ *
+ * The events are disabled until a recording enables them, e.g. by JMC or:
+ * <pre>
+ * java -XX:StartFlightRecording:filename=smd.jfr ...
+ * </pre>
+ */
+public final class SMDFlightRecorder {
+
+	private static final ThreadLocal<long[]> DOCUMENT_ID = ThreadLocal.withInitial(() -> new long[1]);
+	private static final AtomicLong SEQUENCE = new AtomicLong();
+
+	private SMDFlightRecorder() {
+	}
+
+	/**
+	 * @param documentId of the document parsed and rendered by the current thread, 0 to clear.
+	 */
+	public static void setDocumentId(long documentId) {
+		DOCUMENT_ID.get()[0] = documentId;
+	}
+
+	/**
+	 * @return the document id of the current thread, or 0.
+	 */
+	public static long getDocumentId() {
+		return DOCUMENT_ID.get()[0];
+	}
+
+	/**
+	 * @return a new id of the sequence, from 1.
+	 */
+	public static long nextDocumentId() {
+		return SEQUENCE.incrementAndGet();
+	}
+}
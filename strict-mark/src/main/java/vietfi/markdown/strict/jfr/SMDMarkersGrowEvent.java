@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A growth of the marker array (or pages) of SMDMarkers.
+ */
+@Name("vietfi.markdown.strict.MarkersGrow")
+@Label("Markdown Markers Growth")
+@Category("Strict Mark")
+@Description("A growth of the marker array of SMDMarkers")
+public final class SMDMarkersGrowEvent extends Event {
+
+	@Label("Document Id")
+	long documentId;
+
+	@Label("Markers Layout")
+	@Description("int, long or paged")
+	String layout;
+
+	@Label("Old Capacity")
+	int oldCapacity;
+
+	@Label("New Capacity")
+	int newCapacity;
+
+	public void record(String layout, int oldCapacity, int newCapacity) {
+		this.documentId = SMDFlightRecorder.getDocumentId();
+		this.layout = layout;
+		this.oldCapacity = oldCapacity;
+		this.newCapacity = newCapacity;
+		commit();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A parseNext call of SMDParserChain.
+ */
+@Name("vietfi.markdown.strict.Parse")
+@Label("Markdown Parse")
+@Category("Strict Mark")
+@Description("A parseNext call of a parser chain")
+@StackTrace(false)
+public final class SMDParseEvent extends Event {
+
+	@Label("Document Id")
+	long documentId;
+
+	@Label("Characters")
+	@Description("Characters consumed from the buffer")
+	int chars;
+
+	@Label("Markers")
+	@Description("Markers added, negative if rolled back")
+	int markers;
+
+	@Label("Result")
+	@Description("Result code of SMDParser")
+	int result;
+
+	public void record(int chars, int markers, int result) {
+		this.documentId = SMDFlightRecorder.getDocumentId();
+		this.chars = chars;
+		this.markers = markers;
+		this.result = result;
+		commit();
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call of a render: produceHtml, appendHtml or writeXhtml.
+ */
+@Name("vietfi.markdown.strict.Render")
+@Label("Markdown Render")
+@Category("Strict Mark")
+@Description("A produceHtml, appendHtml or writeXhtml call of a render")
+@StackTrace(false)
+public final class SMDRenderEvent extends Event {
+
+	@Label("Document Id")
+	long documentId;
+
+	@Label("Render")
+	Class<?> render;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Characters")
+	@Description("Characters of the parsed buffer")
+	int chars;
+
+	@Label("Markers")
+	@Description("Markers rendered")
+	int markers;
+
+	@Label("Output")
+	@Description("Characters written (bytes of SMDHtmlByteWriter), -1 if not known (XMLStreamWriter)")
+	int output;
+
+	public void record(Class<?> render, String operation, int chars, int markers, int output) {
+		this.documentId = SMDFlightRecorder.getDocumentId();
+		this.render = render;
+		this.operation = operation;
+		this.chars = chars;
+		this.markers = markers;
+		this.output = output;
+		commit();
+	}
+}
@@ -15,10 +15,42 @@
  */
 package vietfi.markdown.strict.line;
 
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class HtmlEscapeUtil {
 
+	//the escapes of ASCII by escapeHtml, null if the char is kept as it is (e.g. '\t' of not safe quote)
+	private static final String[] ESCAPES = new String[128];
+	private static final String[] QUOTE_ESCAPES = new String[128];
+
+	//the same as bytes, of the chars below U+00A0 (the C1 controls too)
+	private static final byte[][] ESCAPE_BYTES = new byte[0xA0][];
+	private static final byte[][] QUOTE_ESCAPE_BYTES = new byte[0xA0][];
+	private static final byte[] LINE_SEPARATOR_BYTES = escapeHtml('\u2028', false).getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] PARAGRAPH_SEPARATOR_BYTES = escapeHtml('\u2029', false).getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for(char c = 0; c < 128; c++) {
+			ESCAPES[c] = changedEscape(c, false);
+			QUOTE_ESCAPES[c] = changedEscape(c, true);
+		}
+		for(char c = 0; c < 0xA0; c++) {
+			String escape = changedEscape(c, false);
+			ESCAPE_BYTES[c] = escape != null ? escape.getBytes(StandardCharsets.US_ASCII) : null;
+			escape = changedEscape(c, true);
+			QUOTE_ESCAPE_BYTES[c] = escape != null ? escape.getBytes(StandardCharsets.US_ASCII) : null;
+		}
+	}
+
+	private static String changedEscape(char c, boolean safeQuote) {
+		String escape = escapeHtml(c, safeQuote);
+		if(escape != null && escape.length() == 1 && escape.charAt(0) == c)
+			return null;
+		return escape;
+	}
+
     /**
      * Escapes special HTML characters in a string to their safe representations.
      *
@@ -94,19 +126,25 @@ public class HtmlEscapeUtil {
     	int upTo = Math.min(end, buffer.limit()); //assuming to capacity
     	if(upTo - begin <= 0)
     		throw new IllegalArgumentException("output's ending is passes over min(end, limit) minus reserved");
+    	if(buffer.hasArray()) {
+    		int offset = buffer.arrayOffset(); //a slice of the array
+    		return writeWithEscapeHtml(safeQuote, buffer.array(), offset + begin, offset + upTo, reserved, output) - offset;
+    	}
+    	
+    	String[] table = safeQuote ? QUOTE_ESCAPES : ESCAPES;
     	int j = begin;
     	for (; j<upTo; j++) {
     		if(output.remaining() < reserved) //don't append, we has to reserve some spaces
 				break;
 			char c = buffer.get(j);
-			String escape = HtmlEscapeUtil.escapeHtml(c, safeQuote);
+			String escape = escape(c, table, safeQuote);
 			if(escape != null) {
 				output.append(escape);
 			}
 			else if(output.remaining() < 1 + reserved) //don't append the char
 				break;
 			else
-				output.append(c);
+				output.put(c);
 		}
     	return j;
     }
@@ -134,19 +172,24 @@ public class HtmlEscapeUtil {
     	int upTo = Math.min(end, buffer.length); //assuming to the end
     	if(upTo - begin <= 0)
     		throw new IllegalArgumentException("output's ending is passes over min(end, limit) minus reserved");
+    	String[] table = safeQuote ? QUOTE_ESCAPES : ESCAPES;
     	int j = begin;
-    	for (; j<upTo; j++) {
+    	while (j<upTo) {
     		if(output.remaining() < reserved) //don't append, we has to reserve some spaces
 				break;
-			char c = buffer[j];
-			String escape = HtmlEscapeUtil.escapeHtml(c, safeQuote);
+			String escape = escape(buffer[j], table, safeQuote);
 			if(escape != null) {
 				output.append(escape);
+				j++;
+				continue;
 			}
-			else if(output.remaining() < 1 + reserved) //don't append the char
+			//copy the run of chars to keep, as much as the space
+			int run = skipRun(buffer, j + 1, upTo, table, safeQuote);
+			int n = Math.min(run - j, output.remaining() - reserved);
+			if(n <= 0) //don't append the char
 				break;
-			else
-				output.append(c);
+			output.put(buffer, j, n);
+			j += n;
 		}
     	return j;
     }
@@ -171,14 +214,15 @@ public class HtmlEscapeUtil {
     	int upTo = Math.min(end, buffer.length); //assuming to the end
     	if(upTo - begin <= 0)
     		throw new IllegalArgumentException("output's ending is passes over min(end, limit) minus reserved");
+    	String[] table = safeQuote ? QUOTE_ESCAPES : ESCAPES;
     	int j = begin;
-    	for (; j<upTo; j++) {
-    		char c = buffer[j];
-				String escape = HtmlEscapeUtil.escapeHtml(c, safeQuote);
-			if(escape != null)
-				outputBuilder.append(escape);
-			else
-				outputBuilder.append(c);
+    	while (j<upTo) {
+    		int run = skipRun(buffer, j, upTo, table, safeQuote);
+    		if(run > j) //copy the run of chars to keep
+    			outputBuilder.append(buffer, j, run - j);
+    		if(run < upTo)
+    			outputBuilder.append(escape(buffer[run], table, safeQuote));
+    		j = run + 1;
 		}
     }
     
@@ -197,21 +241,179 @@ public class HtmlEscapeUtil {
      */
     public static void appendWithEscapeHtml(boolean safeQuote, CharBuffer buffer, int begin, int end, StringBuilder outputBuilder) {
     	if(buffer.hasArray()) {
-    		appendWithEscapeHtml(safeQuote, buffer.array(), begin, end, outputBuilder);
+    		int offset = buffer.arrayOffset(); //a slice of the array
+    		appendWithEscapeHtml(safeQuote, buffer.array(), offset + begin, offset + end, outputBuilder);
     		return;
     	}
     	
     	int upTo = Math.min(end, buffer.capacity()); //assuming to the end
     	if(upTo - begin <= 0)
     		throw new IllegalArgumentException("output's ending is passes over min(end, limit) minus reserved");
+    	String[] table = safeQuote ? QUOTE_ESCAPES : ESCAPES;
     	int j = begin;
     	for (; j<upTo; j++) {
     		char c = buffer.get(j);
-				String escape = HtmlEscapeUtil.escapeHtml(c, safeQuote);
+			String escape = escape(c, table, safeQuote);
 			if(escape != null)
 				outputBuilder.append(escape);
 			else
 				outputBuilder.append(c);
 		}
     }
+    
+    /**
+     * Writes text from the input `buffer` to the `output` bytes in UTF-8, escaping unsafe characters for HTML.
+     * 
+     * An escape or a char is written only if it fits in whole, there is no reserved space.
+     * 
+     * @param safeQuote specifies whether quotes should be safely escaped
+     * @param buffer the input character buffer containing the text to be written
+     * @param begin the starting position in `buffer` (inclusive)
+     * @param end the ending position in `buffer` (exclusive)
+     * @param output the output bytes, in writing mode
+     * @return the final position up to which characters were successfully processed and written
+     * 
+     * @see #writeWithEscapeHtml(boolean, CharBuffer, int, int, int, CharBuffer)
+     */
+    public static int writeUtf8WithEscapeHtml(boolean safeQuote, CharBuffer buffer, int begin, int end, ByteBuffer output) {
+    	int upTo = Math.min(end, buffer.limit()); //assuming to capacity
+    	if(upTo - begin <= 0)
+    		throw new IllegalArgumentException("output's ending is passes over min(end, limit) minus reserved");
+    	byte[][] table = safeQuote ? QUOTE_ESCAPE_BYTES : ESCAPE_BYTES;
+    	if(buffer.hasArray() && output.hasArray()) {
+    		int offset = buffer.arrayOffset(); //a slice of the array
+    		int outputOffset = output.arrayOffset();
+    		char[] src = buffer.array();
+    		byte[] dst = output.array();
+    		int d = outputOffset + output.position();
+    		int dEnd = outputOffset + output.limit();
+    		int j = offset + begin;
+    		int stop = offset + upTo;
+    		while(j < stop) {
+    			//the run of ASCII to keep, as much as the space
+    			int n = j + Math.min(stop - j, dEnd - d);
+    			while(j < n) {
+    				char c = src[j];
+    				if(c >= 0x80 || table[c] != null)
+    					break;
+    				dst[d++] = (byte) c;
+    				j++;
+    			}
+    			if(j == stop || d == dEnd)
+    				break;
+    			char c = src[j];
+    			byte[] escape = escapeBytes(c, table);
+    			if(escape != null) {
+    				if(dEnd - d < escape.length)
+    					break;
+    				System.arraycopy(escape, 0, dst, d, escape.length);
+    				d += escape.length;
+    				j++;
+    			}
+    			else {
+    				if(dEnd - d < 4)
+    					break;
+    				int cp = c;
+    				if(Character.isHighSurrogate(c) && j + 1 < stop && Character.isLowSurrogate(src[j + 1]))
+    					cp = Character.toCodePoint(c, src[++j]);
+    				d = putUtf8(cp, dst, d);
+    				j++;
+    			}
+    		}
+    		output.position(d - outputOffset);
+    		return j - offset;
+    	}
+    	
+    	int j = begin;
+    	for (; j<upTo; j++) {
+    		char c = buffer.get(j);
+    		byte[] escape = escapeBytes(c, table);
+    		if(escape != null) {
+    			if(output.remaining() < escape.length)
+    				break;
+    			output.put(escape);
+    		}
+    		else if(c < 0x80) {
+    			if(!output.hasRemaining())
+    				break;
+    			output.put((byte) c);
+    		}
+    		else {
+    			if(output.remaining() < 4)
+    				break;
+    			int cp = c;
+    			if(Character.isHighSurrogate(c) && j + 1 < upTo && Character.isLowSurrogate(buffer.get(j + 1)))
+    				cp = Character.toCodePoint(c, buffer.get(++j));
+    			if(cp < 0x800) {
+    				output.put((byte) (0xC0 | cp >> 6));
+    			}
+    			else if(cp < 0x10000) {
+    				output.put((byte) (0xE0 | cp >> 12));
+    				output.put((byte) (0x80 | cp >> 6 & 0x3F));
+    			}
+    			else {
+    				output.put((byte) (0xF0 | cp >> 18));
+    				output.put((byte) (0x80 | cp >> 12 & 0x3F));
+    				output.put((byte) (0x80 | cp >> 6 & 0x3F));
+    			}
+    			output.put((byte) (0x80 | cp & 0x3F));
+    		}
+    	}
+    	return j;
+    }
+    
+    //same as escapeHtml but by the table of ASCII, null if the char is kept.
+    //over ASCII, only the C1 controls and the line/paragraph separators are escaped
+    private static String escape(char c, String[] table, boolean safeQuote) {
+    	if(c < 128)
+    		return table[c];
+    	if(c < '\u00A0' || c == '\u2028' || c == '\u2029')
+    		return escapeHtml(c, safeQuote);
+    	return null;
+    }
+    
+    //the end of the run of chars to keep, from begin
+    private static int skipRun(char[] buffer, int begin, int upTo, String[] table, boolean safeQuote) {
+    	int j = begin;
+    	while(j < upTo) {
+    		char c = buffer[j];
+    		if(c < 128) {
+    			if(table[c] != null)
+    				break;
+    		}
+    		else if(c < '\u00A0' || c == '\u2028' || c == '\u2029')
+    			break;
+    		j++;
+    	}
+    	return j;
+    }
+    
+    //same as escape, as bytes
+    private static byte[] escapeBytes(char c, byte[][] table) {
+    	if(c < '\u00A0')
+    		return table[c];
+    	if(c == '\u2028')
+    		return LINE_SEPARATOR_BYTES;
+    	if(c == '\u2029')
+    		return PARAGRAPH_SEPARATOR_BYTES;
+    	return null;
+    }
+    
+    //the UTF-8 bytes of a non-ASCII code point, the position after them
+    private static int putUtf8(int cp, byte[] dst, int d) {
+    	if(cp < 0x800) {
+    		dst[d++] = (byte) (0xC0 | cp >> 6);
+    	}
+    	else if(cp < 0x10000) {
+    		dst[d++] = (byte) (0xE0 | cp >> 12);
+    		dst[d++] = (byte) (0x80 | cp >> 6 & 0x3F);
+    	}
+    	else {
+    		dst[d++] = (byte) (0xF0 | cp >> 18);
+    		dst[d++] = (byte) (0x80 | cp >> 12 & 0x3F);
+    		dst[d++] = (byte) (0x80 | cp >> 6 & 0x3F);
+    	}
+    	dst[d++] = (byte) (0x80 | cp & 0x3F);
+    	return d;
+    }
 }
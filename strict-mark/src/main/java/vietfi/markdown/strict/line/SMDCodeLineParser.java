@@ -98,12 +98,13 @@ public class SMDCodeLineParser extends SMDLineParser {
 		//setup the buffer
     	if(this.inputBuffer != buffer) {
     		this.inputBuffer = buffer;
-    		if(buffer.hasArray()) {
+    		if(buffer.hasArray() && buffer.arrayOffset() == 0) {
     			this.inputChars = buffer.array();
     			doCopy = false;
     		}
-    		else {//allocate an array with same size to copy characters while processing
-    			this.inputChars = new char[buffer.capacity()];
+    		else {//allocate an array with same size to copy characters while processing, a slice of array (ring buffer) is copied too
+    			if(!doCopy || this.inputChars.length < buffer.capacity())
+    				this.inputChars = new char[buffer.capacity()];
     			doCopy = true;
     		}
     	}
@@ -161,6 +162,14 @@ public class SMDCodeLineParser extends SMDLineParser {
 		}
 	}
 
+	@Override
+	public void reset() {
+		codeLines = 0;
+		ending = false;
+		if(internalMarkers)
+			markers.resetMarkers();
+	}
+
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
@@ -193,6 +193,11 @@ public abstract class SMDLineParser implements SMDParser {
 	 */
 	public static int lookForwardNewLine(CharBuffer buffer) {
 		int pos = buffer.position();
+		if(buffer.hasArray()) {
+			int from = buffer.arrayOffset() + pos;
+			int nl = SMDScan.indexOfNewLine(buffer.array(), from, from + buffer.remaining());
+			return nl < 0 ? -1 : nl - from;
+		}
 		
 		for(int i = 0; buffer.remaining() > i; i++) {
 			char ch = buffer.get(pos + i);
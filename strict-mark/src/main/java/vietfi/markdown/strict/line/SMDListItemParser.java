@@ -67,6 +67,7 @@ public class SMDListItemParser extends SMDLineParser {
 	
 	private final int level;
 	private int itemLines = 0; //last item line counting
+	private int itemStart = -1; //start of the item marker, of the next item of a sub-list
 	private char subListItemType = '\0'; 
 	private int subItemLines = 0; //sub item line counting
 	private int currParser = PARSE_UNKNOWN;
@@ -150,15 +151,45 @@ public class SMDListItemParser extends SMDLineParser {
 		spacesOrTabLimit = DEFAULT_SPACES_THRESHOLD;
 	}
 	
+	/**
+	 * Reset for a new list item, the sub parsers and the markers are kept.
+	 * 
+	 * Unlike the other parsers, it is not the reset of a new document, see resetAll.
+	 */
+	@Override
 	public void reset() {
 		currParser = PARSE_UNKNOWN;
 		itemLines = 0;
+		itemStart = -1;
 		subItemLines = 0;
 		subListItemType = '\0';
 		inSubParagraph = false;
 		spacesOrTabLimit = DEFAULT_SPACES_THRESHOLD;
 	}
 	
+	/**
+	 * Reset for the next item of a sub-list, its start marker is at the position (before the item marker).
+	 * The next item is parsed as a first line, so it can start a nested list (the text of the last item was continued before).
+	 */
+	private void startItem(int position) {
+		reset();
+		itemStart = position;
+	}
+	
+	/**
+	 * Reset the parser, the sub parsers and the owned markers for parsing a new document, without reallocating.
+	 */
+	public void resetAll() {
+		reset();
+		textParser.reset();
+		codeParser.reset();
+		quoteParser.reset();
+		if(listParser != null)
+			listParser.resetAll();
+		if(internalMarkers)
+			markers.resetMarkers();
+	}
+	
 	/**
 	 * Parsing start at position of the char after the marker, or one indentSpaces (1 tab or 2-4 spaces).
 	 *
@@ -186,7 +217,8 @@ public class SMDListItemParser extends SMDLineParser {
 			}
 			
 			if(level > 0)
-				markers.addStartMarker(STATE_LIST_ITEM, pos);
+				markers.addStartMarker(STATE_LIST_ITEM, itemStart >= 0 ? itemStart : pos);
+			itemStart = -1;
 			
 			pos++;
 			while((ch == ' ' || ch == '\t') && buffer.hasRemaining()) {
@@ -322,10 +354,12 @@ public class SMDListItemParser extends SMDLineParser {
 								: 0;
 				
 				if(list > 0) {
-					if(subItemLines > 0) {
+					final boolean newItem = subItemLines > 0;
+					if(newItem) {
 						listParser.endLine(pos);
 						markers.addStopMarker(STATE_LIST_ITEM, pos);
-						markers.addStartMarker(STATE_LIST_ITEM, pos);
+						//parse as the first line, the text of the last item is not continued (e.g. to a nested ordered list)
+						listParser.startItem(pos);
 					}
 					//continue next item of sub-list
 					//next 2 chars
@@ -346,7 +380,8 @@ public class SMDListItemParser extends SMDLineParser {
 							subItemLines++;
 					}
 					else {
-						markers.rollbackLastMarkerContentStart(STATE_LIST_ITEM);
+						if(!newItem) //the first line rolls back its own start
+							markers.rollbackLastMarkerContentStart(STATE_LIST_ITEM);
 						buffer.position(pos); //reset
 						if(currParser == PARSE_ORDERED_LIST)
 							markers.addStopMarker(STATE_ORDERED_LIST, pos);
@@ -408,7 +443,7 @@ public class SMDListItemParser extends SMDLineParser {
 		}
 		
 		if(r == SMD_LINE_VOID || sp < 6 && buffer.remaining() < 6
-				&& !SMDLineParser.detectBlankLine(buffer)) { //can not determine the complete line
+				&& !SMDLineParser.detectBlankLine(buffer) && !lineEndsWithin(buffer, buffer.position(), 6)) { //can not determine the complete line
 			return SMD_LINE_VOID;
 		}
 		
@@ -573,6 +608,17 @@ public class SMDListItemParser extends SMDLineParser {
 		return 0;
 	}
 	
+	//the line (or the document) ends in the next count characters, more characters cannot make a list item
+	private static boolean lineEndsWithin(CharBuffer buffer, int pos, int count) {
+		int end = Math.min(pos + count, buffer.limit());
+		for(int i = pos; i < end; i++) {
+			char ch = buffer.get(i);
+			if(ch == '\n' || ch == '\u001C')
+				return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Detect sub unordered list by checking 3 to 5 forward characters  
 	 * The result will be:
@@ -589,11 +635,11 @@ public class SMDListItemParser extends SMDLineParser {
 		if(!buffer.hasRemaining())
 			throw new IllegalArgumentException();
 		
-		if(buffer.remaining() < 4) //at least 4 characters
-			return -1;
-		
 		int pos = buffer.position();
 		
+		if(buffer.remaining() < 4) //at least 4 characters
+			return lineEndsWithin(buffer, pos, 4) ? (byte) 0 : -1;
+		
 		char first = buffer.get(pos);
 		char second = buffer.get(pos+1);
 		char third = buffer.get(pos+2);
@@ -633,11 +679,11 @@ public class SMDListItemParser extends SMDLineParser {
 					if(second == 'i' || second == 'v' || second == 'x') {
 						if(third == 'i' || third == 'v' || third == 'x') {
 							if(buffer.remaining() < 5) //at least 5 characters
-								return -1;
+								return lineEndsWithin(buffer, pos, 5) ? (byte) 0 : -1;
 							char fifth = buffer.get(pos+4);
 							if(forth == 'i' || forth == 'v' || forth == 'x') {
 								if(buffer.remaining() < 6) //at least 6 characters
-									return -1;
+									return lineEndsWithin(buffer, pos, 6) ? (byte) 0 : -1;
 								dot = fifth;
 								space = buffer.get(pos+5);
 							}
@@ -674,6 +720,8 @@ public class SMDListItemParser extends SMDLineParser {
 		this.textParser.compact(shiftRemaining);
 		if(listParser != null)
 			this.listParser.compact(shiftRemaining);
+		if(itemStart >= 0) //a position of the buffer
+			itemStart = Math.max(itemStart - shiftRemaining, 0);
 		return shiftRemaining;
 	}
 
@@ -198,6 +198,16 @@ public class SMDQuoteLineParser extends SMDLineParser {
 		}
 	}
 
+	@Override
+	public void reset() {
+		ending = false;
+		quoteLines = 0;
+		paraLines = 0;
+		lineParser.reset();
+		if(internalMarkers)
+			markers.resetMarkers();
+	}
+
 	@Override
 	public int compact(int position) {
 		if(this.internalMarkers) {
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.line;
+
+/**
+ * The scanning kernels of the hot loops, on the array of a heap CharBuffer (see CharBuffer.hasArray).
+ *
+ * A kernel finds the next interesting char of a range by the array directly, without the CharBuffer.get(index) per char
+ * (a call, a bounds check and the offset of each), and the set of chars is a table of ASCII.
+ * The caller falls back to the CharBuffer loop if the buffer has no array (e.g. a read-only or direct one).
+ *
+ * On JDK 17+ with the incubator module (--add-modules jdk.incubator.vector), the kernels compare the chars by vectors
+ * of the preferred species (SMDVectorScan, compiled from src/main/java17), otherwise by the scalar loops.
+ * The choice is made once, at the class initialization; the property "smd.scan.vector" (default true) turns the vectors off.
+ */
+public final class SMDScan {
+
+	//the chars which may change the state of a text line, see SMDTextLineParser
+	private static final boolean[] TEXT_MARKUP = new boolean[128];
+
+	static {
+		for(char c : new char[] {'\n', '\u001C', '~', '*', '_', '`', '[', '!', '\\'})
+			TEXT_MARKUP[c] = true;
+	}
+
+	/**
+	 * The kernels of an implementation.
+	 */
+	interface Kernel {
+
+		int indexOfNewLine(char[] array, int from, int to);
+
+		int indexOfTextMarkup(char[] array, int from, int to);
+	}
+
+	static final Kernel SCALAR = new Kernel() {
+
+		@Override
+		public int indexOfNewLine(char[] array, int from, int to) {
+			return scalarIndexOfNewLine(array, from, to);
+		}
+
+		@Override
+		public int indexOfTextMarkup(char[] array, int from, int to) {
+			return scalarIndexOfTextMarkup(array, from, to);
+		}
+	};
+
+	static final Kernel KERNEL = selectKernel();
+
+	private SMDScan() {
+	}
+
+	//the vector kernel if the JDK has the incubator module resolved, else the scalar one
+	private static Kernel selectKernel() {
+		String vectorString = System.getProperty("smd.scan.vector", String.valueOf("true"));
+		if(!Boolean.parseBoolean(vectorString))
+			return SCALAR;
+		try {
+			//of the multi-release layer, not found by JDK 11-16
+			Class<?> c = Class.forName("vietfi.markdown.strict.line.SMDVectorScan");
+			if(!(Boolean) c.getDeclaredMethod("isSupported").invoke(null))
+				return SCALAR;
+			Kernel kernel = (Kernel) c.getDeclaredConstructor().newInstance();
+			return kernel.indexOfNewLine(new char[] {'a', '\n'}, 0, 2) == 1 ? kernel : SCALAR;
+		}
+		catch(ReflectiveOperationException | LinkageError e) {
+			//not in the jar (or the classes of JDK 11-16) or the module not added
+			return SCALAR;
+		}
+	}
+
+	/**
+	 * @return true if the kernels are the vector ones.
+	 */
+	public static boolean isVectorized() {
+		return KERNEL != SCALAR;
+	}
+
+	/**
+	 * Find the next new line or ending (U+001C).
+	 *
+	 * @param array the chars.
+	 * @param from start index (inclusive).
+	 * @param to end index (exclusive).
+	 * @return the index, -1 if not found.
+	 */
+	public static int indexOfNewLine(char[] array, int from, int to) {
+		return KERNEL.indexOfNewLine(array, from, to);
+	}
+
+	/**
+	 * Find the next char of inline markup (~ * _ ` [ ! \), a new line or ending, the chars between do not change the state of a text line.
+	 *
+	 * @param array the chars.
+	 * @param from start index (inclusive).
+	 * @param to end index (exclusive).
+	 * @return the index, -1 if not found.
+	 */
+	public static int indexOfTextMarkup(char[] array, int from, int to) {
+		return KERNEL.indexOfTextMarkup(array, from, to);
+	}
+
+	//the scalar loops, also the tails of the vector kernels
+	static int scalarIndexOfNewLine(char[] array, int from, int to) {
+		for(int i = from; i < to; i++) {
+			char c = array[i];
+			if(c == '\n' || c == '\u001C')
+				return i;
+		}
+		return -1;
+	}
+
+	static int scalarIndexOfTextMarkup(char[] array, int from, int to) {
+		for(int i = from; i < to; i++) {
+			char c = array[i];
+			if(c < 128 && TEXT_MARKUP[c])
+				return i;
+		}
+		return -1;
+	}
+}
@@ -75,6 +75,15 @@ public class SMDTextLineParser extends SMDLineParser {
 		popAllStack(position);
 	}
 	
+	@Override
+	public void reset() {
+		stack[0] = STATE_NONE;
+		stackPos = 0;
+		startOfLinePos = 0;
+		if(internalMarkers)
+			markers.resetMarkers();
+	}
+	
     /**
      * Parse a line from buffer. The buffer must be start of a line with its position.
      * 
@@ -86,7 +95,7 @@ public class SMDTextLineParser extends SMDLineParser {
      */
     @Override
     public int parseLine(CharBuffer buffer) {
-    	if(buffer.length() >= 0x0FFFFF) //over addressable position
+    	if(buffer.length() >= markers.maximumPosition()) //over addressable position
     		throw new IllegalArgumentException("Buffer is too large, over its addressable of position (Integer)");
     
     	int nl = lookForwardNewLine(buffer);
@@ -114,6 +123,9 @@ public class SMDTextLineParser extends SMDLineParser {
     	char currChar = '\0';
     	char nextChar = '\0';
     	char next2Char = '\0';
+    	//to skip the runs of plain chars
+    	char[] array = buffer.hasArray() ? buffer.array() : null;
+    	int offset = array != null ? buffer.arrayOffset() : 0;
     	//first char is always match the condition because the line has at least 2 chars.
         while (buffer.hasRemaining()) {
         	
@@ -221,6 +233,15 @@ public class SMDTextLineParser extends SMDLineParser {
             //next loop to process
             if(change != ROLLBACK)
             	pos++;
+            
+            //the plain chars do not change these states, skip to the next char of markup or the new line
+            if(change == NO_CHANGE && array != null && isPlainRunState(stack[stackPos])) {
+            	int next = SMDScan.indexOfTextMarkup(array, offset + pos, offset + buffer.limit()) - offset;
+            	if(next > pos) {
+            		buffer.position(next);
+            		pos = next;
+            	}
+            }
         }
         
         if(change == ROLLBACK && isFirstChange) {
@@ -318,6 +339,21 @@ public class SMDTextLineParser extends SMDLineParser {
     	stackPos = 0;
     }
     
+    //the states of which only the chars of SMDScan.indexOfTextMarkup change
+    private static boolean isPlainRunState(int state) {
+    	switch(state) {
+    	case STATE_TEXT:
+    	case STATE_BOLD:
+    	case STATE_ITALIC:
+    	case STATE_UNDERLINE:
+    	case STATE_STRIKETHROUGH:
+    	case STATE_INLINE_CODE:
+    		return true;
+    	default:
+    		return false;
+    	}
+    }
+    
     private int changeState(int state, int position, char ch, char nextChar, char next2Char) {
 	    if (ch == '\n' || ch == '\u001C') { //new line, break at end as well
         	popAllStack(position); //not including new line
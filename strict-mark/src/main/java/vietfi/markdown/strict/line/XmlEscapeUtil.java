@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.line;
+
+import java.nio.CharBuffer;
+
+/**
+ * The escapes of XML 1.0 text and attribute values, for a well-formed XHTML output.
+ * 
+ * The text escapes '&amp;', '&lt;' and '&gt;' (the same as an XMLStreamWriter), an attribute value the '"' too.
+ * The chars not allowed by XML (the C0 controls but tab, new line and carriage return, U+FFFE, U+FFFF
+ * and a lone surrogate) are replaced by U+FFFD, they cannot be written even as a reference.
+ * The end of document (U+001C) is skipped, as the HTML escapes do.
+ */
+public class XmlEscapeUtil {
+
+	public static final char REPLACEMENT = '\uFFFD';
+	
+	/**
+	 * The longest escape of a char, the room to write at least one.
+	 */
+	public static final int MAXIMUM_ESCAPE_LENGTH = 6;
+
+	//the escapes of ASCII, null if the char is kept as it is
+	private static final String[] TEXT_ESCAPES = new String[128];
+	private static final String[] ATTRIBUTE_ESCAPES = new String[128];
+	
+	//the chars which stop a run to keep, of all chars: one load per char instead of the ranges
+	//(the hot part is a few lines of the table, of ASCII and the letters of the text)
+	private static final byte[] STOPS = new byte[0x10000];
+	private static final byte TEXT_STOP = 1;
+	private static final byte ATTRIBUTE_STOP = 2;
+
+	static {
+		for(char c = 0; c < 0x20; c++) {
+			if(c != '\t' && c != '\n' && c != '\r') {
+				TEXT_ESCAPES[c] = String.valueOf(REPLACEMENT);
+				ATTRIBUTE_ESCAPES[c] = TEXT_ESCAPES[c];
+			}
+		}
+		TEXT_ESCAPES['\u001C'] = ATTRIBUTE_ESCAPES['\u001C'] = ""; //the end of document
+		TEXT_ESCAPES['&'] = ATTRIBUTE_ESCAPES['&'] = "&amp;";
+		TEXT_ESCAPES['<'] = ATTRIBUTE_ESCAPES['<'] = "&lt;";
+		TEXT_ESCAPES['>'] = ATTRIBUTE_ESCAPES['>'] = "&gt;";
+		ATTRIBUTE_ESCAPES['"'] = "&quot;";
+		for(int c = 0; c < STOPS.length; c++) {
+			if(c < 128)
+				STOPS[c] = (byte) ((TEXT_ESCAPES[c] != null ? TEXT_STOP : 0) | (ATTRIBUTE_ESCAPES[c] != null ? ATTRIBUTE_STOP : 0));
+			else if(Character.isSurrogate((char) c) || c >= 0xFFFE)
+				STOPS[c] = TEXT_STOP | ATTRIBUTE_STOP;
+		}
+	}
+
+	/**
+	 * Writes the chars of the `buffer` from `begin` (inclusive) to `end` (exclusive) to the `output`, escaped for XML.
+	 * 
+	 * An escape or a surrogate pair is written only if it fits in whole. If the output is full,
+	 * the method returns the position it was able to process, the caller writes the rest to the next output.
+	 * 
+	 * @param attribute if true, the text is of an attribute value in double quotes
+	 * @param buffer the input character buffer, by the absolute indexes
+	 * @param begin the starting position in `buffer` (inclusive)
+	 * @param end the ending position in `buffer` (exclusive)
+	 * @param output the output buffer to receive the escaped text
+	 * @return the position up to which characters were written, `end` if all of them
+	 */
+	public static int writeWithEscapeXml(boolean attribute, CharBuffer buffer, int begin, int end, CharBuffer output) {
+		String[] table = attribute ? ATTRIBUTE_ESCAPES : TEXT_ESCAPES;
+		if(buffer.hasArray() && output.hasArray()) {
+			int offset = buffer.arrayOffset(); //a slice of the array
+			int outputOffset = output.arrayOffset();
+			char[] src = buffer.array();
+			char[] dst = output.array();
+			int d = outputOffset + output.position();
+			int dEnd = outputOffset + output.limit();
+			int j = offset + begin;
+			int stop = offset + end;
+			while(j < stop) {
+				//the run of chars to keep, as much as the space
+				int run = skipRun(src, j, j + Math.min(stop - j, dEnd - d), attribute ? ATTRIBUTE_STOP : TEXT_STOP);
+				System.arraycopy(src, j, dst, d, run - j);
+				d += run - j;
+				j = run;
+				if(j == stop || d == dEnd)
+					break;
+				char c = src[j];
+				if(c < 128) {
+					String escape = table[c];
+					if(dEnd - d < escape.length())
+						break;
+					escape.getChars(0, escape.length(), dst, d);
+					d += escape.length();
+					j++;
+				}
+				else if(Character.isHighSurrogate(c) && j + 1 < stop && Character.isLowSurrogate(src[j + 1])) {
+					if(dEnd - d < 2)
+						break;
+					dst[d++] = c;
+					dst[d++] = src[j + 1];
+					j += 2;
+				}
+				else {
+					dst[d++] = REPLACEMENT;
+					j++;
+				}
+			}
+			output.position(d - outputOffset);
+			return j - offset;
+		}
+		
+		int j = begin;
+		while(j < end) {
+			char c = buffer.get(j);
+			int n = write(c, j + 1 < end ? buffer.get(j + 1) : 0, table, output);
+			if(n == 0)
+				break;
+			j += n;
+		}
+		return j;
+	}
+
+	/**
+	 * Writes the chars of the `text` from `begin` (inclusive) to `end` (exclusive) to the `output`, escaped for XML,
+	 * e.g. a class name or the text of a resolver.
+	 * 
+	 * @param attribute if true, the text is of an attribute value in double quotes
+	 * @param text the text to escape
+	 * @param begin the starting index in `text` (inclusive)
+	 * @param end the ending index in `text` (exclusive)
+	 * @param output the output buffer to receive the escaped text
+	 * @return the index up to which characters were written, `end` if all of them
+	 * 
+	 * @see #writeWithEscapeXml(boolean, CharBuffer, int, int, CharBuffer)
+	 */
+	public static int writeWithEscapeXml(boolean attribute, CharSequence text, int begin, int end, CharBuffer output) {
+		String[] table = attribute ? ATTRIBUTE_ESCAPES : TEXT_ESCAPES;
+		int j = begin;
+		while(j < end) {
+			char c = text.charAt(j);
+			int n = write(c, j + 1 < end ? text.charAt(j + 1) : 0, table, output);
+			if(n == 0)
+				break;
+			j += n;
+		}
+		return j;
+	}
+
+	//the chars of the input written, 0 if it does not fit
+	private static int write(char c, char next, String[] table, CharBuffer output) {
+		if(c < 128 && table[c] != null) {
+			String escape = table[c];
+			if(output.remaining() < escape.length())
+				return 0;
+			output.append(escape);
+			return 1;
+		}
+		if(c < '\uD800' || c >= '\uE000' && c < '\uFFFE') {
+			if(!output.hasRemaining())
+				return 0;
+			output.put(c);
+			return 1;
+		}
+		if(Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+			if(output.remaining() < 2)
+				return 0;
+			output.put(c).put(next);
+			return 2;
+		}
+		if(!output.hasRemaining())
+			return 0;
+		output.put(REPLACEMENT);
+		return 1;
+	}
+
+	//the end of the run of chars to keep, from begin
+	private static int skipRun(char[] buffer, int begin, int end, byte stop) {
+		int j = begin;
+		while(j < end && (STOPS[buffer[j]] & stop) == 0)
+			j++;
+		return j;
+	}
+}
@@ -1,8 +1,17 @@
 package vietfi.markdown.strict.render;
 
+import java.nio.CharBuffer;
+
+import vietfi.markdown.strict.SMDMarkers;
+import vietfi.markdown.strict.SMDParser;
 import vietfi.markdown.strict.SMDRender;
 import vietfi.markdown.strict.line.HtmlEscapeUtil;
 
+/**
+ * The render loop of the HTML renders (and the text of XHTML): the tags are put by the opcodes of HtmlRenderTable,
+ * the content by the hooks of the sink of a render (putTag, putClass, putLinkText, putContent and putUrl).
+ * A sink that is full returns short of a hook, the marker at the cursor is resumed by the next call.
+ */
 public abstract class HtmlBaseTagRender implements SMDRender {
 
 
@@ -73,34 +82,36 @@ public abstract class HtmlBaseTagRender implements SMDRender {
 	protected String ulClass;
 	protected String olClass;
 	protected String liClass;
+	
+	//the escaped class names by CLASS_FOR_*, of the opcodes
+	private final String[] classNames = new String[16];
+	
+	final HtmlRenderTable table;
+	
+	//the spans of the last link in the buffer, the <a> text is written from them at the stop marker
+	protected int lastTextBegin, lastTextEnd;
+	protected int lastUrlBegin, lastUrlEnd;
+	
+	//the resume state of the marker at the cursor, if the output is full
+	private boolean tagsWritten = false;
+	private int contentOutput = -1; //the content is written up to, -1 if the content is not started
+	private int contentEnd = -1; //of the resolver
+	
+	protected HtmlBaseTagRender() {
+		this(HtmlRenderTable.HTML);
+	}
+	
+	HtmlBaseTagRender(HtmlRenderTable table) {
+		this.table = table;
+	}
 
 	@Override
 	public void setClassNameForTag(String className, int classForTag) {
 		if(className == null || className.isBlank())
 			className = null;
 		
-		if(className != null) {
-			StringBuilder sb = new StringBuilder();
-			boolean isEscaped = false;
-			for(int i = 0; i < className.length(); i++) {
-				char c = className.charAt(i);
-				//Using HtmlEscapeUtil to escape the class name
-				String esc = HtmlEscapeUtil.escapeHtml(c, true);
-				if(esc != null) {
-					sb.append(esc);
-					isEscaped = true;
-				}
-				else {
-					sb.append(c);
-				}
-			}
-			
-			if(isEscaped) {
-				className = sb.toString();
-			}
-			
-			//else discard the class name string builder
-		}
+		if(className != null)
+			className = escapeClassName(className);
 		
 		switch(classForTag) {
 		case CLASS_FOR_PARAGRAPH:
@@ -131,6 +142,234 @@ public abstract class HtmlBaseTagRender implements SMDRender {
 			this.liClass = className;
 			break;
 		};
+		if(classForTag > 0 && classForTag < classNames.length)
+			classNames[classForTag] = className;
+	}
+	
+	//the class name as an attribute value
+	protected String escapeClassName(String className) {
+		StringBuilder sb = new StringBuilder();
+		boolean isEscaped = false;
+		for(int i = 0; i < className.length(); i++) {
+			char c = className.charAt(i);
+			//Using HtmlEscapeUtil to escape the class name
+			String esc = HtmlEscapeUtil.escapeHtml(c, true);
+			if(esc != null) {
+				sb.append(esc);
+				isEscaped = true;
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		//else discard the class name string builder
+		return isEscaped ? sb.toString() : className;
+	}
+	
+	@Override
+	public void reset() {
+		lastTextBegin = lastTextEnd = 0;
+		lastUrlBegin = lastUrlEnd = 0;
+		resetContent();
+	}
+	
+	//a render from the start of the buffer, not resumed
+	protected final void resetContent() {
+		tagsWritten = false;
+		contentOutput = -1;
+		contentEnd = -1;
+	}
+	
+	//the positions of the buffer compacted by position
+	protected void compactSpans(int position) {
+		if(contentOutput >= 0) {
+			contentOutput = Math.max(0, contentOutput - position);
+			contentEnd = Math.max(0, contentEnd - position);
+		}
+		lastTextBegin = Math.max(0, lastTextBegin - position);
+		lastTextEnd = Math.max(0, lastTextEnd - position);
+		lastUrlBegin = Math.max(0, lastUrlBegin - position);
+		lastUrlEnd = Math.max(0, lastUrlEnd - position);
+	}
+	
+	/**
+	 * Render the markers from the cursor up to the position of the buffer.
+	 * 
+	 * @return true if done, false if the output is full (the marker at the cursor is resumed by the next call).
+	 */
+	protected final boolean render(SMDMarkers markers, CharBuffer buffer) {
+		if(markers.isEmpty() && buffer.position() > 0) {
+			//whole buffer is the line of code block
+			if(contentOutput < 0)
+				contentOutput = 0;
+			if(contentOutput < buffer.position())
+				contentOutput = putContent(false, buffer, contentOutput, buffer.position());
+			if(contentOutput < buffer.position())
+				return false;
+			contentOutput = -1;
+			return true;
+		}
+		
+		while(markers.cursorIsAvailable()) {
+			boolean isMarkerStop = markers.cursorIsMarkerStop();
+			int contentBegin = markers.cursorPosition1();
+			if(!isMarkerStop && contentBegin >= buffer.position()) //exceed the output point
+				break;
+			
+			int state = markers.cursorState(); //extract state
+			//the flags of the content, also of a resumed marker
+			int content = markers.cursorIsContentStart() ? table.op(HtmlRenderTable.CONTENT_START, state) : 0;
+			
+			if(!tagsWritten) {
+				beginTags();
+				putTags(markers, buffer, state, isMarkerStop);
+				tagsWritten = true;
+				if(!endTags())
+					return false;
+			}
+			
+			int end = Math.min(markers.cursorPosition2(), buffer.position());
+			//content or plain text
+			if(contentBegin >= 0 && contentBegin < end) {
+				if((content & HtmlRenderTable.LINK_TEXT_SPAN) != 0) {
+					//the link content, do not print out, keep the span
+					lastTextBegin = contentBegin;
+					lastTextEnd = end;
+				}
+				else {
+					if(contentOutput < 0) {
+						boolean url = (content & (HtmlRenderTable.LINK_URL | HtmlRenderTable.IMAGE_URL)) != 0;
+						boolean link = (content & HtmlRenderTable.LINK_URL) != 0;
+						if(url && !hasUrlRoom(link))
+							return false;
+						contentOutput = contentBegin;
+						contentEnd = end;
+						if(link) { //the URL to print later (if needed)
+							lastUrlBegin = contentBegin;
+							lastUrlEnd = end;
+						}
+						if(url) {
+							int bypass = putUrl(link, buffer, contentBegin, end);
+							if(bypass > 0) //trip from start
+								contentOutput += bypass;
+							else //trip from end
+								contentEnd += bypass;
+						}
+					}
+					
+					if(contentOutput < contentEnd) {
+						//copy to output with escaped
+						contentOutput = putContent((content & HtmlRenderTable.ATTRIBUTE) != 0, buffer, contentOutput, contentEnd);
+						if(contentOutput < contentEnd)
+							return false;
+					}
+				}
+			}
+			
+			markers.cursorGoNext();
+			tagsWritten = false;
+			contentOutput = -1;
+			contentEnd = -1;
+			nextMarker();
+		}
+		return true;
+	}
+	
+	/**
+	 * Put the tags of the marker at the cursor, by the opcodes of its state.
+	 * 
+	 * @return the opcode of the content start (the flags of the content), 0 if none.
+	 */
+	protected final int putTags(SMDMarkers markers, CharBuffer buffer, int state, boolean isMarkerStop) {
+		if(markers.cursorIsMarkerStart())
+			put(table.op(HtmlRenderTable.MARKER_START, state), markers, buffer);
+		else if(isMarkerStop)
+			put(table.op(HtmlRenderTable.MARKER_STOP, state), markers, buffer);
+		
+		if(markers.cursorIsContentStart()) {
+			int op = table.op(HtmlRenderTable.CONTENT_START, state);
+			put(op, markers, buffer);
+			if((op & HtmlRenderTable.LINK_TEXT_SPAN) != 0)
+				lastTextBegin = lastTextEnd = 0;
+			else if((op & HtmlRenderTable.LINK_URL) != 0)
+				lastUrlBegin = lastUrlEnd = 0;
+			return op;
+		}
+		if(markers.cursorIsContentStop())
+			put(table.op(HtmlRenderTable.CONTENT_STOP, state), markers, buffer);
+		return 0;
+	}
+	
+	private void put(int op, SMDMarkers markers, CharBuffer buffer) {
+		if(op == 0)
+			return;
+		putTag(HtmlRenderTable.before(op));
+		String className = classNames[HtmlRenderTable.classForTag(op)];
+		boolean language = (op & HtmlRenderTable.LANGUAGE) != 0 && markers.cursorNextState() == SMDParser.STATE_CODE_LANGUAGE;
+		if(className != null) {
+			putTag(table.classBeginTag);
+			putClass(className);
+			if(language) {
+				putTag(table.languageClassTag);
+				return;
+			}
+			putTag(table.classEndTag);
+		}
+		if((op & HtmlRenderTable.LINK_TEXT) != 0)
+			putLinkText(buffer);
+		putTag(language ? table.languageTag : HtmlRenderTable.after(op));
+	}
+	
+	/**
+	 * @param tag the index of the tags of the table, 0 is empty.
+	 */
+	protected abstract void putTag(int tag);
+	
+	/**
+	 * @param className the escaped class name.
+	 */
+	protected abstract void putClass(String className);
+	
+	/**
+	 * Put the link text (the URL if no text) of the last link spans.
+	 */
+	protected abstract void putLinkText(CharBuffer buffer);
+	
+	/**
+	 * Put the escaped content of the buffer.
+	 * 
+	 * @param attribute the content is of an attribute, the quotes are escaped.
+	 * @return the end of the content written, less than end if the output is full.
+	 */
+	protected abstract int putContent(boolean attribute, CharBuffer buffer, int begin, int end);
+	
+	/**
+	 * Put the URL by the resolver of a link or an image, the rest of the content is written by putContent.
+	 * 
+	 * @return the bypass of the resolver (see SMDUrlResolver), 0 if no resolver.
+	 */
+	protected abstract int putUrl(boolean link, CharBuffer buffer, int begin, int end);
+	
+	/**
+	 * @return false if the output has no room for the resolver of a URL, the content is resumed by the next call.
+	 */
+	protected boolean hasUrlRoom(boolean link) {
+		return true;
+	}
+	
+	//before the tags of a marker
+	protected void beginTags() {
+	}
+	
+	/**
+	 * @return false if the tags of the marker are not all written out, they are kept for the next call.
+	 */
+	protected boolean endTags() {
+		return true;
+	}
+	
+	//after a marker is done, before the next one
+	protected void nextMarker() {
 	}
 
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.render;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.function.BiFunction;
+
+import vietfi.markdown.strict.SMDHtmlByteWriter;
+import vietfi.markdown.strict.SMDMarkers;
+import vietfi.markdown.strict.SMDUrlResolver;
+import vietfi.markdown.strict.SMDUtf8Bytes;
+import vietfi.markdown.strict.jfr.SMDRenderEvent;
+import vietfi.markdown.strict.line.HtmlEscapeUtil;
+
+/**
+ * The HTML writer of UTF-8 bytes, the same output as HtmlRenderImpl.produceHtml encoded in UTF-8.
+ *
+ * The tags are pre-encoded (the tag bytes of HtmlRenderTable), the text is escaped and encoded at once (an ASCII run is copied by a loop of the arrays).
+ * The bytes of a marker are kept until they are written out, so a call can stop at any byte when the output is full.
+ * A direct output is filled by a heap buffer (the arrays), then copied.
+ */
+public class HtmlByteWriterImpl extends HtmlBaseTagRender implements SMDHtmlByteWriter {
+
+	protected SMDUrlResolver<ByteBuffer> linkHrefResolver = null;
+	protected SMDUrlResolver<ByteBuffer> imgSrcResolver = null;
+	
+	@Override
+	public void setLinkUrlResolver(SMDUrlResolver<ByteBuffer> resolver) {
+		this.linkHrefResolver = resolver;
+	}
+
+	@Override
+	public void setImageUrlResolver(SMDUrlResolver<ByteBuffer> resolver) {
+		this.imgSrcResolver = resolver;
+	}
+
+	@Override
+	public void setLinkHrefResolver(BiFunction<CharBuffer, ByteBuffer, Integer> resolver) {
+		this.linkHrefResolver = SMDUrlResolver.of(resolver);
+	}
+
+	@Override
+	public void setImageSrcResolver(BiFunction<CharBuffer, ByteBuffer, Integer> resolver) {
+		this.imgSrcResolver = SMDUrlResolver.of(resolver);
+	}
+	
+	/**
+	 * max bytes of a resolved URL, and the least capacity of the output.
+	 */
+	public static final int MINIMUM_BUFFER_SIZE = 256;
+	
+	/**
+	 * the heap buffer of a direct output.
+	 */
+	public static final int STAGE_BUFFER_SIZE = 8192;
+	
+	//the bytes of the marker not written yet, in reading mode
+	private ByteBuffer tags = ByteBuffer.allocate(MINIMUM_BUFFER_SIZE).flip();
+	private ByteBuffer stage; //allocated on the first direct output
+	private ByteBuffer output; //of a call
+	
+	@Override
+	public boolean appendHtml(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer) {
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		int position = outputBuffer.position();
+		boolean done;
+		try {
+			done = outputBuffer.hasArray() ? append(markers, buffer, outputBuffer) : appendDirect(markers, buffer, outputBuffer);
+		}
+		finally {
+			output = null;
+		}
+		if(event.shouldCommit())
+			event.record(getClass(), "appendHtml", buffer.position(), markers.cursor() - cursor, outputBuffer.position() - position);
+		return done;
+	}
+	
+	//by the stage buffer, until done or the output is almost full
+	private boolean appendDirect(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer) {
+		if(outputBuffer.capacity() < MINIMUM_BUFFER_SIZE)
+			throw new IllegalArgumentException("Buffer capacity too small, at least "+MINIMUM_BUFFER_SIZE+" required!");
+		if(stage == null)
+			stage = ByteBuffer.allocate(STAGE_BUFFER_SIZE);
+		boolean done;
+		do {
+			stage.clear().limit(Math.min(stage.capacity(), outputBuffer.remaining()));
+			done = append(markers, buffer, stage);
+			stage.flip();
+			outputBuffer.put(stage);
+		} while(!done && outputBuffer.remaining() >= MINIMUM_BUFFER_SIZE);
+		return done;
+	}
+	
+	private boolean append(SMDMarkers markers, CharBuffer buffer, ByteBuffer outputBuffer) {
+		if(outputBuffer.capacity() < MINIMUM_BUFFER_SIZE)
+			throw new IllegalArgumentException("Buffer capacity too small, at least "+MINIMUM_BUFFER_SIZE+" required!");
+		if(!flush(outputBuffer))
+			return false;
+		this.output = outputBuffer;
+		return render(markers, buffer);
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		tags.clear().flip();
+	}
+
+	@Override
+	public void compact(int position) {
+		compactSpans(position);
+	}
+	
+	@Override
+	protected void beginTags() {
+		tags.clear();
+	}
+	
+	@Override
+	protected boolean endTags() {
+		tags.flip();
+		return flush(output);
+	}
+	
+	@Override
+	protected int putContent(boolean attribute, CharBuffer buffer, int begin, int end) {
+		return HtmlEscapeUtil.writeUtf8WithEscapeHtml(attribute, buffer, begin, end, output);
+	}
+	
+	@Override
+	protected int putUrl(boolean link, CharBuffer buffer, int begin, int end) {
+		SMDUrlResolver<ByteBuffer> resolver = link ? linkHrefResolver : imgSrcResolver;
+		return resolver != null ? resolver.resolve(buffer, begin, end, output) : 0;
+	}
+	
+	//the space of the resolver
+	@Override
+	protected boolean hasUrlRoom(boolean link) {
+		return (link ? linkHrefResolver : imgSrcResolver) == null || output.remaining() >= MINIMUM_BUFFER_SIZE;
+	}
+	
+	//write out the kept bytes, true if all
+	private boolean flush(ByteBuffer outputBuffer) {
+		int n = Math.min(tags.remaining(), outputBuffer.remaining());
+		outputBuffer.put(tags.array(), tags.position(), n);
+		tags.position(tags.position() + n);
+		return !tags.hasRemaining();
+	}
+	
+	@Override
+	protected void putTag(int tag) {
+		byte[] bytes = table.tagBytes[tag];
+		ensureTags(bytes.length);
+		tags.put(bytes);
+	}
+	
+	//the escaped class name, at most 3 bytes a char
+	@Override
+	protected void putClass(String className) {
+		ensureTags(className.length() * 3);
+		SMDUtf8Bytes.encode(className, 0, className.length(), tags);
+	}
+	
+	@Override
+	protected void putLinkText(CharBuffer buffer) {
+		int mark = tags.position();
+		putText(false, buffer, lastTextBegin, lastTextEnd);
+		if(tags.position() == mark) //no text (or escaped to nothing)
+			putText(true, buffer, lastUrlBegin, lastUrlEnd);
+	}
+	
+	//the escaped span of the buffer, a byte a char at first, doubling the tags until all written
+	private void putText(boolean safeQuote, CharBuffer buffer, int begin, int end) {
+		if(begin >= end)
+			return;
+		ensureTags(end - begin);
+		while((begin = HtmlEscapeUtil.writeUtf8WithEscapeHtml(safeQuote, buffer, begin, end, tags)) < end)
+			ensureTags(tags.capacity());
+	}
+	
+	//the long link text grows the buffer, kept for the next ones
+	private void ensureTags(int length) {
+		if(tags.remaining() < length) {
+			ByteBuffer newTags = ByteBuffer.allocate(Math.max(tags.capacity() * 2, tags.position() + length));
+			tags.flip();
+			newTags.put(tags);
+			tags = newTags;
+		}
+	}
+}
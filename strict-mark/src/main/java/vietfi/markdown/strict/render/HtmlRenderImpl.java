@@ -15,324 +15,196 @@
  */
 package vietfi.markdown.strict.render;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.CharBuffer;
 import java.util.function.BiFunction;
 import vietfi.markdown.strict.SMDHtmlRender;
 import vietfi.markdown.strict.SMDMarkers;
-import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDUrlResolver;
+import vietfi.markdown.strict.jfr.SMDRenderEvent;
 import vietfi.markdown.strict.line.HtmlEscapeUtil;
 
 public class HtmlRenderImpl extends HtmlBaseTagRender implements SMDHtmlRender {
 	
-	protected BiFunction<CharBuffer, StringBuilder, Integer> linkHrefResolver = null;
-	protected BiFunction<CharBuffer, StringBuilder, Integer> imgSrcResolver = null;
+	protected SMDUrlResolver<StringBuilder> linkHrefResolver = null;
+	protected SMDUrlResolver<StringBuilder> imgSrcResolver = null;
+	
+	/**
+	 * The chars staged before a write to the Appendable of produceHtml.
+	 */
+	public static final int DEFAULT_FLUSH_SIZE = 8192;
+	
+	private int flushSize = DEFAULT_FLUSH_SIZE;
+	//of produceHtml(Appendable), null for a StringBuilder
+	private Appendable sink;
+	private long written;
+	private final StringBuilder stage = new StringBuilder();
+	private char[] chunk; //of a Writer, allocated on first use
+	private StringBuilder output; //of the tags
 	
 	@Override
-	public void setLinkHrefResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+	public void setLinkUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
 		this.linkHrefResolver = resolver;
 	}
 
 	@Override
-	public void setImageSrcResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+	public void setImageUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
 		this.imgSrcResolver = resolver;
 	}
+
+	@Override
+	public void setLinkHrefResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+		this.linkHrefResolver = SMDUrlResolver.of(resolver);
+	}
+
+	@Override
+	public void setImageSrcResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+		this.imgSrcResolver = SMDUrlResolver.of(resolver);
+	}
 	
 	@Override
 	public void produceHtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
-        
-    	if(markers.isEmpty() && buffer.position() > 0) {
-			//whole buffer is the line of code block;
-			HtmlEscapeUtil.appendWithEscapeHtml(false, buffer, 0, buffer.position(), outputBuilder);
-			return;
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		int length = outputBuilder.length();
+		try {
+			produce(markers, buffer, outputBuilder);
 		}
-    	
-        StringBuilder lastText = null;
-        StringBuilder lastUrl = null;
-        boolean safeQuote = false;
-    	boolean isInLinkText = false;
-    	boolean isInUrl = false;
-    	boolean isInImgSrc = false;
-    	
-        while(markers.cursorIsAvailable()) {
-        	boolean isMarkerStop = markers.cursorIsMarkerStop();
-        	int contentBegin = markers.cursorPosition1();
-			if(!isMarkerStop && contentBegin >= buffer.position()) //exceed the output point
-				break;
-			
-			int state = markers.cursorState(); //extract state
-        	safeQuote = false;
-        	isInLinkText = false;
-        	isInUrl = false;
-        	isInImgSrc = false;
-        	
-        	if(markers.cursorIsMarkerStart()) {
-        		//start marker
-        		switch(state) {
-        			case SMDParser.STATE_STRIKETHROUGH:
-        				outputBuilder.append(TAG_STRIKE_BEGIN);
-        				break;
-	        		case SMDParser.STATE_BOLD:
-	        			outputBuilder.append(TAG_BOLD_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_ITALIC:
-	        			outputBuilder.append(TAG_ITALIC_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_UNDERLINE:
-	        			outputBuilder.append(TAG_UNDERLINE_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_INLINE_CODE:
-	        			outputBuilder.append(TAG_CODE_BEGIN);
-	        			if(codeClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(codeClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_LINK:
-	        			outputBuilder.append(TAG_A_BEGIN);
-	        			if(linkClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(linkClass).append(ATTR_CLASS_END);
-	        			break;
-	        		case SMDParser.STATE_IMAGE:
-	        			outputBuilder.append(TAG_IMG_BEGIN);
-	        			if(imgClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(imgClass).append(ATTR_CLASS_END);
-	        			break;
-	        		case SMDParser.STATE_CODE_BLOCK:
-	        			outputBuilder.append(PRE_TAG);
-	        			if(preCodeClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(preCodeClass).append(ATTR_CLASS_END);
-	        			if(markers.cursorNextState() == SMDParser.STATE_CODE_LANGUAGE)
-							outputBuilder.append(PRE_WITH_LANGUAGUE);
-						else
-							outputBuilder.append(PRE_STD);
-	        			break;
-	        		case SMDParser.STATE_QUOTE_BLOCK:
-	        			outputBuilder.append(BLOCKQUOTE_BEGIN);
-	        			if(blockquoteClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(blockquoteClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_PARAGRAPH:
-	    				outputBuilder.append(PARA_BEGIN);
-	    				if(pClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(pClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	    				break;
-	    				
-	        		case SMDParser.STATE_NEW_LINE:
-	        			outputBuilder.append(TAG_NEW_LINE);
-	    				break;
-	    				
-	        		case SMDParser.STATE_ORDERED_LIST:
-	        			outputBuilder.append(OL_BEGIN);
-	        			if(olClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(olClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_UNORDERED_LIST:
-	        			outputBuilder.append(UL_BEGIN);
-	        			if(ulClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(ulClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_LIST_ITEM:
-	        			outputBuilder.append(LI_BEGIN);
-	        			if(liClass != null)
-	        				outputBuilder.append(ATTR_CLASS_BEGIN).append(liClass).append(ATTR_CLASS_END);
-	        			outputBuilder.append(TAG_BEGIN_GT);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HEADING_1:
-	        		case SMDParser.STATE_HEADING_2:
-	        		case SMDParser.STATE_HEADING_3:
-	        		case SMDParser.STATE_HEADING_4:
-	        		case SMDParser.STATE_HEADING_5:
-	        		case SMDParser.STATE_HEADING_6:
-	        			outputBuilder.append(HEADINGS_BEGIN[state - SMDParser.STATE_HEADING_1]);
-	        			break;
-	        		
-	        		case SMDParser.STATE_HORIZONTAL:
-	        			outputBuilder.append(HR);
-	        			break;
-	        		case SMDParser.STATE_HORIZONTAL_D:
-	        			outputBuilder.append(HR_DOUBLE);
-	        			break;
-	        		case SMDParser.STATE_HORIZONTAL_U:
-	        			outputBuilder.append(HR_UNDERSCORE);
-	        			break;
-	        		
-        		}
-        	}
-        	//stop
-        	else if(isMarkerStop) { //MARKER_STOP
-        		//stop marker
-        		switch(state) {
-        			case SMDParser.STATE_STRIKETHROUGH:
-        				outputBuilder.append(TAG_STRIKE_END);
-        				break;
-	        		case SMDParser.STATE_BOLD:
-	        			outputBuilder.append(TAG_BOLD_END);
-	        			break;
-	        		case SMDParser.STATE_ITALIC:
-	        			outputBuilder.append(TAG_ITALIC_END);
-	        			break;
-	        		case SMDParser.STATE_UNDERLINE:
-	        			outputBuilder.append(TAG_UNDERLINE_END);
-	        			break;
-	        		case SMDParser.STATE_INLINE_CODE:
-	        			outputBuilder.append(TAG_CODE_END);
-	        			break;
-	        		case SMDParser.STATE_LINK:
-	        			if(lastText != null && lastText.length() > 0) {
-	        				outputBuilder.append(TAG_A_TEXT_BEGIN).append(lastText).append(TAG_A_END);
-	        			}
-	        			else {
-	        				outputBuilder.append(TAG_A_TEXT_BEGIN).append(lastUrl).append(TAG_A_END);
-	        			}
-	        			break;
-	        		case SMDParser.STATE_IMAGE:
-	        			outputBuilder.append(TAG_IMG_END);
-	        			break;
-	        		case SMDParser.STATE_CODE_BLOCK:
-	        			outputBuilder.append(PRE_POSTFIX);
-	        			break;
-	        		case SMDParser.STATE_QUOTE_BLOCK:
-	        			outputBuilder.append(BLOCKQUOTE_END);
-	        			break;
-	        		
-	        		case SMDParser.STATE_PARAGRAPH:
-	    				outputBuilder.append(PARA_END);
-	    				break;
-	    				
-	        		case SMDParser.STATE_ORDERED_LIST:
-	        			outputBuilder.append(OL_END);
-	        			break;
-	        		case SMDParser.STATE_UNORDERED_LIST:
-	        			outputBuilder.append(UL_END);
-	        			break;
-	        		case SMDParser.STATE_LIST_ITEM:
-	        			outputBuilder.append(LI_END);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HEADING_1:
-	        		case SMDParser.STATE_HEADING_2:
-	        		case SMDParser.STATE_HEADING_3:
-	        		case SMDParser.STATE_HEADING_4:
-	        		case SMDParser.STATE_HEADING_5:
-	        		case SMDParser.STATE_HEADING_6:
-	        			outputBuilder.append(HEADINGS_END[state - SMDParser.STATE_HEADING_1]);
-	        			break;
-	    		}
-        	}
-        	
-        	if(markers.cursorIsContentStart()) {
-        		safeQuote = (state == SMDParser.STATE_IMAGE || state == SMDParser.STATE_IMAGE_SRC || state == SMDParser.STATE_URL);
-        		isInLinkText = (state == SMDParser.STATE_LINK);
-        		isInUrl = (state == SMDParser.STATE_URL);
-        		isInImgSrc = (state == SMDParser.STATE_IMAGE_SRC);
-        		
-        		switch(state) {
-        		case SMDParser.STATE_URL: //state URL content is differ
-        			outputBuilder.append(TAG_A_URL_BEGIN);
-        			if(lastUrl == null)
-        				lastUrl = new StringBuilder();
-        			else
-        				lastUrl.setLength(0);
-        			break;
-        		case SMDParser.STATE_LINK:
-        			if(lastText == null)
-        				lastText = new StringBuilder();
-        			else
-        				lastText.setLength(0);
-        			break;
-        		case SMDParser.STATE_IMAGE:
-        			outputBuilder.append(TAG_IMG_TEXT_BEGIN);
-        			break;
-        		case SMDParser.STATE_IMAGE_SRC:
-        			outputBuilder.append(TAG_IMG_URL_BEGIN);
-        			break;
-        		}
-        	}
-        	else if(markers.cursorIsContentStop()) { //End of content
-        		switch(state) {
-        		case SMDParser.STATE_URL: //state URL content is differ
-        			outputBuilder.append(TAG_A_URL_END);
-        			break;
-        		case SMDParser.STATE_IMAGE:
-        			outputBuilder.append(TAG_IMG_TEXT_END);
-        			break;
-        		case SMDParser.STATE_IMAGE_SRC:
-        			outputBuilder.append(TAG_IMG_URL_END);
-        			break;
-        		case SMDParser.STATE_CODE_LANGUAGE:
-        			outputBuilder.append(PRE_WITH_LANGUAGUE_POSTFIX);
-        			break;
-        		}
-        	}
-        	
-			int contentEnd = Math.min(markers.cursorPosition2(), buffer.position());
-			
-			if (contentBegin >= 0 && contentBegin < contentEnd) {
-				if(isInLinkText) {
-        			for (int j = contentBegin; j< contentEnd; j++) {
-        				char c = buffer.get(j);
-        				String escape = HtmlEscapeUtil.escapeHtml(c, false);
-        					if(escape != null)
-        						lastText.append(escape);
-            				else
-            					lastText.append(c);
-        			}	
-					
-				}
-				else {
-					if(isInUrl || isInImgSrc) {
-						if(isInUrl) {
-							//copy to URL to print later (if needed)
-		        			for (int j = contentBegin; j< contentEnd; j++) {
-		        				char c = buffer.get(j);
-		        				String escape = HtmlEscapeUtil.escapeHtml(c, true);
-		        					if(escape != null)
-		            					lastUrl.append(escape);
-		            				else
-		            					lastUrl.append(c);
-		        			}
-						}
-						Integer bypass = null;
-						
-						if(isInUrl && linkHrefResolver != null 
-								|| isInImgSrc && imgSrcResolver != null) {
-							CharBuffer urlBuff = buffer.asReadOnlyBuffer();
-							urlBuff.limit(contentEnd);
-							urlBuff.position(contentBegin);
-							if(isInUrl)	
-								bypass = linkHrefResolver.apply(urlBuff, outputBuilder);
-							else if(isInImgSrc)
-								bypass = imgSrcResolver.apply(urlBuff, outputBuilder);
-						}
-						
-						if(bypass != null) {
-							if(bypass > 0) { //trip from start
-								contentBegin += bypass;
-							}
-							else { //trip from end
-								contentEnd += bypass;
-							}
-						}
-						if (contentBegin >= 0 && contentBegin < contentEnd) {
-							//copy to output the left part
-							HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, 
-									buffer, contentBegin, contentEnd, outputBuilder);
-						}
-	    			}
-					else {
-						//copy to output with escaped
-						HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, 
-								buffer, contentBegin, contentEnd, outputBuilder);
-					}
-				}
+		finally {
+			output = null;
+		}
+		if(event.shouldCommit())
+			event.record(getClass(), "produceHtml", buffer.position(), markers.cursor() - cursor, outputBuilder.length() - length);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The output is staged and written by the batches of about the flush size (a long content is split,
+	 * the tags of a marker and the escapes may be over it). A Writer is written from a char[], it is not flushed.
+	 */
+	@Override
+	public void produceHtml(SMDMarkers markers, CharBuffer buffer, Appendable output) throws IOException {
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		sink = output;
+		written = 0;
+		stage.setLength(0);
+		try {
+			produce(markers, buffer, stage);
+			flush(stage);
+		}
+		catch(UncheckedIOException e) { //of the sink, by the hooks
+			throw e.getCause();
+		}
+		finally {
+			sink = null;
+			output = null;
+			stage.setLength(0);
+		}
+		if(event.shouldCommit())
+			event.record(getClass(), "produceHtml", buffer.position(), markers.cursor() - cursor, (int) written);
+	}
+	
+	public int getFlushSize() {
+		return flushSize;
+	}
+	
+	/**
+	 * @param flushSize the chars staged before a write to the Appendable of produceHtml.
+	 */
+	public void setFlushSize(int flushSize) {
+		if(flushSize <= 0)
+			throw new IllegalArgumentException("Flush size must be positive");
+		this.flushSize = flushSize;
+	}
+	
+	private void produce(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
+		resetContent();
+		this.output = outputBuilder;
+		render(markers, buffer);
+	}
+	
+	@Override
+	protected void putTag(int tag) {
+		output.append(table.tags[tag]);
+	}
+	
+	@Override
+	protected void putClass(String className) {
+		output.append(className);
+	}
+	
+	@Override
+	protected void putLinkText(CharBuffer buffer) {
+		long mark = written + output.length();
+		if(lastTextBegin < lastTextEnd)
+			putContent(false, buffer, lastTextBegin, lastTextEnd);
+		if(written + output.length() == mark && lastUrlBegin < lastUrlEnd) //no text (or escaped to nothing)
+			putContent(true, buffer, lastUrlBegin, lastUrlEnd);
+	}
+	
+	@Override
+	protected int putContent(boolean attribute, CharBuffer buffer, int begin, int end) {
+		try {
+			appendContent(attribute, buffer, begin, end, output);
+		}
+		catch(IOException e) { //of a sink, thrown by produceHtml(Appendable)
+			throw new UncheckedIOException(e);
+		}
+		return end;
+	}
+	
+	@Override
+	protected int putUrl(boolean link, CharBuffer buffer, int begin, int end) {
+		SMDUrlResolver<StringBuilder> resolver = link ? linkHrefResolver : imgSrcResolver;
+		return resolver != null ? resolver.resolve(buffer, begin, end, output) : 0;
+	}
+	
+	@Override
+	protected void nextMarker() {
+		if(sink != null && output.length() >= flushSize) {
+			try {
+				flush(output);
 			}
-			
-        	markers.cursorGoNext();
-        }
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	//a long content of a sink by the batches, filling the room of the staged chars
+	private void appendContent(boolean safeQuote, CharBuffer buffer, int begin, int end, StringBuilder outputBuilder) throws IOException {
+		while(sink != null) {
+			int room = Math.max(flushSize - outputBuilder.length(), 1);
+			if(end - begin <= room)
+				break;
+			HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, buffer, begin, begin + room, outputBuilder);
+			begin += room;
+			flush(outputBuilder);
+		}
+		HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, buffer, begin, end, outputBuilder);
+	}
+	
+	//write the staged chars to the sink, Writer.append(CharSequence) copies to a String first
+	private void flush(StringBuilder outputBuilder) throws IOException {
+		int length = outputBuilder.length();
+		if(length == 0)
+			return;
+		if(sink instanceof Writer) {
+			if(chunk == null || chunk.length < length)
+				chunk = new char[Math.max(length, flushSize * 2)];
+			outputBuilder.getChars(0, length, chunk, 0);
+			((Writer) sink).write(chunk, 0, length);
+		}
+		else
+			sink.append(outputBuilder);
+		written += length;
+		outputBuilder.setLength(0);
 	}
 
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.render;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDRender;
+
+/**
+ * The opcodes of the renders by the state, one table instead of a switch over the states in each render.
+ * 
+ * An opcode of a marker event (the marker start or stop, the content start or stop) of a state packs:
+ * the tag before the class attribute, the class (CLASS_FOR_* of SMDRender, 0 if none), the tag after it and the flags.
+ * A tag is an index of tags (0 is empty), pre-encoded by tagBytes for the UTF-8 writer.
+ * The flags of the content start are the escaping and the spans to keep.
+ * HTML is of the HTML renders, XHTML of the text of XhtmlWriterImpl: the same opcodes, other tags.
+ */
+final class HtmlRenderTable {
+
+	static final int STATES = 64;
+	
+	static final int MARKER_START = 0;
+	static final int MARKER_STOP = 1;
+	static final int CONTENT_START = 2;
+	static final int CONTENT_STOP = 3;
+	
+	//the flags of an opcode
+	static final int ATTRIBUTE = 1 << 24; //the content is of an attribute, escaped with the quotes
+	static final int LINK_TEXT_SPAN = 1 << 25; //the content is kept as the span of the link text, not written
+	static final int LINK_URL = 1 << 26; //the content is the URL of a link, by the link resolver and kept as the span
+	static final int IMAGE_URL = 1 << 27; //the content is the URL of an image, by the image resolver
+	static final int LINK_TEXT = 1 << 28; //the link text (or URL) is written between the tags
+	static final int LANGUAGE = 1 << 29; //the tag after is of the language, if the next marker is
+	
+	static final HtmlRenderTable HTML = html();
+	static final HtmlRenderTable XHTML = xhtml();
+	
+	//set by build, not changed after
+	String[] tags;
+	byte[][] tagBytes;
+	final int classBeginTag;
+	final int classEndTag;
+	//the tag after the class of a code block with the language, or without the class
+	final int languageClassTag;
+	final int languageTag;
+	
+	private final int[] ops = new int[4 * STATES];
+	private List<String> tagList = new ArrayList<>(); //of the building
+	
+	private HtmlRenderTable(String classBegin, String classEnd, String languageClass, String language) {
+		tagList.add("");
+		classBeginTag = tag(classBegin);
+		classEndTag = tag(classEnd);
+		languageClassTag = tag(languageClass);
+		languageTag = tag(language);
+	}
+	
+	private static HtmlRenderTable html() {
+		HtmlRenderTable t = new HtmlRenderTable(HtmlBaseTagRender.ATTR_CLASS_BEGIN, HtmlBaseTagRender.ATTR_CLASS_END,
+				HtmlBaseTagRender.ATTR_CLASS_END + HtmlBaseTagRender.PRE_WITH_LANGUAGUE, HtmlBaseTagRender.PRE_WITH_LANGUAGUE);
+		
+		t.set(MARKER_START, SMDParser.STATE_STRIKETHROUGH, HtmlBaseTagRender.TAG_STRIKE_BEGIN, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_BOLD, HtmlBaseTagRender.TAG_BOLD_BEGIN, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_ITALIC, HtmlBaseTagRender.TAG_ITALIC_BEGIN, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_UNDERLINE, HtmlBaseTagRender.TAG_UNDERLINE_BEGIN, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_INLINE_CODE, HtmlBaseTagRender.TAG_CODE_BEGIN, SMDRender.CLASS_FOR_INLINE_CODE, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_LINK, HtmlBaseTagRender.TAG_A_BEGIN, SMDRender.CLASS_FOR_LINK, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_BEGIN, SMDRender.CLASS_FOR_IMG, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_CODE_BLOCK, HtmlBaseTagRender.PRE_TAG, SMDRender.CLASS_FOR_PRE_CODE, HtmlBaseTagRender.PRE_STD, LANGUAGE);
+		t.set(MARKER_START, SMDParser.STATE_QUOTE_BLOCK, HtmlBaseTagRender.BLOCKQUOTE_BEGIN, SMDRender.CLASS_FOR_BLOCKQUOTE, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_PARAGRAPH, HtmlBaseTagRender.PARA_BEGIN, SMDRender.CLASS_FOR_PARAGRAPH, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_NEW_LINE, HtmlBaseTagRender.TAG_NEW_LINE, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_ORDERED_LIST, HtmlBaseTagRender.OL_BEGIN, SMDRender.CLASS_FOR_OL, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_UNORDERED_LIST, HtmlBaseTagRender.UL_BEGIN, SMDRender.CLASS_FOR_UL, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_LIST_ITEM, HtmlBaseTagRender.LI_BEGIN, SMDRender.CLASS_FOR_LI, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL, HtmlBaseTagRender.HR, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL_D, HtmlBaseTagRender.HR_DOUBLE, 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL_U, HtmlBaseTagRender.HR_UNDERSCORE, 0, "", 0);
+		
+		t.set(MARKER_STOP, SMDParser.STATE_STRIKETHROUGH, HtmlBaseTagRender.TAG_STRIKE_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_BOLD, HtmlBaseTagRender.TAG_BOLD_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_ITALIC, HtmlBaseTagRender.TAG_ITALIC_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_UNDERLINE, HtmlBaseTagRender.TAG_UNDERLINE_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_INLINE_CODE, HtmlBaseTagRender.TAG_CODE_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_LINK, HtmlBaseTagRender.TAG_A_TEXT_BEGIN, 0, HtmlBaseTagRender.TAG_A_END, LINK_TEXT);
+		t.set(MARKER_STOP, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_CODE_BLOCK, HtmlBaseTagRender.PRE_POSTFIX, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_QUOTE_BLOCK, HtmlBaseTagRender.BLOCKQUOTE_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_PARAGRAPH, HtmlBaseTagRender.PARA_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_ORDERED_LIST, HtmlBaseTagRender.OL_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_UNORDERED_LIST, HtmlBaseTagRender.UL_END, 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_LIST_ITEM, HtmlBaseTagRender.LI_END, 0, "", 0);
+		
+		for(int i = 0; i < HtmlBaseTagRender.HEADINGS_BEGIN.length; i++) {
+			t.set(MARKER_START, SMDParser.STATE_HEADING_1 + i, HtmlBaseTagRender.HEADINGS_BEGIN[i], 0, "", 0);
+			t.set(MARKER_STOP, SMDParser.STATE_HEADING_1 + i, HtmlBaseTagRender.HEADINGS_END[i], 0, "", 0);
+		}
+		
+		t.set(CONTENT_START, SMDParser.STATE_URL, HtmlBaseTagRender.TAG_A_URL_BEGIN, 0, "", ATTRIBUTE | LINK_URL);
+		t.set(CONTENT_START, SMDParser.STATE_LINK, "", 0, "", LINK_TEXT_SPAN);
+		t.set(CONTENT_START, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_TEXT_BEGIN, 0, "", ATTRIBUTE);
+		t.set(CONTENT_START, SMDParser.STATE_IMAGE_SRC, HtmlBaseTagRender.TAG_IMG_URL_BEGIN, 0, "", ATTRIBUTE | IMAGE_URL);
+		
+		t.set(CONTENT_STOP, SMDParser.STATE_URL, HtmlBaseTagRender.TAG_A_URL_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_TEXT_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_IMAGE_SRC, HtmlBaseTagRender.TAG_IMG_URL_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_CODE_LANGUAGE, HtmlBaseTagRender.PRE_WITH_LANGUAGUE_POSTFIX, 0, "", 0);
+		return t.build();
+	}
+	
+	/*
+	 * The elements of the StAX writer as text: the empty elements are closed by "/>", an image by its end tag,
+	 * no new line after a block, and the language is merged into the class of pre (no code element).
+	 */
+	private static HtmlRenderTable xhtml() {
+		HtmlRenderTable t = new HtmlRenderTable(HtmlBaseTagRender.ATTR_CLASS_BEGIN, HtmlBaseTagRender.ATTR_CLASS_END,
+				" " + XhtmlWriterImpl.XHTML_PRE_LANGUAGUE_PREFIX, HtmlBaseTagRender.ATTR_CLASS_BEGIN + XhtmlWriterImpl.XHTML_PRE_LANGUAGUE_PREFIX);
+		
+		for(int state = 0; state < STATES; state++) {
+			String name = XhtmlWriterImpl.element(state);
+			if(name == null)
+				continue;
+			int classForTag = classForTag(HTML.op(MARKER_START, state));
+			t.set(MARKER_START, state, "<" + name, classForTag, HtmlBaseTagRender.TAG_BEGIN_GT, 0);
+			t.set(MARKER_STOP, state, "</" + name + ">", 0, "", 0);
+		}
+		t.set(MARKER_START, SMDParser.STATE_LINK, "<a", SMDRender.CLASS_FOR_LINK, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_IMAGE, "<img", SMDRender.CLASS_FOR_IMG, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_CODE_BLOCK, "<pre", SMDRender.CLASS_FOR_PRE_CODE, HtmlBaseTagRender.TAG_BEGIN_GT, LANGUAGE);
+		t.set(MARKER_START, SMDParser.STATE_NEW_LINE, "<br/>", 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL, "<hr/>", 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL_D, "<hr class=\"double-line\"/>", 0, "", 0);
+		t.set(MARKER_START, SMDParser.STATE_HORIZONTAL_U, "<hr class=\"underscore-line\"/>", 0, "", 0);
+		t.set(MARKER_STOP, SMDParser.STATE_LINK, HtmlBaseTagRender.TAG_A_TEXT_BEGIN, 0, "</a>", LINK_TEXT);
+		t.set(MARKER_STOP, SMDParser.STATE_IMAGE, "></img>", 0, "", 0);
+		
+		t.set(CONTENT_START, SMDParser.STATE_URL, HtmlBaseTagRender.TAG_A_URL_BEGIN, 0, "", ATTRIBUTE | LINK_URL);
+		t.set(CONTENT_START, SMDParser.STATE_LINK, "", 0, "", LINK_TEXT_SPAN);
+		t.set(CONTENT_START, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_TEXT_BEGIN, 0, "", ATTRIBUTE);
+		t.set(CONTENT_START, SMDParser.STATE_IMAGE_SRC, HtmlBaseTagRender.TAG_IMG_URL_BEGIN, 0, "", ATTRIBUTE | IMAGE_URL);
+		t.set(CONTENT_START, SMDParser.STATE_CODE_LANGUAGE, "", 0, "", ATTRIBUTE);
+		
+		t.set(CONTENT_STOP, SMDParser.STATE_URL, HtmlBaseTagRender.TAG_A_URL_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_IMAGE, HtmlBaseTagRender.TAG_IMG_TEXT_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_IMAGE_SRC, HtmlBaseTagRender.TAG_IMG_URL_END, 0, "", 0);
+		t.set(CONTENT_STOP, SMDParser.STATE_CODE_LANGUAGE, HtmlBaseTagRender.PRE_WITH_LANGUAGUE_POSTFIX, 0, "", 0);
+		return t.build();
+	}
+	
+	private HtmlRenderTable build() {
+		tags = tagList.toArray(new String[0]);
+		tagBytes = new byte[tags.length][];
+		for(int i = 0; i < tags.length; i++)
+			tagBytes[i] = tags[i].getBytes(StandardCharsets.UTF_8);
+		tagList = null;
+		return this;
+	}
+	
+	//the index of the tag, the same tag once
+	private int tag(String tag) {
+		int i = tagList.indexOf(tag);
+		if(i >= 0)
+			return i;
+		tagList.add(tag);
+		return tagList.size() - 1;
+	}
+	
+	private void set(int event, int state, String before, int classForTag, String after, int flags) {
+		ops[event * STATES + state] = tag(before) | tag(after) << 8 | classForTag << 16 | flags;
+	}
+	
+	/**
+	 * @param event MARKER_START, MARKER_STOP, CONTENT_START or CONTENT_STOP.
+	 * @param state the state of the marker.
+	 * @return the opcode, 0 if nothing.
+	 */
+	int op(int event, int state) {
+		return state < STATES ? ops[event * STATES + state] : 0;
+	}
+	
+	static int before(int op) {
+		return op & 0xFF;
+	}
+	
+	static int after(int op) {
+		return (op >>> 8) & 0xFF;
+	}
+	
+	static int classForTag(int op) {
+		return (op >>> 16) & 0xFF;
+	}
+}
@@ -20,359 +20,159 @@ import java.util.function.BiFunction;
 
 import vietfi.markdown.strict.SMDHtmlWriter;
 import vietfi.markdown.strict.SMDMarkers;
-import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDUrlResolver;
+import vietfi.markdown.strict.jfr.SMDRenderEvent;
 import vietfi.markdown.strict.line.HtmlEscapeUtil;
 
 public class HtmlWriterImpl extends HtmlBaseTagRender implements SMDHtmlWriter {
 
 
-	protected BiFunction<CharBuffer, CharBuffer, Integer> linkHrefResolver = null;
-	protected BiFunction<CharBuffer, CharBuffer, Integer> imgSrcResolver = null;
+	protected SMDUrlResolver<CharBuffer> linkHrefResolver = null;
+	protected SMDUrlResolver<CharBuffer> imgSrcResolver = null;
 	
 	@Override
-	public void setLinkHrefResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver) {
+	public void setLinkUrlResolver(SMDUrlResolver<CharBuffer> resolver) {
 		this.linkHrefResolver = resolver;
 	}
 
 	@Override
-	public void setImageSrcResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver) {
+	public void setImageUrlResolver(SMDUrlResolver<CharBuffer> resolver) {
 		this.imgSrcResolver = resolver;
 	}
+
+	@Override
+	public void setLinkHrefResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver) {
+		this.linkHrefResolver = SMDUrlResolver.of(resolver);
+	}
+
+	@Override
+	public void setImageSrcResolver(BiFunction<CharBuffer, CharBuffer, Integer> resolver) {
+		this.imgSrcResolver = SMDUrlResolver.of(resolver);
+	}
 	
 	/**
-	 * max size of URL or encoded `text` string in the &lt;a&gt; tag.
+	 * max size of a resolved URL, and the least capacity of the output.
 	 */
 	public static final int MINIMUM_BUFFER_SIZE = 256;
 	
-    private int contentOutput = 0;
+	//the chars of the marker not written yet, in reading mode
+	private CharBuffer tags = CharBuffer.allocate(MINIMUM_BUFFER_SIZE).flip();
+	private CharBuffer output; //of a call
 	    
 	@Override
 	public boolean appendHtml(SMDMarkers markers, CharBuffer buffer, CharBuffer outputBuffer) {
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		int position = outputBuffer.position();
+		boolean done;
+		try {
+			done = append(markers, buffer, outputBuffer);
+		}
+		finally {
+			output = null;
+		}
+		if(event.shouldCommit())
+			event.record(getClass(), "appendHtml", buffer.position(), markers.cursor() - cursor, outputBuffer.position() - position);
+		return done;
+	}
+	
+	private boolean append(SMDMarkers markers, CharBuffer buffer, CharBuffer outputBuffer) {
 		if(outputBuffer.capacity() < MINIMUM_BUFFER_SIZE)
 			throw new IllegalArgumentException("Buffer capacity too small, at least "+MINIMUM_BUFFER_SIZE+" required!");
 		if(outputBuffer.remaining() < MINIMUM_BUFFER_SIZE)
 			return false; //no write out, please flush buffer and flip it first.
+		if(!flush(outputBuffer))
+			return false;
 		
-		if(markers.isEmpty() && buffer.position() > 0) {
-			//whole buffer is the line of paragraph
-			contentOutput = HtmlEscapeUtil.writeWithEscapeHtml(false, buffer, contentOutput, buffer.position(), 0, outputBuffer);
-			return contentOutput >= buffer.position();
-		}
-        
-        StringBuilder lastText = null;
-        StringBuilder lastUrl = null;
-        boolean safeQuote = false;
-    	boolean isInLinkText = false;
-    	boolean isInUrl = false;
-    	boolean isInImgSrc = false;
-    	
-        while(markers.cursorIsAvailable()) {
-        	boolean isMarkerStop = markers.cursorIsMarkerStop();
-        	int contentBegin = markers.cursorPosition1();
-			if(!isMarkerStop && contentBegin >= buffer.position()) //exceed the output point
-				break;
-			
-        	int state = markers.cursorState(); //extract state
-        	
-        	safeQuote = false;
-        	isInLinkText = false;
-        	isInUrl = false;
-        	isInImgSrc = false;
-        	
-        	if(markers.cursorIsMarkerStart()) {
-        		//start marker
-        		switch(state) {
-	        		case SMDParser.STATE_STRIKETHROUGH:
-	        			outputBuffer.append(TAG_STRIKE_BEGIN);
-	    				break;
-	        		case SMDParser.STATE_BOLD:
-	        			outputBuffer.append(TAG_BOLD_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_ITALIC:
-	        			outputBuffer.append(TAG_ITALIC_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_UNDERLINE:
-	        			outputBuffer.append(TAG_UNDERLINE_BEGIN);
-	        			break;
-	        		case SMDParser.STATE_INLINE_CODE:
-	        			outputBuffer.append(TAG_CODE_BEGIN);
-	        			if(codeClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(codeClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_LINK:
-	        			outputBuffer.append(TAG_A_BEGIN);
-	        			if(linkClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(linkClass).append(ATTR_CLASS_END);
-	        			break;
-	        		case SMDParser.STATE_IMAGE:
-	        			outputBuffer.append(TAG_IMG_BEGIN);
-	        			if(imgClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(imgClass).append(ATTR_CLASS_END);
-	        			break;
-	        		case SMDParser.STATE_CODE_BLOCK:
-	        			outputBuffer.append(PRE_TAG);
-	        			if(preCodeClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(preCodeClass).append(ATTR_CLASS_END);
-	        			if(markers.cursorNextState() == SMDParser.STATE_CODE_LANGUAGE)
-							outputBuffer.append(PRE_WITH_LANGUAGUE);
-						else
-							outputBuffer.append(PRE_STD);
-	        			break;
-	        		case SMDParser.STATE_QUOTE_BLOCK:
-	        			outputBuffer.append(BLOCKQUOTE_BEGIN);
-	        			if(blockquoteClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(blockquoteClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	        			break;
-	        		
-	        		case SMDParser.STATE_PARAGRAPH:
-	    				outputBuffer.append(PARA_BEGIN);
-	    				if(pClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(pClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	    				break;
-	    				
-	        		case SMDParser.STATE_NEW_LINE:
-	        			outputBuffer.append(TAG_NEW_LINE);
-	    				break;
-	    				
-	        		case SMDParser.STATE_ORDERED_LIST:
-	        			outputBuffer.append(OL_BEGIN);
-	        			if(olClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(olClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_UNORDERED_LIST:
-	        			outputBuffer.append(UL_BEGIN);
-	        			if(ulClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(ulClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	        			break;
-	        		case SMDParser.STATE_LIST_ITEM:
-	        			outputBuffer.append(LI_BEGIN);
-	        			if(liClass != null)
-	        				outputBuffer.append(ATTR_CLASS_BEGIN).append(liClass).append(ATTR_CLASS_END);
-	        			outputBuffer.append(TAG_BEGIN_GT);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HEADING_1:
-	        		case SMDParser.STATE_HEADING_2:
-	        		case SMDParser.STATE_HEADING_3:
-	        		case SMDParser.STATE_HEADING_4:
-	        		case SMDParser.STATE_HEADING_5:
-	        		case SMDParser.STATE_HEADING_6:
-	        			outputBuffer.append(HEADINGS_BEGIN[state - SMDParser.STATE_HEADING_1]);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HORIZONTAL:
-	        			outputBuffer.append(HR);
-	        			break;
-	        		case SMDParser.STATE_HORIZONTAL_D:
-	        			outputBuffer.append(HR_DOUBLE);
-	        			break;
-	        		case SMDParser.STATE_HORIZONTAL_U:
-	        			outputBuffer.append(HR_UNDERSCORE);
-	        			break;
-        		}
-        	}
-        	//stop
-        	else if(isMarkerStop) { //MARKER_STOP
-        		//stop marker
-        		switch(state) {
-	        		case SMDParser.STATE_STRIKETHROUGH:
-	        			outputBuffer.append(TAG_STRIKE_END);
-	    				break;
-	        		case SMDParser.STATE_BOLD:
-	        			outputBuffer.append(TAG_BOLD_END);
-	        			break;
-	        		case SMDParser.STATE_ITALIC:
-	        			outputBuffer.append(TAG_ITALIC_END);
-	        			break;
-	        		case SMDParser.STATE_UNDERLINE:
-	        			outputBuffer.append(TAG_UNDERLINE_END);
-	        			break;
-	        		case SMDParser.STATE_INLINE_CODE:
-	        			outputBuffer.append(TAG_CODE_END);
-	        			break;
-	        		case SMDParser.STATE_LINK:
-	        			if(lastText != null && lastText.length() > 0) {
-	        				outputBuffer.append(TAG_A_TEXT_BEGIN).append(lastText).append(TAG_A_END);
-	        			}
-	        			else {
-	        				outputBuffer.append(TAG_A_TEXT_BEGIN).append(lastUrl).append(TAG_A_END);
-	        			}
-	        			break;
-	        		case SMDParser.STATE_IMAGE:
-	        			outputBuffer.append(TAG_IMG_END);
-	        			break;
-	        		case SMDParser.STATE_CODE_BLOCK:
-	        			outputBuffer.append(PRE_POSTFIX);
-	        			break;
-	        		case SMDParser.STATE_QUOTE_BLOCK:
-	        			outputBuffer.append(BLOCKQUOTE_END);
-	        			break;
-	        		
-	        		case SMDParser.STATE_PARAGRAPH:
-	    				outputBuffer.append(PARA_END);
-	    				break;
-	        		
-	        		case SMDParser.STATE_ORDERED_LIST:
-	        			outputBuffer.append(OL_END);
-	        			break;
-	        		case SMDParser.STATE_UNORDERED_LIST:
-	        			outputBuffer.append(UL_END);
-	        			break;
-	        		case SMDParser.STATE_LIST_ITEM:
-	        			outputBuffer.append(LI_END);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HEADING_1:
-	        		case SMDParser.STATE_HEADING_2:
-	        		case SMDParser.STATE_HEADING_3:
-	        		case SMDParser.STATE_HEADING_4:
-	        		case SMDParser.STATE_HEADING_5:
-	        		case SMDParser.STATE_HEADING_6:
-	        			outputBuffer.append(HEADINGS_END[state - SMDParser.STATE_HEADING_1]);
-	        			break;
-	    		}
-        	}
-        	
-        	if(markers.cursorIsContentStart()) {
-        		safeQuote = (state == SMDParser.STATE_IMAGE || state == SMDParser.STATE_IMAGE_SRC || state == SMDParser.STATE_URL);
-        		isInLinkText = (state == SMDParser.STATE_LINK);
-        		isInUrl = (state == SMDParser.STATE_URL);
-        		isInImgSrc = (state == SMDParser.STATE_IMAGE_SRC);
-        		
-        		switch(state) {
-        		case SMDParser.STATE_URL: //state URL content is differ
-        			outputBuffer.append(TAG_A_URL_BEGIN);
-        			if(lastUrl == null)
-        				lastUrl = new StringBuilder();
-        			else
-        				lastUrl.setLength(0);
-        			break;
-        		case SMDParser.STATE_LINK:
-        			if(lastText == null)
-        				lastText = new StringBuilder();
-        			else
-        				lastText.setLength(0);
-        			break;
-        		case SMDParser.STATE_IMAGE:
-        			outputBuffer.append(TAG_IMG_TEXT_BEGIN);
-        			break;
-        		case SMDParser.STATE_IMAGE_SRC:
-        			outputBuffer.append(TAG_IMG_URL_BEGIN);
-        			break;
-        		}
-        	}
-        	else if(markers.cursorIsContentStop()) { //End of content
-        		switch(state) {
-        		case SMDParser.STATE_URL: //state URL content is differ
-        			outputBuffer.append(TAG_A_URL_END);
-        			break;
-        		case SMDParser.STATE_IMAGE:
-        			outputBuffer.append(TAG_IMG_TEXT_END);
-        			break;
-        		case SMDParser.STATE_IMAGE_SRC:
-        			outputBuffer.append(TAG_IMG_URL_END);
-        			break;
-        		case SMDParser.STATE_CODE_LANGUAGE:
-        			outputBuffer.append(PRE_WITH_LANGUAGUE_POSTFIX);
-        			break;
-        		}
-        	}
-        	
-			int contentEnd = Math.min(markers.cursorPosition2(), buffer.position());
-			//content or plain text
-			if (contentBegin >= 0 && contentBegin < contentEnd && contentOutput < contentEnd) {
-        		//the link content, do not print out, save to lastText,
-        		if(isInLinkText) {
-        			//copy to lastText
-        			for (int j = contentBegin; j< contentEnd; j++) {
-        				char c = buffer.get(j);
-        				String escape = HtmlEscapeUtil.escapeHtml(c, false);
-        				if(escape != null)
-        					lastText.append(escape);
-        				else
-        					lastText.append(c);
-        			}
-        		}
-        		else {
-        			if(contentOutput < contentBegin)
-    					contentOutput = contentBegin;
-        			
-        			if(isInUrl || isInImgSrc) {
-	        			if(isInUrl) {//copy to URL as well
-		        			for (int j = contentOutput; j< contentEnd; j++) {
-		        				if(outputBuffer.remaining() < 1+1)
-		        					return false;
-		        				
-		        				char c = buffer.get(j);
-		        				String escape = HtmlEscapeUtil.escapeHtml(c, true);
-		        					if(escape != null)
-		            					lastUrl.append(escape);
-		            				else
-		            					lastUrl.append(c);
-		        			}
-	        			}
-	        			
-	        			Integer bypass = null;
-						
-	        			if(isInUrl && linkHrefResolver != null 
-	        					|| isInImgSrc && imgSrcResolver != null) {
-							CharBuffer urlBuff = buffer.asReadOnlyBuffer();
-							urlBuff.limit(contentEnd);
-							urlBuff.position(contentBegin);
-							if(isInUrl)	
-								bypass = linkHrefResolver.apply(urlBuff, outputBuffer);
-							else if(isInImgSrc)
-								bypass = imgSrcResolver.apply(urlBuff, outputBuffer);
-						}
-						
-						if(bypass != null) {
-							if(bypass > 0) { //trip from start
-								contentOutput += bypass;
-							}
-							else { //trip from end
-								contentEnd += bypass;
-							}
-						}
-						if (contentOutput >= 0 && contentOutput < contentEnd) {
-							//copy to output the left part
-							contentOutput = HtmlEscapeUtil.writeWithEscapeHtml(safeQuote, 
-		        					buffer, contentOutput, contentEnd, 1, outputBuffer);
-						}
-        			}
-        			else {
-	        			//copy to output as is escape
-	        			contentOutput = HtmlEscapeUtil.writeWithEscapeHtml(safeQuote, 
-	        					buffer, contentOutput, contentEnd, 1, outputBuffer);
-        			}
-        			
-    				if(contentOutput < contentEnd)
-    					return false;
-    				if(!markers.cursorCanGoNext() && contentEnd == buffer.position()) {//break, don't increase markerIndex
-    					return true;
-    				}
-    			
-        		}
-        		
-        	}
-			markers.cursorGoNext();
-        }
-        
-		return true;
+		this.output = outputBuffer;
+		return render(markers, buffer);
+	}
+	
+	@Override
+	protected void putTag(int tag) {
+		String chars = table.tags[tag];
+		ensureTags(chars.length());
+		tags.append(chars);
+	}
+	
+	@Override
+	protected void putClass(String className) {
+		ensureTags(className.length());
+		tags.append(className);
+	}
+	
+	@Override
+	protected void putLinkText(CharBuffer buffer) {
+		int mark = tags.position();
+		putText(false, buffer, lastTextBegin, lastTextEnd);
+		if(tags.position() == mark) //no text (or escaped to nothing)
+			putText(true, buffer, lastUrlBegin, lastUrlEnd);
+	}
+	
+	@Override
+	protected void beginTags() {
+		tags.clear();
+	}
+	
+	@Override
+	protected boolean endTags() {
+		tags.flip();
+		return flush(output);
+	}
+	
+	@Override
+	protected int putContent(boolean attribute, CharBuffer buffer, int begin, int end) {
+		return HtmlEscapeUtil.writeWithEscapeHtml(attribute, buffer, begin, end, 1, output);
+	}
+	
+	@Override
+	protected int putUrl(boolean link, CharBuffer buffer, int begin, int end) {
+		SMDUrlResolver<CharBuffer> resolver = link ? linkHrefResolver : imgSrcResolver;
+		return resolver != null ? resolver.resolve(buffer, begin, end, output) : 0;
+	}
+	
+	//the space of the resolver
+	@Override
+	protected boolean hasUrlRoom(boolean link) {
+		return (link ? linkHrefResolver : imgSrcResolver) == null || output.remaining() >= MINIMUM_BUFFER_SIZE;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		tags.clear().flip();
 	}
 
 	@Override
 	public void compact(int position) {
-		if(this.contentOutput > position) {
-			this.contentOutput -= position;
+		compactSpans(position);
+	}
+	
+	//write out the kept chars, true if all
+	private boolean flush(CharBuffer outputBuffer) {
+		int n = Math.min(tags.remaining(), outputBuffer.remaining());
+		outputBuffer.put(tags.array(), tags.position(), n);
+		tags.position(tags.position() + n);
+		return !tags.hasRemaining();
+	}
+	
+	//the escaped span of the buffer, doubling the tags until all written
+	private void putText(boolean safeQuote, CharBuffer buffer, int begin, int end) {
+		if(begin >= end)
+			return;
+		ensureTags(end - begin);
+		while((begin = HtmlEscapeUtil.writeWithEscapeHtml(safeQuote, buffer, begin, end, 0, tags)) < end)
+			ensureTags(tags.capacity());
+	}
+	
+	//the long link text grows the buffer, kept for the next ones
+	private void ensureTags(int length) {
+		if(tags.remaining() < length) {
+			CharBuffer newTags = CharBuffer.allocate(Math.max(tags.capacity() * 2, tags.position() + length));
+			tags.flip();
+			newTags.put(tags);
+			tags = newTags;
 		}
-		else
-			this.contentOutput = 0;
 	}
-
-
 }
@@ -15,6 +15,9 @@
  */
 package vietfi.markdown.strict.render;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.CharBuffer;
 import java.util.function.Function;
 
@@ -23,9 +26,12 @@ import javax.xml.stream.XMLStreamWriter;
 
 import vietfi.markdown.strict.SMDMarkers;
 import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDUrlResolver;
 import vietfi.markdown.strict.SMDXhtmlWriter;
+import vietfi.markdown.strict.jfr.SMDRenderEvent;
+import vietfi.markdown.strict.line.XmlEscapeUtil;
 
-public class XhtmlWriterImpl implements SMDXhtmlWriter {
+public class XhtmlWriterImpl extends HtmlBaseTagRender implements SMDXhtmlWriter {
 	
 	public static final String XHTML_BLOCKQUOTE_TAG = "blockquote";
 	public static final String XHTML_PARA_TAG = "p";
@@ -52,96 +58,188 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
 
 	private final static String XHTML_CLASS_ATTR = "class";
 	
-	protected String pClass;
-	protected String linkClass;
-	protected String imgClass;
-	protected String codeClass;
-	protected String preCodeClass;
-	protected String blockquoteClass;
-	protected String ulClass;
-	protected String olClass;
-	protected String liClass;
+	//the elements by the state of writeXhtml, the tags of produceXhtml are of the XHTML table of HtmlRenderTable
+	private static final String[] XHTML_ELEMENTS = new String[HtmlRenderTable.STATES];
+	
+	static {
+		XHTML_ELEMENTS[SMDParser.STATE_PARAGRAPH] = XHTML_PARA_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_STRIKETHROUGH] = XHTML_STRIKETHROUGH;
+		XHTML_ELEMENTS[SMDParser.STATE_BOLD] = XHTML_BOLD;
+		XHTML_ELEMENTS[SMDParser.STATE_ITALIC] = XHTML_ITALIC;
+		XHTML_ELEMENTS[SMDParser.STATE_UNDERLINE] = XHTML_UNDERLINE;
+		XHTML_ELEMENTS[SMDParser.STATE_INLINE_CODE] = XHTML_CODE;
+		XHTML_ELEMENTS[SMDParser.STATE_LINK] = XHTML_A_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_IMAGE] = XHTML_IMG_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_CODE_BLOCK] = XHTML_PRE_TAG_NAME;
+		XHTML_ELEMENTS[SMDParser.STATE_QUOTE_BLOCK] = XHTML_BLOCKQUOTE_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_ORDERED_LIST] = XHTML_OL_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_UNORDERED_LIST] = XHTML_UL_TAG;
+		XHTML_ELEMENTS[SMDParser.STATE_LIST_ITEM] = XHTML_LI_TAG;
+		for(int i = 0; i < XHTML_HEADINGS_TAG.length; i++)
+			XHTML_ELEMENTS[SMDParser.STATE_HEADING_1 + i] = XHTML_HEADINGS_TAG[i];
+	}
+	
+	//the element of the state, null if none
+	static String element(int state) {
+		return XHTML_ELEMENTS[state];
+	}
+	
+	//the class names by CLASS_FOR_*, not escaped for the StAX writer
+	private final String[] classNames = new String[16];
+	
+	public XhtmlWriterImpl() {
+		super(HtmlRenderTable.XHTML);
+	}
 
 	@Override
 	public void setClassNameForTag(String className, int classForTag) {
-		if(className.isBlank())
-			className = null;
-		
-		switch(classForTag) {
-		case CLASS_FOR_PARAGRAPH:
-			this.pClass = className;
-			break;
-		case CLASS_FOR_LINK:
-			this.linkClass = className;
-			break;
-		case CLASS_FOR_IMG:
-			this.imgClass = className;
-			break;
-		case CLASS_FOR_INLINE_CODE:
-			this.codeClass = className;
-			break;
-		case CLASS_FOR_PRE_CODE:
-			this.preCodeClass = className;
-			break;
-		case CLASS_FOR_BLOCKQUOTE:
-			this.blockquoteClass = className;
-			break;
-		case CLASS_FOR_UL:
-			this.ulClass = className;
-			break;
-		case CLASS_FOR_OL:
-			this.olClass = className;
-			break;
-		case CLASS_FOR_LI:
-			this.liClass = className;
-			break;
-		};
-	}
-	
-	protected Function<String, String> linkHrefResolver = null;
-	protected Function<String, String> imgSrcResolver = null;
+		super.setClassNameForTag(className, classForTag);
+		if(classForTag > 0 && classForTag < classNames.length)
+			classNames[classForTag] = className == null || className.isBlank() ? null : className;
+	}
+	
+	//the class name of produceXhtml, escaped as an XML attribute
+	@Override
+	protected String escapeClassName(String className) {
+		CharBuffer escaped = CharBuffer.allocate(className.length() * XmlEscapeUtil.MAXIMUM_ESCAPE_LENGTH);
+		XmlEscapeUtil.writeWithEscapeXml(true, className, 0, className.length(), escaped);
+		return escaped.flip().toString();
+	}
+	
+	protected SMDUrlResolver<StringBuilder> linkHrefResolver = null;
+	protected SMDUrlResolver<StringBuilder> imgSrcResolver = null;
 
 	@Override
-	public void setLinkHrefResolver(Function<String, String> resolver) {
+	public void setLinkUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
 		this.linkHrefResolver = resolver;
 	}
 
 	@Override
-	public void setImageSrcResolver(Function<String, String> resolver) {
+	public void setImageUrlResolver(SMDUrlResolver<StringBuilder> resolver) {
 		this.imgSrcResolver = resolver;
 	}
 
+	@Override
+	public void setLinkHrefResolver(Function<String, String> resolver) {
+		this.linkHrefResolver = SMDUrlResolver.ofString(resolver);
+	}
+
+	@Override
+	public void setImageSrcResolver(Function<String, String> resolver) {
+		this.imgSrcResolver = SMDUrlResolver.ofString(resolver);
+	}
+
+	
+	/**
+	 * The chars staged before a write to the output of produceXhtml.
+	 */
+	public static final int DEFAULT_FLUSH_SIZE = 8192;
+	
+	private int flushSize = DEFAULT_FLUSH_SIZE;
+	//the output of produceXhtml, written by the bulk copies of the staged chars
+	private Appendable sink;
+	private long written;
+	private CharBuffer stage; //a heap buffer of the flush size, allocated on first use
 	
 	private char[] myArray = null;
 	StringBuilder sb = new StringBuilder(1024);
-	StringBuilder lastText = new StringBuilder(128);
-    StringBuilder lastUrl = new StringBuilder(128);
+	private final StringBuilder attribute = new StringBuilder(128); //of a resolver
+	
+	@Override
+	public void reset() {
+		super.reset();
+		sb.setLength(0);
+	}
     
 	@Override
 	public void writeXhtml(SMDMarkers markers, CharBuffer buffer, XMLStreamWriter xmlWriter) throws XMLStreamException {
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		write(markers, buffer, xmlWriter);
+		if(event.shouldCommit())
+			event.record(getClass(), "writeXhtml", buffer.position(), markers.cursor() - cursor, -1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The XML is written directly by the render loop of the HTML renders, with the tags of XHTML and XmlEscapeUtil, not by the StAX.
+	 * The output is the same as of writeXhtml by the XMLStreamWriter of the JDK, but the chars not allowed by XML
+	 * are replaced (see XmlEscapeUtil) and the class of pre is merged with its language, it is well-formed.
+	 * The markers may be of many calls as produceHtml.
+	 */
+	@Override
+	public void produceXhtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
+		try {
+			produceXhtml(markers, buffer, (Appendable) outputBuilder);
+		}
+		catch(IOException e) { //not of a StringBuilder
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The output is staged in a char buffer and written by the batches of the flush size (a StringBuilder too),
+	 * a Writer and a CharBuffer from its array. A Writer is not flushed. For the bytes, an OutputStreamWriter of the stream.
+	 */
+	@Override
+	public void produceXhtml(SMDMarkers markers, CharBuffer buffer, Appendable output) throws IOException {
+		SMDRenderEvent event = new SMDRenderEvent();
+		event.begin();
+		int cursor = markers.cursor();
+		if(stage == null)
+			stage = CharBuffer.allocate(flushSize);
+		sink = output;
+		written = 0;
+		stage.clear();
+		try {
+			resetContent();
+			render(markers, buffer);
+			flush();
+		}
+		catch(UncheckedIOException e) { //of the sink, by the hooks
+			throw e.getCause();
+		}
+		finally {
+			sink = null;
+			stage.clear();
+		}
+		if(event.shouldCommit())
+			event.record(getClass(), "produceXhtml", buffer.position(), markers.cursor() - cursor, (int) written);
+	}
+	
+	public int getFlushSize() {
+		return flushSize;
+	}
+	
+	/**
+	 * @param flushSize the chars staged before a write to the Appendable of produceXhtml.
+	 */
+	public void setFlushSize(int flushSize) {
+		if(flushSize <= 0)
+			throw new IllegalArgumentException("Flush size must be positive");
+		this.flushSize = flushSize;
+		this.stage = null;
+	}
+	
+	private void write(SMDMarkers markers, CharBuffer buffer, XMLStreamWriter xmlWriter) throws XMLStreamException {
 
 		if(markers.isEmpty() && buffer.position() > 0) {
 			//whole buffer is the line of paragraph
-			if(buffer.hasArray())
-				xmlWriter.writeCharacters(buffer.array(), 0, buffer.position());
-			else {
-				if(myArray == null || myArray.length < buffer.position())
-					myArray = new char[buffer.capacity()];
-				for(int j = 0; j < buffer.position(); j++)
-					myArray[j] = buffer.get(j);
-				xmlWriter.writeCharacters(myArray, 0, buffer.position());
-			}
+			writeCharacters(buffer, 0, buffer.position(), xmlWriter);
 			return;
 		}
 		
 		//reset buffer.
 		sb.setLength(0);
-		lastText.setLength(0);
-		lastUrl.setLength(0);
+		lastTextBegin = lastTextEnd = 0;
+		lastUrlBegin = lastUrlEnd = 0;
 		
         boolean isInLinkText = false;
     	boolean isInUrl = false;
-    	boolean isInImgSrc = false;
     	
         while(markers.cursorIsAvailable()) {
         	boolean isMarkerStop = markers.cursorIsMarkerStop();
@@ -153,86 +251,17 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
         	
         	isInLinkText = false;
         	isInUrl = false;
-        	isInImgSrc = false;
         	
         	if(markers.cursorIsMarkerStart()) {
         		if(sb.length() > 0) {
-        			xmlWriter.writeCharacters(sb.toString());
+        			writeCharacters(sb, xmlWriter);
         			sb.setLength(0);
         		}
         		//start marker
         		switch(state) {
-	        		case SMDParser.STATE_STRIKETHROUGH:
-	        			xmlWriter.writeStartElement(XHTML_STRIKETHROUGH);
-	        			break;
-	        		case SMDParser.STATE_BOLD:
-	        			xmlWriter.writeStartElement(XHTML_BOLD);
-	        			break;
-	        		case SMDParser.STATE_ITALIC:
-	        			xmlWriter.writeStartElement(XHTML_ITALIC);
-	        			break;
-	        		case SMDParser.STATE_UNDERLINE:
-	        			xmlWriter.writeStartElement(XHTML_UNDERLINE);
-	        			break;
-	        		case SMDParser.STATE_INLINE_CODE:
-	        			xmlWriter.writeStartElement(XHTML_CODE);
-	        			if(codeClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, codeClass);
-	        			break;
-	        		case SMDParser.STATE_LINK:
-	        			xmlWriter.writeStartElement(XHTML_A_TAG);
-	        			if(linkClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, linkClass);
-	        			break;
-	        		case SMDParser.STATE_IMAGE:
-	        			xmlWriter.writeStartElement(XHTML_IMG_TAG);
-	        			if(imgClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, imgClass);
-	        			break;
-	        		case SMDParser.STATE_CODE_BLOCK:
-	        			xmlWriter.writeStartElement(XHTML_PRE_TAG_NAME);
-	        			if(preCodeClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, preCodeClass);
-	        			break;
-	        		case SMDParser.STATE_QUOTE_BLOCK:
-	        			xmlWriter.writeStartElement(XHTML_BLOCKQUOTE_TAG);
-	        			if(blockquoteClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, blockquoteClass);
-	        			break;
-	        		
-	        		case SMDParser.STATE_PARAGRAPH:
-	        			xmlWriter.writeStartElement(XHTML_PARA_TAG);
-	        			if(pClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, pClass);
-	        			break;
-	        			
 	        		case SMDParser.STATE_NEW_LINE:
 	        			xmlWriter.writeEmptyElement(XHTML_NEW_LINE);
 	        			break;
-	        		case SMDParser.STATE_ORDERED_LIST:
-	        			xmlWriter.writeStartElement(XHTML_OL_TAG);
-	        			if(olClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, olClass);
-	        			break;
-	        		case SMDParser.STATE_UNORDERED_LIST:
-	        			xmlWriter.writeStartElement(XHTML_UL_TAG);
-	        			if(ulClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, ulClass);
-	        			break;
-	        		case SMDParser.STATE_LIST_ITEM:
-	        			xmlWriter.writeStartElement(XHTML_LI_TAG);
-	        			if(liClass != null)
-	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, liClass);
-	        			break;
-	        			
-	        		case SMDParser.STATE_HEADING_1:
-	        		case SMDParser.STATE_HEADING_2:
-	        		case SMDParser.STATE_HEADING_3:
-	        		case SMDParser.STATE_HEADING_4:
-	        		case SMDParser.STATE_HEADING_5:
-	        		case SMDParser.STATE_HEADING_6:
-	        			xmlWriter.writeStartElement(XHTML_HEADINGS_TAG[state - SMDParser.STATE_HEADING_1]);
-	        			break;
 	        			
 	        		case SMDParser.STATE_HORIZONTAL:
 	        		case SMDParser.STATE_HORIZONTAL_D:
@@ -244,94 +273,53 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
 	        			else if(state == SMDParser.STATE_HORIZONTAL_U)
 	        				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, XHTML_UNDERSCORE_HR);
 	        			break;
+	        		default:
+	        			if(state < XHTML_ELEMENTS.length && XHTML_ELEMENTS[state] != null) {
+	        				xmlWriter.writeStartElement(XHTML_ELEMENTS[state]);
+	        				String className = className(state);
+	        				if(className != null)
+	        					xmlWriter.writeAttribute(XHTML_CLASS_ATTR, className);
+	        			}
+	        			break;
         		}
         	}
         	//stop
         	else if(isMarkerStop) { //MARKER_STOP
         		//stop marker
-        		switch(state) {
-        		case SMDParser.STATE_STRIKETHROUGH:
-        		case SMDParser.STATE_BOLD:
-        		case SMDParser.STATE_ITALIC:
-        		case SMDParser.STATE_UNDERLINE:
-        		case SMDParser.STATE_INLINE_CODE:
-        		case SMDParser.STATE_IMAGE:
-        		case SMDParser.STATE_CODE_BLOCK:
-        		case SMDParser.STATE_QUOTE_BLOCK:
-        		case SMDParser.STATE_PARAGRAPH:
-        		case SMDParser.STATE_ORDERED_LIST:
-        		case SMDParser.STATE_UNORDERED_LIST:
-        		case SMDParser.STATE_LIST_ITEM:
-        		case SMDParser.STATE_HEADING_1:
-        		case SMDParser.STATE_HEADING_2:
-        		case SMDParser.STATE_HEADING_3:
-        		case SMDParser.STATE_HEADING_4:
-        		case SMDParser.STATE_HEADING_5:
-        		case SMDParser.STATE_HEADING_6:
-        			xmlWriter.writeEndElement();
-        			break;
-        		case SMDParser.STATE_LINK:
-        			if(lastText.length() > 0) {
-        				xmlWriter.writeCharacters(lastText.toString());
-        				lastText.setLength(0);
+        		if(state == SMDParser.STATE_LINK) {
+        			if(lastTextBegin < lastTextEnd) {
+        				writeCharacters(buffer, lastTextBegin, lastTextEnd, xmlWriter);
+        				lastTextBegin = lastTextEnd = 0;
         			}
         			else {
-        				xmlWriter.writeCharacters(lastUrl.toString());
+        				writeCharacters(buffer, lastUrlBegin, lastUrlEnd, xmlWriter);
         			}
+        		}
+        		if(state < XHTML_ELEMENTS.length && XHTML_ELEMENTS[state] != null)
         			xmlWriter.writeEndElement();
-        			break;
-        			
-	    		}
         	}
         	
         	if(markers.cursorIsContentStart()) {
-        		switch(state) {
-        		case SMDParser.STATE_URL: //state URL content is differ
-        			isInUrl = true;
-        			lastUrl.setLength(0);
-        			break;
-        		case SMDParser.STATE_IMAGE_SRC:
-        			isInImgSrc = true;
-        			lastUrl.setLength(0);
-        			break;
-        		case SMDParser.STATE_IMAGE:
-        		case SMDParser.STATE_LINK:
-        			isInLinkText = true;
-        			/*if(lastText == null)
-        				lastText = new StringBuilder();
-        			else*/
-        				lastText.setLength(0);
-        			break;
-        		}
+        		int content = table.op(HtmlRenderTable.CONTENT_START, state);
+        		isInUrl = isUrl(content);
+        		isInLinkText = isText(content) && state != SMDParser.STATE_CODE_LANGUAGE; //the language is of sb
+        		if(isInUrl)
+        			lastUrlBegin = lastUrlEnd = 0;
+        		else if(isInLinkText)
+        			lastTextBegin = lastTextEnd = 0;
         	}
         	else if(markers.cursorIsContentStop()) { //End of content
         		switch(state) {
         		case SMDParser.STATE_NONE:
         			break;
         		case SMDParser.STATE_URL: //state URL content is differ
-        			if(linkHrefResolver != null) {
-        				String originUrl = lastUrl.toString();
-        				String solvedUrl = linkHrefResolver.apply(originUrl);
-        				if(solvedUrl == null)
-        					solvedUrl = originUrl;
-        				xmlWriter.writeAttribute("href", solvedUrl);
-        			}
-        			else
-        				xmlWriter.writeAttribute("href", lastUrl.toString());
+        			xmlWriter.writeAttribute("href", url(linkHrefResolver, buffer));
         			break;
         		case SMDParser.STATE_IMAGE:
-        			xmlWriter.writeAttribute("alt", lastText.toString());
+        			xmlWriter.writeAttribute("alt", string(buffer, lastTextBegin, lastTextEnd));
         			break;
         		case SMDParser.STATE_IMAGE_SRC:
-        			if(imgSrcResolver != null) {
-        				String originUrl = lastUrl.toString();
-        				String solvedUrl = imgSrcResolver.apply(originUrl);
-        				if(solvedUrl == null)
-        					solvedUrl = originUrl;
-        				xmlWriter.writeAttribute("src", solvedUrl);
-        			}
-        			else
-        				xmlWriter.writeAttribute("src", lastUrl.toString());
+        			xmlWriter.writeAttribute("src", url(imgSrcResolver, buffer));
         			break;
         		case SMDParser.STATE_CODE_LANGUAGE:
     				xmlWriter.writeAttribute(XHTML_CLASS_ATTR, 
@@ -340,7 +328,7 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
     				break;
     			default:
 					if(sb.length() > 0) {
-        				xmlWriter.writeCharacters(sb.toString());
+        				writeCharacters(sb, xmlWriter);
         				sb.setLength(0);
         			}
         			break;
@@ -350,31 +338,21 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
         	int contentEnd = Math.min(markers.cursorPosition2(), buffer.position());
 			
 			if (contentBegin >= 0 && contentBegin < contentEnd) {
-				if(buffer.hasArray()) {
-					if(isInLinkText) {
-						lastText.append(buffer.array(), contentBegin, contentEnd - contentBegin);
-					}
-					else if(isInUrl || isInImgSrc) {//copy to URL
-						lastUrl.append(buffer.array(), contentBegin, contentEnd - contentBegin);
-	    			}
-					else {
-						sb.append(buffer.array(), contentBegin, contentEnd - contentBegin);
-					}
+				if(isInLinkText) {
+					lastTextBegin = contentBegin;
+					lastTextEnd = contentEnd;
+				}
+				else if(isInUrl) {//the span of URL
+					lastUrlBegin = contentBegin;
+					lastUrlEnd = contentEnd;
+    			}
+				else if(buffer.hasArray()) {
+					sb.append(buffer.array(), buffer.arrayOffset() + contentBegin, contentEnd - contentBegin);
 				}
 				else {
 					//copy char by char
-					if(isInLinkText) {
-						for(int j = contentBegin; j < contentEnd; j++)
-							lastText.append(buffer.get(j));
-					}
-					else if(isInUrl || isInImgSrc) {//copy to URL
-						for(int j = contentBegin; j < contentEnd; j++)
-							lastUrl.append(buffer.get(j));
-	    			}
-					else {
-						for(int j = contentBegin; j < contentEnd; j++)
-							sb.append(buffer.get(j));
-					}
+					for(int j = contentBegin; j < contentEnd; j++)
+						sb.append(buffer.get(j));
 				}
 
 			}
@@ -382,7 +360,181 @@ public class XhtmlWriterImpl implements SMDXhtmlWriter {
         	markers.cursorGoNext();
         }
         if(sb.length() > 0)
-        	xmlWriter.writeCharacters(sb.toString());
+        	writeCharacters(sb, xmlWriter);
+	}
+	
+	//the chars of the buffer, by the reused array if it is not an array buffer
+	private void writeCharacters(CharBuffer buffer, int begin, int end, XMLStreamWriter xmlWriter) throws XMLStreamException {
+		if(buffer.hasArray())
+			writeCharacters(buffer.array(), buffer.arrayOffset() + begin, buffer.arrayOffset() + end, xmlWriter);
+		else
+			writeCharacters(chars(buffer, begin, end), 0, end - begin, xmlWriter);
+	}
+	
+	//the text run by the reused array, not a String
+	private void writeCharacters(StringBuilder text, XMLStreamWriter xmlWriter) throws XMLStreamException {
+		char[] array = array(text.length());
+		text.getChars(0, text.length(), array, 0);
+		writeCharacters(array, 0, text.length(), xmlWriter);
+	}
+	
+	//the runs between the ends of document (U+001C), which are skipped as produceXhtml and the HTML renders do
+	private static void writeCharacters(char[] array, int begin, int end, XMLStreamWriter xmlWriter) throws XMLStreamException {
+		for(int j = begin; j < end; j++) {
+			if(array[j] == '\u001C') {
+				if(j > begin)
+					xmlWriter.writeCharacters(array, begin, j - begin);
+				begin = j + 1;
+			}
+		}
+		if(begin < end)
+			xmlWriter.writeCharacters(array, begin, end - begin);
+	}
+	
+	//the resolved text then the chars left of the URL
+	private String url(SMDUrlResolver<StringBuilder> resolver, CharBuffer buffer) {
+		if(resolver == null)
+			return string(buffer, lastUrlBegin, lastUrlEnd);
+		attribute.setLength(0);
+		int begin = lastUrlBegin;
+		int end = lastUrlEnd;
+		int bypass = resolver.resolve(buffer, begin, end, attribute);
+		if(bypass > 0) //trip from start
+			begin += bypass;
+		else //trip from end
+			end += bypass;
+		for(int j = begin; j < end; j++)
+			attribute.append(buffer.get(j));
+		return attribute.toString();
+	}
+	
+	//an attribute value is a String of XMLStreamWriter
+	private String string(CharBuffer buffer, int begin, int end) {
+		if(buffer.hasArray())
+			return new String(buffer.array(), buffer.arrayOffset() + begin, end - begin);
+		return new String(chars(buffer, begin, end), 0, end - begin);
+	}
+	
+	private char[] chars(CharBuffer buffer, int begin, int end) {
+		char[] array = array(end - begin);
+		for(int j = begin; j < end; j++)
+			array[j - begin] = buffer.get(j);
+		return array;
+	}
+	
+	private char[] array(int length) {
+		if(myArray == null || myArray.length < length)
+			myArray = new char[Math.max(length, 1024)];
+		return myArray;
 	}
 
+	//the class of the start marker, of the StAX writer
+	private String className(int state) {
+		return classNames[HtmlRenderTable.classForTag(table.op(HtmlRenderTable.MARKER_START, state))];
+	}
+	
+	//the URL of a link or an image, an attribute by the content stop
+	private static boolean isUrl(int content) {
+		return (content & (HtmlRenderTable.LINK_URL | HtmlRenderTable.IMAGE_URL)) != 0;
+	}
+	
+	//the text of a link, or of an image (alt) as an attribute by the content stop
+	private static boolean isText(int content) {
+		return (content & HtmlRenderTable.LINK_TEXT_SPAN) != 0
+				|| (content & HtmlRenderTable.ATTRIBUTE) != 0 && !isUrl(content);
+	}
+	
+	@Override
+	protected void putTag(int tag) {
+		put(table.tags[tag]);
+	}
+	
+	@Override
+	protected void putClass(String className) {
+		put(className);
+	}
+	
+	@Override
+	protected void putLinkText(CharBuffer buffer) {
+		if(lastTextBegin < lastTextEnd) {
+			text(false, buffer, lastTextBegin, lastTextEnd);
+			lastTextBegin = lastTextEnd = 0;
+		}
+		else
+			text(false, buffer, lastUrlBegin, lastUrlEnd);
+	}
+	
+	@Override
+	protected int putContent(boolean attribute, CharBuffer buffer, int begin, int end) {
+		text(attribute, buffer, begin, end);
+		return end;
+	}
+	
+	//the resolved text, the chars left of the URL are the content
+	@Override
+	protected int putUrl(boolean link, CharBuffer buffer, int begin, int end) {
+		SMDUrlResolver<StringBuilder> resolver = link ? linkHrefResolver : imgSrcResolver;
+		if(resolver == null)
+			return 0;
+		attribute.setLength(0);
+		int bypass = resolver.resolve(buffer, begin, end, attribute);
+		text(true, attribute);
+		return bypass;
+	}
+	
+	//the escaped chars of the span, by the rounds of the staged chars
+	private void text(boolean attribute, CharBuffer buffer, int begin, int end) {
+		while(begin < end) {
+			begin = XmlEscapeUtil.writeWithEscapeXml(attribute, buffer, begin, end, stage);
+			if(begin < end)
+				room(XmlEscapeUtil.MAXIMUM_ESCAPE_LENGTH);
+		}
+	}
+	
+	private void text(boolean attribute, CharSequence text) {
+		int begin = 0;
+		while(begin < text.length()) {
+			begin = XmlEscapeUtil.writeWithEscapeXml(attribute, text, begin, text.length(), stage);
+			if(begin < text.length())
+				room(XmlEscapeUtil.MAXIMUM_ESCAPE_LENGTH);
+		}
+	}
+	
+	private void put(String tag) {
+		int length = tag.length();
+		room(length);
+		tag.getChars(0, length, stage.array(), stage.position());
+		stage.position(stage.position() + length);
+	}
+	
+	//flush the staged chars if the room is less, a small flush size is grown for a tag
+	private void room(int length) {
+		if(stage.remaining() >= length)
+			return;
+		flush();
+		if(stage.capacity() < length)
+			stage = CharBuffer.allocate(length);
+	}
+	
+	//write the staged chars by a bulk copy, Writer.append(CharSequence) copies to a String first
+	private void flush() {
+		int length = stage.position();
+		if(length == 0)
+			return;
+		try {
+			if(sink instanceof StringBuilder)
+				((StringBuilder) sink).append(stage.array(), 0, length);
+			else if(sink instanceof Writer)
+				((Writer) sink).write(stage.array(), 0, length);
+			else if(sink instanceof CharBuffer)
+				((CharBuffer) sink).put(stage.array(), 0, length);
+			else
+				sink.append(stage.flip());
+		}
+		catch(IOException e) { //thrown by produceXhtml(Appendable)
+			throw new UncheckedIOException(e);
+		}
+		written += length;
+		stage.clear();
+	}
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024, Thach-Anh Tran
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vietfi.markdown.strict.line;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector kernels of SMDScan, a lane of short per char (a char is unsigned, the chars compared are ASCII so the sign does not matter).
+ *
+ * Compiled by JDK 17 with the incubator module into the multi-release layer of the jar (META-INF/versions/17), it is loaded
+ * by SMDScan only if the module is resolved at runtime and isSupported().
+ * The tail shorter than a vector is scanned by the scalar loops.
+ */
+final class SMDVectorScan implements SMDScan.Kernel {
+
+	private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+	/**
+	 * @return false if there are no SIMD registers of 128 bits, the vectors would be emulated and slower than the loops.
+	 */
+	static boolean isSupported() {
+		return SPECIES.length() >= 8;
+	}
+
+	@Override
+	public int indexOfNewLine(char[] array, int from, int to) {
+		int i = from;
+		for(int bound = to - SPECIES.length(); i <= bound; i += SPECIES.length()) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, array, i);
+			VectorMask<Short> m = v.eq((short) '\n').or(v.eq((short) '\u001C'));
+			if(m.anyTrue())
+				return i + m.firstTrue();
+		}
+		return SMDScan.scalarIndexOfNewLine(array, i, to);
+	}
+
+	@Override
+	public int indexOfTextMarkup(char[] array, int from, int to) {
+		int i = from;
+		for(int bound = to - SPECIES.length(); i <= bound; i += SPECIES.length()) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, array, i);
+			VectorMask<Short> m = v.eq((short) '\n').or(v.eq((short) '\u001C'))
+					.or(v.eq((short) '~')).or(v.eq((short) '*')).or(v.eq((short) '_')).or(v.eq((short) '`'))
+					.or(v.eq((short) '[')).or(v.eq((short) '!')).or(v.eq((short) '\\'));
+			if(m.anyTrue())
+				return i + m.firstTrue();
+		}
+		return SMDScan.scalarIndexOfTextMarkup(array, i, to);
+	}
+}
@@ -0,0 +1,310 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import vietfi.markdown.strict.render.HtmlByteWriterImpl;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+import vietfi.markdown.strict.render.HtmlWriterImpl;
+import vietfi.markdown.strict.render.XhtmlWriterImpl;
+
+/**
+ * The steady state (reused chain, render and buffers) parses and renders a document without allocating.
+ */
+public class SMDAllocationTest {
+
+	//bytes per document, of the measurement itself and of the rare JIT deoptimizations
+	static final long BUDGET = 64;
+
+	//the invocations of C2 compiling (the JFR events are eliminated by the escape analysis of C2, not of C1)
+	static final int WARMUP = 15000;
+	static final int ROUNDS = 10;
+	//at most, until a batch of no allocation
+	static final int BATCHES = 20;
+
+	static String corpus;
+	//a link or an image of every few words
+	static String links;
+	static ThreadMXBean threads;
+
+	@BeforeAll
+	static void setUp() throws IOException {
+		corpus = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8)
+				+ SMDParallelRenderTest.INPUT;
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 300; i++)
+			sb.append("See [item ").append(i).append(" <b>](https://example.com/a?id=").append(i)
+				.append("&q=\"x\") and [](/plain/").append(i).append("), ![logo ").append(i)
+				.append("](/img/").append(i).append(".png) or !(/img/b.png).\n\n");
+		links = sb.toString();
+		threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	}
+
+	static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	//a reader to reuse for every document
+	static class TextReader extends Reader {
+		CharSequence text;
+		int i;
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if(i >= text.length())
+				return -1;
+			int n = Math.min(len, text.length() - i);
+			for(int j = 0; j < n; j++)
+				cbuf[off + j] = text.charAt(i++);
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	interface Round<T> {
+		void run(T document);
+	}
+
+	//average bytes of a round of the reference document, after warming up by mostly the small one
+	//(the reference one is in the profile, no deoptimization later).
+	//the least of the batches, a compiling may be still in the background.
+	//a long C2 queue (a slow machine) raises the thresholds of compiling, warm up again until a batch of no allocation
+	static <T> long measure(Round<T> round, T small, T reference) {
+		long bytes = Long.MAX_VALUE;
+		for(int b = 0; b < BATCHES && bytes > 0; b++) {
+			for(int i = 0; i < (b == 0 ? WARMUP : WARMUP / 10); i++)
+				round.run(i % 20 == 0 ? reference : small);
+			long before = allocatedBytes();
+			for(int i = 0; i < ROUNDS; i++)
+				round.run(reference);
+			bytes = Math.min(bytes, (allocatedBytes() - before) / ROUNDS);
+		}
+		return bytes;
+	}
+
+	@Test
+	void testParseAndRender() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setLinkHrefResolver((url, sb) -> {
+			sb.append("/go?u=");
+			return 0;
+		});
+		CharBuffer small = CharBuffer.wrap(SMDParallelRenderTest.INPUT.toCharArray());
+		CharBuffer reference = CharBuffer.wrap(corpus.toCharArray());
+		StringBuilder sb = new StringBuilder(corpus.length() * 2);
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			sb.setLength(0);
+			render.produceHtml(parser.markers(), buffer, sb);
+		};
+		round.run(reference);
+		String html = sb.toString();
+		assertTrue(html.contains("<a href=\"/go?u=https://"));
+
+		long bytes = measure(round, small, reference);
+		System.out.println("Allocated bytes per document: " + bytes + ", of " + corpus.length() + " chars");
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+		assertEquals(html, sb.toString());
+	}
+
+	@Test
+	void testRenderToWriter() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setFlushSize(512);
+		CharBuffer small = CharBuffer.wrap(SMDParallelRenderTest.INPUT.toCharArray());
+		CharBuffer reference = CharBuffer.wrap(corpus.toCharArray());
+		Writer writer = Writer.nullWriter();
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			try {
+				render.produceHtml(parser.markers(), buffer, writer);
+			}
+			catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+		long bytes = measure(round, small, reference);
+		System.out.println("Allocated bytes per document to a writer: " + bytes);
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+	}
+
+	@Test
+	void testLinks() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setLinkHrefResolver((url, sb) -> url.charAt(0) == '/' ? 1 : null);
+		HtmlWriterImpl writer = new HtmlWriterImpl();
+		HtmlByteWriterImpl byteWriter = new HtmlByteWriterImpl();
+		//a hit of the memo replays the bytes
+		byte[] cdn = "https://cdn.example.com".getBytes(StandardCharsets.US_ASCII);
+		byteWriter.setImageUrlResolver(SMDUrlResolverCache.ofByteBuffer((source, begin, end, output) -> {
+			output.put(cdn);
+			return 0;
+		}, SMDUrlResolverCache.DEFAULT_MAXIMUM_ENTRIES));
+		CharBuffer small = CharBuffer.wrap(links.substring(0, links.indexOf("\n\n", 1000)).toCharArray());
+		CharBuffer reference = CharBuffer.wrap(links.toCharArray());
+		StringBuilder sb = new StringBuilder(links.length() * 2);
+		CharBuffer output = CharBuffer.allocate(links.length() * 2);
+		ByteBuffer bytes = ByteBuffer.allocate(links.length() * 3);
+		//the same links by the three renders
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			sb.setLength(0);
+			render.produceHtml(parser.markers(), buffer, sb);
+			parser.markers().cursorReset();
+			output.clear();
+			assertTrue(writer.appendHtml(parser.markers(), buffer, output));
+			writer.compact(buffer.position());
+			parser.markers().cursorReset();
+			bytes.clear();
+			assertTrue(byteWriter.appendHtml(parser.markers(), buffer, bytes));
+			byteWriter.compact(buffer.position());
+		};
+		round.run(reference);
+		String html = sb.toString();
+		assertTrue(html.contains("<a href=\"https://example.com/a?id=7&amp;q=&quot;x&quot;\">item 7 &lt;b&gt;</a>"));
+		assertTrue(html.contains("<a href=\"plain/7\">/plain/7</a>"));
+
+		long allocated = measure(round, small, reference);
+		System.out.println("Allocated bytes per document of links: " + allocated + ", of " + links.length() + " chars");
+		assertTrue(allocated <= BUDGET, "Allocated " + allocated + " bytes per document, over the budget " + BUDGET);
+		assertEquals(html, sb.toString());
+	}
+
+	@Test
+	void testWriter() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		HtmlWriterImpl writer = new HtmlWriterImpl();
+		CharBuffer small = CharBuffer.wrap(SMDParallelRenderTest.INPUT.toCharArray());
+		CharBuffer reference = CharBuffer.wrap(corpus.toCharArray());
+		CharBuffer output = CharBuffer.allocate(corpus.length() * 2);
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			output.clear();
+			assertTrue(writer.appendHtml(parser.markers(), buffer, output));
+			writer.compact(buffer.position());
+		};
+		long bytes = measure(round, small, reference);
+		System.out.println("Allocated bytes per written document: " + bytes);
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+	}
+
+	@Test
+	void testByteWriter() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		HtmlByteWriterImpl writer = new HtmlByteWriterImpl();
+		CharBuffer small = CharBuffer.wrap(SMDParallelRenderTest.INPUT.toCharArray());
+		CharBuffer reference = CharBuffer.wrap(corpus.toCharArray());
+		//the rounds of a direct output, as to a socket.
+		//smaller than the output of the small document, the resume loop is in the profile of the warming up
+		ByteBuffer output = ByteBuffer.allocateDirect(512);
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			do
+				output.clear();
+			while(!writer.appendHtml(parser.markers(), buffer, output));
+			writer.compact(buffer.position());
+		};
+		long bytes = measure(round, small, reference);
+		System.out.println("Allocated bytes per byte written document: " + bytes);
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+	}
+
+	@Test
+	void testXhtml() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		//the direct XML, not by the StAX
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		XhtmlWriterImpl writer = new XhtmlWriterImpl();
+		writer.setClassNameForTag("para", SMDHtmlRender.CLASS_FOR_PARAGRAPH);
+		CharBuffer small = CharBuffer.wrap(SMDParallelRenderTest.INPUT.toCharArray());
+		CharBuffer reference = CharBuffer.wrap(corpus.toCharArray());
+		StringBuilder sb = new StringBuilder(corpus.length() * 2);
+		Round<CharBuffer> round = buffer -> {
+			parser.reset();
+			buffer.clear();
+			parser.parseNext(buffer);
+			parser.endBlock(buffer.position());
+			sb.setLength(0);
+			writer.produceXhtml(parser.markers(), buffer, sb);
+		};
+		round.run(reference);
+		String xhtml = sb.toString();
+		long bytes = measure(round, small, reference);
+		System.out.println("Allocated bytes per XHTML document: " + bytes);
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+		assertEquals(xhtml, sb.toString());
+	}
+
+	@Test
+	void testConverter() throws IOException {
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		//the buffers of the converter are reused
+		SMDConverter converter = new SMDConverter();
+		StringBuilder sb = new StringBuilder(corpus.length() * 2);
+		TextReader reader = new TextReader();
+		Round<String> round = text -> {
+			reader.text = text;
+			reader.i = 0;
+			sb.setLength(0);
+			try {
+				converter.convert(reader, sb);
+			}
+			catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+		long bytes = measure(round, SMDParallelRenderTest.INPUT, corpus);
+		System.out.println("Allocated bytes per converted document: " + bytes);
+		assertTrue(bytes <= BUDGET, "Allocated " + bytes + " bytes per document, over the budget " + BUDGET);
+	}
+}
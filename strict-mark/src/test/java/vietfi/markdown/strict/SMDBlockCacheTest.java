@@ -0,0 +1,148 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDBlockCacheTest {
+
+	static String render(SMDBlockCache cache, String text) {
+		StringBuilder sb = new StringBuilder();
+		cache.produceHtml(text, SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testSameOutput() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		SMDBlockCache cache = new SMDBlockCache(SMDBlockCache.DEFAULT_MAXIMUM_BYTES);
+		String expected = SMDConverterTest.renderWhole(text);
+		assertEquals(expected, render(cache, text));
+		long misses = cache.getMissCount();
+		assertEquals(0, cache.getHitCount());
+
+		//all blocks are hit
+		assertEquals(expected, render(cache, text));
+		assertEquals(misses, cache.getMissCount());
+		assertTrue(cache.getHitCount() >= cache.getSize());
+		System.out.println("Blocks: "+cache.getSize()+", bytes: "+cache.getBytes()+", hits: "+cache.getHitCount()+", misses: "+misses);
+
+		//a new version, the shared blocks are hit
+		String version = "# Version 2\n\n" + text + "\nNew **paragraph**\n";
+		long hits = cache.getHitCount();
+		assertEquals(SMDConverterTest.renderWhole(version), render(cache, version));
+		assertTrue(cache.getHitCount() - hits >= cache.getSize() - 5);
+	}
+
+	@Test
+	void testEviction() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 200; i++)
+			sb.append("Paragraph ").append(i).append(" of **bold** text\n\n");
+		String text = sb.toString();
+
+		SMDBlockCache cache = new SMDBlockCache(4096);
+		assertEquals(SMDConverterTest.renderWhole(text), render(cache, text));
+		assertTrue(cache.getBytes() <= 4096);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertEquals(200, cache.getMissCount());
+
+		//the recent ones are kept, the last block of a document is terminated (another key)
+		long hits = cache.getHitCount();
+		render(cache, "Paragraph 198 of **bold** text\n\nThe end");
+		assertEquals(hits + 1, cache.getHitCount());
+		cache.clear();
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	void testMergedBlock() {
+		//a list may go on after its blank lines, it is not closed at a split and merged with the chunks after it
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 20; i++)
+			sb.append("- item ").append(i).append("\n\n\nParagraph ").append(i).append("\n\n");
+		String text = sb.toString();
+		assertEquals(21, SMDParallelRender.splitPositions(text, 1).length);
+
+		AtomicInteger renders = new AtomicInteger();
+		HtmlRenderImpl render = new HtmlRenderImpl() {
+			@Override
+			public void produceHtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
+				renders.incrementAndGet();
+				super.produceHtml(markers, buffer, outputBuilder);
+			}
+		};
+		SMDBlockCache cache = new SMDBlockCache(SMDBlockCache.DEFAULT_MAXIMUM_BYTES);
+		StringBuilder output = new StringBuilder();
+		cache.produceHtml(text, SMDParserChain.createParserOfStandard(), render, output);
+		assertEquals(SMDConverterTest.renderWhole(text), output.toString());
+		//the chunks are one block, rendered once and counted as one miss
+		assertEquals(1, renders.get());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getSize());
+
+		//the merged block is hit
+		output.setLength(0);
+		cache.produceHtml(text, SMDParserChain.createParserOfStandard(), render, output);
+		assertEquals(SMDConverterTest.renderWhole(text), output.toString());
+		assertEquals(1, renders.get());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	void testStripes() throws Exception {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		String expected = SMDConverterTest.renderWhole(text);
+		SMDBlockCache cache = new SMDBlockCache(SMDBlockCache.DEFAULT_MAXIMUM_BYTES, 3);
+		assertEquals(4, cache.getStripeCount());
+
+		//the threads render the same document, the blocks are shared
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for(int i = 0; i < 16; i++)
+				results.add(executor.submit(() -> render(cache, text)));
+			for(Future<String> result : results)
+				assertEquals(expected, result.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertTrue(cache.getHitCount() > 0);
+		assertTrue(cache.getBytes() <= SMDBlockCache.DEFAULT_MAXIMUM_BYTES);
+		System.out.println("Stripes: "+cache.getStripeCount()+", blocks: "+cache.getSize()+", hits: "+cache.getHitCount()+", misses: "+cache.getMissCount());
+	}
+
+	@Test
+	void testIncrementalRender() {
+		String text = SMDParallelRenderTest.INPUT + SMDParallelRenderTest.INPUT;
+		SMDBlockCache cache = new SMDBlockCache(SMDBlockCache.DEFAULT_MAXIMUM_BYTES);
+		SMDIncrementalRender document = new SMDIncrementalRender();
+		document.setBlockCache(cache);
+		document.parse(text);
+		List<String> blocks = SMDIncrementalRenderTest.html(document);
+
+		//typing then undo, the blocks come from the cache
+		int offset = text.indexOf("After 7 weeks");
+		SMDIncrementalRenderTest.apply(blocks, document.edit(offset, 0, "x"));
+		long hits = cache.getHitCount();
+		SMDIncrementalRenderTest.apply(blocks, document.edit(offset, 1, ""));
+		assertTrue(cache.getHitCount() > hits);
+		assertEquals(SMDConverterTest.renderWhole(text), SMDIncrementalRenderTest.join(blocks));
+	}
+}
@@ -0,0 +1,382 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDConverterTest {
+
+	static final String INPUT = "# Test heading\n"
+			+ "After 7 weeks, I conclude that:\n"
+			+ "\n"
+			+ "1. Writing a parser for the **markdown** text is not easy.\n"
+			+ "2. This is the [complex](https://daringfireball.net/projects/markdown/syntax#list) markdown sub list:\n"
+			+ "\n"
+			+ "~~~ java\n"
+			+ "int x = 1 < 2 ? 0 : 1;\n"
+			+ "~~~\n"
+			+ "\n"
+			+ "> quote **bold** text\n"
+			+ "\n"
+			+ "* item\n"
+			+ "* next item\n"
+			+ "\n"
+			+ "\u0110i\u1EC1u 1. ~~strike~~ _not underline_ `code` ![image](/a.png)\n"
+			+ "\n";
+
+	//with the end of document as the converter
+	static String renderWhole(String text) {
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		CharBuffer buffer = CharBuffer.wrap(text.isEmpty() ? text : text + '\u001C');
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		StringBuilder sb = new StringBuilder(text.length() * 2);
+		new HtmlRenderImpl().produceHtml(parser.markers(), buffer, sb);
+		return sb.toString();
+	}
+
+	//a reader returns a few chars each time
+	static Reader slowReader(String text, int chunk) {
+		return new Reader() {
+			int i = 0;
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				if(i >= text.length())
+					return -1;
+				int n = Math.min(Math.min(len, chunk), text.length() - i);
+				text.getChars(i, i + n, cbuf, off);
+				i += n;
+				return n;
+			}
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	@Test
+	void testConvert() throws IOException {
+		String text = INPUT + INPUT + INPUT;
+		String expected = renderWhole(text);
+
+		SMDConverter converter = new SMDConverter();
+		StringBuilder sb = new StringBuilder();
+		converter.convert(new StringReader(text), sb);
+		System.out.println(sb);
+		assertEquals(expected, sb.toString());
+
+		//reusable
+		sb.setLength(0);
+		converter.convert(slowReader(text, 7), sb);
+		assertEquals(expected, sb.toString());
+	}
+
+	@Test
+	void testConvertByChunks() throws IOException {
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			input.append(INPUT);
+		String text = input.toString();
+		String expected = renderWhole(text);
+
+		for(int chunk : new int[] {1, 100, text.length()}) {
+			SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(),
+					SMDParser.MINIMUM_BUFFER_SIZE, SMDConverter.MAXIMUM_BUFFER_SIZE);
+			StringBuilder sb = new StringBuilder();
+			converter.convert(slowReader(text, chunk), sb);
+			assertEquals(expected, sb.toString());
+			//constant memory
+			assertEquals(SMDParser.MINIMUM_BUFFER_SIZE, converter.getBufferCapacity());
+		}
+	}
+
+	@Test
+	void testBufferGrowing() throws IOException {
+		StringBuilder input = new StringBuilder("Long paragraph");
+		for(int i = 0; i < 300; i++)
+			input.append(" **word** ").append(i);
+		input.append("\n\n~~~\n");
+		for(int i = 0; i < 100; i++)
+			input.append("code line ").append(i).append('\n');
+		input.append("~~~\n");
+		String text = input.toString();
+
+		SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(),
+				SMDParser.MINIMUM_BUFFER_SIZE, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		StringBuilder sb = new StringBuilder();
+		converter.convert(slowReader(text, 100), sb);
+		assertEquals(renderWhole(text), sb.toString());
+		assertTrue(converter.getBufferCapacity() > SMDParser.MINIMUM_BUFFER_SIZE);
+
+		//not over the maximum
+		SMDConverter limited = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(),
+				SMDParser.MINIMUM_BUFFER_SIZE, SMDParser.MINIMUM_BUFFER_SIZE * 2);
+		assertThrows(IOException.class, () -> limited.convert(new StringReader(text), new StringBuilder()));
+	}
+
+	@Test
+	void testRingBuffer() throws IOException {
+		//long multi-line blocks, pending over many rounds
+		StringBuilder input = new StringBuilder(INPUT);
+		input.append("~~~\n");
+		for(int i = 0; i < 200; i++)
+			input.append("code line ").append(i).append(" < x\n");
+		input.append("~~~\n\n");
+		for(int i = 0; i < 200; i++)
+			input.append("> quote line **").append(i).append("**\n");
+		input.append('\n');
+		for(int i = 0; i < 200; i++)
+			input.append(i + 1).append(". item [link](/").append(i).append(")\n");
+		input.append('\n').append(INPUT);
+		String text = input.toString();
+
+		for(int size : new int[] {SMDParser.MINIMUM_BUFFER_SIZE, 1000, SMDConverter.DEFAULT_BUFFER_SIZE}) {
+			for(int chunk : new int[] {1, 77, text.length()}) {
+				SMDConverter copying = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+				copying.setRingBuffer(false);
+				StringBuilder expected = new StringBuilder();
+				copying.convert(slowReader(text, chunk), expected);
+
+				SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+				converter.setRingBuffer(true);
+				StringBuilder sb = new StringBuilder();
+				converter.convert(slowReader(text, chunk), sb);
+				assertEquals(expected.toString(), sb.toString());
+				assertEquals(copying.getBufferCapacity(), converter.getBufferCapacity());
+			}
+		}
+
+		//the UTF-8 bytes
+		String tt39 = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), 1024, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		converter.setRingBuffer(true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(tt39.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out));
+		converter.setRingBuffer(false);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(tt39.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(expected));
+		assertEquals(expected.toString(StandardCharsets.UTF_8), out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testBufferBoundary() throws IOException {
+		//a block ends at any boundary of the rounds
+		for(String name : new String[] {"TT_39_2016_TT_NHNN.md", "index.md", "strict-mark.md"}) {
+			String text = new String(Files.readAllBytes(Paths.get("../docs/" + name)), StandardCharsets.UTF_8);
+			String expected = renderWhole(text);
+			for(int size = SMDParser.MINIMUM_BUFFER_SIZE; size <= 4096; size += size < 1024 ? 37 : 509) {
+				for(boolean ring : new boolean[] {false, true}) {
+					SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+					converter.setRingBuffer(ring);
+					StringBuilder sb = new StringBuilder();
+					converter.convert(new StringReader(text), sb);
+					assertEquals(expected, sb.toString(), name + " of buffer size " + size + (ring ? " (ring)" : ""));
+				}
+			}
+		}
+
+		//the last line without a line ending
+		SMDConverter converter = new SMDConverter();
+		StringBuilder sb = new StringBuilder();
+		converter.convert(new StringReader("# Title\n\nhello"), sb);
+		assertEquals("<h1>Title</h1>\n\n<p>hello</p>", sb.toString());
+		assertEquals(renderWhole(INPUT + "hello"), convert(converter, INPUT + "hello"));
+	}
+
+	//a paragraph ends by a link at the boundary, its line ending is printed only if the next marker starts
+	@Test
+	void testLinkAtBoundary() throws IOException {
+		String doc = new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8);
+		for(int copies : new int[] {3, 60}) {
+			StringBuilder sb = new StringBuilder();
+			for(int i = 0; i < copies; i++)
+				sb.append(doc).append("\n\n");
+			String text = sb.toString();
+			String expected = renderWhole(text);
+			for(int size : new int[] {SMDParser.MINIMUM_BUFFER_SIZE, 4096, SMDConverter.DEFAULT_BUFFER_SIZE}) {
+				SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+				assertEquals(expected, convert(converter, text), copies + " copies of buffer size " + size);
+			}
+		}
+	}
+
+	//random documents of the snippets shifted by a random prefix, so a round ends at any snippet, compared to the whole buffer
+	@Test
+	void testRandomBoundaries() throws IOException {
+		String[] snippets = {"# h\n", "para text\n", "\n", "\n", "\n", "[L](u)\n", "x [link](/a \"t\") y\n", "![img](/i.png)\n", "**b**\n",
+				"a *i* _u_ ~~s~~ `c`\n", "- a [l](u)\n", "  - b\n", "1. c **d**\n", "   1. d\n", "    ind\n", "> q [l](u)\n",
+				"```\n", "code\n", "---\n", "text\\\n", "\u0110i\u1EC1u 1.\n", "q"};
+		int[] sizes = {SMDParser.MINIMUM_BUFFER_SIZE, 600, 1000, 2048};
+		Random random = new Random(5);
+		for(int d = 0; d < 200; d++) {
+			StringBuilder sb = new StringBuilder();
+			for(int i = random.nextInt(1000); i > 0; i -= 40)
+				sb.append("p").append(i).append(" plain line of the prefix\n\n");
+			for(int i = random.nextInt(300); i > 0; i--)
+				sb.append(snippets[random.nextInt(snippets.length)]);
+			String text = sb.toString();
+			String expected = renderWhole(text);
+			for(int size : sizes) {
+				for(boolean ring : new boolean[] {false, true}) {
+					SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+					converter.setRingBuffer(ring);
+					assertEquals(expected, convert(converter, text), "Document " + d + " of buffer size " + size + (ring ? " (ring)" : ""));
+				}
+			}
+		}
+	}
+
+	private static String convert(SMDConverter converter, String text) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		converter.convert(new StringReader(text), sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testRingBufferWrapAround() {
+		SMDRingBuffer ring = new SMDRingBuffer(8);
+		ring.writeRegion().put("abcdef");
+		ring.written(6);
+		assertEquals(6, ring.length());
+		ring.consume(5);
+		//the region is contiguous for all remaining
+		CharBuffer region = ring.writeRegion();
+		assertEquals(7, region.remaining());
+		region.put("gh");
+		ring.written(2);
+		region = ring.writeRegion();
+		region.put("ijklm");
+		ring.written(5);
+		assertEquals(0, ring.remaining());
+
+		CharBuffer window = ring.window();
+		assertEquals(0, window.position());
+		assertEquals("fghijklm", window.toString());
+		assertSame(window, ring.window());
+		//the head passes the capacity, the pending characters are moved back
+		ring.consume(4);
+		assertEquals("jklm", ring.window().toString());
+		assertEquals(1, ring.offset());
+		ring.writeRegion().put("nop");
+		ring.written(3);
+		assertEquals("jklmnop", new String(ring.array(), ring.offset(), ring.length()));
+		ring.consume(1);
+		ring.grow(16);
+		assertEquals("klmnop", ring.window().toString());
+	}
+
+	@Test
+	void testConvertChannels() throws IOException {
+		String text = INPUT + INPUT;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new SMDConverter().convert(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+				Channels.newChannel(out));
+		assertEquals(renderWhole(text), out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testConvertUtf8Bytes() throws IOException {
+		//the document in the docs, mostly Vietnamese
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		SMDConverter converter = new SMDConverter();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(bytes)), Channels.newChannel(out));
+		assertEquals(renderWhole(text), out.toString(StandardCharsets.UTF_8));
+
+		//small buffer
+		text = INPUT + "emoji \ud83d\ude00 and \u00a0 no-break space\n\n\u0111) item\n\u0110) item\n" + INPUT;
+		converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), 512, 4096);
+		out.reset();
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out));
+		assertEquals(renderWhole(text), out.toString(StandardCharsets.UTF_8));
+
+		//by the decoding of charset
+		out.reset();
+		converter.convert(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out), StandardCharsets.UTF_8);
+		assertEquals(renderWhole(text), out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testConvertBytesLikeChars() throws IOException {
+		//a line starts with a non-ASCII punctuation, the real Yi letters, the alphabetic list items
+		StringBuilder input = new StringBuilder();
+		input.append("\u201CQuoted line\u201D\n\n")
+			.append("\u2014 dash line\n\n")
+			.append("\ua000\ua001 Yi letters \ua07f\n\n")
+			.append("1. item\n  a) sub\n  \u0111) sub\n\n")
+			.append("\u00ab * not a list\n\n")
+			.append("> \u201Cquote\u201D **\u0110i\u1EC1u**\n\n")
+			.append("emoji \ud83d\ude00 line\n");
+		for(String name : new String[] {"TT_39_2016_TT_NHNN.md", "index.md", "strict-mark.md"})
+			input.append(new String(Files.readAllBytes(Paths.get("../docs/" + name)), StandardCharsets.UTF_8));
+		input.append("\u201Clast line\u201D");
+		String text = input.toString();
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+		for(int size : new int[] {SMDParser.MINIMUM_BUFFER_SIZE, 1000, SMDConverter.DEFAULT_BUFFER_SIZE}) {
+			SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), size, SMDConverter.MAXIMUM_BUFFER_SIZE);
+			String expected = convert(converter, text);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			converter.convert(Channels.newChannel(new ByteArrayInputStream(bytes)), Channels.newChannel(out));
+			assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void testUtf8Bytes() {
+		String text = "a\u0110i\u1EC1u \ud83d\ude00<\ua000\ud7ff\u0800";
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		CharBuffer chars = CharBuffer.allocate(bytes.length);
+		assertEquals(text.length(), SMDUtf8Bytes.decode(ByteBuffer.wrap(bytes), chars));
+		assertEquals(text, chars.flip().toString());
+
+		//a sequence split by the reads is left for the next one
+		for(int split = 0; split <= bytes.length; split++) {
+			ByteBuffer input = ByteBuffer.allocate(bytes.length);
+			input.put(bytes, 0, split).flip();
+			chars.clear();
+			SMDUtf8Bytes.decode(input, chars);
+			input.compact().put(bytes, split, bytes.length - split).flip();
+			SMDUtf8Bytes.decode(input, chars);
+			assertEquals(text, chars.flip().toString());
+		}
+
+		//the malformed bytes as the charset decoder
+		byte[] malformed = {'a', (byte) 0xC0, (byte) 0xE1, (byte) 0x80, 'b', (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xFF, (byte) 0xF0, (byte) 0x9F, 'c'};
+		chars.clear();
+		SMDUtf8Bytes.decode(ByteBuffer.wrap(malformed), chars);
+		assertEquals(new String(malformed, StandardCharsets.UTF_8), chars.flip().toString());
+
+		ByteBuffer output = ByteBuffer.allocate(bytes.length);
+		assertEquals(text.length(), SMDUtf8Bytes.encode(text, 0, text.length(), output));
+		assertArrayEquals(bytes, output.array());
+
+		//the same without the arrays of heap buffers
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		assertEquals(text.length(), SMDUtf8Bytes.encode(text, 0, text.length(), direct));
+		assertEquals(output.flip(), direct.flip());
+		chars.clear();
+		assertEquals(text.length(), SMDUtf8Bytes.decode(direct, chars));
+		assertEquals(text, chars.flip().toString());
+	}
+}
@@ -0,0 +1,97 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import vietfi.markdown.strict.jfr.SMDFlightRecorder;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDFlightRecorderTest {
+
+	static List<RecordedEvent> events(List<RecordedEvent> all, String name) {
+		return all.stream().filter(e -> e.getEventType().getName().equals("vietfi.markdown.strict." + name)).collect(Collectors.toList());
+	}
+
+	@Test
+	void testEvents() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), 1024, SMDConverter.MAXIMUM_BUFFER_SIZE);
+		StringBuilder expected = new StringBuilder();
+		converter.convert(new StringReader(text), expected);
+		Path file = Files.createTempFile("smd", ".jfr");
+		List<RecordedEvent> all;
+		try(Recording recording = new Recording()) {
+			recording.enable("vietfi.markdown.strict.Document");
+			recording.enable("vietfi.markdown.strict.Parse");
+			recording.enable("vietfi.markdown.strict.Render");
+			recording.enable("vietfi.markdown.strict.Compact");
+			recording.enable("vietfi.markdown.strict.MarkersGrow");
+			recording.start();
+
+			//a sequence id per conversion
+			StringBuilder sb = new StringBuilder();
+			converter.convert(new StringReader(text), sb);
+			assertEquals(expected.toString(), sb.toString());
+			assertEquals(0, SMDFlightRecorder.getDocumentId());
+
+			//the id of the application
+			SMDFlightRecorder.setDocumentId(-7);
+			try {
+				converter.convert(new StringReader(SMDConverterTest.INPUT), new StringBuilder());
+				StringBuilder large = new StringBuilder();
+				for(int i = 0; i < 10; i++)
+					large.append(text).append('\n');
+				SMDConverterTest.renderWhole(large.toString());
+			}
+			finally {
+				SMDFlightRecorder.setDocumentId(0);
+			}
+
+			recording.stop();
+			recording.dump(file);
+			all = RecordingFile.readAllEvents(file);
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+
+		List<RecordedEvent> documents = events(all, "Document");
+		assertEquals(2, documents.size());
+		long id = documents.get(0).getLong("documentId");
+		assertTrue(id > 0);
+		assertEquals(text.length(), documents.get(0).getLong("chars"));
+		assertEquals(-7, documents.get(1).getLong("documentId"));
+		assertEquals(SMDConverterTest.INPUT.length(), documents.get(1).getLong("chars"));
+
+		List<RecordedEvent> parses = events(all, "Parse");
+		List<RecordedEvent> renders = events(all, "Render");
+		List<RecordedEvent> compacts = events(all, "Compact");
+		System.out.println("Parse: "+parses.size()+", render: "+renders.size()+", compact: "+compacts.size()
+			+", grow: "+events(all, "MarkersGrow").size());
+		//the small buffer, many rounds
+		assertTrue(compacts.stream().filter(e -> e.getLong("documentId") == id).count() > 1);
+		long chars = parses.stream().filter(e -> e.getLong("documentId") == id).mapToLong(e -> e.getInt("chars")).sum();
+		assertEquals(text.length(), chars - 1); //with the forced ending
+		long markers = parses.stream().filter(e -> e.getLong("documentId") == id).mapToLong(e -> e.getInt("markers")).sum();
+		assertTrue(markers > 0);
+		assertTrue(renders.stream().allMatch(e -> "produceHtml".equals(e.getString("operation"))));
+		assertTrue(renders.stream().filter(e -> e.getLong("documentId") == id).mapToLong(e -> e.getInt("output")).sum() > text.length());
+
+		//the whole text is parsed into one markers
+		assertTrue(events(all, "MarkersGrow").stream().anyMatch(e -> e.getLong("documentId") == -7));
+	}
+}
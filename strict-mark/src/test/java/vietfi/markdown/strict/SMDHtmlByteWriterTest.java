@@ -0,0 +1,155 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlByteWriterImpl;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDHtmlByteWriterTest {
+
+	static String corpus;
+
+	@BeforeAll
+	static void setUp() throws IOException {
+		corpus = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8)
+				+ SMDConverterTest.INPUT
+				+ "[a \"quoted\" link](/x?a=1&b='2')\n\n\uD83D\uDE00 emoji &\t\u2028 <tag>\n";
+	}
+
+	static SMDMarkers parse(CharBuffer buffer) {
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		return parser.markers();
+	}
+
+	//the rounds of the output, written out when full
+	static byte[] write(SMDHtmlByteWriter writer, SMDMarkers markers, CharBuffer buffer, ByteBuffer output) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		markers.cursorReset();
+		int rounds = 0;
+		boolean done;
+		do {
+			done = writer.appendHtml(markers, buffer, output);
+			output.flip();
+			byte[] bytes = new byte[output.remaining()];
+			output.get(bytes);
+			out.write(bytes, 0, bytes.length);
+			output.clear();
+			rounds++;
+		} while(!done);
+		System.out.println("Output "+output.capacity()+(output.isDirect() ? " direct" : "")+": "+rounds+" rounds");
+		return out.toByteArray();
+	}
+
+	@Test
+	void testSameAsRender() {
+		CharBuffer buffer = CharBuffer.wrap(corpus.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		StringBuilder sb = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(markers, buffer, sb);
+		byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		HtmlByteWriterImpl writer = new HtmlByteWriterImpl();
+		for(int capacity : new int[] {HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE, 257, 1000, expected.length + 1}) {
+			assertArrayEquals(expected, write(writer, markers, buffer, ByteBuffer.allocate(capacity)));
+			assertArrayEquals(expected, write(writer, markers, buffer, ByteBuffer.allocateDirect(capacity)));
+		}
+
+		//without the array of the input
+		CharBuffer wrapped = CharBuffer.wrap(corpus);
+		markers = parse(wrapped);
+		assertArrayEquals(expected, write(writer, markers, wrapped, ByteBuffer.allocate(300)));
+	}
+
+	@Test
+	void testClassesAndResolvers() {
+		CharBuffer buffer = CharBuffer.wrap(corpus.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		HtmlByteWriterImpl writer = new HtmlByteWriterImpl();
+		for(int i = SMDRender.CLASS_FOR_PARAGRAPH; i <= SMDRender.CLASS_FOR_LI; i++) {
+			render.setClassNameForTag("c"+i+" \u00E0", i);
+			writer.setClassNameForTag("c"+i+" \u00E0", i);
+		}
+		render.setLinkHrefResolver((url, sb) -> {
+			sb.append("/go?u=");
+			return 0;
+		});
+		writer.setLinkHrefResolver((url, bytes) -> {
+			bytes.put("/go?u=".getBytes(StandardCharsets.US_ASCII));
+			return 0;
+		});
+		//the src without the leading slash
+		render.setImageSrcResolver((url, sb) -> url.charAt(0) == '/' ? 1 : null);
+		writer.setImageSrcResolver((url, bytes) -> url.charAt(0) == '/' ? 1 : null);
+
+		StringBuilder sb = new StringBuilder();
+		render.produceHtml(markers, buffer, sb);
+		byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+		assertTrue(sb.indexOf("<a class=\"c2 \u00E0\" href=\"/go?u=https://") >= 0);
+		assertTrue(sb.indexOf("src=\"a.png\"") >= 0);
+		for(int capacity : new int[] {HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE, 300, expected.length})
+			assertArrayEquals(expected, write(writer, markers, buffer, ByteBuffer.allocate(capacity)));
+	}
+
+	@Test
+	void testUtf8Bytes() throws IOException {
+		//the buffer of the byte level mapping, the same bytes as the converter
+		byte[] bytes = corpus.getBytes(StandardCharsets.UTF_8);
+		CharBuffer buffer = CharBuffer.allocate(bytes.length);
+		SMDUtf8Bytes.decode(ByteBuffer.wrap(bytes), buffer);
+		SMDMarkers markers = parse(buffer);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		StringBuilder sb = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(markers, buffer, sb);
+		ByteBuffer encoded = ByteBuffer.allocate(sb.length() * 3);
+		SMDUtf8Bytes.encode(sb, 0, sb.length(), encoded);
+		expected.write(encoded.array(), 0, encoded.position());
+
+		HtmlByteWriterImpl writer = new HtmlByteWriterImpl();
+		assertArrayEquals(expected.toByteArray(), write(writer, markers, buffer, ByteBuffer.allocate(HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE)));
+
+		//to a channel and a stream
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		markers.cursorReset();
+		writer.writeHtml(markers, buffer, ByteBuffer.allocateDirect(1024), Channels.newChannel(out));
+		assertArrayEquals(expected.toByteArray(), out.toByteArray());
+		out.reset();
+		markers.cursorReset();
+		writer.writeHtml(markers, buffer, ByteBuffer.allocate(1024), out);
+		assertArrayEquals(expected.toByteArray(), out.toByteArray());
+	}
+
+	@Test
+	void testOutputFull() {
+		CharBuffer buffer = CharBuffer.wrap(corpus.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		HtmlByteWriterImpl writer = new HtmlByteWriterImpl();
+		ByteBuffer output = ByteBuffer.allocate(HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE);
+		assertFalse(writer.appendHtml(markers, buffer, output));
+		//not cleared, the next char or escape does not fit in the rest
+		int position = output.position();
+		int cursor = markers.cursor();
+		assertFalse(writer.appendHtml(markers, buffer, output));
+		assertEquals(position, output.position());
+		assertEquals(cursor, markers.cursor());
+	}
+}
@@ -0,0 +1,152 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+import vietfi.markdown.strict.render.HtmlWriterImpl;
+
+public class SMDHtmlRenderTest {
+
+	//the sizes of the writes
+	static class CountingWriter extends StringWriter {
+		int writes;
+		int maxWrite;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			writes++;
+			maxWrite = Math.max(maxWrite, len);
+			super.write(cbuf, off, len);
+		}
+	}
+
+	static SMDMarkers parse(CharBuffer buffer) {
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		return parser.markers();
+	}
+
+	@Test
+	void testAppendable() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ SMDConverterTest.INPUT;
+		CharBuffer buffer = CharBuffer.wrap(text.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setLinkHrefResolver((url, sb) -> {
+			sb.append("/go?u=");
+			return 0;
+		});
+		StringBuilder expected = new StringBuilder();
+		render.produceHtml(markers, buffer, expected);
+
+		for(int flushSize : new int[] {1, 64, 256, HtmlRenderImpl.DEFAULT_FLUSH_SIZE}) {
+			render.setFlushSize(flushSize);
+			CountingWriter writer = new CountingWriter();
+			markers.cursorReset();
+			render.produceHtml(markers, buffer, writer);
+			assertEquals(expected.toString(), writer.toString());
+			System.out.println("Flush size "+flushSize+": "+writer.writes+" writes, the longest "+writer.maxWrite);
+			//a batch is about the flush size, a long content is split
+			assertTrue(writer.maxWrite < flushSize + 128);
+			assertTrue(writer.writes >= expected.length() / (flushSize + 128));
+
+			//not a Writer
+			StringBuilder sb = new StringBuilder();
+			markers.cursorReset();
+			render.produceHtml(markers, buffer, (Appendable) sb);
+			assertEquals(expected.toString(), sb.toString());
+		}
+		assertThrows(IllegalArgumentException.class, () -> render.setFlushSize(0));
+	}
+
+	@Test
+	void testWriterError() {
+		CharBuffer buffer = CharBuffer.wrap(SMDConverterTest.INPUT.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setFlushSize(16);
+		Writer closed = new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw new IOException("closed");
+			}
+			@Override
+			public void flush() {
+			}
+			@Override
+			public void close() {
+			}
+		};
+		assertThrows(IOException.class, () -> render.produceHtml(markers, buffer, closed));
+
+		//the render is usable again
+		markers.cursorReset();
+		StringBuilder sb = new StringBuilder();
+		render.produceHtml(markers, buffer, sb);
+		assertEquals(SMDConverterTest.renderWhole(SMDConverterTest.INPUT), sb.toString());
+	}
+
+	@Test
+	void testClassesOfWriter() {
+		String text = SMDConverterTest.INPUT + "\n```java\nint a = 1;\n```\n\n> quote\n";
+		CharBuffer buffer = CharBuffer.wrap(text.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		HtmlWriterImpl writer = new HtmlWriterImpl();
+		for(int i = SMDRender.CLASS_FOR_PARAGRAPH; i <= SMDRender.CLASS_FOR_LI; i++) {
+			render.setClassNameForTag("c"+i+" <"+i+">", i);
+			writer.setClassNameForTag("c"+i+" <"+i+">", i);
+		}
+		StringBuilder expected = new StringBuilder();
+		render.produceHtml(markers, buffer, expected);
+		assertTrue(expected.indexOf("<p class=\"c1 &lt;1&gt;\">") >= 0);
+		assertTrue(expected.indexOf("<pre class=\"c5 &lt;5&gt;\"><code class=\"language-java\">") >= 0);
+		assertTrue(expected.indexOf("<blockquote class=\"c6 &lt;6&gt;\">") >= 0);
+
+		//the same tags of the table
+		markers.cursorReset();
+		CharBuffer output = CharBuffer.allocate(expected.length() * 2);
+		assertTrue(writer.appendHtml(markers, buffer, output));
+		assertEquals(expected.toString(), output.flip().toString());
+	}
+
+	@Test
+	void testWriterRounds() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ SMDConverterTest.INPUT;
+		CharBuffer buffer = CharBuffer.wrap(text.toCharArray());
+		SMDMarkers markers = parse(buffer);
+		StringBuilder expected = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(markers, buffer, expected);
+
+		//a marker stopped by the full output is resumed, its tags are not written again
+		markers.cursorReset();
+		HtmlWriterImpl writer = new HtmlWriterImpl();
+		CharBuffer output = CharBuffer.allocate(HtmlWriterImpl.MINIMUM_BUFFER_SIZE);
+		StringBuilder sb = new StringBuilder();
+		int rounds = 0;
+		boolean done;
+		do {
+			done = writer.appendHtml(markers, buffer, output);
+			sb.append(output.flip());
+			output.clear();
+			rounds++;
+		} while(!done);
+		assertTrue(rounds > 100);
+		assertEquals(expected.toString(), sb.toString());
+	}
+}
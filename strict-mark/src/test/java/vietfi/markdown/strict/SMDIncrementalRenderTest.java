@@ -0,0 +1,167 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class SMDIncrementalRenderTest {
+
+	//the blocks of an editor, patched
+	static void apply(List<String> blocks, SMDIncrementalRender.Patch patch) {
+		blocks.subList(patch.firstBlock(), patch.firstBlock() + patch.removedCount()).clear();
+		blocks.addAll(patch.firstBlock(), patch.html());
+	}
+
+	static String join(List<String> blocks) {
+		StringBuilder sb = new StringBuilder();
+		for(String html : blocks)
+			sb.append(html);
+		return sb.toString();
+	}
+
+	static String renderByBlocks(CharSequence text) {
+		StringBuilder sb = new StringBuilder();
+		new SMDParallelRender(ForkJoinPool.commonPool(), 1).produceHtml(text, sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testEdit() {
+		String text = SMDParallelRenderTest.INPUT + SMDParallelRenderTest.INPUT;
+		SMDIncrementalRender document = new SMDIncrementalRender();
+		document.parse(text);
+		assertEquals(SMDConverterTest.renderWhole(text), join(html(document)));
+		List<String> blocks = html(document);
+
+		//typing in a paragraph
+		int offset = text.indexOf("After 7 weeks") + 5;
+		SMDIncrementalRender.Patch patch = document.edit(offset, 0, "x");
+		apply(blocks, patch);
+		System.out.println(patch.firstBlock()+" +"+patch.removedCount()+": "+patch.html());
+		assertTrue(patch.removedCount() <= 2);
+		assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks));
+
+		//open a code block, up to the next fence
+		patch = document.edit(offset, 1, "\n\n~~~\n");
+		apply(blocks, patch);
+		assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks));
+
+		//and close it
+		patch = document.edit(offset, 6, "");
+		apply(blocks, patch);
+		assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks));
+		assertEquals(text, document.text().toString());
+	}
+
+	@Test
+	void testRandomEdits() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ SMDParallelRenderTest.INPUT;
+		String[] snippets = {"x", " ", "\n", "\n\n", "```\n", "~~~\n", "- ", "1. ", "> ", "**", "    code\n", "# "};
+		SMDIncrementalRender document = new SMDIncrementalRender();
+		document.parse(text);
+		List<String> blocks = html(document);
+		System.out.println("Blocks: "+blocks.size());
+
+		Random random = new Random(39);
+		long touched = 0;
+		for(int i = 0; i < 300; i++) {
+			int length = document.text().length();
+			int offset = random.nextInt(length + 1);
+			int removed = Math.min(random.nextInt(6), length - offset);
+			SMDIncrementalRender.Patch patch = document.edit(offset, removed, snippets[random.nextInt(snippets.length)]);
+			apply(blocks, patch);
+			touched += patch.removedCount();
+			assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks), "Edit "+i+" at "+offset);
+		}
+		System.out.println("Average blocks rendered again: "+touched / 300.0);
+		assertEquals(document.blockCount(), blocks.size());
+	}
+
+	@Test
+	void testTypingOnLargeDocument() {
+		StringBuilder sb = new StringBuilder();
+		while(sb.length() < 100000)
+			sb.append(SMDParallelRenderTest.INPUT);
+		SMDIncrementalRender document = new SMDIncrementalRender();
+		document.parse(sb);
+		List<String> blocks = html(document);
+
+		//type a sentence in the middle
+		int offset = sb.indexOf("After 7 weeks", 50000);
+		long start = System.nanoTime();
+		for(char ch : "typing a few words".toCharArray()) {
+			SMDIncrementalRender.Patch patch = document.edit(offset++, 0, String.valueOf(ch));
+			assertTrue(patch.removedCount() <= 2);
+			apply(blocks, patch);
+		}
+		System.out.println("Typing on "+sb.length()+" chars: "+(System.nanoTime() - start) / 1000+" us");
+		assertEquals(renderByBlocks(document.text()), join(blocks));
+		assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks));
+	}
+
+	@Test
+	void testEditNearNestedList() {
+		String text = "1. one\n    - nested\n\npara\n\n- two\n\nlast line";
+		SMDIncrementalRender document = new SMDIncrementalRender();
+		document.parse(text);
+		List<String> blocks = html(document);
+		//the last line without a new line is not lost
+		assertEquals(SMDConverterTest.renderWhole(text), join(blocks));
+		assertTrue(join(blocks).contains("last line"));
+
+		//a quote before the nested list, and in the list
+		for(int offset : new int[] {0, text.indexOf("    - nested"), text.indexOf("para"), text.indexOf("- two")}) {
+			document.parse(text);
+			blocks = html(document);
+			apply(blocks, document.edit(offset, 0, "> q\n"));
+			assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks), "At "+offset);
+			apply(blocks, document.edit(offset, 4, ""));
+			assertEquals(SMDConverterTest.renderWhole(text), join(blocks), "Back at "+offset);
+		}
+	}
+
+	//random documents of the block snippets, random edits, each is compared to rendering the whole text
+	@Test
+	void testRandomDocuments() {
+		String[] lines = {"# h\n", "para text\n", "\n", "\n", "- a\n", "  - b\n", "1. c\n", "   1. d\n", "    ind\n", "> q\n",
+				"```\n", "code\n", "x *y* z\n", "---\n", "a) e\n", "q"};
+		Random random = new Random(11);
+		for(int d = 0; d < 300; d++) {
+			StringBuilder sb = new StringBuilder();
+			int n = random.nextInt(20);
+			for(int i = 0; i < n; i++)
+				sb.append(lines[random.nextInt(lines.length)]);
+			SMDIncrementalRender document = new SMDIncrementalRender();
+			document.parse(sb);
+			List<String> blocks = html(document);
+			assertEquals(SMDConverterTest.renderWhole(sb.toString()), join(blocks), "Document "+d);
+
+			for(int e = 0; e < 10; e++) {
+				int length = document.text().length();
+				int offset = random.nextInt(length + 1);
+				int removed = Math.min(random.nextInt(4), length - offset);
+				apply(blocks, document.edit(offset, removed, lines[random.nextInt(lines.length)]));
+				assertEquals(SMDConverterTest.renderWhole(document.text().toString()), join(blocks), "Document "+d+", edit "+e+" at "+offset);
+			}
+			assertEquals(document.blockCount(), blocks.size());
+		}
+	}
+
+	static List<String> html(SMDIncrementalRender document) {
+		List<String> blocks = new ArrayList<>();
+		for(int i = 0; i < document.blockCount(); i++)
+			blocks.add(document.blockHtml(i));
+		return blocks;
+	}
+}
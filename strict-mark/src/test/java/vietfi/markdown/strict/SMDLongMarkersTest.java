@@ -0,0 +1,117 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDLongMarkersTest {
+
+	static String render(SMDParser parser, String text) {
+		CharBuffer buffer = CharBuffer.wrap(text);
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		StringBuilder sb = new StringBuilder(text.length() * 2);
+		new HtmlRenderImpl().produceHtml(parser.markers(), buffer, sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testSameAsIntMarkers() {
+		String text = SMDParallelRenderTest.INPUT;
+		SMDParser intParser = SMDParserChain.createParserOfStandard();
+		SMDParser longParser = SMDParserChain.createParserOfStandard(SMDMarkers.createLongMarkers(16));
+
+		assertEquals(render(intParser, text), render(longParser, text));
+		assertEquals(intParser.markers().toString(), longParser.markers().toString());
+		assertArrayEquals(intParser.markers().toStateArray(), longParser.markers().toStateArray());
+		assertArrayEquals(intParser.markers().toMarkerStartStopArray(), longParser.markers().toMarkerStartStopArray());
+
+		//compact as streaming
+		SMDMarkers i = intParser.markers();
+		SMDMarkers l = longParser.markers();
+		i.cursorReset(3);
+		l.cursorReset(3);
+		assertEquals(i.compactMarkers(100), l.compactMarkers(100));
+		assertEquals(i.toString(), l.toString());
+
+		//copy between both
+		SMDMarkers copy = SMDMarkers.createLongMarkers(4);
+		copy.appendMarkers(i, 0x0FFFFF);
+		assertEquals(i.markedLength(), copy.markedLength());
+		assertEquals(i.getMarkerPosition(0) + 0x0FFFFF, copy.getMarkerPosition(0));
+		assertThrows(IllegalArgumentException.class, () -> new SMDMarkers(4).appendMarkers(copy, 0));
+	}
+
+	@Test
+	void testOverOneMillion() throws IOException {
+		//long lines, a few markers of a big buffer
+		StringBuilder line = new StringBuilder("Paragraph of **long** lines");
+		while(line.length() < 2000)
+			line.append(" word");
+		line.append('\n');
+		StringBuilder sb = new StringBuilder(SMDParallelRenderTest.INPUT + SMDParallelRenderTest.INPUT); //the fences are paired
+		while(sb.length() <= SMDMarkers.MAXIMUM_POSITION * 2) {
+			for(int i = 0; i < 10; i++)
+				sb.append(line);
+			sb.append('\n');
+		}
+		String text = sb.append(SMDParallelRenderTest.INPUT).toString();
+
+		//the int markers can not address the whole buffer
+		assertThrows(IllegalArgumentException.class, () -> render(SMDParserChain.createParserOfStandard(), text));
+
+		long start = System.nanoTime();
+		String html = render(SMDParserChain.createParserOfStandard(SMDMarkers.createLongMarkers(4096)), text);
+		System.out.println("Long markers, whole buffer of "+text.length()+" chars: "+(System.nanoTime() - start) / 1000000+" ms");
+
+		//same as the chunks parsed by the int markers
+		start = System.nanoTime();
+		StringBuilder output = new StringBuilder(html.length());
+		new SMDParallelRender().produceHtml(text, output);
+		System.out.println("Int markers, by chunks of "+SMDParallelRender.DEFAULT_CHUNK_SIZE+" chars: "+(System.nanoTime() - start) / 1000000+" ms");
+		assertEquals(html, output.toString());
+
+		//a big buffer of converter
+		SMDConverter converter = new SMDConverter(SMDParserChain.createParserOfStandard(SMDMarkers.createLongMarkers(4096)), new HtmlRenderImpl(),
+				SMDConverter.MAXIMUM_BUFFER_SIZE * 4, SMDConverter.MAXIMUM_BUFFER_SIZE * 4);
+		output.setLength(0);
+		converter.convert(new StringReader(text), output);
+		assertEquals(html, output.toString());
+		assertTrue(SMDParallelRender.splitPositions(text, 1).length > 1);
+		assertEquals(Integer.MAX_VALUE, new SMDParallelRender().parse(text).maximumPosition());
+	}
+
+	@Test
+	void testDenseOverOneMillion() {
+		//the markers of every few chars, far more than smd.maximum.markers
+		StringBuilder block = new StringBuilder();
+		for(int i = 0; i < 10; i++)
+			block.append("a [l](u) **b** *i* `c`\n");
+		String one = render(SMDParserChain.createParserOfStandard(), block.append('\n').toString());
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
+		while(sb.length() <= SMDMarkers.MAXIMUM_POSITION + 1) {
+			sb.append(block);
+			count++;
+		}
+		String text = sb.toString();
+
+		SMDParser parser = SMDParserChain.createParserOfStandard(SMDMarkers.createLongMarkers(4096));
+		String html = render(parser, text);
+		assertTrue(parser.markers().markedLength() > SMDMarkers.MAXIMUM_MARKER_LENGTH);
+		//the inline markup is parsed to the end
+		assertEquals(one.repeat(count), html);
+		StringBuilder output = new StringBuilder(html.length());
+		new SMDParallelRender().produceHtml(text, output);
+		assertEquals(html, output.toString());
+	}
+}
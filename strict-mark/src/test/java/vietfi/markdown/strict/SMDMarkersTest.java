@@ -0,0 +1,62 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SMDMarkersTest {
+
+	//a stream of paragraphs of 100 chars, one paragraph is always open (pending) at the compaction
+	void streamThrough(SMDMarkers markers) {
+		int compacted = 0; //stream position of the buffer's position 0
+		int open = 0; //stream position of the open paragraph
+		markers.addStartMarkerContent(SMDParser.STATE_PARAGRAPH, 0, 0);
+		for(int round = 0; round < 3000; round++) {
+			//parsed up to the next 1000 chars
+			for(int p = open; p < open + 1000; p += 100) {
+				markers.addStopContentMarker(SMDParser.STATE_PARAGRAPH, p + 99 - compacted, p + 100 - compacted);
+				markers.addStartMarkerContent(SMDParser.STATE_PARAGRAPH, p + 100 - compacted, p + 100 - compacted);
+			}
+			open += 1000;
+
+			//the render stops at the open paragraph
+			markers.cursorReset(markers.markedLength() - 1);
+			assertEquals(open - compacted, markers.cursorPosition1());
+			int pos = markers.compactMarkers(open + 50 - compacted);
+			assertEquals(open - compacted, pos);
+			compacted += pos;
+
+			//the open paragraph is the first marker
+			assertEquals(1, markers.markedLength());
+			assertEquals(0, markers.getMarkerPosition(0));
+			assertTrue(markers.isMarkerStart(0));
+		}
+		//over 20 bits of the stream
+		assertTrue(compacted > SMDMarkers.MAXIMUM_POSITION * 2);
+	}
+
+	@Test
+	void testCompactionOverMillion() {
+		streamThrough(new SMDMarkers(4));
+		streamThrough(SMDMarkers.createLongMarkers(4));
+		streamThrough(SMDMarkers.createPagedMarkers(4));
+	}
+
+	@Test
+	void testCompactionKeepsPending() {
+		SMDMarkers markers = new SMDMarkers(4);
+		markers.addStartMarker(SMDParser.STATE_ORDERED_LIST, 0);
+		for(int i = 0; i < 10000; i++) {
+			markers.addStartMarkerContent(SMDParser.STATE_LIST_ITEM, i * 10, i * 10 + 3);
+			markers.addStopMarker(SMDParser.STATE_LIST_ITEM, i * 10 + 9);
+		}
+		markers.cursorReset(1000);
+		int pos = markers.getMarkerPosition(1000);
+		assertEquals(pos, markers.compactMarkers(pos + 5));
+		assertEquals(0, markers.getMarkerPosition(0));
+		assertEquals(30000 - 1000 + 1, markers.markedLength());
+		assertEquals(99999 - pos, markers.getLastMarkerPosition());
+		assertEquals(0, markers.cursor());
+	}
+}
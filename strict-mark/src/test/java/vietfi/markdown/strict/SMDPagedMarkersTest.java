@@ -0,0 +1,96 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDPagedMarkersTest {
+
+	@Test
+	void testSameAsIntMarkers() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 20; i++)
+			sb.append(SMDParallelRenderTest.INPUT);
+		String text = sb.toString();
+		SMDParser intParser = SMDParserChain.createParserOfStandard();
+		SMDParser pagedParser = SMDParserChain.createParserOfStandard(SMDMarkers.createPagedMarkers(16));
+
+		assertEquals(SMDLongMarkersTest.render(intParser, text), SMDLongMarkersTest.render(pagedParser, text));
+		assertEquals(intParser.markers().toString(), pagedParser.markers().toString());
+		assertArrayEquals(intParser.markers().toStateArray(), pagedParser.markers().toStateArray());
+		assertTrue(pagedParser.markers().pageCount() > 1);
+
+		//drop the rendered markers over pages
+		SMDMarkers i = intParser.markers();
+		SMDMarkers p = pagedParser.markers();
+		for(int cursor : new int[] {3, SMDMarkers.PAGE_SIZE + 5, 10}) {
+			i.cursorReset(cursor);
+			p.cursorReset(cursor);
+			int upto = i.getMarkerPosition(cursor);
+			assertEquals(i.compactMarkers(upto), p.compactMarkers(upto));
+			assertEquals(i.toString(), p.toString());
+		}
+	}
+
+	@Test
+	void testStreaming() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			sb.append(SMDParallelRenderTest.INPUT);
+		String text = sb.toString();
+
+		StringBuilder expected = new StringBuilder();
+		new SMDConverter(SMDParserChain.createParserOfStandard(), new HtmlRenderImpl(), 1024, 1024).convert(new StringReader(text), expected);
+		StringBuilder output = new StringBuilder();
+		SMDMarkers markers = SMDMarkers.createPagedMarkers(16);
+		new SMDConverter(SMDParserChain.createParserOfStandard(markers), new HtmlRenderImpl(), 1024, 1024).convert(new StringReader(text), output);
+		assertEquals(expected.toString(), output.toString());
+		assertEquals(1, markers.pageCount()); //the pages are reused
+	}
+
+	@Test
+	void testRecyclePages() {
+		SMDMarkers markers = SMDMarkers.createPagedMarkers(SMDMarkers.PAGE_SIZE);
+		for(int i = 0; i < SMDMarkers.PAGE_SIZE * 4; i++)
+			markers.addStartMarker(SMDParser.STATE_PARAGRAPH, i);
+		assertEquals(4, markers.pageCount());
+
+		int free = SMDMarkers.freePageCount();
+		markers.resetMarkers();
+		assertEquals(1, markers.pageCount());
+		System.out.println("Free pages: "+free+" -> "+SMDMarkers.freePageCount());
+		assertTrue(SMDMarkers.freePageCount() >= Math.min(free + 3, 256));
+
+		//the next document
+		SMDMarkers next = SMDMarkers.createPagedMarkers(SMDMarkers.PAGE_SIZE * 2);
+		assertEquals(2, next.pageCount());
+		assertTrue(next.isEmpty());
+	}
+
+	@Test
+	void testDenseMarkers() {
+		//more markers than smd.maximum.markers within 1M chars
+		StringBuilder block = new StringBuilder();
+		for(int i = 0; i < 10; i++)
+			block.append("a [l](u) **b** *i* `c`\n");
+		String one = SMDLongMarkersTest.render(SMDParserChain.createParserOfStandard(), block.append('\n').toString());
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
+		while(sb.length() < SMDMarkers.MAXIMUM_POSITION / 2) {
+			sb.append(block);
+			count++;
+		}
+
+		SMDParser parser = SMDParserChain.createParserOfStandard(SMDMarkers.createPagedMarkers(16));
+		String html = SMDLongMarkersTest.render(parser, sb.toString());
+		assertTrue(parser.markers().markedLength() > SMDMarkers.MAXIMUM_MARKER_LENGTH);
+		assertEquals(one.repeat(count), html);
+	}
+}
@@ -0,0 +1,167 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDParallelRenderTest {
+
+	static final String INPUT = "# Test heading\n"
+			+ "After 7 weeks, I conclude that:\n"
+			+ "\n"
+			+ "1. Writing a parser for the **markdown** text is not easy.\n"
+			+ "\n"
+			+ "2. This is the [complex](https://daringfireball.net/projects/markdown/syntax#list) markdown sub list:\n"
+			+ "   > Quote here.\n"
+			+ "\n"
+			+ "~~~ java\n"
+			+ "int x = 1;\n"
+			+ "\n"
+			+ "Not a paragraph, still code.\n"
+			+ "~~~\n"
+			+ "\n"
+			+ "Paragraph with ``` inline code ```\n"
+			+ "```\n"
+			+ "\n"
+			+ "    Indented code\n"
+			+ "\n"
+			+ "    more code\n"
+			+ "\n"
+			+ "> quote\n"
+			+ "\n"
+			+ "> next quote\n"
+			+ "\n"
+			+ "* item\n"
+			+ "\n"
+			+ "* next item\n"
+			+ "\n"
+			+ "a) alphabetic list\n"
+			+ "\n"
+			+ "b) next\n"
+			+ "\n"
+			+ "\u0110i\u1EC1u 1. ~~strike~~ _not underline_\n"
+			+ "\n"
+			+ "\n"
+			+ "Last item.\n"
+			+ "\n";
+
+	//the end of the document is forced as SMDConverter
+	static CharBuffer terminated(String text) {
+		CharBuffer buffer = CharBuffer.allocate(text.length() + 1);
+		buffer.append(text);
+		if(!text.isEmpty())
+			buffer.append('\u001C');
+		return buffer.flip();
+	}
+
+	static SMDParser parseSequential(CharBuffer buffer) {
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		return parser;
+	}
+
+	static String renderSequential(String text) {
+		CharBuffer buffer = terminated(text);
+		SMDParser parser = parseSequential(buffer);
+		StringBuilder sb = new StringBuilder(text.length() * 2);
+		new HtmlRenderImpl().produceHtml(parser.markers(), buffer, sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testSplitPositions() {
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("", 1));
+		assertArrayEquals(new int[] {0, 3}, SMDParallelRender.splitPositions("a\n\nb\n", 1));
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("a\n\nb\n", 10));
+		//list, quote, indented code continue after the blank line
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("1. a\n\n2. b\n", 1));
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("* a\n\n* b\n", 1));
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("> a\n\n> b\n", 1));
+		assertArrayEquals(new int[] {0}, SMDParallelRender.splitPositions("    a\n\n    b\n", 1));
+		//inside of code
+		assertArrayEquals(new int[] {0, 14}, SMDParallelRender.splitPositions("~~~\na\n\nb\n~~~\n\nc\n", 1));
+	}
+
+	@Test
+	void testSameAsSequential() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 50; i++)
+			sb.append(INPUT);
+		String text = sb.toString();
+		String expected = renderSequential(text);
+
+		for(int chunkSize : new int[] {1, 64, 1024, SMDParallelRender.DEFAULT_CHUNK_SIZE, text.length()}) {
+			SMDParallelRender parallel = new SMDParallelRender(ForkJoinPool.commonPool(), chunkSize);
+			StringBuilder output = new StringBuilder();
+			parallel.produceHtml(text, output);
+			System.out.println("Chunk size "+chunkSize+": "+SMDParallelRender.splitPositions(text, chunkSize).length+" chunks");
+			assertEquals(expected, output.toString());
+		}
+	}
+
+	@Test
+	void testParseMarkers() {
+		String text = INPUT + INPUT + INPUT;
+		SMDMarkers expected = parseSequential(terminated(text)).markers();
+
+		SMDMarkers markers = new SMDParallelRender(new ForkJoinPool(4), 1).parse(text);
+		assertTrue(SMDParallelRender.splitPositions(text, 1).length > 3);
+		assertEquals(expected.toString(), markers.toString());
+	}
+
+	static String render(SMDParallelRender parallel, String text) {
+		StringBuilder output = new StringBuilder();
+		parallel.produceHtml(text, output);
+		return output.toString();
+	}
+
+	@Test
+	void testDocuments() throws IOException {
+		String[] texts = {
+			new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8),
+			new String(Files.readAllBytes(Paths.get("../docs/index.md")), StandardCharsets.UTF_8),
+			new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8),
+			"hello world",
+			"# Title\n\nhello",
+			INPUT + "Last line without a new line",
+			"",
+		};
+		for(String text : texts) {
+			String expected = renderSequential(text);
+			for(int chunkSize : new int[] {1, 256, SMDParallelRender.DEFAULT_CHUNK_SIZE})
+				assertEquals(expected, render(new SMDParallelRender(ForkJoinPool.commonPool(), chunkSize), text));
+		}
+		assertEquals("<p>hello world</p>", render(new SMDParallelRender(), "hello world"));
+	}
+
+	@Test
+	void testFewerPairsThanWorkers() {
+		String text = INPUT + INPUT + INPUT + INPUT;
+		String expected = renderSequential(text);
+		//a worker waits for the pair, the ForkJoinPool is not starved
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			SMDParserChainPool<SMDHtmlRender> chainPool = new SMDParserChainPool<>(1, 1, 0,
+					SMDParserChain::createParserOfStandard, HtmlRenderImpl::new);
+			SMDParallelRender parallel = new SMDParallelRender(forkJoinPool, chainPool, 1);
+			for(int i = 0; i < 10; i++)
+				assertEquals(expected, render(parallel, text));
+			assertEquals(1, chainPool.getCreatedCount());
+		}
+		finally {
+			forkJoinPool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlByteWriterImpl;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDParserChainPoolTest {
+
+	static final String INPUT = "# Test heading\n"
+    		+ "After 7 weeks, I conclude that:\n"
+    		+ "\n"
+    		+ "1. Writing a parser for the **markdown** text is not easy.\n"
+    		+ "2. This is the [complex](https://daringfireball.net/projects/markdown/syntax#list) markdown sub list:\n"
+    		+ "\n"
+    		+ "> Quote here.\n"
+    		+ "\n"
+    		+ "Last item.\n";
+
+	static String render(SMDParserChainPool<SMDHtmlRender> pool) throws InterruptedException {
+		try (SMDParserChainPool.Entry<SMDHtmlRender> e = pool.borrow()) {
+			CharBuffer buffer = CharBuffer.wrap(INPUT);
+			StringBuilder sb = new StringBuilder(512);
+			e.parser().parseNext(buffer);
+			e.parser().endBlock(buffer.position());
+			e.render().produceHtml(e.parser().markers(), buffer, sb);
+			return sb.toString();
+		}
+	}
+
+	@Test
+	void testBorrowAndReturn() throws InterruptedException {
+		SMDParserChainPool<SMDHtmlRender> pool = new SMDParserChainPool<>(1, 2, 1,
+				SMDParserChain::createParserOfStandard, HtmlRenderImpl::new);
+		assertEquals(1, pool.getCreatedCount());
+
+		SMDParserChainPool.Entry<SMDHtmlRender> e1 = pool.borrow();
+		SMDParserChainPool.Entry<SMDHtmlRender> e2 = pool.borrow();
+		assertNotSame(e1, e2);
+		assertEquals(2, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowedCount());
+
+		//bounded
+		assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+		assertEquals(1, pool.getWaitCount());
+		assertTrue(pool.getMaxWaitNanos() > 0);
+
+		e1.close();
+		assertThrows(IllegalStateException.class, () -> e1.close());
+
+		SMDParserChainPool.Entry<SMDHtmlRender> e3 = pool.borrow(10, TimeUnit.MILLISECONDS);
+		assertSame(e1, e3);
+		assertTrue(e3.parser().markers().isEmpty());
+		e3.close();
+		e2.close();
+		assertEquals(0, pool.getBorrowedCount());
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	void testFailedReset() throws InterruptedException {
+		AtomicInteger failures = new AtomicInteger(1);
+		SMDParserChainPool<SMDHtmlRender> pool = new SMDParserChainPool<>(1, 1, 1,
+				SMDParserChain::createParserOfStandard, () -> new HtmlRenderImpl() {
+					@Override
+					public void reset() {
+						if(failures.getAndDecrement() > 0)
+							throw new IllegalStateException("Failed reset");
+						super.reset();
+					}
+				});
+		SMDParserChainPool.Entry<SMDHtmlRender> e1 = pool.borrow();
+		assertThrows(IllegalStateException.class, () -> e1.close());
+		//the permit is back, the entry is discarded
+		assertEquals(0, pool.getBorrowedCount());
+		SMDParserChainPool.Entry<SMDHtmlRender> e2 = pool.tryBorrow();
+		assertNotNull(e2);
+		assertNotSame(e1, e2);
+		assertEquals(2, pool.getCreatedCount());
+		e2.close();
+		assertSame(e2, pool.tryBorrow());
+	}
+
+	@Test
+	void testConcurrentClose() throws Exception {
+		SMDParserChainPool<SMDHtmlRender> pool = new SMDParserChainPool<>(1, 2, 2,
+				SMDParserChain::createParserOfStandard, HtmlRenderImpl::new);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for(int n = 0; n < 200; n++) {
+				SMDParserChainPool.Entry<SMDHtmlRender> e = pool.borrow();
+				CountDownLatch start = new CountDownLatch(1);
+				AtomicInteger returned = new AtomicInteger();
+				List<Future<?>> futures = new ArrayList<>();
+				for(int t = 0; t < 2; t++) {
+					futures.add(executor.submit(() -> {
+						start.await();
+						try {
+							e.close();
+							returned.incrementAndGet();
+						}
+						catch(IllegalStateException ex) {
+							//returned by the other thread
+						}
+						return null;
+					}));
+				}
+				start.countDown();
+				for(Future<?> f : futures)
+					f.get();
+				//only one close returns the entry, the permits are not over released
+				assertEquals(1, returned.get());
+				assertEquals(0, pool.getBorrowedCount());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testConcurrentRender() throws Exception {
+		SMDParserChainPool<SMDHtmlRender> pool = SMDParserChainPool.createHtmlRenderPool(4);
+		String expected = render(pool);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for(int i = 0; i < 200; i++)
+				results.add(executor.submit(() -> render(pool)));
+			for(Future<String> f : results) {
+				String actual = f.get(10, TimeUnit.SECONDS);
+				assertNotNull(actual);
+				assertEquals(expected, actual);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		assertEquals(0, pool.getBorrowedCount());
+		assertTrue(pool.getCreatedCount() <= 4);
+		assertEquals(201, pool.getBorrowCount());
+	}
+
+	static byte[] write(SMDParser parser, HtmlByteWriterImpl writer, ByteBuffer output) {
+		CharBuffer buffer = CharBuffer.wrap(INPUT);
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		boolean done = writer.appendHtml(parser.markers(), buffer, output);
+		return done ? Arrays.copyOf(output.array(), output.position()) : null;
+	}
+
+	@Test
+	void testRenderReset() throws InterruptedException {
+		byte[] expected = write(SMDParserChain.createParserOfStandard(), new HtmlByteWriterImpl(), ByteBuffer.allocate(4096));
+		SMDParserChainPool<HtmlByteWriterImpl> pool = new SMDParserChainPool<>(1, 1, 1,
+				SMDParserChain::createParserOfStandard, HtmlByteWriterImpl::new);
+
+		//the output is full, a marker is kept by the writer
+		try (SMDParserChainPool.Entry<HtmlByteWriterImpl> e = pool.borrow()) {
+			assertNull(write(e.parser(), e.render(), ByteBuffer.allocate(HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE)));
+		}
+		//the next borrower starts a new document
+		try (SMDParserChainPool.Entry<HtmlByteWriterImpl> e = pool.borrow()) {
+			assertArrayEquals(expected, write(e.parser(), e.render(), ByteBuffer.allocate(4096)));
+		}
+		assertEquals(1, pool.getCreatedCount());
+	}
+}
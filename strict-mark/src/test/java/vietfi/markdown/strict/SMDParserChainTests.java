@@ -283,4 +283,113 @@ public class SMDParserChainTests {
 		
 	    assertEquals(expected, sb.toString());
 	}
+	
+	private static String renderByChunks(SMDParserChain markdownParser, String inputText, int bufferSize) {
+		CharBuffer buffer = CharBuffer.allocate(bufferSize);
+		SMDHtmlRender htmlRenderer = new HtmlRenderImpl();
+		StringBuilder sb = new StringBuilder(inputText.length() * 2);
+		
+		int i = 0;
+		while(i < inputText.length()) {
+			int n = Math.min(buffer.remaining(), inputText.length() - i);
+			if(n == 0)
+				throw new IllegalStateException("Buffer is full, a block is longer than "+bufferSize);
+			buffer.append(inputText, i, i + n);
+			i += n;
+			buffer.flip();
+			markdownParser.parseNext(buffer);
+			htmlRenderer.produceHtml(markdownParser.markers(), buffer, sb);
+			int pos = markdownParser.markers().compactMarkers(buffer.position());
+			markdownParser.compact(pos);
+			if(pos < buffer.position())
+				buffer.position(pos);
+			buffer.compact();
+		}
+		if(buffer.position() > 0)
+			buffer.append('\u001C');
+		buffer.flip();
+		markdownParser.parseNext(buffer);
+		markdownParser.endBlock(buffer.position());
+		htmlRenderer.produceHtml(markdownParser.markers(), buffer, sb);
+		return sb.toString();
+	}
+	
+	@Test
+	void testFirstCharDispatch() {
+		String inputText = "# Test heading\n"
+				+ "---\n"
+				+ "After 7 weeks, I conclude that:\n"
+				+ "\n"
+				+ "1. Writing a parser for the **markdown** text is not easy.\n"
+				+ "2. This is the [complex](https://daringfireball.net/projects/markdown/syntax#list) markdown sub list:\n"
+				+ "   > Quote here.\n"
+				+ "   \n"
+				+ "    Code here.\n"
+				+ "   \n"
+				+ "   Paragraph at the end.\n"
+				+ "\n"
+				+ "* Unordered list here.\n"
+				+ "   1. Here is sub item.\n"
+				+ "       Body of code.\n"
+				+ "   2. Continue\n"
+				+ "- another list\n"
+				+ "\n"
+				+ "~~~ java\n"
+				+ "int x = 1 < 2 ? 0 : 1;\n"
+				+ "~~~\n"
+				+ "> quote **bold** text\n"
+				+ ">\n"
+				+ "> next paragraph\n"
+				+ "\n"
+				+ "Heading 2\n"
+				+ "=========\n"
+				+ "\u0110i\u1EC1u 1. ~~strike~~ _not underline_ `code` ![image](/a.png) \\\n"
+				+ "__underline__ and ?unparseable line\n"
+				+ "?unparseable line\n"
+				+ "___\n"
+				+ "a) alphabetic list\n"
+				+ "b) next\n"
+				+ "\n"
+				+ "Last item.\n";
+		
+		for(int bufferSize : new int[] {SMDParser.MINIMUM_BUFFER_SIZE, 700, 4096}) {
+			SMDParserChain sequential = (SMDParserChain) SMDParserChain.createParserOfStandard();
+			sequential.setFirstCharDispatch(false);
+			SMDParserChain dispatching = (SMDParserChain) SMDParserChain.createParserOfStandard();
+			dispatching.setFirstCharDispatch(true);
+			
+			String expected = renderByChunks(sequential, inputText, bufferSize);
+			String actual = renderByChunks(dispatching, inputText, bufferSize);
+			System.out.append("Buffer size ").append(String.valueOf(bufferSize)).append(", result:\n").append(actual).append("\n\n");
+			assertEquals(expected, actual);
+		}
+	}
+	
+	@Test
+	void testReset() {
+		String inputText = "# Test heading\n"
+				+ "1. First item **bold**\n"
+				+ "   > Quote here.\n"
+				+ "2. Second item\n"
+				+ "\n"
+				+ "~~~ java\n"
+				+ "int x = 1;\n"
+				+ "~~~\n"
+				+ "Last _item_.\n";
+		String expected = renderByChunks((SMDParserChain) SMDParserChain.createParserOfStandard(), inputText, 4096);
+		
+		//abandon documents in the middle of blocks
+		String[] abandons = new String[] {"~~~ java\nint y = 2;\n", "* item\n   * sub **bold\n", "> quote\n> _more", "Para `code"};
+		SMDParserChain markdownParser = (SMDParserChain) SMDParserChain.createParserOfStandard();
+		for(String abandon : abandons) {
+			markdownParser.parseNext(CharBuffer.wrap(abandon));
+			markdownParser.reset();
+			assertEquals(true, markdownParser.markers().isEmpty());
+			
+			String actual = renderByChunks(markdownParser, inputText, 4096);
+			System.out.println(actual);
+			assertEquals(expected, actual);
+			markdownParser.reset();
+		}
+	}
 }
@@ -0,0 +1,137 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.block.SMDHeading12BlockParser;
+import vietfi.markdown.strict.block.SMDHeadingByPoundsBlockParser;
+import vietfi.markdown.strict.block.SMDHorizontalBlockParser;
+import vietfi.markdown.strict.block.SMDOrderedListBlockParser;
+import vietfi.markdown.strict.block.SMDParagraphParser;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDParserStatisticsTest {
+
+	static String render(SMDParserChain chain, String text) {
+		CharBuffer buffer = CharBuffer.wrap(text);
+		chain.reset();
+		chain.parseNext(buffer);
+		chain.endBlock(buffer.position());
+		StringBuilder sb = new StringBuilder(text.length() * 2);
+		new HtmlRenderImpl().produceHtml(chain.markers(), buffer, sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testCounts() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8)
+				+ SMDParallelRenderTest.INPUT;
+		SMDParserStatistics stats = new SMDParserStatistics();
+		SMDParserChain chain = (SMDParserChain) SMDParserChain.createParserOfStandard();
+		assertEquals(SMDParserStatistics.ENABLED, chain.getStatistics() != null);
+		chain.setStatistics(stats);
+
+		//same output
+		assertEquals(SMDConverterTest.renderWhole(text), render(chain, text));
+		for(SMDParserStatistics.ParserCounts c : stats.getParsers()) {
+			System.out.println(c);
+			assertEquals(c.getAttemptCount(), c.getAcceptCount() + c.getInvalidCount() + c.getVoidCount());
+			assertTrue(c.getRejectedChars() <= c.getConsumedChars());
+			assertTrue(c.getRejectedLineChars() >= c.getRejectedChars());
+		}
+		//each char is consumed once, by the parser which accepts it
+		assertEquals(text.length(), stats.getConsumedChars());
+		SMDParserStatistics.ParserCounts paragraph = stats.getParser(SMDParagraphParser.class);
+		assertNotNull(paragraph);
+		assertTrue(paragraph.getAcceptCount() > 0);
+
+		//an incomplete item is rolled back, until the line is complete
+		long rollbacks = stats.getParser(SMDOrderedListBlockParser.class).getRollbackCount();
+		chain.reset();
+		chain.parseNext(CharBuffer.wrap("1. Item 1\n2. Ite"));
+		assertTrue(stats.getParser(SMDOrderedListBlockParser.class).getRollbackCount() > rollbacks);
+
+		//no first char dispatch, more rejections, the same consumed chars
+		long invalids = stats.getInvalidCount();
+		stats.reset();
+		assertEquals(0, stats.getAttemptCount());
+		chain.setFirstCharDispatch(false);
+		assertEquals(SMDConverterTest.renderWhole(text), render(chain, text));
+		System.out.println("Rejections: "+invalids+", without dispatch: "+stats.getInvalidCount());
+		assertTrue(stats.getInvalidCount() > invalids);
+		assertEquals(text.length(), stats.getConsumedChars());
+
+		chain.setStatistics(null);
+		long attempts = stats.getAttemptCount();
+		render(chain, text);
+		assertEquals(attempts, stats.getAttemptCount());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void testRejectedLines() throws ReflectiveOperationException {
+		//the horizontal and heading parsers reject the paragraph lines, and reset the buffer
+		SMDParserChain chain = (SMDParserChain) SMDParserChain.createParserOf((Class<SMDParser>) (Class<?>) SMDHorizontalBlockParser.class,
+				(Class<SMDParser>) (Class<?>) SMDHeadingByPoundsBlockParser.class, (Class<SMDParser>) (Class<?>) SMDHeading12BlockParser.class,
+				(Class<SMDParser>) (Class<?>) SMDParagraphParser.class);
+		chain.setFirstCharDispatch(false);
+		SMDParserStatistics stats = new SMDParserStatistics();
+		chain.setStatistics(stats);
+		String line = "A line of a paragraph\n";
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 10; i++)
+			sb.append(line).append("next line\n\n");
+		render(chain, sb.toString());
+
+		for(SMDParserStatistics.ParserCounts c : stats.getParsers())
+			System.out.println(c);
+		SMDParserStatistics.ParserCounts horizontal = stats.getParser(SMDHorizontalBlockParser.class);
+		SMDParserStatistics.ParserCounts pounds = stats.getParser(SMDHeadingByPoundsBlockParser.class);
+		assertEquals(10, horizontal.getInvalidCount());
+		assertEquals(0, horizontal.getRejectedChars());
+		assertEquals(10 * line.length(), horizontal.getRejectedLineChars());
+		assertEquals(10 * line.length(), pounds.getRejectedLineChars());
+		assertEquals(10 * line.length(), stats.getParser(SMDHeading12BlockParser.class).getRejectedLineChars());
+		assertEquals(30 * line.length(), stats.getRejectedLineChars());
+		assertEquals(0, stats.getRejectedChars());
+	}
+
+	@Test
+	void testMBean() throws JMException {
+		SMDParserStatistics stats = new SMDParserStatistics();
+		SMDParserChain chain = (SMDParserChain) SMDParserChain.createParserOfStandard();
+		chain.setStatistics(stats);
+		render(chain, SMDParallelRenderTest.INPUT);
+
+		ObjectName name = stats.registerMBean();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(stats.getAttemptCount(), server.getAttribute(name, "AttemptCount"));
+			CompositeData[] parsers = (CompositeData[]) server.getAttribute(name, "Parsers");
+			assertEquals(stats.getParsers().size(), parsers.length);
+			assertEquals(stats.getParsers().get(0).getName(), parsers[0].get("name"));
+			assertEquals(stats.getParsers().get(0).getAttemptCount(), parsers[0].get("attemptCount"));
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "AttemptCount"));
+		}
+		finally {
+			stats.unregisterMBean();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.render.HtmlByteWriterImpl;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+import vietfi.markdown.strict.render.HtmlWriterImpl;
+import vietfi.markdown.strict.render.XhtmlWriterImpl;
+
+public class SMDUrlResolverCacheTest {
+
+	static final String CDN = "https://cdn.example.com";
+
+	//20 images of 5 URLs, and the links
+	static String document() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 20; i++)
+			sb.append("Image ![photo ").append(i).append("](/img/").append(i % 5).append(".png?v=\"1\") and [the ")
+				.append(i).append(" & link](http://example.com/").append(i % 3).append(") or [](/local/").append(i).append(")\n\n");
+		return sb.toString();
+	}
+
+	static SMDMarkers parse(CharBuffer buffer) {
+		buffer.clear();
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		return parser.markers();
+	}
+
+	static String render(SMDHtmlRender render, CharBuffer buffer) {
+		SMDMarkers markers = parse(buffer);
+		StringBuilder sb = new StringBuilder();
+		render.produceHtml(markers, buffer, sb);
+		return sb.toString();
+	}
+
+	//the CDN prefix of an absolute path, the scheme of http is replaced
+	static int cdn(CharBuffer source, int begin, int end, StringBuilder sb) {
+		if(source.get(begin) == '/') {
+			sb.append(CDN);
+			return 0;
+		}
+		if(end - begin > 7 && source.get(begin + 4) == ':') {
+			sb.append("https:");
+			return 5;
+		}
+		return 0;
+	}
+
+	@Test
+	void testSameAsFunction() throws XMLStreamException {
+		CharBuffer buffer = CharBuffer.wrap(document().toCharArray());
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setLinkHrefResolver((url, sb) -> cdn(url, url.position(), url.limit(), sb));
+		render.setImageSrcResolver((url, sb) -> cdn(url, url.position(), url.limit(), sb));
+		String expected = render(render, buffer);
+		assertTrue(expected.contains("<img alt=\"photo 8\" src=\"" + CDN + "/img/3.png?v=&quot;1&quot;\">"));
+		assertTrue(expected.contains("<a href=\"https://example.com/2\">the 5 &amp; link</a>"));
+		assertTrue(expected.contains("<a href=\"" + CDN + "/local/4\">/local/4</a>"));
+
+		render = new HtmlRenderImpl();
+		render.setLinkUrlResolver(SMDUrlResolverCacheTest::cdn);
+		render.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		assertEquals(expected, render(render, buffer));
+		//not an array
+		assertEquals(expected, render(render, CharBuffer.wrap(document())));
+
+		//a whole URL of XHTML
+		XhtmlWriterImpl xhtml = new XhtmlWriterImpl();
+		xhtml.setLinkHrefResolver(url -> url.startsWith("/") ? CDN + url : null);
+		String xml = xhtml(xhtml, buffer);
+		assertTrue(xml.contains("<a href=\"" + CDN + "/local/4\">/local/4</a>"));
+		xhtml.setLinkUrlResolver((source, begin, end, sb) -> source.get(begin) == '/' ? cdn(source, begin, end, sb) : 0);
+		assertEquals(xml, xhtml(xhtml, buffer));
+		xhtml.setLinkUrlResolver(null);
+		assertTrue(xhtml(xhtml, buffer).contains("<a href=\"/local/4\">"));
+	}
+
+	//an implementation of the previous versions, only the setters of function
+	static class FunctionRender implements SMDHtmlRender {
+		final HtmlRenderImpl render = new HtmlRenderImpl();
+
+		@Override
+		public void setClassNameForTag(String name, int classForTag) {
+			render.setClassNameForTag(name, classForTag);
+		}
+
+		@Override
+		public void produceHtml(SMDMarkers markers, CharBuffer buffer, StringBuilder outputBuilder) {
+			render.produceHtml(markers, buffer, outputBuilder);
+		}
+
+		@Override
+		public void setLinkHrefResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+			render.setLinkHrefResolver(resolver);
+		}
+
+		@Override
+		public void setImageSrcResolver(BiFunction<CharBuffer, StringBuilder, Integer> resolver) {
+			render.setImageSrcResolver(resolver);
+		}
+	}
+
+	static class FunctionXhtmlWriter implements SMDXhtmlWriter {
+		final XhtmlWriterImpl writer = new XhtmlWriterImpl();
+
+		@Override
+		public void setClassNameForTag(String name, int classForTag) {
+			writer.setClassNameForTag(name, classForTag);
+		}
+
+		@Override
+		public void writeXhtml(SMDMarkers markers, CharBuffer buffer, XMLStreamWriter xmlWriter) throws XMLStreamException {
+			writer.writeXhtml(markers, buffer, xmlWriter);
+		}
+
+		@Override
+		public void setLinkHrefResolver(Function<String, String> resolver) {
+			writer.setLinkHrefResolver(resolver);
+		}
+
+		@Override
+		public void setImageSrcResolver(Function<String, String> resolver) {
+			writer.setImageSrcResolver(resolver);
+		}
+	}
+
+	@Test
+	void testDefaultSetters() throws XMLStreamException {
+		CharBuffer buffer = CharBuffer.wrap(document().toCharArray());
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setLinkUrlResolver(SMDUrlResolverCacheTest::cdn);
+		render.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		String expected = render(render, buffer);
+
+		//the default setters adapt the resolver to the functions
+		FunctionRender functions = new FunctionRender();
+		functions.setLinkUrlResolver(SMDUrlResolverCacheTest::cdn);
+		functions.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		assertEquals(expected, render(functions, buffer));
+		functions.setLinkUrlResolver(null);
+		assertTrue(render(functions, buffer).contains("<a href=\"/local/4\">"));
+
+		//bypass from the start, from the end and the whole URL
+		XhtmlWriterImpl xhtml = new XhtmlWriterImpl();
+		FunctionXhtmlWriter xhtmlFunctions = new FunctionXhtmlWriter();
+		SMDUrlResolver<StringBuilder> resolver = (source, begin, end, sb) -> {
+			if(source.get(begin) == '/') {
+				sb.append(CDN);
+				return 0;
+			}
+			return source.get(end - 1) == '1' ? end - begin - 1 : -1;
+		};
+		xhtml.setLinkUrlResolver(resolver);
+		xhtmlFunctions.setLinkUrlResolver(resolver);
+		xhtml.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		xhtmlFunctions.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		String xml = xhtml(xhtml, buffer);
+		assertTrue(xml.contains("<a href=\"" + CDN + "/local/4\">/local/4</a>"));
+		assertTrue(xml.contains("<a href=\"http://example.com/\">the 5 &amp; link</a>"));
+		assertTrue(xml.contains("<a href=\"1\">the 4 &amp; link</a>"));
+		assertEquals(xml, xhtml(xhtmlFunctions.writer, buffer));
+	}
+
+	static String xhtml(XhtmlWriterImpl writer, CharBuffer buffer) throws XMLStreamException {
+		SMDMarkers markers = parse(buffer);
+		StringWriter out = new StringWriter();
+		XMLStreamWriter xmlWriter = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+		xmlWriter.writeStartElement("div");
+		writer.writeXhtml(markers, buffer, xmlWriter);
+		xmlWriter.writeEndElement();
+		xmlWriter.close();
+		return out.toString();
+	}
+
+	@Test
+	void testCache() {
+		CharBuffer buffer = CharBuffer.wrap(document().toCharArray());
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		String expected = render(render, buffer);
+
+		AtomicInteger calls = new AtomicInteger();
+		SMDUrlResolverCache<StringBuilder> cache = SMDUrlResolverCache.ofStringBuilder((source, begin, end, sb) -> {
+			calls.incrementAndGet();
+			return cdn(source, begin, end, sb);
+		}, SMDUrlResolverCache.DEFAULT_MAXIMUM_ENTRIES);
+		render.setImageUrlResolver(cache);
+		assertEquals(expected, render(render, buffer));
+		//the 5 URLs are resolved once
+		assertEquals(5, calls.get());
+		assertEquals(5, cache.getMissCount());
+		assertEquals(15, cache.getHitCount());
+		assertEquals(expected, render(render, buffer));
+		assertEquals(5, calls.get());
+		assertEquals(35, cache.getHitCount());
+
+		//the trip from start is kept
+		render.setLinkUrlResolver(SMDUrlResolverCache.ofStringBuilder(SMDUrlResolverCacheTest::cdn, 16));
+		render.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		String links = render(render, buffer);
+		render.setLinkUrlResolver(SMDUrlResolverCacheTest::cdn);
+		assertEquals(render(render, buffer), links);
+		render.setLinkUrlResolver(null);
+
+		//bounded, a slot of the same URLs
+		cache.clear();
+		SMDUrlResolverCache<StringBuilder> small = SMDUrlResolverCache.ofStringBuilder(SMDUrlResolverCacheTest::cdn, 3);
+		assertEquals(2, small.getMaximumEntries());
+		render.setImageUrlResolver(small);
+		assertEquals(expected, render(render, buffer));
+		assertEquals(expected, render(render, buffer));
+		System.out.println("Small cache, hits: "+small.getHitCount()+", misses: "+small.getMissCount());
+		assertEquals(40, small.getHitCount() + small.getMissCount());
+		assertTrue(small.getMissCount() >= 5);
+
+		assertThrows(IllegalArgumentException.class, () -> SMDUrlResolverCache.ofStringBuilder(SMDUrlResolverCacheTest::cdn, 0));
+		assertThrows(IllegalArgumentException.class, () -> SMDUrlResolverCache.ofStringBuilder(null, 16));
+	}
+
+	@Test
+	void testCacheOfWriters() {
+		CharBuffer buffer = CharBuffer.wrap(document().toCharArray());
+		HtmlRenderImpl render = new HtmlRenderImpl();
+		render.setImageUrlResolver(SMDUrlResolverCacheTest::cdn);
+		String expected = render(render, buffer);
+
+		//the chars
+		HtmlWriterImpl writer = new HtmlWriterImpl();
+		SMDUrlResolverCache<CharBuffer> chars = SMDUrlResolverCache.ofCharBuffer((source, begin, end, output) -> {
+			if(source.get(begin) != '/')
+				return 0;
+			output.put(CDN);
+			return 0;
+		}, 64);
+		writer.setImageUrlResolver(chars);
+		for(int round = 0; round < 2; round++) {
+			SMDMarkers markers = parse(buffer);
+			CharBuffer output = CharBuffer.allocate(expected.length() * 2);
+			assertTrue(writer.appendHtml(markers, buffer, output));
+			writer.compact(buffer.position());
+			assertEquals(expected, output.flip().toString());
+		}
+		assertEquals(5, chars.getMissCount());
+		assertEquals(35, chars.getHitCount());
+
+		//the bytes
+		HtmlByteWriterImpl byteWriter = new HtmlByteWriterImpl();
+		SMDUrlResolverCache<ByteBuffer> bytes = SMDUrlResolverCache.ofByteBuffer((source, begin, end, output) -> {
+			if(source.get(begin) != '/')
+				return 0;
+			output.put(CDN.getBytes(StandardCharsets.US_ASCII));
+			return 0;
+		}, 64);
+		byteWriter.setImageUrlResolver(bytes);
+		for(int round = 0; round < 2; round++) {
+			SMDMarkers markers = parse(buffer);
+			assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8),
+					SMDHtmlByteWriterTest.write(byteWriter, markers, buffer, ByteBuffer.allocateDirect(HtmlByteWriterImpl.MINIMUM_BUFFER_SIZE)));
+		}
+		assertEquals(5, bytes.getMissCount());
+		assertEquals(35, bytes.getHitCount());
+	}
+}
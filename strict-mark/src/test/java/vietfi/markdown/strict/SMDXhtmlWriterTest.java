@@ -0,0 +1,145 @@
+package vietfi.markdown.strict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import vietfi.markdown.strict.line.XmlEscapeUtil;
+import vietfi.markdown.strict.render.XhtmlWriterImpl;
+
+public class SMDXhtmlWriterTest {
+
+	static SMDMarkers parse(CharBuffer buffer) {
+		buffer.clear();
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		return parser.markers();
+	}
+
+	static String stax(XhtmlWriterImpl writer, CharBuffer buffer) throws XMLStreamException {
+		SMDMarkers markers = parse(buffer);
+		StringWriter out = new StringWriter();
+		XMLStreamWriter xmlWriter = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+		writer.writeXhtml(markers, buffer, xmlWriter);
+		xmlWriter.close();
+		return out.toString();
+	}
+
+	static String direct(XhtmlWriterImpl writer, CharBuffer buffer) {
+		SMDMarkers markers = parse(buffer);
+		StringBuilder sb = new StringBuilder();
+		writer.produceXhtml(markers, buffer, sb);
+		return sb.toString();
+	}
+
+	static Document xml(String xhtml) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(("<body>" + xhtml + "</body>").getBytes(StandardCharsets.UTF_8)));
+	}
+
+	static String corpus() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8));
+		sb.append(new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8));
+		sb.append(SMDConverterTest.INPUT);
+		for(int i = 0; i < 20; i++)
+			sb.append("See [item ").append(i).append(" <b>](https://example.com/a?id=").append(i)
+				.append("&q=\"x\") and [](/plain/").append(i).append("), ![logo \"").append(i)
+				.append("\"](/img/").append(i).append(".png).\n\n");
+		return sb.toString();
+	}
+
+	@Test
+	void testSameAsStax() throws Exception {
+		String text = corpus();
+		XhtmlWriterImpl writer = new XhtmlWriterImpl();
+		String expected = stax(writer, CharBuffer.wrap(text.toCharArray()));
+		assertEquals(expected, direct(writer, CharBuffer.wrap(text.toCharArray())));
+		//not an array
+		assertEquals(expected, direct(writer, CharBuffer.wrap(text)));
+		xml(expected);
+
+		//the classes and the resolvers
+		writer.setClassNameForTag("para", SMDHtmlRender.CLASS_FOR_PARAGRAPH);
+		writer.setClassNameForTag("a&b", SMDHtmlRender.CLASS_FOR_LINK);
+		writer.setClassNameForTag("img", SMDHtmlRender.CLASS_FOR_IMG);
+		writer.setClassNameForTag("li", SMDHtmlRender.CLASS_FOR_LI);
+		writer.setClassNameForTag("ol", SMDHtmlRender.CLASS_FOR_OL);
+		writer.setClassNameForTag("ul", SMDHtmlRender.CLASS_FOR_UL);
+		writer.setLinkHrefResolver(url -> url.startsWith("/") ? "/go?u=\"" + url + "\"" : null);
+		writer.setImageUrlResolver((source, begin, end, sb) -> {
+			sb.append("https://cdn.example.com");
+			return 0;
+		});
+		expected = stax(writer, CharBuffer.wrap(text.toCharArray()));
+		assertTrue(expected.contains("<a class=\"a&amp;b\" href=\"/go?u=&quot;/plain/3&quot;\">/plain/3</a>"), expected);
+		assertEquals(expected, direct(writer, CharBuffer.wrap(text.toCharArray())));
+		assertEquals(expected, direct(writer, CharBuffer.wrap(text)));
+	}
+
+	@Test
+	void testEndOfDocument() throws Exception {
+		XhtmlWriterImpl writer = new XhtmlWriterImpl();
+		for(String text : new String[] {"Hello *world*\u001C", "Para\n\n1. item\n2. [link](/a)\u001C", "```\ncode\n\u001C", "> quote `x`\u001C", "plain\u001C"}) {
+			String expected = stax(writer, CharBuffer.wrap(text.toCharArray()));
+			assertEquals(-1, expected.indexOf('\u001C'), expected);
+			assertEquals(expected, direct(writer, CharBuffer.wrap(text.toCharArray())));
+			assertEquals(expected, direct(writer, CharBuffer.wrap(text)));
+			assertEquals(-1, expected.indexOf(XmlEscapeUtil.REPLACEMENT), expected);
+			xml(expected);
+		}
+	}
+
+	@Test
+	void testWellFormed() throws Exception {
+		String text = "A \u0001 control, a lone \ud800 surrogate and a pair \ud83d\ude00 & <tag>\n\n"
+				+ "```java\nint a = 1 < 2;\u000b\n```\n\n"
+				+ "![alt \u0002](/img.png) [link \"q\"](/a?b=\u0003)\n";
+		XhtmlWriterImpl writer = new XhtmlWriterImpl();
+		writer.setClassNameForTag("code", SMDHtmlRender.CLASS_FOR_PRE_CODE);
+		String xhtml = direct(writer, CharBuffer.wrap(text.toCharArray()));
+		System.out.println(xhtml);
+		assertEquals(xhtml, direct(writer, CharBuffer.wrap(text)));
+		assertTrue(xhtml.contains("A \ufffd control, a lone \ufffd surrogate and a pair \ud83d\ude00 &amp; &lt;tag&gt;"));
+		assertTrue(xhtml.contains("<pre class=\"code language-java\">"));
+		Document document = xml(xhtml);
+		assertEquals("code language-java", document.getElementsByTagName("pre").item(0).getAttributes().getNamedItem("class").getNodeValue());
+		assertEquals("alt \ufffd", document.getElementsByTagName("img").item(0).getAttributes().getNamedItem("alt").getNodeValue());
+	}
+
+	@Test
+	void testAppendable() throws Exception {
+		String text = corpus();
+		CharBuffer buffer = CharBuffer.wrap(text.toCharArray());
+		XhtmlWriterImpl writer = new XhtmlWriterImpl();
+		String expected = direct(writer, buffer);
+		for(int flushSize : new int[] {1, 64, 256, XhtmlWriterImpl.DEFAULT_FLUSH_SIZE}) {
+			writer.setFlushSize(flushSize);
+			SMDHtmlRenderTest.CountingWriter out = new SMDHtmlRenderTest.CountingWriter();
+			writer.produceXhtml(parse(buffer), buffer, out);
+			assertEquals(expected, out.toString());
+			assertTrue(out.maxWrite < flushSize + 64, "A write of " + out.maxWrite + " chars");
+			System.out.println("Flush size " + flushSize + ": " + out.writes + " writes");
+		}
+		//a CharBuffer is an Appendable
+		CharBuffer output = CharBuffer.allocate(expected.length());
+		writer.produceXhtml(parse(buffer), buffer, output);
+		assertEquals(expected, output.flip().toString());
+	}
+}
@@ -499,4 +499,90 @@ public class SMDOrderedListBlockParserTest {
 	    		
 	    assertArrayEquals(expected, actual);
 	}
+	
+	@Test
+	void test10() {
+		//a nested list under the second item of a sub-list
+		String inputText = "1. Item 1\n" +
+				"   1. Sub item 1\n" +
+				"   2. Sub item 2\n" +
+				"      1. Nested 1\n" +
+				"      2. Nested 2\n" +
+				"   3. Sub item 3\n\n";
+		System.out.println("----test10-----\n" + inputText + "\n----------");
+		
+		CharBuffer input = CharBuffer.wrap(inputText);
+		SMDOrderedListBlockParser parser = new SMDOrderedListBlockParser();
+		StringBuilder sb = new StringBuilder(256);
+		SMDHtmlRender render = new HtmlRenderImpl();
+		
+		int r = 0;
+		int c = 0;
+		while(r != SMDParser.SMD_BLOCK_END && r != SMDParser.SMD_BLOCK_INVALID && c < 30) {
+			c++;
+			r = parser.parseNext(input);
+		}
+		assertEquals(SMDParser.SMD_BLOCK_END, r);
+		
+		render.produceHtml(parser.markers(), input, sb);
+		
+		System.out.append("Markers:\n").append(parser.markers().toString()).append("\n");
+		System.out.append("Result:\n").append(sb.toString()).append("\n\n");
+		String[] expected = {
+				"<ol><li>Item 1",
+				"<ol><li>Sub item 1",
+				"</li>",
+				"<li>Sub item 2",
+				"<ol><li>Nested 1",
+				"</li>",
+				"<li>Nested 2",
+				"</li>",
+				"</ol>",
+				"</li>",
+				"<li>Sub item 3",
+				"</li>",
+				"</ol>",
+				"</li>",
+				"</ol>",
+		};
+		
+		Object[] actual = sb.toString().lines().collect(Collectors.toList()).toArray();
+		
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	void testRejectedFirstItem() {
+		//the first item is empty, the list is rejected, then a list of another marker
+		String inputText = "1. \n\na. x\nb. y\n\u001C";
+		CharBuffer input = CharBuffer.wrap(inputText);
+		SMDOrderedListBlockParser parser = new SMDOrderedListBlockParser();
+		assertEquals(SMDParser.SMD_BLOCK_INVALID, parser.parseNext(input));
+		assertEquals(0, input.position());
+		assertTrue(parser.markers().isEmpty());
+
+		input.position(inputText.indexOf('a'));
+		int r = 0;
+		for(int c = 0; r != SMDParser.SMD_BLOCK_END && r != SMDParser.SMD_BLOCK_INVALID && c < 30; c++)
+			r = parser.parseNext(input);
+		assertEquals(SMDParser.SMD_BLOCK_END, r);
+
+		StringBuilder sb = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(parser.markers(), input, sb);
+		String[] expected = {
+				"<ol><li>x","</li>",
+				"<li>y","</li>",
+				"</ol>"
+		};
+		assertArrayEquals(expected, sb.toString().lines().toArray());
+	}
+
+	@Test
+	void testLastLineEnds() {
+		//a short line at the end is not an item, the list ends without more characters
+		CharBuffer input = CharBuffer.wrap("1. x\n2\n");
+		SMDOrderedListBlockParser parser = new SMDOrderedListBlockParser();
+		assertEquals(SMDParser.SMD_BLOCK_END, parser.parseNext(input));
+		assertEquals(5, input.position());
+	}
 }
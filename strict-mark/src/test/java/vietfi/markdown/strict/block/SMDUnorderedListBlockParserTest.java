@@ -463,4 +463,60 @@ public class SMDUnorderedListBlockParserTest {
 	    		
 	}
 	
+	
+	@Test
+	void test10() {
+		//the list is closed by the end of input
+		String inputText = "* Item 1\n" +
+				"* Item 2\n";
+		System.out.println("----test10-----\n" + inputText + "\n----------");
+		
+		CharBuffer input = CharBuffer.wrap(inputText);
+		SMDUnorderedListBlockParser parser = new SMDUnorderedListBlockParser();
+		StringBuilder sb = new StringBuilder(256);
+		SMDHtmlRender render = new HtmlRenderImpl();
+		
+		parser.parseNext(input);
+		parser.endBlock(input.position());
+		render.produceHtml(parser.markers(), input, sb);
+		
+		System.out.append("Markers:\n").append(parser.markers().toString()).append("\n");
+		System.out.append("Result:\n").append(sb.toString()).append("\n\n");
+		String[] expected = {
+				"<ul><li>Item 1",
+				"</li>",
+				"<li>Item 2",
+				"</li>",
+				"</ul>",
+		};
+		
+		Object[] actual = sb.toString().lines().collect(Collectors.toList()).toArray();
+		
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	void testRejectedFirstItem() {
+		//the first item is empty, the list is rejected, then a list of another marker
+		String inputText = "- \n\n* x\n* y\n\u001C";
+		CharBuffer input = CharBuffer.wrap(inputText);
+		SMDUnorderedListBlockParser parser = new SMDUnorderedListBlockParser();
+		assertEquals(SMDParser.SMD_BLOCK_INVALID, parser.parseNext(input));
+		assertEquals(0, input.position());
+
+		input.position(inputText.indexOf('*'));
+		int r = 0;
+		for(int c = 0; r != SMDParser.SMD_BLOCK_END && r != SMDParser.SMD_BLOCK_INVALID && c < 30; c++)
+			r = parser.parseNext(input);
+		assertEquals(SMDParser.SMD_BLOCK_END, r);
+
+		StringBuilder sb = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(parser.markers(), input, sb);
+		String[] expected = {
+				"<ul><li>x","</li>",
+				"<li>y","</li>",
+				"</ul>"
+		};
+		assertArrayEquals(expected, sb.toString().lines().toArray());
+	}
 }
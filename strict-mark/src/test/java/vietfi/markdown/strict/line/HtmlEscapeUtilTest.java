@@ -4,7 +4,11 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 class HtmlEscapeUtilTest {
 
@@ -189,4 +193,125 @@ class HtmlEscapeUtilTest {
         assertEquals(9, lastPos);  // Stops after 'o' because of reserved space
         
     }
+
+    //the escaping char by char, as before the table
+    static String escapeByChar(boolean safeQuote, String text) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            String escape = HtmlEscapeUtil.escapeHtml(text.charAt(i), safeQuote);
+            if (escape != null)
+                sb.append(escape);
+            else
+                sb.append(text.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testTableSameAsEscapeHtml() {
+        StringBuilder input = new StringBuilder("Plain text of a run, then <b> & \"q\" 'a'\tend\r\n");
+        for (char c = 0; c < 0x2100; c++)
+            input.append(c).append("ab");
+        input.append('\uFFFD').append('\u1EC1');
+        String text = input.toString();
+
+        for (boolean safeQuote : new boolean[] {false, true}) {
+            String expected = escapeByChar(safeQuote, text);
+
+            StringBuilder sb = new StringBuilder();
+            HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, text.toCharArray(), 0, text.length(), sb);
+            assertEquals(expected, sb.toString());
+
+            //a slice of the array
+            sb.setLength(0);
+            CharBuffer slice = CharBuffer.wrap(("xx" + text).toCharArray(), 2, text.length()).slice();
+            HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, slice, 0, text.length(), sb);
+            assertEquals(expected, sb.toString());
+
+            //no array
+            sb.setLength(0);
+            HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, CharBuffer.wrap(text).asReadOnlyBuffer(), 0, text.length(), sb);
+            assertEquals(expected, sb.toString());
+
+            CharBuffer output = CharBuffer.allocate(expected.length());
+            assertEquals(text.length(), HtmlEscapeUtil.writeWithEscapeHtml(safeQuote, slice, 0, text.length(), 0, output));
+            assertEquals(expected, output.flip().toString());
+
+            output.clear();
+            assertEquals(text.length(), HtmlEscapeUtil.writeWithEscapeHtml(safeQuote, CharBuffer.wrap(text), 0, text.length(), 0, output));
+            assertEquals(expected, output.flip().toString());
+        }
+    }
+
+    //the writing char by char, as before the table, -1 if the output overflows
+    static int writeByChar(String text, int reserved, CharBuffer output) {
+        int j = 0;
+        try {
+            for (; j < text.length(); j++) {
+                if (output.remaining() < reserved)
+                    break;
+                String escape = HtmlEscapeUtil.escapeHtml(text.charAt(j), true);
+                if (escape != null)
+                    output.append(escape);
+                else if (output.remaining() < 1 + reserved)
+                    break;
+                else
+                    output.append(text.charAt(j));
+            }
+        }
+        catch (BufferOverflowException e) {
+            return -1;
+        }
+        return j;
+    }
+
+    @Test
+    void testRunSplitByOutput() {
+        //the same stops as char by char, for every output size
+        String text = "Hello <World> & a long run of plain text";
+        for (int size = 1; size < 60; size++) {
+            for (int reserved = 0; reserved < 8; reserved++) {
+                CharBuffer expected = CharBuffer.allocate(size);
+                int expectedPos = writeByChar(text, reserved, expected);
+
+                CharBuffer actual = CharBuffer.allocate(size);
+                int actualPos;
+                try {
+                    actualPos = HtmlEscapeUtil.writeWithEscapeHtml(true, text.toCharArray(), 0, text.length(), reserved, actual);
+                }
+                catch (BufferOverflowException e) {
+                    actualPos = -1;
+                }
+                assertEquals(expectedPos, actualPos, "size " + size + ", reserved " + reserved);
+                if (expectedPos >= 0)
+                    assertEquals(expected.flip().toString(), actual.flip().toString());
+            }
+        }
+    }
+
+    @Test
+    void testUtf8SameAsAppend() {
+        //the escaped chars in UTF-8, with or without the arrays, split by every output size
+        String text = "Hello <World> & \u0110i\u1EC1u 1 \uD83D\uDE00 \"quote\" \u2028\u0085 end";
+        for (boolean safeQuote : new boolean[] {false, true}) {
+            StringBuilder sb = new StringBuilder();
+            HtmlEscapeUtil.appendWithEscapeHtml(safeQuote, CharBuffer.wrap(text), 0, text.length(), sb);
+            byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+            for (CharBuffer input : new CharBuffer[] {CharBuffer.wrap(text), CharBuffer.wrap(text.toCharArray())}) {
+                //at least the longest escape of the text ("&#xFFFD;")
+                for (int size = 8; size <= expected.length; size++) {
+                    ByteBuffer output = ByteBuffer.allocate(size);
+                    byte[] actual = new byte[0];
+                    int pos = 0;
+                    while (pos < text.length()) {
+                        pos = HtmlEscapeUtil.writeUtf8WithEscapeHtml(safeQuote, input, pos, text.length(), output);
+                        actual = Arrays.copyOf(actual, actual.length + output.position());
+                        System.arraycopy(output.array(), 0, actual, actual.length - output.position(), output.position());
+                        output.clear();
+                    }
+                    assertArrayEquals(expected, actual, "size " + size);
+                }
+            }
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package vietfi.markdown.strict.line;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.CharBuffer;
 
@@ -25,6 +27,20 @@ public class SMDListItemParserTest {
 	    assertEquals(0, input.position());
 	}
 	
+	@Test
+	void testReset() {
+	    CharBuffer input = CharBuffer.wrap(" Simple **item**.\n");
+	    SMDListItemParser parser = new SMDListItemParser();
+	    assertEquals(SMDLineParser.SMD_LINE_PARSED, parser.parseLine(input));
+	    
+	    //a new item, the markers are kept
+	    parser.reset();
+	    assertFalse(parser.markers().isEmpty());
+	    //a new document
+	    parser.resetAll();
+	    assertTrue(parser.markers().isEmpty());
+	}
+	
 	@Test
 	void test1() {
 	    String inputText = " Simple item.\n\n";
@@ -685,4 +701,26 @@ public class SMDListItemParserTest {
 	    		
 	    assertEquals(expected, sb.toString());
 	}
+
+	@Test
+	void testLookForwardAtLineEnd() {
+		//the line ends before the characters of an item, it is decided without more characters
+		assertEquals(0, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("1.\n"), '\0'));
+		assertEquals(0, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("1.\u001C"), '\0'));
+		assertEquals(0, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("iii\n"), '\0'));
+		assertEquals(0, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("iiii\n"), '\0'));
+		//more characters may make an item
+		assertEquals(-1, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("1. "), '\0'));
+		assertEquals(-1, SMDListItemParser.lookForwardOrderedList(CharBuffer.wrap("iii"), '\0'));
+	}
+
+	@Test
+	void testShortLineAtEnd() {
+		//a short next line of the item is parsed at its end, it is not left for more characters
+		CharBuffer input = CharBuffer.wrap("1. a\nind\n");
+		SMDListItemParser parser = new SMDListItemParser();
+		assertEquals(SMDLineParser.SMD_LINE_PARSED, parser.parseLine(input));
+		assertEquals(SMDLineParser.SMD_LINE_PARSED, parser.parseLine(input));
+		assertEquals(9, input.position());
+	}
 }
@@ -0,0 +1,89 @@
+package vietfi.markdown.strict.line;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import vietfi.markdown.strict.SMDParser;
+import vietfi.markdown.strict.SMDParserChain;
+import vietfi.markdown.strict.render.HtmlRenderImpl;
+
+public class SMDScanTest {
+
+	static String render(CharBuffer buffer) {
+		SMDParser parser = SMDParserChain.createParserOfStandard();
+		parser.parseNext(buffer);
+		parser.endBlock(buffer.position());
+		StringBuilder sb = new StringBuilder();
+		new HtmlRenderImpl().produceHtml(parser.markers(), buffer, sb);
+		return sb.toString();
+	}
+
+	@Test
+	void testKernels() {
+		char[] text = "plain text *bold* and\n\u001C".toCharArray();
+		assertEquals(21, SMDScan.indexOfNewLine(text, 0, text.length));
+		assertEquals(22, SMDScan.indexOfNewLine(text, 22, text.length));
+		assertEquals(-1, SMDScan.indexOfNewLine(text, 0, 21));
+		assertEquals(11, SMDScan.indexOfTextMarkup(text, 0, text.length));
+		assertEquals(16, SMDScan.indexOfTextMarkup(text, 12, text.length));
+		assertEquals(21, SMDScan.indexOfTextMarkup(text, 17, text.length));
+		assertEquals(-1, SMDScan.indexOfTextMarkup(text, 0, 5));
+
+		//a slice
+		CharBuffer slice = CharBuffer.wrap(text, 5, text.length - 5).slice();
+		assertEquals(16, SMDLineParser.lookForwardNewLine(slice));
+		slice.position(17);
+		assertEquals(-1, SMDLineParser.lookForwardNewLine(slice.limit(17)));
+	}
+
+	@Test
+	void testVectorKernels() {
+		//the surefire argLine adds the incubator module
+		boolean module = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+		System.out.println("Vector module: "+module+", vectorized: "+SMDScan.isVectorized());
+		if(module && Boolean.parseBoolean(System.getProperty("smd.scan.vector", "true")))
+			assertNotSame(SMDScan.SCALAR, SMDScan.KERNEL);
+
+		//the same index as the scalar loops, at any offset, length and tail
+		char[] chars = {'a', ' ', '\n', '\u001C', '~', '*', '_', '`', '[', '!', '\\', ']', '^', '\u00E0', '\u1EC1', '\u880A', '\u8A0A'};
+		Random random = new Random(19);
+		for(int n = 0; n < 2000; n++) {
+			char[] text = new char[random.nextInt(200)];
+			int density = 1 + random.nextInt(64);
+			for(int i = 0; i < text.length; i++)
+				text[i] = random.nextInt(density) == 0 ? chars[random.nextInt(chars.length)] : (char) ('a' + random.nextInt(26));
+			int from = text.length == 0 ? 0 : random.nextInt(text.length);
+			int to = from + random.nextInt(text.length - from + 1);
+			assertEquals(SMDScan.scalarIndexOfNewLine(text, from, to), SMDScan.indexOfNewLine(text, from, to));
+			assertEquals(SMDScan.scalarIndexOfTextMarkup(text, from, to), SMDScan.indexOfTextMarkup(text, from, to));
+		}
+	}
+
+	@Test
+	void testSameAsWithoutArray() throws IOException {
+		String tt39 = new String(Files.readAllBytes(Paths.get("../docs/TT_39_2016_TT_NHNN.md")), StandardCharsets.UTF_8);
+		String doc = new String(Files.readAllBytes(Paths.get("../docs/strict-mark.md")), StandardCharsets.UTF_8);
+		String markup = "Text *italic **bold** x* __under `code` line__ ~~strike~~ [link](http://a.b/c) ![img](/i.png) a\\*b\\\n"
+				+ "next line `` code ` with `` *not closed __ ~~ ~~~ ! [ !x \u00E0 *\u1EC1*\n"
+				+ "\n"
+				+ "1. item **bold**\n"
+				+ "   * sub `x`\n"
+				+ "\n"
+				+ "> quote *q* [l](u)\n";
+		for(String text : new String[] {tt39, doc, markup}) {
+			//a String buffer has no array
+			String expected = render(CharBuffer.wrap(text));
+			assertEquals(expected, render(CharBuffer.wrap(text.toCharArray())));
+			assertEquals(expected, render(CharBuffer.wrap(("###" + text).toCharArray(), 3, text.length()).slice()));
+		}
+	}
+}